@@ -0,0 +1,81 @@
+package com.knowledgebase.config;
+
+import com.knowledgebase.service.AdmissionRejectedException;
+import com.knowledgebase.service.AdmissionScheduler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 准入控制拦截器
+ * 按请求路径和方法将请求划入调度通道，排队获得执行许可后才进入Controller，请求结束（含异步流式响应）时释放许可。
+ * 被拒绝的请求直接返回429和Retry-After。仅从内存读模型读取数据的GET请求不参与调度。
+ */
+@Component
+public class AdmissionInterceptor implements AsyncHandlerInterceptor {
+
+    private static final String PERMIT_ATTRIBUTE = AdmissionInterceptor.class.getName() + ".permit";
+
+    @Autowired
+    private AdmissionScheduler admissionScheduler;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws Exception {
+        if (request.getAttribute(PERMIT_ATTRIBUTE) != null) {
+            // 异步请求的二次分派，许可已在首次分派时获得
+            return true;
+        }
+        AdmissionScheduler.Lane lane = resolveLane(request.getMethod(), request.getRequestURI());
+        if (lane == null) {
+            return true;
+        }
+        try {
+            request.setAttribute(PERMIT_ATTRIBUTE, admissionScheduler.acquire(lane));
+            return true;
+        } catch (AdmissionRejectedException e) {
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+            response.setContentType("text/plain;charset=UTF-8");
+            response.getOutputStream().write("系统繁忙，请稍后重试".getBytes(StandardCharsets.UTF_8));
+            return false;
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Object permit = request.getAttribute(PERMIT_ATTRIBUTE);
+        if (permit != null) {
+            request.removeAttribute(PERMIT_ATTRIBUTE);
+            admissionScheduler.release((AdmissionScheduler.Permit) permit);
+        }
+    }
+
+    /**
+     * 根据请求方法和路径确定调度通道
+     * @return 调度通道，null表示不参与调度
+     */
+    static AdmissionScheduler.Lane resolveLane(String method, String uri) {
+        boolean read = "GET".equals(method) || "HEAD".equals(method) || "OPTIONS".equals(method);
+        if (uri.startsWith("/api/export/") || (uri.startsWith("/api/admin/") && !read)
+                || uri.startsWith("/api/documents/batch-upload") || uri.startsWith("/api/documents/bulk")
+                || uri.startsWith("/api/documents/duplicates")) {
+            return AdmissionScheduler.Lane.BULK;
+        }
+        if (read) {
+            return null;
+        }
+        if (uri.startsWith("/api/query")) {
+            return AdmissionScheduler.Lane.INTERACTIVE;
+        }
+        if (uri.startsWith("/api/documents")) {
+            return AdmissionScheduler.Lane.DOCUMENT_WRITE;
+        }
+        return null;
+    }
+}
@@ -17,7 +17,7 @@ public class CorsConfig implements WebMvcConfigurer {
                 .allowedOrigins("*")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
-                .exposedHeaders("Content-Type", "Authorization")
+                .exposedHeaders("Content-Type", "Authorization", "ETag")
                 .allowCredentials(false)
                 .maxAge(3600);
     }
@@ -0,0 +1,63 @@
+package com.knowledgebase.config;
+
+import com.knowledgebase.model.IdGenerators;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.List;
+
+/**
+ * ID生成器初始化
+ * 原有数据由自增列生成ID，切换到表生成器后，需要保证id_generators中的下一段不会与已有ID重叠。
+ * 启动时（表结构更新之后、业务写入之前）把每个生成器行推进到 max(id) + 分配步长 以上，只会增大不会回退，
+ * 多个节点同时启动或已有节点正在分配时都是安全的。
+ */
+@Component
+public class IdGeneratorInitializer {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * 依赖EntityManagerFactory，保证ddl-auto已创建id_generators表
+     */
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @PostConstruct
+    public void init() {
+        for (String table : IdGenerators.TABLES) {
+            try {
+                advance(table);
+            } catch (Exception e) {
+                System.err.println("Failed to initialize id generator for " + table + ": " + e.getMessage());
+            }
+        }
+    }
+
+    private void advance(String table) {
+        Long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + table, Long.class);
+        if (maxId == null || maxId == 0) {
+            // 空表由Hibernate按初始值创建生成器行
+            return;
+        }
+        // 池化优化器读到值v时使用(v - 步长, v]这一段，因此v至少为max(id) + 步长
+        long required = maxId + IdGenerators.ALLOCATION_SIZE;
+        List<Long> current = jdbcTemplate.queryForList(
+                "SELECT next_val FROM id_generators WHERE sequence_name = ?", Long.class, table);
+        if (current.isEmpty()) {
+            try {
+                jdbcTemplate.update("INSERT INTO id_generators (sequence_name, next_val) VALUES (?, ?)", table, required);
+                return;
+            } catch (DuplicateKeyException e) {
+                // 其他节点已创建，按更新处理
+            }
+        }
+        jdbcTemplate.update("UPDATE id_generators SET next_val = ? WHERE sequence_name = ? AND next_val < ?",
+                required, table, required);
+    }
+}
@@ -0,0 +1,68 @@
+package com.knowledgebase.config;
+
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 非服务必需Bean的延迟初始化
+ * 把startup.lazy-bean-packages（默认springdoc）下的Bean标记为懒加载，
+ * 首次访问Swagger文档时才创建，不计入启动耗时；服务请求路径上的Bean仍在启动时创建。
+ * BeanFactoryPostProcessor早于@Value处理创建，配置通过Environment读取。
+ */
+@Component
+public class LazyBeanInitializer implements BeanFactoryPostProcessor, EnvironmentAware {
+
+    private List<String> packages = new ArrayList<>();
+
+    private boolean enabled = true;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        enabled = environment.getProperty("startup.lazy-beans.enabled", Boolean.class, true);
+        String setting = environment.getProperty("startup.lazy-bean-packages", "org.springdoc");
+        for (String item : setting.split(",")) {
+            if (!item.trim().isEmpty()) {
+                packages.add(item.trim() + ".");
+            }
+        }
+    }
+
+    @Override
+    public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
+        if (!enabled) {
+            return;
+        }
+        for (String name : beanFactory.getBeanDefinitionNames()) {
+            BeanDefinition definition = beanFactory.getBeanDefinition(name);
+            String className = definition.getBeanClassName();
+            // @Bean方法定义的Bean按所在配置类判断
+            String factoryBean = definition.getFactoryBeanName();
+            if (className == null && factoryBean != null && beanFactory.containsBeanDefinition(factoryBean)) {
+                className = beanFactory.getBeanDefinition(factoryBean).getBeanClassName();
+            }
+            if (matches(className)) {
+                definition.setLazyInit(true);
+            }
+        }
+    }
+
+    private boolean matches(String className) {
+        if (className == null) {
+            return false;
+        }
+        for (String prefix : packages) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
\ No newline at end of file
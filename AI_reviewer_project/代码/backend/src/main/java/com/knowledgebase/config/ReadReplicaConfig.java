@@ -0,0 +1,107 @@
+package com.knowledgebase.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 读写分离配置类
+ * 配置了datasource.replica.urls时启用：主库仍按spring.datasource.*创建，从库按逗号分隔的URL逐个创建只读连接池。
+ * 主库和从库连接池都绑定spring.datasource.hikari.*，从库再以datasource.replica.*覆盖池大小和超时。
+ * 应用使用的DataSource为LazyConnectionDataSourceProxy包装的路由数据源，
+ * 真正获取连接推迟到事务内第一条SQL，此时事务的只读标记和路由已经确定。
+ */
+@Configuration
+@ConditionalOnExpression("!'${datasource.replica.urls:}'.isEmpty()")
+public class ReadReplicaConfig {
+
+    @Autowired
+    private Environment environment;
+
+    @Value("${datasource.replica.urls}")
+    private String urls;
+
+    @Value("${datasource.replica.username:${spring.datasource.username:}}")
+    private String username;
+
+    @Value("${datasource.replica.password:${spring.datasource.password:}}")
+    private String password;
+
+    @Value("${datasource.replica.lag-check:mysql}")
+    private String lagCheck;
+
+    @Value("${datasource.replica.max-lag-seconds:5}")
+    private long maxLagSeconds;
+
+    @Value("${datasource.replica.pool-size:10}")
+    private int poolSize;
+
+    @Value("${datasource.replica.connection-timeout-ms:3000}")
+    private long connectionTimeoutMs;
+
+    /**
+     * 主库连接池，与Spring Boot自动配置一致地绑定spring.datasource.hikari.*（由路由数据源负责关闭）
+     */
+    @Bean(destroyMethod = "")
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean(destroyMethod = "close")
+    public ReplicaRoutingDataSource replicaRoutingDataSource(DataSourceProperties properties, HikariDataSource primary) {
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        String[] replicaUrls = urls.split(",");
+        for (int i = 0; i < replicaUrls.length; i++) {
+            String url = replicaUrls[i].trim();
+            if (url.isEmpty()) {
+                continue;
+            }
+            String name = "replica-" + (i + 1);
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .driverClassName(properties.determineDriverClassName())
+                    .url(url)
+                    .username(username)
+                    .password(password)
+                    .build();
+            Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(replica));
+            replica.setPoolName(name);
+            replica.setReadOnly(true);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setConnectionTimeout(connectionTimeoutMs);
+            replicas.put(name, replica);
+        }
+        return new ReplicaRoutingDataSource(primary, replicas,
+                ReplicaRoutingDataSource.LagCheck.valueOf(lagCheck.toUpperCase(Locale.ROOT)), maxLagSeconds);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+
+    @Bean
+    public PlatformTransactionManager transactionManager(EntityManagerFactory entityManagerFactory) {
+        return new ReplicaAwareTransactionManager(entityManagerFactory);
+    }
+}
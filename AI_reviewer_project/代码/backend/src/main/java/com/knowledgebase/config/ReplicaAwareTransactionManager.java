@@ -0,0 +1,42 @@
+package com.knowledgebase.config;
+
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.interceptor.TransactionAttribute;
+
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * 支持读写分离的JPA事务管理器
+ * 新事务开始时根据事务定义登记路由：只读且带有 {@link ReplicaRoutingDataSource#READ_REPLICA} 标签的事务走从库。
+ * Spring Data仓库方法自带的只读事务没有该标签，仍走主库，避免写后立即读到从库的旧数据。
+ * 加入外层事务的方法不会开始新事务，沿用外层事务的路由。
+ */
+public class ReplicaAwareTransactionManager extends JpaTransactionManager {
+
+    public ReplicaAwareTransactionManager(EntityManagerFactory entityManagerFactory) {
+        super(entityManagerFactory);
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        boolean toReplica = definition.isReadOnly() && definition instanceof TransactionAttribute
+                && ((TransactionAttribute) definition).getLabels().contains(ReplicaRoutingDataSource.READ_REPLICA);
+        ReplicaRoutingDataSource.enterTransaction(toReplica);
+        try {
+            super.doBegin(transaction, definition);
+        } catch (RuntimeException | Error e) {
+            ReplicaRoutingDataSource.exitTransaction();
+            throw e;
+        }
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        try {
+            super.doCleanupAfterCompletion(transaction);
+        } finally {
+            ReplicaRoutingDataSource.exitTransaction();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.knowledgebase.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 读写分离路由数据源
+ * 标记了 {@link #READ_REPLICA} 的只读事务路由到从库，其余事务和事务外的访问一律走主库。
+ * 多个从库按轮询分摊；定时检查各从库的连通性和复制延迟，不可用或延迟超过阈值的从库暂时摘除，
+ * 所有从库都不可用时回退到主库。
+ * 只在配置了从库时启用（见 {@link ReadReplicaConfig}），路由在事务开始时确定，事务内不会切换数据源。
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    /**
+     * 走从库的只读事务标签：@Transactional(readOnly = true, label = ReplicaRoutingDataSource.READ_REPLICA)
+     */
+    public static final String READ_REPLICA = "read-replica";
+
+    /**
+     * 复制延迟检查方式
+     */
+    public enum LagCheck {
+        /**
+         * 只检查连通性（如本地两个嵌入式数据库）
+         */
+        NONE,
+        /**
+         * 通过SHOW REPLICA STATUS读取MySQL从库的复制延迟
+         */
+        MYSQL
+    }
+
+    private static final String PRIMARY = "primary";
+
+    /**
+     * 当前线程的事务路由栈，嵌套的新事务（REQUIRES_NEW）各自压栈
+     */
+    private static final ThreadLocal<Deque<Boolean>> ROUTE_TO_REPLICA = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final DataSource primary;
+
+    private final List<Replica> replicas;
+
+    private final LagCheck lagCheck;
+
+    private final long maxLagSeconds;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    private final AtomicLong primaryRoutes = new AtomicLong();
+
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    /**
+     * @param primary 主库
+     * @param replicaDataSources 从库名称 -> 从库
+     * @param lagCheck 复制延迟检查方式
+     * @param maxLagSeconds 允许的最大复制延迟（秒）
+     */
+    public ReplicaRoutingDataSource(DataSource primary, Map<String, DataSource> replicaDataSources,
+                                    LagCheck lagCheck, long maxLagSeconds) {
+        this.primary = primary;
+        this.lagCheck = lagCheck;
+        this.maxLagSeconds = maxLagSeconds;
+        this.replicas = new ArrayList<>();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (Map.Entry<String, DataSource> entry : replicaDataSources.entrySet()) {
+            replicas.add(new Replica(entry.getKey(), entry.getValue()));
+            targets.put(entry.getKey(), entry.getValue());
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+
+    /**
+     * 事务开始时登记路由（由 {@link ReplicaAwareTransactionManager} 调用）
+     * @param toReplica 是否走从库
+     */
+    static void enterTransaction(boolean toReplica) {
+        ROUTE_TO_REPLICA.get().push(toReplica);
+    }
+
+    /**
+     * 事务结束时撤销路由
+     */
+    static void exitTransaction() {
+        Deque<Boolean> stack = ROUTE_TO_REPLICA.get();
+        stack.poll();
+        if (stack.isEmpty()) {
+            ROUTE_TO_REPLICA.remove();
+        }
+    }
+
+    /**
+     * 启动时先检查一次从库，避免在首次定时检查前把请求路由到不可用的从库
+     */
+    @Override
+    public void afterPropertiesSet() {
+        super.afterPropertiesSet();
+        checkReplicas();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Boolean toReplica = ROUTE_TO_REPLICA.get().peek();
+        if (toReplica == null || !toReplica) {
+            primaryRoutes.incrementAndGet();
+            return PRIMARY;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.healthy) {
+                replica.routes.incrementAndGet();
+                return replica.name;
+            }
+        }
+        fallbacks.incrementAndGet();
+        return PRIMARY;
+    }
+
+    /**
+     * 定时检查各从库的连通性与复制延迟
+     */
+    @Scheduled(fixedDelayString = "${datasource.replica.check-interval-ms:5000}")
+    public void checkReplicas() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection()) {
+                Long lag = lagCheck == LagCheck.MYSQL ? readMysqlLag(connection) : Long.valueOf(0);
+                replica.lagSeconds = lag;
+                replica.healthy = lag != null && lag <= maxLagSeconds;
+                replica.lastError = lag == null ? "Replication is not running" : null;
+            } catch (Exception e) {
+                replica.healthy = false;
+                replica.lagSeconds = null;
+                replica.lastError = e.getMessage();
+            }
+            replica.lastCheckedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * 获取路由统计
+     * @return 各从库的健康状态、延迟和路由次数
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("lag_check", lagCheck.name().toLowerCase(Locale.ROOT));
+        stats.put("max_lag_seconds", maxLagSeconds);
+        stats.put("primary_routes", primaryRoutes.get());
+        stats.put("fallbacks", fallbacks.get());
+        List<Map<String, Object>> replicaStats = new ArrayList<>();
+        for (Replica replica : replicas) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("name", replica.name);
+            item.put("healthy", replica.healthy);
+            item.put("lag_seconds", replica.lagSeconds);
+            item.put("routes", replica.routes.get());
+            item.put("last_checked_at", replica.lastCheckedAt > 0 ? new Date(replica.lastCheckedAt) : null);
+            item.put("last_error", replica.lastError);
+            replicaStats.add(item);
+        }
+        stats.put("replicas", replicaStats);
+        return stats;
+    }
+
+    @Override
+    public void close() throws Exception {
+        closeQuietly(primary);
+        for (Replica replica : replicas) {
+            closeQuietly(replica.dataSource);
+        }
+    }
+
+    /**
+     * 读取MySQL从库的复制延迟，8.0.22之前的版本回退到SHOW SLAVE STATUS
+     * @return 延迟秒数；不是从库或复制已停止时返回null
+     */
+    private static Long readMysqlLag(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            ResultSet resultSet;
+            String column;
+            try {
+                resultSet = statement.executeQuery("SHOW REPLICA STATUS");
+                column = "Seconds_Behind_Source";
+            } catch (SQLException e) {
+                resultSet = statement.executeQuery("SHOW SLAVE STATUS");
+                column = "Seconds_Behind_Master";
+            }
+            try (ResultSet rs = resultSet) {
+                if (!rs.next()) {
+                    return null;
+                }
+                long lag = rs.getLong(column);
+                return rs.wasNull() ? null : lag;
+            }
+        }
+    }
+
+    private static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) dataSource).close();
+            } catch (Exception e) {
+                System.err.println("Failed to close data source: " + e.getMessage());
+            }
+        }
+    }
+
+    private static final class Replica {
+        final String name;
+        final DataSource dataSource;
+        final AtomicLong routes = new AtomicLong();
+        volatile boolean healthy;
+        volatile Long lagSeconds;
+        volatile long lastCheckedAt;
+        volatile String lastError;
+
+        Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.knowledgebase.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * 定时任务配置类
+ * 启用Spring定时任务，用于查询日志归档等后台作业
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+    // 该配置类用于启用@Scheduled注解
+}
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.knowledgebase.config;
+
+import org.springframework.aot.AotDetector;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * 启动耗时统计
+ * 应用就绪时记录JVM启动到就绪的耗时，以及是否使用了AOT处理结果和CDS归档。
+ * 配置了startup.report-file时把结果写入属性文件，供fast-startup构建对比基线启动与AOT+CDS启动；
+ * startup.exit-after-ready=true时写完即退出（仅用于构建中的测量运行）。
+ */
+@Component
+public class StartupTimeReporter {
+
+    @Value("${startup.report-file:}")
+    private String reportFile;
+
+    @Value("${startup.exit-after-ready:false}")
+    private boolean exitAfterReady;
+
+    private volatile Map<String, Object> report = Map.of();
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("ready_ms", runtime.getUptime());
+        stats.put("context_ms", event.getTimeTaken() != null ? event.getTimeTaken().toMillis() : null);
+        stats.put("aot_enabled", AotDetector.useGeneratedArtifacts());
+        stats.put("cds_archive", sharedArchiveFile(runtime.getInputArguments()));
+        stats.put("ready_at", new Date());
+        report = stats;
+
+        if (!reportFile.isEmpty()) {
+            writeReport(stats);
+        }
+        if (exitAfterReady) {
+            System.exit(SpringApplication.exit(event.getApplicationContext()));
+        }
+    }
+
+    /**
+     * 获取最近一次启动的耗时统计
+     * @return 就绪耗时、上下文启动耗时、AOT与CDS使用情况
+     */
+    public Map<String, Object> getReport() {
+        return report;
+    }
+
+    private void writeReport(Map<String, Object> stats) {
+        Properties properties = new Properties();
+        for (Map.Entry<String, Object> entry : stats.entrySet()) {
+            if (entry.getValue() != null && !(entry.getValue() instanceof Date)) {
+                properties.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+            }
+        }
+        try {
+            Path path = Paths.get(reportFile);
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            try (OutputStream out = Files.newOutputStream(path)) {
+                properties.store(out, "startup time");
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to write startup report: " + e.getMessage());
+        }
+    }
+
+    private static String sharedArchiveFile(List<String> jvmArguments) {
+        for (String argument : jvmArguments) {
+            if (argument.startsWith("-XX:SharedArchiveFile=")) {
+                return argument.substring("-XX:SharedArchiveFile=".length());
+            }
+        }
+        return "none";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,270 @@
+package com.knowledgebase.controller;
+
+import com.knowledgebase.config.ReplicaRoutingDataSource;
+import com.knowledgebase.config.StartupTimeReporter;
+import com.knowledgebase.service.AdmissionScheduler;
+import com.knowledgebase.service.DimensionReducer;
+import com.knowledgebase.service.DimensionReductionMigrationService;
+import com.knowledgebase.service.DocumentResponseCache;
+import com.knowledgebase.service.EmbeddingCache;
+import com.knowledgebase.service.DocumentChangeLogService;
+import com.knowledgebase.service.HnswTuningService;
+import com.knowledgebase.service.QueryLogCompactor;
+import com.knowledgebase.service.RagService;
+import com.knowledgebase.service.VectorMaintenanceCoalescer;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 运维管理控制器
+ * 提供调度、调优等运维相关接口
+ */
+@RestController
+@RequestMapping("/api/admin")
+@Tag(name = "运维管理接口", description = "准入调度统计、检索参数调优等运维接口")
+public class AdminController {
+
+    @Autowired
+    private AdmissionScheduler admissionScheduler;
+
+    @Autowired
+    private HnswTuningService hnswTuningService;
+
+    @Autowired
+    private DocumentChangeLogService documentChangeLogService;
+
+    @Autowired
+    private VectorMaintenanceCoalescer vectorMaintenanceCoalescer;
+
+    @Autowired
+    private QueryLogCompactor queryLogCompactor;
+
+    @Autowired(required = false)
+    private ReplicaRoutingDataSource replicaRoutingDataSource;
+
+    @Autowired
+    private StartupTimeReporter startupTimeReporter;
+
+    @Autowired
+    private RagService ragService;
+
+    @Autowired
+    private DimensionReductionMigrationService dimensionReductionMigrationService;
+
+    @Autowired
+    private DocumentResponseCache documentResponseCache;
+
+    @Autowired
+    private EmbeddingCache embeddingCache;
+
+    /**
+     * 获取准入调度统计
+     * @return 各通道的运行数、排队数和拒绝数
+     */
+    @GetMapping("/admission")
+    @Operation(summary = "准入调度统计", description = "获取交互查询、文档写入、批量任务各通道的调度统计")
+    public ResponseEntity<Map<String, Object>> getAdmissionStats() {
+        return ResponseEntity.ok(admissionScheduler.getStats());
+    }
+
+    /**
+     * 获取向量维护合并统计
+     * @return 待执行、被取代、已完成的向量维护任务数
+     */
+    @GetMapping("/vector-maintenance")
+    @Operation(summary = "向量维护合并统计", description = "获取文档编辑后去抖合并的向量维护任务统计")
+    public ResponseEntity<Map<String, Object>> getVectorMaintenanceStats() {
+        return ResponseEntity.ok(vectorMaintenanceCoalescer.getStats());
+    }
+
+    /**
+     * 获取跨节点变更同步状态
+     * @return 节点标识、已处理的变更日志位置等
+     */
+    @GetMapping("/change-log")
+    @Operation(summary = "变更同步状态", description = "获取本节点拉取文档变更日志、失效本地缓存的同步状态")
+    public ResponseEntity<Map<String, Object>> getChangeLogStats() {
+        return ResponseEntity.ok(documentChangeLogService.getStats());
+    }
+
+    /**
+     * 获取查询日志精简存储统计
+     * @return 已记录的文档版本数、精简/保留全文的日志数、还原次数等
+     */
+    @GetMapping("/query-log/compaction")
+    @Operation(summary = "查询日志精简存储统计", description = "获取按文档版本引用答案、User-Agent字典编码的日志精简统计")
+    public ResponseEntity<Map<String, Object>> getQueryLogCompactionStats() {
+        return ResponseEntity.ok(queryLogCompactor.getStats());
+    }
+
+    /**
+     * 获取文档列表响应缓存统计
+     * @return 语料版本号、缓存条目数和命中次数
+     */
+    @GetMapping("/response-cache")
+    @Operation(summary = "文档响应缓存统计", description = "获取当前语料版本号以及按版本缓存的序列化响应的命中统计")
+    public ResponseEntity<Map<String, Object>> getResponseCacheStats() {
+        return ResponseEntity.ok(documentResponseCache.getStats());
+    }
+
+    /**
+     * 获取向量缓存统计
+     * @return 内存层和磁盘层的条目数、命中次数与命中率
+     */
+    @GetMapping("/embedding-cache")
+    @Operation(summary = "向量缓存统计", description = "获取按模型、维度和文本哈希缓存的向量在内存层与磁盘层的命中统计")
+    public ResponseEntity<Map<String, Object>> getEmbeddingCacheStats() {
+        return ResponseEntity.ok(embeddingCache.getStats());
+    }
+
+    /**
+     * 获取读写分离路由状态
+     * @return 各从库的健康状态、复制延迟和路由次数
+     */
+    @GetMapping("/datasource")
+    @Operation(summary = "读写分离状态", description = "获取从库健康状态、复制延迟以及主库/从库的路由次数")
+    public ResponseEntity<?> getDataSourceStats() {
+        if (replicaRoutingDataSource == null) {
+            return ResponseEntity.ok(Map.of("replicas_enabled", false));
+        }
+        return ResponseEntity.ok(replicaRoutingDataSource.getStats());
+    }
+
+    /**
+     * 获取启动耗时与后台初始化状态
+     * @return 就绪耗时、AOT/CDS使用情况以及Milvus是否已完成初始化
+     */
+    @GetMapping("/startup")
+    @Operation(summary = "启动耗时", description = "获取本节点启动到就绪的耗时、是否使用AOT与CDS归档，以及Milvus后台初始化状态")
+    public ResponseEntity<Map<String, Object>> getStartupStats() {
+        Map<String, Object> stats = new LinkedHashMap<>(startupTimeReporter.getReport());
+        stats.put("milvus_ready", ragService.isMilvusReady());
+        stats.put("milvus_init_attempts", ragService.getMilvusInitAttempts());
+        stats.put("milvus_init_error", ragService.getMilvusInitError());
+        long milvusReadyAt = ragService.getMilvusReadyAt();
+        stats.put("milvus_ready_at", milvusReadyAt > 0 ? new Date(milvusReadyAt) : null);
+        return ResponseEntity.ok(stats);
+    }
+
+    /**
+     * 提交HNSW检索参数基准测试（后台执行）
+     * @param request 请求参数：ef_values、top_k_values、queries、index_params（[{m, ef_construction}]，可选）
+     * @return 任务ID与状态，通过GET /tuning/hnsw/jobs/{jobId}获取报告
+     */
+    @PostMapping("/tuning/hnsw")
+    @Operation(summary = "HNSW参数基准测试", description = "以暴力检索结果为真值，扫描ef/topK及索引参数，报告召回率与延迟；后台执行，返回任务ID")
+    @SuppressWarnings("unchecked")
+    public ResponseEntity<?> benchmarkHnsw(@RequestBody(required = false) Map<String, Object> request) {
+        try {
+            Map<String, Object> params = request != null ? request : Map.of();
+            List<Integer> efValues = (List<Integer>) params.getOrDefault("ef_values", Arrays.asList(16, 32, 64, 128, 256, 512));
+            List<Integer> topKValues = (List<Integer>) params.getOrDefault("top_k_values", Arrays.asList(1, 3, 10));
+            int queries = ((Number) params.getOrDefault("queries", 200)).intValue();
+            List<Map<String, Integer>> indexParams = (List<Map<String, Integer>>) params.get("index_params");
+            if (efValues.isEmpty() || topKValues.isEmpty() || queries <= 0) {
+                return ResponseEntity.badRequest().body("测试参数不正确");
+            }
+            Map<String, Object> job = hnswTuningService.submitBenchmark(efValues, topKValues, queries, indexParams);
+            if (job == null) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body("已有基准测试在执行，请稍后再试");
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (ClassCastException e) {
+            return ResponseEntity.badRequest().body("测试参数不正确");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("基准测试失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取HNSW基准测试任务状态
+     * @param jobId 任务ID
+     * @return 任务状态，完成后包含报告
+     */
+    @GetMapping("/tuning/hnsw/jobs/{jobId}")
+    @Operation(summary = "HNSW基准测试任务", description = "获取基准测试任务的状态，完成后包含各参数组合的recall@k与延迟分位数")
+    public ResponseEntity<?> getHnswBenchmarkJob(@PathVariable String jobId) {
+        Map<String, Object> job = hnswTuningService.getBenchmarkJob(jobId);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("基准测试任务不存在");
+        }
+        return ResponseEntity.ok(job);
+    }
+
+    /**
+     * 立即执行ef自动调优
+     * @return 选出的ef及测量过程
+     */
+    @PostMapping("/tuning/hnsw/autotune")
+    @Operation(summary = "ef自动调优", description = "选出满足召回率目标的最小ef并应用到在线检索")
+    public ResponseEntity<?> autotuneHnsw() {
+        try {
+            return ResponseEntity.ok(hnswTuningService.autotune());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("自动调优失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取最近一次ef自动调优结果
+     * @return 调优结果
+     */
+    @GetMapping("/tuning/hnsw")
+    @Operation(summary = "ef自动调优结果", description = "获取最近一次自动调优选出的ef及测量数据")
+    public ResponseEntity<Map<String, Object>> getHnswTuning() {
+        return ResponseEntity.ok(hnswTuningService.getLastAutotune());
+    }
+
+    /**
+     * 获取当前降维配置与最近一次迁移报告
+     * @return 降维方式、维度以及迁移报告
+     */
+    @GetMapping("/vector-reduction")
+    @Operation(summary = "向量降维状态", description = "获取当前生效的降维方式与维度，以及最近一次降维迁移的召回率报告")
+    public ResponseEntity<Map<String, Object>> getVectorReduction() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("current", dimensionReductionMigrationService.getCurrent());
+        result.put("last_migration", dimensionReductionMigrationService.getLastReport());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * 向量降维迁移：训练降维投影，评估召回率，可选构建降维后的集合
+     * @param request 请求参数：mode（truncate/pca）、dimension、queries、top_k、build_collection
+     * @return 迁移报告，含召回率对比与切换所需的配置
+     */
+    @PostMapping("/vector-reduction/migrate")
+    @Operation(summary = "向量降维迁移", description = "以原始维度精确检索为基线，评估PCA/截断降维后的召回率，可选构建降维后的Milvus集合")
+    public ResponseEntity<?> migrateVectorReduction(@RequestBody Map<String, Object> request) {
+        try {
+            DimensionReducer.Mode mode = DimensionReducer.parseMode(String.valueOf(request.getOrDefault("mode", "pca")));
+            int dimension = ((Number) request.get("dimension")).intValue();
+            int queries = ((Number) request.getOrDefault("queries", 200)).intValue();
+            int topK = ((Number) request.getOrDefault("top_k", 10)).intValue();
+            boolean buildCollection = Boolean.TRUE.equals(request.get("build_collection"));
+            if (queries <= 0 || topK <= 0) {
+                return ResponseEntity.badRequest().body("迁移参数不正确");
+            }
+            return ResponseEntity.ok(dimensionReductionMigrationService.migrate(mode, dimension, queries, topK, buildCollection));
+        } catch (ClassCastException | NullPointerException | IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("迁移参数不正确: " + e.getMessage());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("降维迁移失败: " + e.getMessage());
+        }
+    }
+}
\ No newline at end of file
@@ -1,18 +1,27 @@
 package com.knowledgebase.controller;
 
 import com.knowledgebase.model.FAQDocument;
+import com.knowledgebase.service.DocumentResponseCache;
+import com.knowledgebase.service.DuplicateDetectionService;
+import com.knowledgebase.service.FAQDocumentParser;
 import com.knowledgebase.service.FAQDocumentService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 /**
  * 文档管理控制器
@@ -26,15 +35,33 @@ public class DocumentController {
     @Autowired
     private FAQDocumentService faqDocumentService;
 
+    @Autowired
+    private FAQDocumentParser faqDocumentParser;
+
+    @Autowired
+    private DuplicateDetectionService duplicateDetectionService;
+
+    @Autowired
+    private DocumentResponseCache documentResponseCache;
+
     /**
      * 获取所有文档
-     * @return 文档列表
+     * @return 文档列表，语料未变化时返回304
      */
     @GetMapping
-    @Operation(summary = "获取所有文档", description = "获取系统中所有的FAQ文档")
-    public ResponseEntity<List<FAQDocument>> getAllDocuments() {
-        List<FAQDocument> documents = faqDocumentService.getAllDocuments();
-        return ResponseEntity.ok(documents);
+    @Operation(summary = "获取所有文档", description = "获取系统中所有的FAQ文档（不含访问/反馈计数），支持ETag/If-None-Match条件请求")
+    public ResponseEntity<byte[]> getAllDocuments() {
+        return conditional("all", faqDocumentService::getAllDocuments);
+    }
+
+    /**
+     * 获取所有文档摘要
+     * @return 文档摘要列表（不含答案），语料未变化时返回304
+     */
+    @GetMapping("/summaries")
+    @Operation(summary = "获取文档摘要列表", description = "获取所有FAQ文档的摘要（ID、问题、分类和状态，不含答案和访问/反馈计数），支持ETag/If-None-Match条件请求")
+    public ResponseEntity<byte[]> getDocumentSummaries() {
+        return conditional("summaries", faqDocumentService::getDocumentSummaries);
     }
 
     /**
@@ -54,6 +81,23 @@ public class DocumentController {
         }
     }
 
+    /**
+     * 获取文档答案
+     * @param id 文档ID
+     * @return 文档ID与答案
+     */
+    @GetMapping("/{id}/answer")
+    @Operation(summary = "获取文档答案", description = "只获取指定文档的答案正文，配合摘要列表使用")
+    public ResponseEntity<?> getAnswer(@PathVariable Long id) {
+        Optional<String> answer = faqDocumentService.getAnswer(id);
+        if (answer.isPresent()) {
+            return ResponseEntity.ok(Map.of("id", id, "answer", answer.get()));
+        } else {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body("文档不存在");
+        }
+    }
+
     /**
      * 创建新文档
      * @param document 文档信息
@@ -80,7 +124,13 @@ public class DocumentController {
     @PutMapping("/{id}")
     @Operation(summary = "更新文档", description = "更新现有FAQ文档的信息")
     public ResponseEntity<?> updateDocument(@PathVariable Long id, @RequestBody FAQDocument document) {
-        FAQDocument updatedDocument = faqDocumentService.updateDocument(id, document);
+        FAQDocument updatedDocument;
+        try {
+            updatedDocument = faqDocumentService.updateDocument(id, document);
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body("文档正在被其他请求修改，请稍后重试");
+        }
         if (updatedDocument != null) {
             return ResponseEntity.ok(updatedDocument);
         } else {
@@ -107,15 +157,82 @@ public class DocumentController {
     }
 
     /**
-     * 根据分类获取文档
+     * 批量更新文档
+     * @param request 请求参数：ids（文档ID列表）或 filter（{category, status}）选择文档，changes（{category, status, keywords}）为要修改的字段
+     * @return 批量更新结果，含每个ID的处理结果
+     */
+    @PostMapping("/bulk/update")
+    @Operation(summary = "批量更新文档", description = "按ID列表或分类/状态筛选批量修改文档的分类、状态或关键词，返回每个ID的处理结果")
+    public ResponseEntity<?> bulkUpdateDocuments(@RequestBody Map<String, Object> request) {
+        try {
+            Map<String, Object> changeFields = asMap(request.get("changes"));
+            FAQDocument changes = new FAQDocument();
+            changes.setCategory(asString(changeFields.get("category")));
+            changes.setStatus(asString(changeFields.get("status")));
+            changes.setKeywords(asString(changeFields.get("keywords")));
+            if (changes.getCategory() == null && changes.getStatus() == null && changes.getKeywords() == null) {
+                return ResponseEntity.badRequest().body("未指定要修改的字段");
+            }
+            Map<String, Object> filter = asMap(request.get("filter"));
+            return ResponseEntity.ok(faqDocumentService.bulkUpdateDocuments(asIds(request.get("ids")),
+                    asString(filter.get("category")), asString(filter.get("status")), changes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("请求参数无效: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("批量更新失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 批量删除文档
+     * @param request 请求参数：ids（文档ID列表）或 filter（{category, status}）选择文档
+     * @return 批量删除结果，含每个ID的处理结果
+     */
+    @PostMapping("/bulk/delete")
+    @Operation(summary = "批量删除文档", description = "按ID列表或分类/状态筛选批量删除文档及其向量，返回每个ID的处理结果")
+    public ResponseEntity<?> bulkDeleteDocuments(@RequestBody Map<String, Object> request) {
+        try {
+            Map<String, Object> filter = asMap(request.get("filter"));
+            return ResponseEntity.ok(faqDocumentService.bulkDeleteDocuments(asIds(request.get("ids")),
+                    asString(filter.get("category")), asString(filter.get("status"))));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("请求参数无效: " + e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("批量删除失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 根据分类获取文档摘要
      * @param category 分类名称
-     * @return 文档列表
+     * @return 文档摘要列表（不含答案），语料未变化时返回304
      */
     @GetMapping("/category/{category}")
-    @Operation(summary = "按分类获取文档", description = "根据分类名称获取FAQ文档列表")
-    public ResponseEntity<List<FAQDocument>> getDocumentsByCategory(@PathVariable String category) {
-        List<FAQDocument> documents = faqDocumentService.getDocumentsByCategory(category);
-        return ResponseEntity.ok(documents);
+    @Operation(summary = "按分类获取文档", description = "根据分类名称获取FAQ文档摘要列表（不含答案和访问/反馈计数），支持ETag/If-None-Match条件请求")
+    public ResponseEntity<byte[]> getDocumentsByCategory(@PathVariable String category) {
+        return conditional("category:" + category, () -> faqDocumentService.getDocumentsByCategory(category));
+    }
+
+    /**
+     * 按ID游标分页获取分类下的文档
+     * @param category 分类名称
+     * @param afterId 上一页返回的next_after_id，首页不传
+     * @param limit 每页数量（1-500）
+     * @param status 只返回该状态的文档
+     * @return 当前页文档摘要、分类文档总数以及下一页游标
+     */
+    @GetMapping("/category/{category}/page")
+    @Operation(summary = "分页获取分类文档", description = "按文档ID游标分页获取分类下的FAQ文档，适用于大分类")
+    public ResponseEntity<?> getDocumentsByCategoryPage(@PathVariable String category,
+                                                        @RequestParam(value = "after_id", required = false) Long afterId,
+                                                        @RequestParam(value = "limit", defaultValue = "50") int limit,
+                                                        @RequestParam(value = "status", required = false) String status) {
+        if (limit < 1 || limit > 500) {
+            return ResponseEntity.badRequest().body("limit必须在1到500之间");
+        }
+        return ResponseEntity.ok(faqDocumentService.getDocumentsByCategoryPage(category, afterId, limit, status));
     }
 
     /**
@@ -132,25 +249,87 @@ public class DocumentController {
 
     /**
      * 获取所有分类
-     * @return 分类列表
+     * @return 分类列表，语料未变化时返回304
      */
     @GetMapping("/categories")
-    @Operation(summary = "获取所有分类", description = "获取系统中所有的FAQ分类")
-    public ResponseEntity<List<String>> getAllCategories() {
-        List<String> categories = faqDocumentService.getAllCategories();
-        return ResponseEntity.ok(categories);
+    @Operation(summary = "获取所有分类", description = "获取系统中所有的FAQ分类，支持ETag/If-None-Match条件请求")
+    public ResponseEntity<byte[]> getAllCategories() {
+        return conditional("categories", faqDocumentService::getAllCategories);
+    }
+
+    /**
+     * 获取分类分面计数
+     * @param status 只统计该状态的文档
+     * @return 每个分类的文档数、状态分布、访问与反馈汇总
+     */
+    @GetMapping("/categories/stats")
+    @Operation(summary = "分类分面计数", description = "返回每个分类的文档数、状态分布以及访问次数和反馈汇总")
+    public ResponseEntity<List<Map<String, Object>>> getCategoryFacets(@RequestParam(value = "status", required = false) String status) {
+        return ResponseEntity.ok(faqDocumentService.getCategoryFacets(status));
     }
 
     /**
      * 批量上传文档
-     * @param file 上传的文件
+     * @param file 上传的文件（txt/md格式）
+     * @param category 未在文件中指定分类时使用的默认分类
      * @return 上传结果
      */
     @PostMapping("/batch-upload")
-    @Operation(summary = "批量上传文档", description = "通过文件批量上传FAQ文档")
-    public ResponseEntity<?> batchUpload(@RequestParam("file") MultipartFile file) {
-        // TODO: 实现批量上传功能
-        // 目前仅返回成功消息，实际项目中需要解析文件内容并创建文档
-        return ResponseEntity.ok("批量上传功能待实现");
+    @Operation(summary = "批量上传文档", description = "通过txt/md文件批量上传FAQ文档，近重复文档按配置标记或合并")
+    public ResponseEntity<?> batchUpload(@RequestParam("file") MultipartFile file,
+                                         @RequestParam(value = "category", defaultValue = "未分类") String category) {
+        try {
+            String content = new String(file.getBytes(), StandardCharsets.UTF_8);
+            List<FAQDocument> documents = faqDocumentParser.parse(content, category);
+            if (documents.isEmpty()) {
+                return ResponseEntity.badRequest().body("文件中未解析到FAQ");
+            }
+            return ResponseEntity.ok(faqDocumentService.batchCreateDocuments(documents));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("批量上传失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 近重复文档报告
+     * @return 全表重复簇报告
+     */
+    @GetMapping("/duplicates")
+    @Operation(summary = "近重复文档报告", description = "基于MinHash/LSH找出全部FAQ中的近重复文档簇")
+    public ResponseEntity<Map<String, Object>> getDuplicateReport() {
+        return ResponseEntity.ok(duplicateDetectionService.findDuplicateClusters());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : Map.of();
+    }
+
+    private static String asString(Object value) {
+        return value != null && !value.toString().isEmpty() ? value.toString() : null;
+    }
+
+    private static List<Long> asIds(Object value) {
+        List<Long> ids = new ArrayList<>();
+        if (value instanceof List) {
+            for (Object item : (List<?>) value) {
+                ids.add(item instanceof Number ? ((Number) item).longValue() : Long.valueOf(item.toString()));
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 返回按语料版本缓存的序列化结果并带上ETag
+     * 请求的If-None-Match与ETag一致时，Spring MVC处理ResponseEntity时直接返回304，不写响应体
+     */
+    private ResponseEntity<byte[]> conditional(String key, Supplier<Object> body) {
+        DocumentResponseCache.CachedResponse response = documentResponseCache.get(key, body);
+        return ResponseEntity.ok()
+                .eTag(response.getETag())
+                .cacheControl(CacheControl.noCache())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(response.getBody());
     }
 }
\ No newline at end of file
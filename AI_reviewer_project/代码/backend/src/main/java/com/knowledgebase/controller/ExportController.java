@@ -0,0 +1,178 @@
+package com.knowledgebase.controller;
+
+import com.knowledgebase.service.ExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 数据导出控制器
+ * 以流式NDJSON/CSV导出查询日志和FAQ文档，供离线分析使用
+ */
+@RestController
+@RequestMapping("/api/export")
+@Tag(name = "数据导出接口", description = "查询日志和FAQ文档的流式批量导出接口")
+public class ExportController {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    @Autowired
+    private ExportService exportService;
+
+    /**
+     * 流式导出查询日志
+     * @param format 导出格式：ndjson/csv
+     * @param gzip 是否gzip压缩
+     * @param start 开始时间
+     * @param end 结束时间
+     * @param feedback 反馈过滤：any/none/1/-1
+     * @return 流式响应
+     */
+    @GetMapping("/query-logs")
+    @Operation(summary = "导出查询日志", description = "按时间范围和反馈类型流式导出查询日志（含归档数据）")
+    public ResponseEntity<?> exportQueryLogs(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date start,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end,
+            @RequestParam(required = false) String feedback) {
+        ExportService.Format exportFormat = parseFormat(format);
+        if (exportFormat == null || !isValidFeedback(feedback)) {
+            return ResponseEntity.badRequest().body("导出参数不正确");
+        }
+        StreamingResponseBody body = out -> exportService.exportQueryLogs(out, exportFormat, gzip, start, end, feedback);
+        return streaming("query_logs", exportFormat, gzip, body);
+    }
+
+    /**
+     * 流式导出FAQ文档
+     * @param format 导出格式：ndjson/csv
+     * @param gzip 是否gzip压缩
+     * @param category 分类过滤
+     * @param status 状态过滤
+     * @return 流式响应
+     */
+    @GetMapping("/documents")
+    @Operation(summary = "导出FAQ文档", description = "按分类和状态流式导出FAQ文档")
+    public ResponseEntity<?> exportDocuments(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String status) {
+        ExportService.Format exportFormat = parseFormat(format);
+        if (exportFormat == null) {
+            return ResponseEntity.badRequest().body("导出参数不正确");
+        }
+        StreamingResponseBody body = out -> exportService.exportDocuments(out, exportFormat, gzip, category, status);
+        return streaming("faq_documents", exportFormat, gzip, body);
+    }
+
+    /**
+     * 将查询日志导出到服务器本地文件
+     * @return 导出文件名，可通过下载接口获取
+     */
+    @PostMapping("/query-logs/file")
+    @Operation(summary = "导出查询日志到文件", description = "大批量导出写入服务器本地文件，完成后通过下载接口获取")
+    public ResponseEntity<?> exportQueryLogsToFile(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestParam(defaultValue = "true") boolean gzip,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date start,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "yyyy-MM-dd HH:mm:ss") Date end,
+            @RequestParam(required = false) String feedback) {
+        ExportService.Format exportFormat = parseFormat(format);
+        if (exportFormat == null || !isValidFeedback(feedback)) {
+            return ResponseEntity.badRequest().body("导出参数不正确");
+        }
+        try {
+            String fileName = exportService.exportQueryLogsToFile(exportFormat, gzip, start, end, feedback);
+            return ResponseEntity.ok(Map.of("success", true, "file", fileName,
+                    "download_url", "/api/export/files/" + fileName));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("导出失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 下载导出文件
+     * Tomcat支持sendfile时交由容器零拷贝发送，否则使用FileChannel.transferTo
+     * @param fileName 导出文件名
+     */
+    @GetMapping("/files/{fileName:.+}")
+    @Operation(summary = "下载导出文件", description = "以零拷贝方式下载已导出的文件")
+    public void downloadExportFile(@PathVariable String fileName, HttpServletRequest request,
+                                   HttpServletResponse response) throws IOException {
+        Path file = exportService.resolveExportFile(fileName);
+        if (file == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "文件不存在");
+            return;
+        }
+        long size = Files.size(file);
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"");
+        response.setContentLengthLong(size);
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, size);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < size) {
+                position += channel.transferTo(position, size - position, out);
+            }
+        }
+    }
+
+    private ResponseEntity<StreamingResponseBody> streaming(String name, ExportService.Format format, boolean gzip,
+                                                            StreamingResponseBody body) {
+        String fileName = name + "." + format.getExtension() + (gzip ? ".gz" : "");
+        MediaType contentType = gzip ? MediaType.parseMediaType("application/gzip")
+                : format == ExportService.Format.CSV ? MediaType.parseMediaType("text/csv;charset=UTF-8")
+                : MediaType.parseMediaType("application/x-ndjson;charset=UTF-8");
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName + "\"")
+                .body(body);
+    }
+
+    private ExportService.Format parseFormat(String format) {
+        try {
+            return ExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private boolean isValidFeedback(String feedback) {
+        return feedback == null || "any".equals(feedback) || "none".equals(feedback)
+                || "1".equals(feedback) || "-1".equals(feedback);
+    }
+}
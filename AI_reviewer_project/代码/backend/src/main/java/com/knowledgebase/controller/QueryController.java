@@ -2,21 +2,24 @@ package com.knowledgebase.controller;
 
 import com.knowledgebase.model.FAQDocument;
 import com.knowledgebase.model.QueryLog;
+import com.knowledgebase.service.FAQDocumentReadModel;
 import com.knowledgebase.service.FAQDocumentService;
 import com.knowledgebase.service.QueryLogService;
 import com.knowledgebase.service.RagService;
+import com.knowledgebase.service.SemanticQueryCache;
+import com.knowledgebase.service.SessionCooccurrenceModel;
+import com.knowledgebase.service.TrendingTracker;
 import com.knowledgebase.service.VectorUtils;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-import java.util.Optional;
+import java.util.*;
+import java.util.stream.Collectors;
 
 /**
  * 查询控制器
@@ -30,6 +33,9 @@ public class QueryController {
     @Autowired
     private FAQDocumentService faqDocumentService;
 
+    @Autowired
+    private FAQDocumentReadModel faqDocumentReadModel;
+
     @Autowired
     private QueryLogService queryLogService;
 
@@ -39,6 +45,18 @@ public class QueryController {
     @Autowired
     private VectorUtils vectorUtils;
 
+    @Autowired
+    private SemanticQueryCache semanticQueryCache;
+
+    @Autowired
+    private SessionCooccurrenceModel sessionCooccurrenceModel;
+
+    @Autowired
+    private TrendingTracker trendingTracker;
+
+    @Value("${cooccurrence.related-limit:3}")
+    private int relatedLimit;
+
     /**
      * 查询FAQ
      * @param query 查询参数
@@ -54,7 +72,7 @@ public class QueryController {
 
         try {
             // 生成查询向量
-            List<Float> queryVector = vectorUtils.generateVector(queryText);
+            List<Float> queryVector = vectorUtils.generateQueryVector(queryText);
             
             // 在Milvus中搜索最相似的文档
             List<Long> documentIds = ragService.searchSimilarDocuments(queryVector, 3);
@@ -70,12 +88,15 @@ public class QueryController {
             queryLog.setQueryText(queryText);
             if (bestDocument.isPresent()) {
                 queryLog.setDocumentId(bestDocument.get().getId());
+                queryLog.setDocumentVersion(bestDocument.get().getVersion());
                 queryLog.setResponse(bestDocument.get().getAnswer());
             }
             queryLog.setSessionId((String) query.get("session_id"));
             queryLog.setIpAddress((String) query.get("ip_address"));
             queryLog.setUserAgent((String) query.get("user_agent"));
             QueryLog savedLog = queryLogService.createQueryLog(queryLog);
+            bestDocument.ifPresent(doc -> sessionCooccurrenceModel.recordQuery(queryLog.getSessionId(), doc.getId()));
+            trendingTracker.record(queryText, bestDocument.map(FAQDocument::getId).orElse(null));
 
             // 构建响应
             Map<String, Object> response = new HashMap<>();
@@ -87,6 +108,9 @@ public class QueryController {
                 response.put("answer", doc.getAnswer());
                 response.put("category", doc.getCategory());
                 response.put("log_id", savedLog.getId());
+                response.put("related_questions", faqDocumentService.getRelatedDocuments(doc.getId(), relatedLimit).stream()
+                        .map(related -> Map.of("id", related.getId(), "question", related.getQuestion()))
+                        .collect(Collectors.toList()));
             } else {
                 response.put("success", false);
                 response.put("message", "未找到相关的FAQ");
@@ -119,4 +143,126 @@ public class QueryController {
             return ResponseEntity.badRequest().body("反馈提交失败，日志不存在");
         }
     }
+
+    /**
+     * 获取语义查询缓存统计
+     * @return 命中率、误命中抽样等统计数据
+     */
+    @GetMapping("/cache/stats")
+    @Operation(summary = "语义缓存统计", description = "获取语义查询缓存的命中率和误命中抽样统计")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(semanticQueryCache.getStats());
+    }
+
+    /**
+     * 获取会话共现模型统计
+     * @return 共现对数量、活跃会话数等统计数据
+     */
+    @GetMapping("/cooccurrence/stats")
+    @Operation(summary = "会话共现统计", description = "获取用于相关问题和预取的会话共现模型统计")
+    public ResponseEntity<Map<String, Object>> getCooccurrenceStats() {
+        return ResponseEntity.ok(sessionCooccurrenceModel.getStats());
+    }
+
+    /**
+     * 获取向量检索请求合并统计
+     * @return 检索请求数与实际gRPC调用数
+     */
+    @GetMapping("/search/stats")
+    @Operation(summary = "检索合并统计", description = "获取并发检索请求合并为多向量检索的统计数据")
+    public ResponseEntity<Map<String, Object>> getSearchStats() {
+        return ResponseEntity.ok(ragService.getSearchStats());
+    }
+
+    /**
+     * 获取热门文档和热门问题
+     * @param window 统计窗口（分钟）
+     * @param limit 每类返回数量
+     * @return 窗口内计数及前一个等长窗口的计数
+     */
+    @GetMapping("/trending")
+    @Operation(summary = "热门问题", description = "基于滑动时间窗口的流式统计，返回本节点的热门文档和热门问题")
+    public ResponseEntity<Map<String, Object>> getTrending(@RequestParam(defaultValue = "60") int window,
+                                                           @RequestParam(defaultValue = "10") int limit) {
+        return ResponseEntity.ok(buildTrending(window,
+                trendingTracker.top(TrendingTracker.Dimension.DOCUMENTS, window, limit),
+                trendingTracker.top(TrendingTracker.Dimension.QUERIES, window, limit)));
+    }
+
+    /**
+     * 导出本节点的热门统计快照
+     * @param window 导出窗口（分钟）
+     * @return 各时间桶的草图与高频项
+     */
+    @GetMapping("/trending/snapshot")
+    @Operation(summary = "热门统计快照", description = "导出本节点的时间桶草图，供其他节点合并为全集群热门统计")
+    public ResponseEntity<Map<String, Object>> getTrendingSnapshot(@RequestParam(defaultValue = "60") int window) {
+        return ResponseEntity.ok(trendingTracker.snapshot(window));
+    }
+
+    /**
+     * 合并其他节点的快照后获取热门文档和热门问题
+     * @param request 请求参数：snapshots（其他节点导出的快照列表）、window、limit
+     * @return 全集群的热门统计
+     */
+    @PostMapping("/trending/merge")
+    @Operation(summary = "合并热门统计", description = "将其他节点导出的快照与本节点统计合并，返回全集群的热门文档和热门问题")
+    @SuppressWarnings("unchecked")
+    public ResponseEntity<?> mergeTrending(@RequestBody Map<String, Object> request) {
+        Object snapshots = request.get("snapshots");
+        if (!(snapshots instanceof List)) {
+            return ResponseEntity.badRequest().body("snapshots不能为空");
+        }
+        int window = request.get("window") != null ? Integer.parseInt(request.get("window").toString()) : 60;
+        int limit = request.get("limit") != null ? Integer.parseInt(request.get("limit").toString()) : 10;
+        try {
+            List<Map<String, Object>> remote = (List<Map<String, Object>>) snapshots;
+            return ResponseEntity.ok(buildTrending(window,
+                    trendingTracker.topMerged(TrendingTracker.Dimension.DOCUMENTS, window, limit, remote),
+                    trendingTracker.topMerged(TrendingTracker.Dimension.QUERIES, window, limit, remote)));
+        } catch (IllegalArgumentException | ClassCastException | NullPointerException e) {
+            return ResponseEntity.badRequest().body("快照格式不正确: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取热门统计的配置与内存占用
+     * @return 统计数据
+     */
+    @GetMapping("/trending/stats")
+    @Operation(summary = "热门统计状态", description = "获取热门统计的时间桶、草图大小和内存占用")
+    public ResponseEntity<Map<String, Object>> getTrendingStats() {
+        return ResponseEntity.ok(trendingTracker.getStats());
+    }
+
+    private Map<String, Object> buildTrending(int window, List<Map<String, Object>> documents, List<Map<String, Object>> queries) {
+        List<Map<String, Object>> hotDocuments = new ArrayList<>();
+        for (Map<String, Object> item : documents) {
+            Long id = Long.valueOf((String) item.get("key"));
+            // 直接读快照，不计入文档访问次数
+            Optional<FAQDocument> document = faqDocumentReadModel.findById(id);
+            if (!document.isPresent()) {
+                continue;
+            }
+            Map<String, Object> hot = new LinkedHashMap<>();
+            hot.put("id", id);
+            hot.put("question", document.get().getQuestion());
+            hot.put("count", item.get("count"));
+            hot.put("previous_count", item.get("previous_count"));
+            hotDocuments.add(hot);
+        }
+        List<Map<String, Object>> trendingQueries = new ArrayList<>();
+        for (Map<String, Object> item : queries) {
+            Map<String, Object> trending = new LinkedHashMap<>();
+            trending.put("query", item.get("key"));
+            trending.put("count", item.get("count"));
+            trending.put("previous_count", item.get("previous_count"));
+            trendingQueries.add(trending);
+        }
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("window_minutes", window);
+        result.put("documents", hotDocuments);
+        result.put("queries", trendingQueries);
+        return result;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,34 @@
+package com.knowledgebase.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FAQ文档批量变更事件
+ * 批量更新、批量删除完成后发布一次，代替逐条发布 {@link DocumentChangedEvent}，
+ * 内存读模型、语义缓存等监听方可以一次性刷新，而不是每条文档各做一遍。
+ */
+@Getter
+@AllArgsConstructor
+public class DocumentBatchChangedEvent {
+
+    /**
+     * 本批次的变更，顺序与处理顺序一致
+     */
+    private final List<DocumentChangedEvent> changes;
+
+    /**
+     * 本批次变更涉及的文档ID
+     * @return 文档ID列表
+     */
+    public List<Long> getDocumentIds() {
+        List<Long> ids = new ArrayList<>(changes.size());
+        for (DocumentChangedEvent change : changes) {
+            ids.add(change.getDocumentId());
+        }
+        return ids;
+    }
+}
\ No newline at end of file
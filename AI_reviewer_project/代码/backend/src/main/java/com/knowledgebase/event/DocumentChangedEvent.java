@@ -0,0 +1,52 @@
+package com.knowledgebase.event;
+
+import com.knowledgebase.model.FAQDocument;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * FAQ文档变更事件
+ * 文档创建、更新、删除完成后发布，供内存读模型等本地缓存同步刷新。
+ * 其他节点的变更由DocumentChangeLogService从变更日志回放，以remote=true重新发布。
+ */
+@Getter
+@AllArgsConstructor
+public class DocumentChangedEvent {
+
+    /**
+     * 变更类型
+     */
+    public enum ChangeType {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final ChangeType changeType;
+
+    private final Long documentId;
+
+    /**
+     * 变更后的文档，删除事件为null
+     */
+    private final FAQDocument document;
+
+    /**
+     * 是否为其他节点产生、经变更日志回放的事件
+     */
+    private final boolean remote;
+
+    public static DocumentChangedEvent created(FAQDocument document) {
+        return new DocumentChangedEvent(ChangeType.CREATED, document.getId(), document, false);
+    }
+
+    public static DocumentChangedEvent updated(FAQDocument document) {
+        return new DocumentChangedEvent(ChangeType.UPDATED, document.getId(), document, false);
+    }
+
+    public static DocumentChangedEvent deleted(Long documentId) {
+        return new DocumentChangedEvent(ChangeType.DELETED, documentId, null, false);
+    }
+
+    public static DocumentChangedEvent remote(ChangeType changeType, Long documentId, FAQDocument document) {
+        return new DocumentChangedEvent(changeType, documentId, document, true);
+    }
+}
@@ -0,0 +1,38 @@
+package com.knowledgebase.model;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * 文档变更日志数据模型
+ * 对应数据库中的document_change_log表，每次文档变更追加一行，供各节点按id递增顺序拉取并失效本地缓存
+ */
+@Data
+@Entity
+@Table(name = "document_change_log", indexes = {
+        @Index(name = "idx_document_change_log_created_at", columnList = "created_at")
+})
+public class DocumentChangeLog {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(name = "change_type", nullable = false, length = 16)
+    private String changeType;
+
+    @Column(name = "version")
+    private Integer version;
+
+    @Column(name = "origin_node", nullable = false, length = 64)
+    private String originNode;
+
+    @Column(name = "created_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+}
@@ -18,8 +18,13 @@ import java.util.Date;
 @EntityListeners(AuditingEntityListener.class)
 public class FAQDocument {
 
+    /**
+     * 主键由表生成器分配，见{@link IdGenerators}
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "faq_documents_id")
+    @TableGenerator(name = "faq_documents_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "faq_documents", allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "question", nullable = false, columnDefinition = "TEXT")
@@ -63,6 +68,11 @@ public class FAQDocument {
     @Column(name = "feedback_negative")
     private Integer feedbackNegative;
 
+    /**
+     * 内容版本号，查询日志只记录(文档ID, 版本号)并据此还原答案，因此同一版本号只能对应一份内容。
+     * 由JPA乐观锁维护：新建时为0，每次UPDATE时以 WHERE version=? 条件递增，并发修改冲突时抛出乐观锁异常
+     */
+    @Version
     @Column(name = "version")
     private Integer version;
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.knowledgebase.model;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * FAQ文档摘要
+ * 列表类接口使用，不含答案正文；需要答案时按文档ID单独获取
+ */
+@Data
+public class FAQDocumentSummary {
+
+    private Long id;
+
+    private String question;
+
+    private String category;
+
+    private String keywords;
+
+    private String status;
+
+    private Date createdAt;
+
+    private Date updatedAt;
+
+    private Date lastAccessed;
+
+    private Integer accessCount;
+
+    private Integer feedbackPositive;
+
+    private Integer feedbackNegative;
+
+    private Integer version;
+
+    /**
+     * 由文档生成摘要
+     * @param document FAQ文档
+     * @return 文档摘要
+     */
+    public static FAQDocumentSummary of(FAQDocument document) {
+        FAQDocumentSummary summary = new FAQDocumentSummary();
+        summary.setId(document.getId());
+        summary.setQuestion(document.getQuestion());
+        summary.setCategory(document.getCategory());
+        summary.setKeywords(document.getKeywords());
+        summary.setStatus(document.getStatus());
+        summary.setCreatedAt(document.getCreatedAt());
+        summary.setUpdatedAt(document.getUpdatedAt());
+        summary.setLastAccessed(document.getLastAccessed());
+        summary.setAccessCount(document.getAccessCount());
+        summary.setFeedbackPositive(document.getFeedbackPositive());
+        summary.setFeedbackNegative(document.getFeedbackNegative());
+        summary.setVersion(document.getVersion());
+        return summary;
+    }
+}
\ No newline at end of file
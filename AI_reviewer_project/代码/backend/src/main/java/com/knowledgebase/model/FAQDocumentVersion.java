@@ -0,0 +1,39 @@
+package com.knowledgebase.model;
+
+import lombok.Data;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * FAQ文档版本历史数据模型
+ * 对应数据库中的faq_document_versions表，每个(文档ID, 版本号)只写入一次且不再修改，
+ * 精简模式下的查询日志只记录文档ID和版本号，读取时据此还原当时返回的答案
+ */
+@Data
+@Entity
+@Table(name = "faq_document_versions", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_faq_document_versions_document_version", columnNames = {"document_id", "version"})
+})
+public class FAQDocumentVersion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(name = "version", nullable = false)
+    private Integer version;
+
+    @Column(name = "question", nullable = false, columnDefinition = "TEXT")
+    private String question;
+
+    @Column(name = "answer", nullable = false, columnDefinition = "TEXT")
+    private String answer;
+
+    @Column(name = "created_at", nullable = false)
+    @Temporal(TemporalType.TIMESTAMP)
+    private Date createdAt;
+}
@@ -0,0 +1,23 @@
+package com.knowledgebase.model;
+
+/**
+ * 表生成器ID分配常量
+ * FAQDocument、User的主键由id_generators表按段分配，与hibernate.jdbc.batch_size保持一致。
+ * 池化的表生成器每次从id_generators预取一段ID，persist时即可获得ID，插入可以合并为JDBC批量执行。
+ * query_logs保持自增主键：各节点按段取号会使id与写入时间不再同序，而查询日志归档和导出依赖id与时间同序。
+ */
+public final class IdGenerators {
+
+    /**
+     * 每次从id_generators预取的ID数量
+     */
+    public static final int ALLOCATION_SIZE = 50;
+
+    /**
+     * 使用表生成器的表，生成器行名与表名相同
+     */
+    public static final String[] TABLES = {"faq_documents", "users"};
+
+    private IdGenerators() {
+    }
+}
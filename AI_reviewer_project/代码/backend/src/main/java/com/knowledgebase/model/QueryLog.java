@@ -13,10 +13,17 @@ import java.util.Date;
  */
 @Data
 @Entity
-@Table(name = "query_logs")
+@Table(name = "query_logs", indexes = {
+        @Index(name = "idx_query_logs_created_at", columnList = "created_at"),
+        @Index(name = "idx_query_logs_user_id", columnList = "user_id"),
+        @Index(name = "idx_query_logs_session_id", columnList = "session_id")
+})
 @EntityListeners(AuditingEntityListener.class)
 public class QueryLog {
 
+    /**
+     * 自增主键，id与写入时间同序，见{@link IdGenerators}
+     */
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
@@ -30,6 +37,12 @@ public class QueryLog {
     @Column(name = "document_id")
     private Long documentId;
 
+    /**
+     * 命中文档的版本号；精简模式下response不落库，读取时按(documentId, documentVersion)从版本历史还原
+     */
+    @Column(name = "document_version")
+    private Integer documentVersion;
+
     @Column(name = "response", columnDefinition = "TEXT")
     private String response;
 
@@ -52,4 +65,10 @@ public class QueryLog {
 
     @Column(name = "user_agent")
     private String userAgent;
+
+    /**
+     * User-Agent字典id；精简模式下user_agent不落库，读取时从user_agents表还原
+     */
+    @Column(name = "user_agent_id")
+    private Integer userAgentId;
 }
\ No newline at end of file
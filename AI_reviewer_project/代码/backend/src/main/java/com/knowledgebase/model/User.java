@@ -18,8 +18,13 @@ import java.util.Date;
 @EntityListeners(AuditingEntityListener.class)
 public class User {
 
+    /**
+     * 主键由表生成器分配，见{@link IdGenerators}
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "users_id")
+    @TableGenerator(name = "users_id", table = "id_generators", pkColumnName = "sequence_name",
+            valueColumnName = "next_val", pkColumnValue = "users", allocationSize = IdGenerators.ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "username", nullable = false, unique = true)
@@ -0,0 +1,30 @@
+package com.knowledgebase.model;
+
+import lombok.Data;
+
+import javax.persistence.*;
+
+/**
+ * User-Agent字典数据模型
+ * 对应数据库中的user_agents表，相同的User-Agent字符串只存一行，查询日志中只保存其id
+ */
+@Data
+@Entity
+@Table(name = "user_agents", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_user_agents_ua_hash", columnNames = "ua_hash")
+})
+public class UserAgent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Integer id;
+
+    /**
+     * User-Agent的SHA-256十六进制摘要，用于唯一索引（原文可能超过索引长度限制）
+     */
+    @Column(name = "ua_hash", nullable = false, length = 64)
+    private String uaHash;
+
+    @Column(name = "user_agent", nullable = false, columnDefinition = "TEXT")
+    private String userAgent;
+}
@@ -0,0 +1,53 @@
+package com.knowledgebase.repository;
+
+import com.knowledgebase.model.DocumentChangeLog;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 文档变更日志数据访问接口
+ * 提供对document_change_log表的追加和按id增量拉取
+ */
+@Repository
+public interface DocumentChangeLogRepository extends JpaRepository<DocumentChangeLog, Long> {
+
+    /**
+     * 拉取指定id之后的变更日志
+     * @param afterId 已处理的最大id
+     * @param pageable 分页参数
+     * @return 变更日志列表（按id升序）
+     */
+    List<DocumentChangeLog> findByIdGreaterThanOrderByIdAsc(Long afterId, Pageable pageable);
+
+    /**
+     * 根据id列表查询变更日志（用于补拉提交较晚的空洞id）
+     * @param ids id列表
+     * @return 变更日志列表
+     */
+    List<DocumentChangeLog> findByIdIn(Collection<Long> ids);
+
+    /**
+     * 获取当前最大id
+     * @return 最大id，表为空时返回null
+     */
+    @Query("SELECT MAX(c.id) FROM DocumentChangeLog c")
+    Long findMaxId();
+
+    /**
+     * 删除早于指定时间的变更日志
+     * @param before 截止时间
+     * @return 删除的行数
+     */
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM DocumentChangeLog c WHERE c.createdAt < ?1")
+    int deleteByCreatedAtBefore(Date before);
+}
@@ -2,10 +2,15 @@ package com.knowledgebase.repository;
 
 import com.knowledgebase.model.FAQDocument;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * FAQ文档数据访问接口
@@ -29,11 +34,12 @@ public interface FAQDocumentRepository extends JpaRepository<FAQDocument, Long>
     List<FAQDocument> findByStatus(String status);
 
     /**
-     * 根据向量ID查询FAQ文档
-     * @param vectorId 向量ID
-     * @return FAQ文档
+     * 只查询文档的答案正文
+     * @param id 文档ID
+     * @return 答案
      */
-    FAQDocument findByVectorId(String vectorId);
+    @Query("SELECT f.answer FROM FAQDocument f WHERE f.id = ?1")
+    Optional<String> findAnswerById(Long id);
 
     /**
      * 搜索包含关键词的FAQ文档
@@ -44,9 +50,61 @@ public interface FAQDocumentRepository extends JpaRepository<FAQDocument, Long>
     List<FAQDocument> searchByKeyword(String keyword);
 
     /**
-     * 获取所有分类
-     * @return 分类列表
+     * 按分类和状态筛选文档ID，条件为null时不限制
+     * @param category 分类名称
+     * @param status 文档状态
+     * @return 文档ID列表（升序）
+     */
+    @Query("SELECT f.id FROM FAQDocument f WHERE (?1 IS NULL OR f.category = ?1) AND (?2 IS NULL OR f.status = ?2) ORDER BY f.id")
+    List<Long> findIdsByFilter(String category, String status);
+
+    /**
+     * 查询给定ID中实际存在的文档ID
+     * @param ids 文档ID
+     * @return 存在的文档ID列表
+     */
+    @Query("SELECT f.id FROM FAQDocument f WHERE f.id IN ?1")
+    List<Long> findExistingIds(Collection<Long> ids);
+
+    /**
+     * 原子递增文档访问次数并更新最后访问时间
+     * @param id 文档ID
+     * @param accessedAt 访问时间
+     * @return 更新的行数
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE FAQDocument f SET f.accessCount = COALESCE(f.accessCount, 0) + 1, f.lastAccessed = ?2 WHERE f.id = ?1")
+    int incrementAccessCount(Long id, Date accessedAt);
+
+    /**
+     * 原子递增文档正面反馈数
+     * @param id 文档ID
+     * @return 更新的行数
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE FAQDocument f SET f.feedbackPositive = COALESCE(f.feedbackPositive, 0) + 1 WHERE f.id = ?1")
+    int incrementFeedbackPositive(Long id);
+
+    /**
+     * 原子递增文档负面反馈数
+     * @param id 文档ID
+     * @return 更新的行数
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE FAQDocument f SET f.feedbackNegative = COALESCE(f.feedbackNegative, 0) + 1 WHERE f.id = ?1")
+    int incrementFeedbackNegative(Long id);
+
+    /**
+     * 只更新文档的向量ID，不覆盖其他字段
+     * @param id 文档ID
+     * @param vectorId 向量ID
+     * @return 更新的行数
      */
-    @Query("SELECT DISTINCT f.category FROM FAQDocument f")
-    List<String> findDistinctCategories();
+    @Transactional
+    @Modifying
+    @Query("UPDATE FAQDocument f SET f.vectorId = ?2 WHERE f.id = ?1")
+    int updateVectorId(Long id, String vectorId);
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.knowledgebase.repository;
+
+import com.knowledgebase.model.FAQDocumentVersion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * FAQ文档版本历史数据访问接口
+ * 提供对faq_document_versions表的追加和按(文档ID, 版本号)查询
+ */
+@Repository
+public interface FAQDocumentVersionRepository extends JpaRepository<FAQDocumentVersion, Long> {
+
+    /**
+     * 根据文档ID和版本号查询版本
+     * @param documentId 文档ID
+     * @param version 版本号
+     * @return 文档版本
+     */
+    Optional<FAQDocumentVersion> findByDocumentIdAndVersion(Long documentId, Integer version);
+
+    /**
+     * 批量查询文档版本：返回文档ID与版本号各自落在列表中的所有组合，调用方再按(文档ID, 版本号)筛选
+     * @param documentIds 文档ID列表
+     * @param versions 版本号列表
+     * @return 文档版本列表
+     */
+    List<FAQDocumentVersion> findByDocumentIdInAndVersionIn(Collection<Long> documentIds, Collection<Integer> versions);
+
+    /**
+     * 获取每篇文档已记录的最新版本号
+     * @return 每行为[documentId, 最新version]
+     */
+    @Query("SELECT v.documentId, MAX(v.version) FROM FAQDocumentVersion v GROUP BY v.documentId")
+    List<Object[]> findLatestVersionKeys();
+}
@@ -1,6 +1,7 @@
 package com.knowledgebase.repository;
 
 import com.knowledgebase.model.QueryLog;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
@@ -63,4 +64,29 @@ public interface QueryLogRepository extends JpaRepository<QueryLog, Long> {
      */
     @Query("SELECT DATE(q.createdAt) as date, COUNT(q.id) as count FROM QueryLog q GROUP BY DATE(q.createdAt) ORDER BY date DESC")
     List<Object[]> getDailyQueryCount();
+
+    /**
+     * 获取最早的一条查询日志
+     * @return 查询日志
+     */
+    QueryLog findFirstByOrderByCreatedAtAsc();
+
+    /**
+     * 按id游标分页查询时间范围[startDate, endDate)内的查询日志
+     * @param startDate 开始时间（包含）
+     * @param endDate 结束时间（不包含）
+     * @param afterId 上一页最后一条日志的ID
+     * @param pageable 分页参数
+     * @return 查询日志列表
+     */
+    List<QueryLog> findByCreatedAtGreaterThanEqualAndCreatedAtLessThanAndIdGreaterThanOrderByIdAsc(
+            Date startDate, Date endDate, Long afterId, Pageable pageable);
+
+    /**
+     * 按id倒序读取查询文本（走主键索引，不做全表分组）
+     * @param pageable 分页参数
+     * @return 查询文本列表
+     */
+    @Query("SELECT q.queryText FROM QueryLog q ORDER BY q.id DESC")
+    List<String> findLatestQueryTexts(Pageable pageable);
 }
\ No newline at end of file
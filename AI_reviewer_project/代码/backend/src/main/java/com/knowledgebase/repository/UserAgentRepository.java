@@ -0,0 +1,22 @@
+package com.knowledgebase.repository;
+
+import com.knowledgebase.model.UserAgent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+/**
+ * User-Agent字典数据访问接口
+ * 提供对user_agents表的查询和追加
+ */
+@Repository
+public interface UserAgentRepository extends JpaRepository<UserAgent, Integer> {
+
+    /**
+     * 根据摘要查询User-Agent
+     * @param uaHash User-Agent的SHA-256十六进制摘要
+     * @return User-Agent字典项
+     */
+    Optional<UserAgent> findByUaHash(String uaHash);
+}
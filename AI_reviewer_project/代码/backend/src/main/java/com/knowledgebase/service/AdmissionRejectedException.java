@@ -0,0 +1,21 @@
+package com.knowledgebase.service;
+
+import lombok.Getter;
+
+/**
+ * 准入拒绝异常
+ * 通道队列已满或预计排队时间超过延迟预算时抛出，携带建议的重试等待秒数
+ */
+@Getter
+public class AdmissionRejectedException extends RuntimeException {
+
+    private final AdmissionScheduler.Lane lane;
+
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(AdmissionScheduler.Lane lane, long retryAfterSeconds) {
+        super("Admission rejected for lane " + lane + ", retry after " + retryAfterSeconds + "s");
+        this.lane = lane;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
@@ -0,0 +1,280 @@
+package com.knowledgebase.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 准入控制与优先级调度
+ * 将请求分为交互查询、文档写入、批量/管理任务三条通道，每条通道有独立的排队上限、并发上限和排队延迟预算。
+ * 执行槽位空出时按通道权重做平滑加权轮询，保证过载时查询通道优先；
+ * 预计排队时间超过延迟预算或队列已满的请求立即拒绝，并给出建议的重试等待时间。
+ */
+@Component
+public class AdmissionScheduler {
+
+    /**
+     * 调度通道
+     */
+    public enum Lane {
+        INTERACTIVE, DOCUMENT_WRITE, BULK
+    }
+
+    @Value("${admission.enabled:true}")
+    private boolean enabled;
+
+    @Value("${admission.max-concurrency:32}")
+    private int maxConcurrency;
+
+    @Value("${admission.interactive.weight:8}")
+    private int interactiveWeight;
+    @Value("${admission.interactive.max-concurrency:32}")
+    private int interactiveMaxConcurrency;
+    @Value("${admission.interactive.queue-capacity:200}")
+    private int interactiveQueueCapacity;
+    @Value("${admission.interactive.latency-budget-ms:200}")
+    private long interactiveLatencyBudgetMs;
+
+    @Value("${admission.write.weight:3}")
+    private int writeWeight;
+    @Value("${admission.write.max-concurrency:8}")
+    private int writeMaxConcurrency;
+    @Value("${admission.write.queue-capacity:50}")
+    private int writeQueueCapacity;
+    @Value("${admission.write.latency-budget-ms:2000}")
+    private long writeLatencyBudgetMs;
+
+    @Value("${admission.bulk.weight:1}")
+    private int bulkWeight;
+    @Value("${admission.bulk.max-concurrency:2}")
+    private int bulkMaxConcurrency;
+    @Value("${admission.bulk.queue-capacity:10}")
+    private int bulkQueueCapacity;
+    @Value("${admission.bulk.latency-budget-ms:10000}")
+    private long bulkLatencyBudgetMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Map<Lane, LaneState> lanes = new EnumMap<>(Lane.class);
+
+    private int running;
+
+    @PostConstruct
+    public void init() {
+        lanes.put(Lane.INTERACTIVE, new LaneState(interactiveWeight, interactiveMaxConcurrency,
+                interactiveQueueCapacity, interactiveLatencyBudgetMs));
+        lanes.put(Lane.DOCUMENT_WRITE, new LaneState(writeWeight, writeMaxConcurrency,
+                writeQueueCapacity, writeLatencyBudgetMs));
+        lanes.put(Lane.BULK, new LaneState(bulkWeight, bulkMaxConcurrency,
+                bulkQueueCapacity, bulkLatencyBudgetMs));
+    }
+
+    /**
+     * 申请执行许可，必要时排队等待
+     * @param lane 调度通道
+     * @return 执行许可，执行结束后必须调用release
+     * @throws AdmissionRejectedException 队列已满或预计排队时间超过延迟预算
+     */
+    public Permit acquire(Lane lane) throws InterruptedException {
+        if (!enabled) {
+            return new Permit(lane, System.nanoTime(), false);
+        }
+        LaneState state = lanes.get(lane);
+        Waiter waiter;
+        lock.lock();
+        try {
+            if (state.queue.isEmpty() && hasCapacity(state)) {
+                grant(state);
+                return new Permit(lane, System.nanoTime(), true);
+            }
+            long estimatedWaitMs = estimateWaitMs(state);
+            if (state.queue.size() >= state.queueCapacity || estimatedWaitMs > state.latencyBudgetMs) {
+                state.rejected++;
+                throw new AdmissionRejectedException(lane, retryAfterSeconds(estimatedWaitMs));
+            }
+            waiter = new Waiter(lock.newCondition());
+            state.queue.addLast(waiter);
+
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(state.latencyBudgetMs);
+            try {
+                while (!waiter.granted) {
+                    if (remainingNanos <= 0) {
+                        state.queue.remove(waiter);
+                        state.rejected++;
+                        throw new AdmissionRejectedException(lane, retryAfterSeconds(estimateWaitMs(state)));
+                    }
+                    remainingNanos = waiter.condition.awaitNanos(remainingNanos);
+                }
+            } catch (InterruptedException e) {
+                if (waiter.granted) {
+                    releaseSlot(state, 0);
+                } else {
+                    state.queue.remove(waiter);
+                }
+                throw e;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return new Permit(lane, System.nanoTime(), true);
+    }
+
+    /**
+     * 释放执行许可，并按权重唤醒下一个排队请求
+     * @param permit 执行许可
+     */
+    public void release(Permit permit) {
+        if (!permit.counted) {
+            return;
+        }
+        long serviceMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - permit.startNanos);
+        lock.lock();
+        try {
+            releaseSlot(lanes.get(permit.lane), serviceMs);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 获取各通道调度统计
+     * @return 统计数据
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        lock.lock();
+        try {
+            stats.put("enabled", enabled);
+            stats.put("running", running);
+            stats.put("max_concurrency", maxConcurrency);
+            for (Map.Entry<Lane, LaneState> entry : lanes.entrySet()) {
+                LaneState state = entry.getValue();
+                Map<String, Object> laneStats = new LinkedHashMap<>();
+                laneStats.put("running", state.running);
+                laneStats.put("queued", state.queue.size());
+                laneStats.put("admitted", state.admitted);
+                laneStats.put("rejected", state.rejected);
+                laneStats.put("avg_service_ms", Math.round(state.avgServiceMs));
+                laneStats.put("estimated_wait_ms", estimateWaitMs(state));
+                stats.put(entry.getKey().name().toLowerCase(Locale.ROOT), laneStats);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return stats;
+    }
+
+    private boolean hasCapacity(LaneState state) {
+        return running < maxConcurrency && state.running < state.maxConcurrency;
+    }
+
+    private void grant(LaneState state) {
+        running++;
+        state.running++;
+        state.admitted++;
+    }
+
+    private void releaseSlot(LaneState state, long serviceMs) {
+        running--;
+        state.running--;
+        if (serviceMs > 0) {
+            state.avgServiceMs = state.avgServiceMs * 0.9 + serviceMs * 0.1;
+        }
+        dispatch();
+    }
+
+    /**
+     * 平滑加权轮询：每轮给所有可调度通道累加权重，选出累计值最大的通道出队，再扣除总权重
+     */
+    private void dispatch() {
+        while (running < maxConcurrency) {
+            LaneState selected = null;
+            int totalWeight = 0;
+            for (LaneState state : lanes.values()) {
+                if (state.queue.isEmpty() || state.running >= state.maxConcurrency) {
+                    continue;
+                }
+                state.currentWeight += state.weight;
+                totalWeight += state.weight;
+                if (selected == null || state.currentWeight > selected.currentWeight) {
+                    selected = state;
+                }
+            }
+            if (selected == null) {
+                return;
+            }
+            selected.currentWeight -= totalWeight;
+            Waiter waiter = selected.queue.pollFirst();
+            grant(selected);
+            waiter.granted = true;
+            waiter.condition.signal();
+        }
+    }
+
+    /**
+     * 预计排队时间 = 前方排队数 × 平均服务时间 ÷ 通道可用并发
+     */
+    private long estimateWaitMs(LaneState state) {
+        int concurrency = Math.max(1, Math.min(state.maxConcurrency, maxConcurrency));
+        return Math.round((state.queue.size() + 1) * state.avgServiceMs / concurrency);
+    }
+
+    private static long retryAfterSeconds(long estimatedWaitMs) {
+        return Math.max(1, (estimatedWaitMs + 999) / 1000);
+    }
+
+    /**
+     * 执行许可
+     */
+    public static final class Permit {
+        private final Lane lane;
+        private final long startNanos;
+        private final boolean counted;
+
+        private Permit(Lane lane, long startNanos, boolean counted) {
+            this.lane = lane;
+            this.startNanos = startNanos;
+            this.counted = counted;
+        }
+
+        public Lane getLane() {
+            return lane;
+        }
+    }
+
+    private static final class Waiter {
+        final Condition condition;
+        boolean granted;
+
+        Waiter(Condition condition) {
+            this.condition = condition;
+        }
+    }
+
+    private static final class LaneState {
+        final int weight;
+        final int maxConcurrency;
+        final int queueCapacity;
+        final long latencyBudgetMs;
+        final Deque<Waiter> queue = new ArrayDeque<>();
+        int running;
+        int currentWeight;
+        long admitted;
+        long rejected;
+        double avgServiceMs;
+
+        LaneState(int weight, int maxConcurrency, int queueCapacity, long latencyBudgetMs) {
+            this.weight = weight;
+            this.maxConcurrency = maxConcurrency;
+            this.queueCapacity = queueCapacity;
+            this.latencyBudgetMs = latencyBudgetMs;
+            // 初始按预算的十分之一估计服务时间，随后由实际耗时的指数滑动平均修正
+            this.avgServiceMs = latencyBudgetMs / 10.0;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.event.DocumentBatchChangedEvent;
+import com.knowledgebase.event.DocumentChangedEvent;
+import com.knowledgebase.model.FAQDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+
+/**
+ * 分类字典
+ * 启动时由内存读模型构建，之后随文档创建、更新、删除事件（含批量变更和其他节点的回放）增量维护，
+ * 记录每个分类下各状态的文档数，以及访问次数、正负反馈的汇总。
+ * 分类列表和分面计数直接由此返回，不再对全表做 SELECT DISTINCT 或 GROUP BY。
+ * 每篇文档记录其当前计入的分类、状态、计数和版本号，变更时先扣除旧值再计入新值，计数不会漂移；
+ * 与读模型一致，版本号低于已计入版本的乱序变更会被忽略。
+ * 分类列表响应按读模型的语料版本缓存，因此本类先于读模型处理变更事件：
+ * 读到新版本号时分类字典一定已经更新，不会把旧列表标记为新版本。
+ */
+@Component
+public class CategoryRegistry {
+
+    @Autowired
+    private FAQDocumentReadModel faqDocumentReadModel;
+
+    /**
+     * 分类 -> 汇总统计（按分类名排序）
+     */
+    private final Map<String, CategoryStats> categories = new TreeMap<>();
+
+    /**
+     * 文档ID -> 该文档当前计入的值
+     */
+    private final Map<Long, Contribution> contributions = new HashMap<>();
+
+    /**
+     * 分类名列表的只读快照，分类增删时重建
+     */
+    private volatile List<String> categoryNames = Collections.emptyList();
+
+    @PostConstruct
+    public synchronized void load() {
+        categories.clear();
+        contributions.clear();
+        for (FAQDocument document : faqDocumentReadModel.findAll()) {
+            add(document);
+        }
+        refreshNames();
+    }
+
+    /**
+     * 处理文档变更事件
+     * @param event 文档变更事件
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void onDocumentChanged(DocumentChangedEvent event) {
+        apply(event);
+        refreshNames();
+    }
+
+    /**
+     * 处理批量变更事件，整批处理完后只重建一次分类名列表
+     * @param event 批量变更事件
+     */
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public synchronized void onDocumentsChanged(DocumentBatchChangedEvent event) {
+        for (DocumentChangedEvent change : event.getChanges()) {
+            apply(change);
+        }
+        refreshNames();
+    }
+
+    /**
+     * 记录一次文档访问
+     * @param documentId 文档ID
+     */
+    public synchronized void recordAccess(Long documentId) {
+        Contribution contribution = contributions.get(documentId);
+        if (contribution != null) {
+            contribution.accessCount++;
+            categories.get(contribution.category).accessCount++;
+        }
+    }
+
+    /**
+     * 记录一次文档反馈
+     * @param documentId 文档ID
+     * @param isPositive 是否正面反馈
+     */
+    public synchronized void recordFeedback(Long documentId, boolean isPositive) {
+        Contribution contribution = contributions.get(documentId);
+        if (contribution == null) {
+            return;
+        }
+        CategoryStats stats = categories.get(contribution.category);
+        if (isPositive) {
+            contribution.feedbackPositive++;
+            stats.feedbackPositive++;
+        } else {
+            contribution.feedbackNegative++;
+            stats.feedbackNegative++;
+        }
+    }
+
+    /**
+     * 获取所有分类名（按名称排序）
+     * @return 分类名列表
+     */
+    public List<String> getCategoryNames() {
+        return categoryNames;
+    }
+
+    /**
+     * 获取分类下的文档数
+     * @param category 分类名
+     * @param status 文档状态，为null时统计全部状态
+     * @return 文档数
+     */
+    public synchronized long count(String category, String status) {
+        CategoryStats stats = categories.get(category);
+        if (stats == null) {
+            return 0;
+        }
+        return status == null ? stats.total : stats.byStatus.getOrDefault(status, 0L);
+    }
+
+    /**
+     * 获取分面计数
+     * @param status 只统计该状态的文档，为null时统计全部状态并给出各状态的分布
+     * @return 每个分类的文档数、访问次数与反馈汇总
+     */
+    public synchronized List<Map<String, Object>> getFacets(String status) {
+        List<Map<String, Object>> facets = new ArrayList<>(categories.size());
+        for (Map.Entry<String, CategoryStats> entry : categories.entrySet()) {
+            CategoryStats stats = entry.getValue();
+            long count = status == null ? stats.total : stats.byStatus.getOrDefault(status, 0L);
+            if (count == 0) {
+                continue;
+            }
+            Map<String, Object> facet = new LinkedHashMap<>();
+            facet.put("category", entry.getKey());
+            facet.put("count", count);
+            if (status == null) {
+                facet.put("by_status", new TreeMap<>(stats.byStatus));
+            }
+            facet.put("access_count", stats.accessCount);
+            facet.put("feedback_positive", stats.feedbackPositive);
+            facet.put("feedback_negative", stats.feedbackNegative);
+            facets.add(facet);
+        }
+        return facets;
+    }
+
+    private void apply(DocumentChangedEvent event) {
+        if (event.getChangeType() != DocumentChangedEvent.ChangeType.DELETED && event.getDocument() != null) {
+            Contribution existing = contributions.get(event.getDocumentId());
+            if (existing != null && isStale(event.getDocument(), existing)) {
+                return;
+            }
+            remove(event.getDocumentId());
+            add(event.getDocument());
+        } else {
+            remove(event.getDocumentId());
+        }
+    }
+
+    private static boolean isStale(FAQDocument incoming, Contribution existing) {
+        return incoming.getVersion() != null && existing.version != null
+                && incoming.getVersion() < existing.version;
+    }
+
+    private void add(FAQDocument document) {
+        Contribution contribution = new Contribution(document);
+        contributions.put(document.getId(), contribution);
+        CategoryStats stats = categories.computeIfAbsent(contribution.category, key -> new CategoryStats());
+        stats.total++;
+        stats.byStatus.merge(contribution.status, 1L, Long::sum);
+        stats.accessCount += contribution.accessCount;
+        stats.feedbackPositive += contribution.feedbackPositive;
+        stats.feedbackNegative += contribution.feedbackNegative;
+    }
+
+    private void remove(Long documentId) {
+        Contribution contribution = contributions.remove(documentId);
+        if (contribution == null) {
+            return;
+        }
+        CategoryStats stats = categories.get(contribution.category);
+        stats.total--;
+        stats.byStatus.computeIfPresent(contribution.status, (key, count) -> count > 1 ? count - 1 : null);
+        stats.accessCount -= contribution.accessCount;
+        stats.feedbackPositive -= contribution.feedbackPositive;
+        stats.feedbackNegative -= contribution.feedbackNegative;
+        if (stats.total == 0) {
+            categories.remove(contribution.category);
+        }
+    }
+
+    private void refreshNames() {
+        if (categoryNames.size() != categories.size() || !categoryNames.containsAll(categories.keySet())) {
+            categoryNames = Collections.unmodifiableList(new ArrayList<>(categories.keySet()));
+        }
+    }
+
+    private static long valueOf(Integer value) {
+        return value != null ? value : 0;
+    }
+
+    /**
+     * 单个分类的汇总统计
+     */
+    private static final class CategoryStats {
+        long total;
+        final Map<String, Long> byStatus = new HashMap<>();
+        long accessCount;
+        long feedbackPositive;
+        long feedbackNegative;
+    }
+
+    /**
+     * 单篇文档计入汇总的值
+     */
+    private static final class Contribution {
+        final String category;
+        final String status;
+        final Integer version;
+        long accessCount;
+        long feedbackPositive;
+        long feedbackNegative;
+
+        Contribution(FAQDocument document) {
+            this.category = document.getCategory() != null ? document.getCategory() : "";
+            this.status = document.getStatus() != null ? document.getStatus() : "";
+            this.version = document.getVersion();
+            this.accessCount = valueOf(document.getAccessCount());
+            this.feedbackPositive = valueOf(document.getFeedbackPositive());
+            this.feedbackNegative = valueOf(document.getFeedbackNegative());
+        }
+    }
+}
\ No newline at end of file
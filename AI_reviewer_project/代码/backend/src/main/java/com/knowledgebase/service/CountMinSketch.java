@@ -0,0 +1,152 @@
+package com.knowledgebase.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Count-Min Sketch频率估计
+ * depth行、每行width个计数器，键按双重哈希映射到每行一个计数器，估计值取各行最小值（只会高估、不会低估）。
+ * 计数器为AtomicLongArray，写入无锁；哈希不含随机种子，宽度和深度相同的草图可以跨节点按位相加合并。
+ */
+public class CountMinSketch {
+
+    private final int width;
+
+    private final int depth;
+
+    private final AtomicLongArray counters;
+
+    private final AtomicLong total = new AtomicLong();
+
+    /**
+     * @param width 每行计数器数量
+     * @param depth 行数（哈希函数数量）
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width <= 0 || depth <= 0) {
+            throw new IllegalArgumentException("Sketch width and depth must be positive");
+        }
+        this.width = width;
+        this.depth = depth;
+        this.counters = new AtomicLongArray(Math.multiplyExact(width, depth));
+    }
+
+    /**
+     * 由导出的计数器还原草图
+     * @param width 每行计数器数量
+     * @param depth 行数
+     * @param values 按行排列的计数器
+     * @param total 总计数
+     */
+    public CountMinSketch(int width, int depth, long[] values, long total) {
+        this(width, depth);
+        if (values.length != width * depth) {
+            throw new IllegalArgumentException("Expected " + (width * depth) + " counters but got " + values.length);
+        }
+        for (int i = 0; i < values.length; i++) {
+            counters.set(i, values[i]);
+        }
+        this.total.set(total);
+    }
+
+    /**
+     * 增加键的计数
+     * @param key 键
+     * @param count 增量
+     */
+    public void add(String key, long count) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int row = 0; row < depth; row++) {
+            counters.addAndGet(row * width + index(h1, h2, row), count);
+        }
+        total.addAndGet(count);
+    }
+
+    /**
+     * 估计键的计数
+     * @param key 键
+     * @return 估计值（不小于真实值）
+     */
+    public long estimate(String key) {
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.get(row * width + index(h1, h2, row)));
+        }
+        return min;
+    }
+
+    /**
+     * 将另一个草图的计数累加到本草图
+     * @param other 宽度和深度相同的草图
+     */
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge sketches of different dimensions: "
+                    + width + "x" + depth + " vs " + other.width + "x" + other.depth);
+        }
+        for (int i = 0; i < counters.length(); i++) {
+            long value = other.counters.get(i);
+            if (value != 0) {
+                counters.addAndGet(i, value);
+            }
+        }
+        total.addAndGet(other.total.get());
+    }
+
+    /**
+     * 复制草图
+     * @return 新草图
+     */
+    public CountMinSketch copy() {
+        return new CountMinSketch(width, depth, toArray(), total.get());
+    }
+
+    /**
+     * 导出计数器
+     * @return 按行排列的计数器
+     */
+    public long[] toArray() {
+        long[] values = new long[counters.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = counters.get(i);
+        }
+        return values;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    private int index(int h1, int h2, int row) {
+        return Math.floorMod(h1 + row * h2, width);
+    }
+
+    /**
+     * 64位FNV-1a哈希，再做一次混合；高低32位作为双重哈希的两个基函数
+     */
+    private static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash | 1L << 32;
+    }
+}
@@ -0,0 +1,442 @@
+package com.knowledgebase.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * 向量降维
+ * 位于向量模型与向量库之间：模型输出的向量先经过降维再写入和检索，集合维度随之减小。
+ * 支持两种方式：
+ * truncate 取前k维并重新归一化，适用于Matryoshka方式训练、前缀维度可单独使用的模型；
+ * pca 以语料向量训练主成分投影，投影矩阵保存在模型文件中，启动时加载，保证写入与检索使用同一投影。
+ * 降维模型由降维迁移工具（DimensionReductionMigrationService）生成，切换前可先查看其召回率报告。
+ */
+@Component
+public class DimensionReducer {
+
+    /**
+     * 降维方式
+     */
+    public enum Mode {
+        NONE, TRUNCATE, PCA
+    }
+
+    private static final int PCA_MAX_ITERATIONS = 50;
+
+    private static final double PCA_TOLERANCE = 1e-7;
+
+    @Value("${vector.reduction.mode:none}")
+    private String modeSetting;
+
+    @Value("${vector.reduction.dimension:0}")
+    private int targetDimension;
+
+    @Value("${vector.reduction.model-file:}")
+    private String modelFile;
+
+    @Value("${vector.reduction.pca.max-samples:5000}")
+    private int pcaMaxSamples;
+
+    @Autowired
+    private EmbeddingProvider embeddingProvider;
+
+    private volatile Projection projection;
+
+    @PostConstruct
+    public void init() {
+        int sourceDimension = embeddingProvider.getDimension();
+        Mode mode = parseMode(modeSetting);
+        if (mode == Mode.NONE) {
+            projection = Projection.identity(sourceDimension);
+            return;
+        }
+        if (mode == Mode.TRUNCATE) {
+            if (!embeddingProvider.supportsTruncation()) {
+                System.err.println("Embedding model " + embeddingProvider.getModelId()
+                        + " is not trained for truncation; check the recall report before serving truncated vectors");
+            }
+            projection = Projection.truncate(sourceDimension, targetDimension);
+            return;
+        }
+        if (modelFile.isEmpty() || !Files.exists(Paths.get(modelFile))) {
+            throw new IllegalStateException("vector.reduction.mode=pca requires vector.reduction.model-file; "
+                    + "build one with POST /api/admin/vector-reduction/migrate");
+        }
+        Projection loaded = load(Paths.get(modelFile));
+        if (loaded.getSourceDimension() != sourceDimension || loaded.getDimension() != targetDimension) {
+            throw new IllegalStateException("PCA model " + modelFile + " maps " + loaded.getSourceDimension() + " -> "
+                    + loaded.getDimension() + " dimensions, expected " + sourceDimension + " -> " + targetDimension);
+        }
+        projection = loaded;
+    }
+
+    /**
+     * 降维单个向量
+     * @param vector 模型输出的向量
+     * @return 降维后的向量
+     */
+    public List<Float> reduce(List<Float> vector) {
+        return projection.apply(vector);
+    }
+
+    /**
+     * 批量降维
+     * @param vectors 模型输出的向量列表
+     * @return 降维后的向量列表
+     */
+    public List<List<Float>> reduceAll(List<List<Float>> vectors) {
+        Projection current = projection;
+        if (current.getMode() == Mode.NONE) {
+            return vectors;
+        }
+        List<List<Float>> reduced = new ArrayList<>(vectors.size());
+        for (List<Float> vector : vectors) {
+            reduced.add(current.apply(vector));
+        }
+        return reduced;
+    }
+
+    /**
+     * 当前生效的投影
+     * @return 投影
+     */
+    public Projection getProjection() {
+        return projection;
+    }
+
+    /**
+     * 降维后的向量维度，即向量集合的维度
+     * @return 维度
+     */
+    public int getOutputDimension() {
+        return projection.getDimension();
+    }
+
+    /**
+     * 按指定方式训练投影
+     * @param mode 降维方式
+     * @param dimension 目标维度
+     * @param samples 模型输出的原始维度向量
+     * @return 投影
+     */
+    public Projection train(Mode mode, int dimension, List<List<Float>> samples) {
+        int sourceDimension = embeddingProvider.getDimension();
+        switch (mode) {
+            case NONE:
+                return Projection.identity(sourceDimension);
+            case TRUNCATE:
+                return Projection.truncate(sourceDimension, dimension);
+            default:
+                return trainPca(sourceDimension, dimension, samples);
+        }
+    }
+
+    /**
+     * 是否为可直接截断的模型
+     * @return 模型是否支持截断
+     */
+    public boolean isTruncationSupported() {
+        return embeddingProvider.supportsTruncation();
+    }
+
+    /**
+     * 解析降维方式配置
+     * @param value 配置值（none/truncate/pca）
+     * @return 降维方式
+     */
+    public static Mode parseMode(String value) {
+        return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * 保存PCA投影到模型文件
+     * @param projection 投影
+     * @param path 文件路径
+     */
+    public void save(Projection projection, Path path) {
+        Map<String, Object> model = new LinkedHashMap<>();
+        model.put("model_id", embeddingProvider.getModelId());
+        model.put("source_dimension", projection.getSourceDimension());
+        model.put("dimension", projection.getDimension());
+        model.put("explained_variance", projection.getExplainedVariance());
+        model.put("mean", projection.mean);
+        model.put("components", projection.components);
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.write(path, JSON.toJSONString(model).getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to save PCA model to " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    private Projection load(Path path) {
+        try {
+            JSONObject model = JSON.parseObject(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+            if (!embeddingProvider.getModelId().equals(model.getString("model_id"))) {
+                throw new IllegalStateException("PCA model " + path + " was trained for " + model.getString("model_id")
+                        + ", current embedding model is " + embeddingProvider.getModelId());
+            }
+            float[] mean = toFloatArray(model.getJSONArray("mean"));
+            JSONArray rows = model.getJSONArray("components");
+            float[][] components = new float[rows.size()][];
+            for (int i = 0; i < components.length; i++) {
+                components[i] = toFloatArray(rows.getJSONArray(i));
+            }
+            return new Projection(Mode.PCA, mean.length, components.length, mean, components,
+                    model.getDoubleValue("explained_variance"));
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to load PCA model " + path + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 训练PCA投影
+     * 先计算协方差矩阵，再以子空间迭代求前k个主成分张成的子空间。
+     * 降维后的L2距离只取决于子空间本身，与子空间内基的选取无关，因此不需要再对主成分逐个排序分解。
+     */
+    private Projection trainPca(int sourceDimension, int dimension, List<List<Float>> samples) {
+        if (dimension <= 0 || dimension >= sourceDimension) {
+            throw new IllegalArgumentException("PCA dimension must be between 1 and " + (sourceDimension - 1));
+        }
+        if (samples.size() < 2) {
+            throw new IllegalArgumentException("At least 2 sample vectors are required to train PCA");
+        }
+        List<List<Float>> sampled = samples;
+        if (samples.size() > pcaMaxSamples) {
+            sampled = new ArrayList<>(samples);
+            Collections.shuffle(sampled, new Random(42));
+            sampled = sampled.subList(0, pcaMaxSamples);
+        }
+
+        int d = sourceDimension;
+        double[] mean = new double[d];
+        for (List<Float> vector : sampled) {
+            for (int i = 0; i < d; i++) {
+                mean[i] += vector.get(i);
+            }
+        }
+        for (int i = 0; i < d; i++) {
+            mean[i] /= sampled.size();
+        }
+
+        double[][] covariance = new double[d][d];
+        double[] centered = new double[d];
+        for (List<Float> vector : sampled) {
+            for (int i = 0; i < d; i++) {
+                centered[i] = vector.get(i) - mean[i];
+            }
+            for (int i = 0; i < d; i++) {
+                double xi = centered[i];
+                double[] row = covariance[i];
+                for (int j = i; j < d; j++) {
+                    row[j] += xi * centered[j];
+                }
+            }
+        }
+        double totalVariance = 0;
+        for (int i = 0; i < d; i++) {
+            for (int j = i; j < d; j++) {
+                covariance[i][j] /= sampled.size() - 1;
+                covariance[j][i] = covariance[i][j];
+            }
+            totalVariance += covariance[i][i];
+        }
+
+        // 子空间迭代：Q <- orth(C Q)，直到子空间捕获的方差不再增加
+        Random random = new Random(42);
+        double[][] basis = new double[dimension][d];
+        for (double[] row : basis) {
+            for (int j = 0; j < d; j++) {
+                row[j] = random.nextGaussian();
+            }
+        }
+        orthonormalize(basis);
+        double captured = 0;
+        for (int iteration = 0; iteration < PCA_MAX_ITERATIONS; iteration++) {
+            double[][] next = new double[dimension][];
+            double rayleigh = 0;
+            for (int r = 0; r < dimension; r++) {
+                next[r] = multiply(covariance, basis[r]);
+                rayleigh += dot(basis[r], next[r]);
+            }
+            orthonormalize(next);
+            basis = next;
+            boolean converged = Math.abs(rayleigh - captured) <= PCA_TOLERANCE * Math.max(rayleigh, 1e-12);
+            captured = rayleigh;
+            if (converged) {
+                break;
+            }
+        }
+
+        float[] meanArray = new float[d];
+        for (int i = 0; i < d; i++) {
+            meanArray[i] = (float) mean[i];
+        }
+        float[][] components = new float[dimension][d];
+        for (int r = 0; r < dimension; r++) {
+            for (int j = 0; j < d; j++) {
+                components[r][j] = (float) basis[r][j];
+            }
+        }
+        return new Projection(Mode.PCA, d, dimension, meanArray, components,
+                totalVariance > 0 ? captured / totalVariance : 0);
+    }
+
+    private static double[] multiply(double[][] matrix, double[] vector) {
+        double[] result = new double[matrix.length];
+        for (int i = 0; i < matrix.length; i++) {
+            result[i] = dot(matrix[i], vector);
+        }
+        return result;
+    }
+
+    private static double dot(double[] a, double[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    /**
+     * 修正Gram-Schmidt正交化（就地修改各行）
+     */
+    private static void orthonormalize(double[][] rows) {
+        for (int r = 0; r < rows.length; r++) {
+            double[] row = rows[r];
+            for (int p = 0; p < r; p++) {
+                double projection = dot(rows[p], row);
+                for (int j = 0; j < row.length; j++) {
+                    row[j] -= projection * rows[p][j];
+                }
+            }
+            double norm = Math.sqrt(dot(row, row));
+            if (norm < 1e-12) {
+                // 退化方向（秩不足）以随机方向代替后重新正交化
+                Random random = new Random(r);
+                for (int j = 0; j < row.length; j++) {
+                    row[j] = random.nextGaussian();
+                }
+                r--;
+                continue;
+            }
+            for (int j = 0; j < row.length; j++) {
+                row[j] /= norm;
+            }
+        }
+    }
+
+    private static float[] toFloatArray(JSONArray array) {
+        float[] result = new float[array.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = array.getFloatValue(i);
+        }
+        return result;
+    }
+
+    /**
+     * 降维投影（不可变）
+     */
+    public static final class Projection {
+        private final Mode mode;
+        private final int sourceDimension;
+        private final int dimension;
+        private final float[] mean;
+        private final float[][] components;
+        private final double explainedVariance;
+
+        private Projection(Mode mode, int sourceDimension, int dimension, float[] mean, float[][] components,
+                           double explainedVariance) {
+            this.mode = mode;
+            this.sourceDimension = sourceDimension;
+            this.dimension = dimension;
+            this.mean = mean;
+            this.components = components;
+            this.explainedVariance = explainedVariance;
+        }
+
+        static Projection identity(int sourceDimension) {
+            return new Projection(Mode.NONE, sourceDimension, sourceDimension, null, null, 1.0);
+        }
+
+        static Projection truncate(int sourceDimension, int dimension) {
+            if (dimension <= 0 || dimension >= sourceDimension) {
+                throw new IllegalArgumentException("Truncation dimension must be between 1 and " + (sourceDimension - 1));
+            }
+            return new Projection(Mode.TRUNCATE, sourceDimension, dimension, null, null, Double.NaN);
+        }
+
+        /**
+         * 对向量做投影
+         * @param vector 原始维度向量
+         * @return 降维后的向量
+         */
+        public List<Float> apply(List<Float> vector) {
+            if (mode == Mode.NONE) {
+                return vector;
+            }
+            if (vector.size() != sourceDimension) {
+                throw new IllegalArgumentException("Expected a " + sourceDimension + "-d vector but got " + vector.size());
+            }
+            List<Float> reduced = new ArrayList<>(dimension);
+            if (mode == Mode.TRUNCATE) {
+                double norm = 0;
+                for (int i = 0; i < dimension; i++) {
+                    norm += vector.get(i) * vector.get(i);
+                }
+                double scale = norm > 0 ? 1.0 / Math.sqrt(norm) : 1.0;
+                for (int i = 0; i < dimension; i++) {
+                    reduced.add((float) (vector.get(i) * scale));
+                }
+                return reduced;
+            }
+            float[] centered = new float[sourceDimension];
+            for (int i = 0; i < sourceDimension; i++) {
+                centered[i] = vector.get(i) - mean[i];
+            }
+            for (float[] component : components) {
+                double sum = 0;
+                for (int i = 0; i < sourceDimension; i++) {
+                    sum += component[i] * centered[i];
+                }
+                reduced.add((float) sum);
+            }
+            return reduced;
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public int getSourceDimension() {
+            return sourceDimension;
+        }
+
+        public int getDimension() {
+            return dimension;
+        }
+
+        /**
+         * PCA子空间捕获的方差占比（截断方式为NaN，不降维为1）
+         * @return 方差占比
+         */
+        public double getExplainedVariance() {
+            return explainedVariance;
+        }
+    }
+}
\ No newline at end of file
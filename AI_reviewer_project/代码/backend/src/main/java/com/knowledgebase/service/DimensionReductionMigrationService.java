@@ -0,0 +1,257 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.model.FAQDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * 向量降维迁移服务
+ * 以当前语料重新生成原始维度向量，训练降维投影（PCA或截断），评估降维对召回率的影响，
+ * 并可按降维后的维度构建一个新的Milvus集合。迁移不改变正在服务的集合，
+ * 报告中给出切换所需的配置（集合名、降维方式、维度、PCA模型文件），修改配置重启后生效。
+ * 召回率以原始维度下的精确近邻为真值：exact为降维后精确检索的召回率（只反映降维损失），
+ * ann为新集合HNSW检索的召回率；当前服务未降维时同时给出当前集合的ann召回率作为基线。
+ */
+@Service
+public class DimensionReductionMigrationService {
+
+    private static final int EMBED_BATCH_SIZE = 64;
+
+    private static final long INDEX_BUILD_TIMEOUT_MS = 600_000;
+
+    private static final int[] RECALL_K_VALUES = {1, 3, 5, 10, 20, 50, 100};
+
+    @Autowired
+    private RagService ragService;
+
+    @Autowired
+    private VectorUtils vectorUtils;
+
+    @Autowired
+    private DimensionReducer dimensionReducer;
+
+    @Autowired
+    private FAQDocumentReadModel readModel;
+
+    @Autowired
+    private QueryLogService queryLogService;
+
+    @Value("${vector.reduction.model-dir:./data/reduction}")
+    private String modelDir;
+
+    @Value("${milvus.index.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${milvus.index.hnsw.ef-construction:512}")
+    private int hnswEfConstruction;
+
+    private volatile Map<String, Object> lastReport = Collections.emptyMap();
+
+    /**
+     * 执行降维迁移
+     * @param mode 降维方式（truncate/pca）
+     * @param dimension 目标维度
+     * @param queryCount 查询样本数量
+     * @param topK 评估召回率的最大k
+     * @param buildCollection 是否构建降维后的Milvus集合
+     * @return 迁移报告
+     */
+    public synchronized Map<String, Object> migrate(DimensionReducer.Mode mode, int dimension, int queryCount,
+                                                    int topK, boolean buildCollection) {
+        if (mode == DimensionReducer.Mode.NONE) {
+            throw new IllegalArgumentException("mode must be truncate or pca");
+        }
+        List<FAQDocument> documents = new ArrayList<>();
+        for (FAQDocument document : readModel.findAll()) {
+            if (document.getVectorId() != null) {
+                documents.add(document);
+            }
+        }
+        if (documents.isEmpty()) {
+            throw new IllegalStateException("No indexed documents to migrate");
+        }
+
+        long start = System.currentTimeMillis();
+        List<Long> corpusIds = new ArrayList<>(documents.size());
+        List<String> texts = new ArrayList<>(documents.size());
+        for (FAQDocument document : documents) {
+            corpusIds.add(document.getId());
+            texts.add(document.getQuestion() + " " + document.getAnswer());
+        }
+        List<List<Float>> fullCorpus = embed(texts);
+
+        long trainStart = System.currentTimeMillis();
+        DimensionReducer.Projection projection = dimensionReducer.train(mode, dimension, fullCorpus);
+        long trainMs = System.currentTimeMillis() - trainStart;
+        List<List<Float>> reducedCorpus = new ArrayList<>(fullCorpus.size());
+        for (List<Float> vector : fullCorpus) {
+            reducedCorpus.add(projection.apply(vector));
+        }
+
+        // 查询样本：优先取最近的真实查询，不足时从语料中抽样补齐
+        List<List<Float>> fullQueries = new ArrayList<>();
+        List<String> queryTexts = queryLogService.getRecentQueryTexts(queryCount);
+        if (!queryTexts.isEmpty()) {
+            fullQueries.addAll(embed(queryTexts));
+        }
+        int logged = fullQueries.size();
+        Random random = new Random(42);
+        for (int i = logged; i < queryCount && i - logged < fullCorpus.size(); i++) {
+            fullQueries.add(fullCorpus.get(random.nextInt(fullCorpus.size())));
+        }
+        List<List<Float>> reducedQueries = new ArrayList<>(fullQueries.size());
+        for (List<Float> query : fullQueries) {
+            reducedQueries.add(projection.apply(query));
+        }
+
+        int maxK = Math.min(topK, corpusIds.size());
+        List<List<Long>> truth = exactNeighbors(fullCorpus, corpusIds, fullQueries, maxK);
+        List<List<Long>> reducedExact = exactNeighbors(reducedCorpus, corpusIds, reducedQueries, maxK);
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("mode", mode.name().toLowerCase(Locale.ROOT));
+        report.put("source_dimension", projection.getSourceDimension());
+        report.put("dimension", projection.getDimension());
+        if (mode == DimensionReducer.Mode.PCA) {
+            report.put("explained_variance", projection.getExplainedVariance());
+        } else if (!dimensionReducer.isTruncationSupported()) {
+            report.put("warning", "当前向量模型不是Matryoshka方式训练的，截断后召回率可能明显下降");
+        }
+        report.put("corpus_size", corpusIds.size());
+        report.put("queries", fullQueries.size());
+        report.put("query_source", logged + " logged, " + (fullQueries.size() - logged) + " sampled");
+        report.put("bytes_per_vector", projection.getSourceDimension() * 4);
+        report.put("reduced_bytes_per_vector", projection.getDimension() * 4);
+        report.put("vector_memory_ratio", (double) projection.getDimension() / projection.getSourceDimension());
+        report.put("train_ms", trainMs);
+        report.put("exact_recall", recallByK(reducedExact, truth, maxK));
+
+        if (dimensionReducer.getProjection().getMode() == DimensionReducer.Mode.NONE
+                && ragService.isSingleCollection()) {
+            report.put("baseline_ann_recall", annRecall(ragService.getCollectionName(), fullQueries, truth, maxK));
+        }
+
+        String target = ragService.getCollectionName() + "_" + mode.name().toLowerCase(Locale.ROOT) + dimension;
+        Map<String, Object> applyConfig = new LinkedHashMap<>();
+        if (buildCollection) {
+            if (!ragService.isSingleCollection()) {
+                throw new IllegalStateException("Building a reduced collection requires a single, non-sharded Milvus collection");
+            }
+            buildCollection(target, projection.getDimension(), corpusIds, reducedCorpus);
+            report.put("collection", target);
+            report.put("ann_recall", annRecall(target, reducedQueries, truth, maxK));
+            applyConfig.put("milvus.collection.name", target);
+        }
+        applyConfig.put("vector.reduction.mode", mode.name().toLowerCase(Locale.ROOT));
+        applyConfig.put("vector.reduction.dimension", projection.getDimension());
+        if (mode == DimensionReducer.Mode.PCA) {
+            Path modelFile = Paths.get(modelDir, target + ".json");
+            dimensionReducer.save(projection, modelFile);
+            report.put("model_file", modelFile.toString());
+            applyConfig.put("vector.reduction.model-file", modelFile.toString());
+        }
+        report.put("apply_config", applyConfig);
+        report.put("elapsed_ms", System.currentTimeMillis() - start);
+        report.put("finished_at", new Date());
+        lastReport = report;
+        return report;
+    }
+
+    /**
+     * 获取最近一次迁移报告
+     * @return 迁移报告
+     */
+    public Map<String, Object> getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * 获取当前生效的降维配置
+     * @return 降维方式与维度
+     */
+    public Map<String, Object> getCurrent() {
+        DimensionReducer.Projection projection = dimensionReducer.getProjection();
+        Map<String, Object> current = new LinkedHashMap<>();
+        current.put("mode", projection.getMode().name().toLowerCase(Locale.ROOT));
+        current.put("source_dimension", projection.getSourceDimension());
+        current.put("dimension", projection.getDimension());
+        if (projection.getMode() == DimensionReducer.Mode.PCA) {
+            current.put("explained_variance", projection.getExplainedVariance());
+        }
+        current.put("collection", ragService.getCollectionName());
+        return current;
+    }
+
+    private List<List<Float>> embed(List<String> texts) {
+        List<List<Float>> vectors = new ArrayList<>(texts.size());
+        for (int from = 0; from < texts.size(); from += EMBED_BATCH_SIZE) {
+            vectors.addAll(vectorUtils.generateFullVectors(texts.subList(from, Math.min(from + EMBED_BATCH_SIZE, texts.size()))));
+        }
+        return vectors;
+    }
+
+    private void buildCollection(String name, int dimension, List<Long> ids, List<List<Float>> vectors) {
+        try {
+            ragService.dropCollection(name);
+        } catch (Exception e) {
+            // 集合不存在
+        }
+        ragService.createCollection(name, dimension);
+        ragService.insertVectors(name, ids, vectors);
+        ragService.createIndex(name, hnswM, hnswEfConstruction);
+        ragService.flushAndWaitForIndex(name, INDEX_BUILD_TIMEOUT_MS);
+        ragService.loadCollection(name);
+    }
+
+    private Map<String, Object> annRecall(String collection, List<List<Float>> queries, List<List<Long>> truth, int maxK) {
+        List<List<Long>> found = new ArrayList<>(queries.size());
+        for (List<Float> query : queries) {
+            found.add(ragService.searchCollection(collection, Collections.singletonList(query), maxK,
+                    ragService.getSearchEf()).get(0));
+        }
+        return recallByK(found, truth, maxK);
+    }
+
+    private static List<List<Long>> exactNeighbors(List<List<Float>> corpus, List<Long> ids,
+                                                   List<List<Float>> queries, int k) {
+        float[][] corpusArray = new float[corpus.size()][];
+        for (int i = 0; i < corpusArray.length; i++) {
+            corpusArray[i] = HnswTuningService.toArray(corpus.get(i));
+        }
+        List<List<Long>> neighbors = new ArrayList<>(queries.size());
+        for (List<Float> query : queries) {
+            neighbors.add(HnswTuningService.exactNeighbors(corpusArray, ids, HnswTuningService.toArray(query), k));
+        }
+        return neighbors;
+    }
+
+    /**
+     * 按k计算平均召回率：结果前k个中属于真值前k个的比例
+     */
+    private static Map<String, Object> recallByK(List<List<Long>> found, List<List<Long>> truth, int maxK) {
+        Map<String, Object> recalls = new LinkedHashMap<>();
+        Set<Integer> kValues = new TreeSet<>();
+        for (int k : RECALL_K_VALUES) {
+            if (k <= maxK) {
+                kValues.add(k);
+            }
+        }
+        kValues.add(maxK);
+        for (int k : kValues) {
+            double sum = 0;
+            for (int i = 0; i < truth.size(); i++) {
+                List<Long> expected = truth.get(i).subList(0, Math.min(k, truth.get(i).size()));
+                Set<Long> expectedSet = new HashSet<>(expected);
+                long hits = found.get(i).stream().limit(k).filter(expectedSet::contains).count();
+                sum += expected.isEmpty() ? 1.0 : (double) hits / expected.size();
+            }
+            recalls.put("recall@" + k, truth.isEmpty() ? null : sum / truth.size());
+        }
+        return recalls;
+    }
+}
\ No newline at end of file
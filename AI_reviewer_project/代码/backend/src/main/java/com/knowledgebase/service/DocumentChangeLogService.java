@@ -0,0 +1,290 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.event.DocumentBatchChangedEvent;
+import com.knowledgebase.event.DocumentChangedEvent;
+import com.knowledgebase.model.DocumentChangeLog;
+import com.knowledgebase.model.FAQDocument;
+import com.knowledgebase.repository.DocumentChangeLogRepository;
+import com.knowledgebase.repository.FAQDocumentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import java.net.InetAddress;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 跨节点缓存失效服务
+ * 本节点的每次文档变更与文档修改在同一事务内写入document_change_log，事务回滚时不会留下变更记录，
+ * 提交后也不会因进程退出而丢失；各节点定时按id递增拉取其他节点的变更，
+ * 从数据库重新读取文档后以remote事件重新发布，由读模型、语义缓存等本地缓存按原有逻辑刷新。
+ * 自增id可能乱序提交，拉取时发现的id空洞（不论跨度多大）会在gap-timeout内反复补拉，避免漏掉提交较晚的变更；
+ * 空洞超时仍未出现（回滚或超长事务，无法区分），或空洞数超过max-tracked-gaps无法逐个跟踪时，
+ * 改为从数据库全量重新发布一次所有文档，保证本地缓存不会永久漏掉变更。
+ * 要求数据库自增步长为1，否则每个跳号都会被当作空洞。
+ * 只依赖数据库，不需要消息中间件，最大滞后约为一个拉取周期。
+ */
+@Service
+public class DocumentChangeLogService {
+
+    @Autowired
+    private DocumentChangeLogRepository documentChangeLogRepository;
+
+    @Autowired
+    private FAQDocumentRepository faqDocumentRepository;
+
+    @Autowired
+    private FAQDocumentReadModel readModel;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${change-log.enabled:true}")
+    private boolean enabled;
+
+    @Value("${change-log.node-id:}")
+    private String nodeId;
+
+    @Value("${change-log.batch-size:500}")
+    private int batchSize;
+
+    @Value("${change-log.gap-timeout-ms:10000}")
+    private long gapTimeoutMs;
+
+    @Value("${change-log.max-tracked-gaps:10000}")
+    private int maxTrackedGaps;
+
+    @Value("${change-log.retention-hours:24}")
+    private long retentionHours;
+
+    private long lastSeenId;
+
+    /**
+     * 尚未出现的空洞id -> 首次发现时间
+     */
+    private final Map<Long, Long> gaps = new HashMap<>();
+
+    /**
+     * 超出跟踪上限而未记录的空洞的首次发现时间，0表示没有
+     */
+    private long untrackedGapsSince;
+
+    private long replayed;
+
+    private long fullResyncs;
+
+    private long lastPollAt;
+
+    /**
+     * 确定节点标识，并从读模型全量加载前记录的变更日志位置开始拉取
+     */
+    @PostConstruct
+    public void init() {
+        if (nodeId == null || nodeId.isEmpty()) {
+            String host;
+            try {
+                host = InetAddress.getLocalHost().getHostName();
+            } catch (Exception e) {
+                host = "node";
+            }
+            nodeId = host + "-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        if (enabled) {
+            lastSeenId = readModel.getLoadedChangeLogId();
+        }
+    }
+
+    /**
+     * 记录本节点产生的文档变更，必须在修改文档的事务内调用，随文档修改一起提交或回滚
+     * @param event 文档变更事件
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(DocumentChangedEvent event) {
+        recordAll(Collections.singletonList(event));
+    }
+
+    /**
+     * 批量记录本节点产生的文档变更，必须在修改文档的事务内调用，回放的远程事件不再重复记录
+     * @param events 文档变更事件列表
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(List<DocumentChangedEvent> events) {
+        if (!enabled) {
+            return;
+        }
+        Date now = new Date();
+        List<DocumentChangeLog> logs = new ArrayList<>(events.size());
+        for (DocumentChangedEvent event : events) {
+            if (!event.isRemote()) {
+                logs.add(toLog(event, now));
+            }
+        }
+        documentChangeLogRepository.saveAll(logs);
+    }
+
+    private DocumentChangeLog toLog(DocumentChangedEvent event, Date createdAt) {
+        DocumentChangeLog log = new DocumentChangeLog();
+        log.setDocumentId(event.getDocumentId());
+        log.setChangeType(event.getChangeType().name());
+        log.setVersion(event.getDocument() != null ? event.getDocument().getVersion() : null);
+        log.setOriginNode(nodeId);
+        log.setCreatedAt(createdAt);
+        return log;
+    }
+
+    /**
+     * 定时拉取其他节点的变更并失效本地缓存
+     */
+    @Scheduled(fixedDelayString = "${change-log.poll-interval-ms:1000}")
+    public void scheduledPoll() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            poll();
+        } catch (Exception e) {
+            System.err.println("Failed to poll document change log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 拉取一轮变更
+     * @return 回放的变更数
+     */
+    public synchronized int poll() {
+        List<DocumentChangeLog> changes = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        // 补拉之前发现的空洞；超时仍未出现的可能是回滚，也可能是尚未提交的长事务，只能全量刷新兜底
+        boolean resync = false;
+        if (untrackedGapsSince > 0 && now - untrackedGapsSince > gapTimeoutMs) {
+            untrackedGapsSince = 0;
+            resync = true;
+        }
+        if (!gaps.isEmpty()) {
+            resync |= gaps.values().removeIf(firstSeen -> now - firstSeen > gapTimeoutMs);
+            if (!gaps.isEmpty()) {
+                for (DocumentChangeLog change : documentChangeLogRepository.findByIdIn(new ArrayList<>(gaps.keySet()))) {
+                    gaps.remove(change.getId());
+                    changes.add(change);
+                }
+            }
+        }
+
+        List<DocumentChangeLog> batch;
+        do {
+            batch = documentChangeLogRepository.findByIdGreaterThanOrderByIdAsc(lastSeenId, PageRequest.of(0, batchSize));
+            for (DocumentChangeLog change : batch) {
+                long gapSize = change.getId() - lastSeenId - 1;
+                if (gapSize > maxTrackedGaps - gaps.size()) {
+                    // 超出跟踪上限，等超时后全量刷新，届时这些事务已提交或已回滚
+                    if (untrackedGapsSince == 0) {
+                        untrackedGapsSince = now;
+                    }
+                } else {
+                    for (long missing = lastSeenId + 1; missing < change.getId(); missing++) {
+                        gaps.put(missing, now);
+                    }
+                }
+                lastSeenId = change.getId();
+                changes.add(change);
+            }
+        } while (batch.size() == batchSize);
+
+        if (resync) {
+            // 全量刷新已覆盖本轮拉取到的变更
+            int applied = resyncAll();
+            replayed += applied;
+            lastPollAt = now;
+            return applied;
+        }
+
+        int applied = 0;
+        Set<Long> reloaded = new HashSet<>();
+        for (DocumentChangeLog change : changes) {
+            // 同一轮中同一文档只需按数据库当前状态刷新一次
+            if (nodeId.equals(change.getOriginNode()) || !reloaded.add(change.getDocumentId())) {
+                continue;
+            }
+            replay(change);
+            applied++;
+        }
+        replayed += applied;
+        lastPollAt = now;
+        return applied;
+    }
+
+    /**
+     * 定时清理超过保留期的变更日志
+     */
+    @Scheduled(cron = "${change-log.cleanup-cron:0 15 * * * *}")
+    public void cleanup() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            documentChangeLogRepository.deleteByCreatedAtBefore(
+                    new Date(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(retentionHours)));
+        } catch (Exception e) {
+            System.err.println("Failed to clean up document change log: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 获取同步状态
+     * @return 节点标识、已处理位置、空洞数、回放数、全量刷新次数
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("node_id", nodeId);
+        stats.put("last_seen_id", lastSeenId);
+        stats.put("pending_gaps", gaps.size());
+        stats.put("untracked_gaps", untrackedGapsSince > 0);
+        stats.put("replayed", replayed);
+        stats.put("full_resyncs", fullResyncs);
+        stats.put("last_poll_at", lastPollAt > 0 ? new Date(lastPollAt) : null);
+        return stats;
+    }
+
+    /**
+     * 按数据库当前状态以一次批量remote事件重新发布所有文档，读模型中已不存在于数据库的文档按删除发布
+     * @return 发布的变更数
+     */
+    private int resyncAll() {
+        List<FAQDocument> documents = faqDocumentRepository.findAll();
+        List<DocumentChangedEvent> changes = new ArrayList<>(documents.size());
+        Set<Long> present = new HashSet<>();
+        for (FAQDocument document : documents) {
+            present.add(document.getId());
+            changes.add(DocumentChangedEvent.remote(DocumentChangedEvent.ChangeType.UPDATED, document.getId(), document));
+        }
+        for (FAQDocument cached : readModel.findAll()) {
+            if (!present.contains(cached.getId())) {
+                changes.add(DocumentChangedEvent.remote(DocumentChangedEvent.ChangeType.DELETED, cached.getId(), null));
+            }
+        }
+        eventPublisher.publishEvent(new DocumentBatchChangedEvent(changes));
+        fullResyncs++;
+        return changes.size();
+    }
+
+    private void replay(DocumentChangeLog change) {
+        Optional<FAQDocument> document = faqDocumentRepository.findById(change.getDocumentId());
+        if (document.isPresent()) {
+            DocumentChangedEvent.ChangeType type = DocumentChangedEvent.ChangeType.CREATED.name().equals(change.getChangeType())
+                    ? DocumentChangedEvent.ChangeType.CREATED : DocumentChangedEvent.ChangeType.UPDATED;
+            eventPublisher.publishEvent(DocumentChangedEvent.remote(type, change.getDocumentId(), document.get()));
+        } else {
+            eventPublisher.publishEvent(DocumentChangedEvent.remote(
+                    DocumentChangedEvent.ChangeType.DELETED, change.getDocumentId(), null));
+        }
+    }
+}
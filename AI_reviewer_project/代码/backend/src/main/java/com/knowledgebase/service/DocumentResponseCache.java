@@ -0,0 +1,138 @@
+package com.knowledgebase.service;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.knowledgebase.model.FAQDocument;
+import com.knowledgebase.model.FAQDocumentSummary;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 文档列表类接口的响应缓存
+ * 以读模型的语料版本号为ETag，缓存已序列化的JSON字节：语料未变化时重复请求直接返回缓存的字节，
+ * 客户端带If-None-Match且ETag一致时返回304，不写响应体。
+ * ETag中带有进程随机前缀，不同节点或重启后的版本号即使相同也不会被误判为未变化。
+ * 响应体用Spring MVC同一个ObjectMapper序列化，与未缓存的接口输出一致（包括日期格式和时区）。
+ * 访问和反馈计数不推进语料版本，缓存的响应体不输出这些计数，避免以未变化的ETag返回过期的计数；
+ * 实时计数通过文档详情和分页接口获取。
+ */
+@Component
+public class DocumentResponseCache {
+
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+
+    @Autowired
+    private FAQDocumentReadModel faqDocumentReadModel;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ObjectMapper cachedBodyMapper;
+
+    @Value("${document.response-cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${document.response-cache.max-entries:256}")
+    private int maxEntries;
+
+    private final Map<String, CachedResponse> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        cachedBodyMapper = objectMapper.copy()
+                .addMixIn(FAQDocument.class, WithoutCounters.class)
+                .addMixIn(FAQDocumentSummary.class, WithoutCounters.class);
+    }
+
+    /**
+     * 获取缓存的响应，语料版本变化后重新序列化
+     * @param key 缓存键（如 all、categories、category:分类名）
+     * @param body 生成响应对象
+     * @return 已序列化的响应
+     */
+    public CachedResponse get(String key, Supplier<Object> body) {
+        // 先读版本号再读快照：期间若有变更，缓存的是较新的内容配较旧的版本号，下次请求会重新生成，不会把旧内容标成新版本
+        long version = faqDocumentReadModel.getVersion();
+        CachedResponse cached = entries.get(key);
+        if (enabled && cached != null && cached.version == version) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        misses.incrementAndGet();
+        CachedResponse response = new CachedResponse(version, "\"" + epoch + "-" + version + "\"", serialize(body.get()));
+        if (enabled) {
+            if (entries.size() >= maxEntries && !entries.containsKey(key)) {
+                entries.clear();
+            }
+            entries.put(key, response);
+        }
+        return response;
+    }
+
+    /**
+     * 获取缓存统计
+     * @return 统计数据
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("corpus_version", faqDocumentReadModel.getVersion());
+        stats.put("entries", entries.size());
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        return stats;
+    }
+
+    private byte[] serialize(Object body) {
+        try {
+            return cachedBodyMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize cached response: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 序列化缓存响应时忽略访问和反馈计数
+     */
+    @JsonIgnoreProperties({"lastAccessed", "accessCount", "feedbackPositive", "feedbackNegative"})
+    private abstract static class WithoutCounters {
+    }
+
+    /**
+     * 已序列化的响应
+     */
+    public static final class CachedResponse {
+        private final long version;
+        private final String etag;
+        private final byte[] body;
+
+        CachedResponse(long version, String etag, byte[] body) {
+            this.version = version;
+            this.etag = etag;
+            this.body = body;
+        }
+
+        public String getETag() {
+            return etag;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
\ No newline at end of file
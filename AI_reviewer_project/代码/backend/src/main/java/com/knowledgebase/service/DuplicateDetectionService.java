@@ -0,0 +1,460 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.event.DocumentBatchChangedEvent;
+import com.knowledgebase.event.DocumentChangedEvent;
+import com.knowledgebase.model.FAQDocument;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 近重复FAQ检测服务
+ * 基于问题+答案的字符shingle计算MinHash签名，并用LSH分桶索引查找候选重复文档。
+ * 入库时用于拦截近重复文档，离线报告用于在全表范围内以亚二次复杂度找出重复簇。
+ * 入库方在文档各band桶对应的分段锁内完成检测和写库，并在释放前登记到索引：
+ * 近重复文档至少落入一个相同的桶，并发入库时后者一定能看到前者（仅限本节点内的并发）。
+ */
+@Service
+public class DuplicateDetectionService {
+
+    /**
+     * 检测到重复时的处理方式
+     */
+    public enum Mode {
+        /** 不检测 */
+        OFF,
+        /** 保存为duplicate状态，不写入向量库 */
+        FLAG,
+        /** 不新建文档，将关键词合并到已有文档 */
+        MERGE
+    }
+
+    public static final String STATUS_DUPLICATE = "duplicate";
+
+    private static final int BUCKET_LOCK_STRIPES = 1024;
+
+    @Autowired
+    private FAQDocumentReadModel faqDocumentReadModel;
+
+    @Value("${dedup.mode:flag}")
+    private String mode;
+
+    @Value("${dedup.threshold:0.8}")
+    private double threshold;
+
+    @Value("${dedup.shingle-size:3}")
+    private int shingleSize;
+
+    @Value("${dedup.bands:16}")
+    private int bands;
+
+    @Value("${dedup.rows-per-band:8}")
+    private int rowsPerBand;
+
+    @Value("${dedup.report.max-bucket-comparisons:50}")
+    private int maxBucketComparisons;
+
+    private long[] seeds;
+
+    private LshIndex index;
+
+    private final ReentrantLock[] bucketLocks = new ReentrantLock[BUCKET_LOCK_STRIPES];
+
+    /**
+     * 初始化哈希种子并为现有文档建立LSH索引
+     */
+    @PostConstruct
+    public void init() {
+        Random random = new Random(0x5EEDL);
+        seeds = new long[bands * rowsPerBand];
+        for (int i = 0; i < seeds.length; i++) {
+            seeds[i] = random.nextLong();
+        }
+        for (int i = 0; i < bucketLocks.length; i++) {
+            bucketLocks[i] = new ReentrantLock();
+        }
+        index = buildIndex(faqDocumentReadModel.findAll());
+    }
+
+    public Mode getMode() {
+        return Mode.valueOf(mode.toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * 查找与给定文档近重复的已有文档
+     * @param document 待入库文档
+     * @return 相似度最高且超过阈值的匹配
+     */
+    public synchronized Optional<DuplicateMatch> findDuplicate(FAQDocument document) {
+        long[] signature = signature(document);
+        DuplicateMatch best = null;
+        for (Long candidateId : index.candidates(signature)) {
+            if (candidateId.equals(document.getId())) {
+                continue;
+            }
+            double similarity = estimateJaccard(signature, index.signatures.get(candidateId));
+            if (similarity >= threshold && (best == null || similarity > best.getSimilarity())) {
+                best = new DuplicateMatch(candidateId, similarity);
+            }
+        }
+        return Optional.ofNullable(best);
+    }
+
+    /**
+     * 持有文档所在LSH桶的锁执行检测和入库
+     * 锁按编号升序获取，同时锁定多篇文档（批量入库）时也不会死锁
+     * @param documents 待入库文档
+     * @param action 检测并写库的操作，写库成功后应调用{@link #register}
+     * @return 操作结果
+     */
+    public <T> T withBucketLocks(Collection<FAQDocument> documents, Supplier<T> action) {
+        if (getMode() == Mode.OFF) {
+            return action.get();
+        }
+        SortedSet<Integer> stripes = new TreeSet<>();
+        for (FAQDocument document : documents) {
+            long[] signature = signature(document);
+            for (int b = 0; b < bands; b++) {
+                stripes.add(Math.floorMod(index.bandKey(signature, b), BUCKET_LOCK_STRIPES));
+            }
+        }
+        List<ReentrantLock> locked = new ArrayList<>(stripes.size());
+        try {
+            for (int stripe : stripes) {
+                bucketLocks[stripe].lock();
+                locked.add(bucketLocks[stripe]);
+            }
+            return action.get();
+        } finally {
+            for (int i = locked.size() - 1; i >= 0; i--) {
+                locked.get(i).unlock();
+            }
+        }
+    }
+
+    /**
+     * 将刚写库的文档登记到LSH索引，不等待文档变更事件（事件到达时重复登记结果不变）
+     * @param document 已保存的文档
+     */
+    public synchronized void register(FAQDocument document) {
+        index.remove(document.getId());
+        index.add(document.getId(), signature(document));
+    }
+
+    /**
+     * 创建同批次待入库文档的检测上下文
+     * 批量导入时新文档在整段写入后才通过事件进入LSH索引，同一段内的近重复由该上下文逐对比较
+     * @return 批次检测上下文
+     */
+    public PendingBatch newPendingBatch() {
+        return new PendingBatch();
+    }
+
+    /**
+     * 文档变更时同步维护LSH索引
+     * @param event 文档变更事件
+     */
+    @EventListener
+    public synchronized void onDocumentChanged(DocumentChangedEvent event) {
+        index.remove(event.getDocumentId());
+        if (event.getChangeType() != DocumentChangedEvent.ChangeType.DELETED) {
+            index.add(event.getDocumentId(), signature(event.getDocument()));
+        }
+    }
+
+    /**
+     * 批量变更时同步维护LSH索引
+     * @param event 批量变更事件
+     */
+    @EventListener
+    public synchronized void onDocumentsChanged(DocumentBatchChangedEvent event) {
+        for (DocumentChangedEvent change : event.getChanges()) {
+            onDocumentChanged(change);
+        }
+    }
+
+    /**
+     * 生成全表重复簇报告
+     * 只比较落入同一LSH桶的候选对，且每个桶内每篇文档最多与若干篇先到文档比较，整体复杂度低于O(n^2)
+     * @return 重复簇报告
+     */
+    public Map<String, Object> findDuplicateClusters() {
+        List<FAQDocument> documents = faqDocumentReadModel.findAll();
+        LshIndex reportIndex = buildIndex(documents);
+
+        Map<Long, Long> parent = new HashMap<>();
+        Map<Long, Double> bestSimilarity = new HashMap<>();
+        long comparisons = 0;
+        for (Map<Long, List<Long>> band : reportIndex.buckets) {
+            for (List<Long> bucket : band.values()) {
+                for (int i = 1; i < bucket.size(); i++) {
+                    Long current = bucket.get(i);
+                    for (int j = Math.max(0, i - maxBucketComparisons); j < i; j++) {
+                        Long other = bucket.get(j);
+                        comparisons++;
+                        double similarity = estimateJaccard(reportIndex.signatures.get(current),
+                                reportIndex.signatures.get(other));
+                        if (similarity >= threshold) {
+                            union(parent, current, other);
+                            bestSimilarity.merge(current, similarity, Math::max);
+                            bestSimilarity.merge(other, similarity, Math::max);
+                        }
+                    }
+                }
+            }
+        }
+
+        Map<Long, List<Long>> clusters = new TreeMap<>();
+        for (Long documentId : parent.keySet()) {
+            clusters.computeIfAbsent(find(parent, documentId), k -> new ArrayList<>()).add(documentId);
+        }
+
+        List<Map<String, Object>> clusterList = new ArrayList<>();
+        for (List<Long> members : clusters.values()) {
+            if (members.size() < 2) {
+                continue;
+            }
+            Collections.sort(members);
+            List<Map<String, Object>> memberList = new ArrayList<>();
+            for (Long memberId : members) {
+                Map<String, Object> member = new LinkedHashMap<>();
+                member.put("id", memberId);
+                faqDocumentReadModel.findById(memberId).ifPresent(doc -> {
+                    member.put("question", doc.getQuestion());
+                    member.put("category", doc.getCategory());
+                    member.put("status", doc.getStatus());
+                });
+                member.put("max_similarity", bestSimilarity.get(memberId));
+                memberList.add(member);
+            }
+            Map<String, Object> cluster = new LinkedHashMap<>();
+            cluster.put("size", members.size());
+            cluster.put("documents", memberList);
+            clusterList.add(cluster);
+        }
+        clusterList.sort((a, b) -> Integer.compare((Integer) b.get("size"), (Integer) a.get("size")));
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("total_documents", documents.size());
+        report.put("threshold", threshold);
+        report.put("comparisons", comparisons);
+        report.put("cluster_count", clusterList.size());
+        report.put("clusters", clusterList);
+        return report;
+    }
+
+    private LshIndex buildIndex(List<FAQDocument> documents) {
+        LshIndex lshIndex = new LshIndex();
+        for (FAQDocument document : documents) {
+            lshIndex.add(document.getId(), signature(document));
+        }
+        return lshIndex;
+    }
+
+    /**
+     * 计算文档的MinHash签名
+     */
+    private long[] signature(FAQDocument document) {
+        Set<Long> shingles = shingles(document.getQuestion() + " " + document.getAnswer());
+        long[] signature = new long[seeds.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        for (long shingle : shingles) {
+            for (int i = 0; i < seeds.length; i++) {
+                long hash = mix(shingle ^ seeds[i]);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * 归一化文本（小写、去除空白和标点）后切分为字符shingle并哈希
+     */
+    private Set<Long> shingles(String text) {
+        StringBuilder normalized = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                normalized.append(Character.toLowerCase(c));
+            }
+        }
+        Set<Long> shingles = new HashSet<>();
+        if (normalized.length() <= shingleSize) {
+            shingles.add(fnv1a(normalized, 0, normalized.length()));
+            return shingles;
+        }
+        for (int i = 0; i + shingleSize <= normalized.length(); i++) {
+            shingles.add(fnv1a(normalized, i, i + shingleSize));
+        }
+        return shingles;
+    }
+
+    private static double estimateJaccard(long[] a, long[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    private static long fnv1a(CharSequence text, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash ^= text.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * SplitMix64混淆函数，用于由单个shingle哈希派生多组独立哈希
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static Long find(Map<Long, Long> parent, Long id) {
+        Long root = id;
+        while (!parent.getOrDefault(root, root).equals(root)) {
+            root = parent.get(root);
+        }
+        parent.putIfAbsent(id, id);
+        // 路径压缩
+        Long current = id;
+        while (!current.equals(root)) {
+            Long next = parent.get(current);
+            parent.put(current, root);
+            current = next;
+        }
+        return root;
+    }
+
+    private static void union(Map<Long, Long> parent, Long a, Long b) {
+        Long rootA = find(parent, a);
+        Long rootB = find(parent, b);
+        if (!rootA.equals(rootB)) {
+            parent.put(Math.max(rootA, rootB), Math.min(rootA, rootB));
+        }
+    }
+
+    /**
+     * 同批次待入库文档的检测上下文（单线程使用）
+     */
+    public class PendingBatch {
+
+        private final List<FAQDocument> documents = new ArrayList<>();
+
+        private final List<long[]> signatures = new ArrayList<>();
+
+        /**
+         * 在同批次已登记的文档中查找近重复
+         * @param document 待入库文档
+         * @return 相似度最高且超过阈值的同批次文档
+         */
+        public Optional<FAQDocument> findDuplicate(FAQDocument document) {
+            long[] signature = signature(document);
+            FAQDocument best = null;
+            double bestSimilarity = 0;
+            for (int i = 0; i < documents.size(); i++) {
+                double similarity = estimateJaccard(signature, signatures.get(i));
+                if (similarity >= threshold && similarity > bestSimilarity) {
+                    best = documents.get(i);
+                    bestSimilarity = similarity;
+                }
+            }
+            return Optional.ofNullable(best);
+        }
+
+        /**
+         * 登记将要入库的文档
+         * @param document 待入库文档
+         */
+        public void add(FAQDocument document) {
+            documents.add(document);
+            signatures.add(signature(document));
+        }
+    }
+
+    /**
+     * 近重复匹配结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class DuplicateMatch {
+        private final Long documentId;
+        private final double similarity;
+    }
+
+    /**
+     * LSH索引：签名按band切分，每个band的哈希值作为桶键
+     */
+    private class LshIndex {
+
+        final Map<Long, long[]> signatures = new HashMap<>();
+
+        final List<Map<Long, List<Long>>> buckets = new ArrayList<>();
+
+        LshIndex() {
+            for (int b = 0; b < bands; b++) {
+                buckets.add(new HashMap<>());
+            }
+        }
+
+        void add(Long documentId, long[] signature) {
+            signatures.put(documentId, signature);
+            for (int b = 0; b < bands; b++) {
+                buckets.get(b).computeIfAbsent(bandKey(signature, b), k -> new ArrayList<>()).add(documentId);
+            }
+        }
+
+        void remove(Long documentId) {
+            long[] signature = signatures.remove(documentId);
+            if (signature == null) {
+                return;
+            }
+            for (int b = 0; b < bands; b++) {
+                long key = bandKey(signature, b);
+                List<Long> bucket = buckets.get(b).get(key);
+                if (bucket != null) {
+                    bucket.remove(documentId);
+                    if (bucket.isEmpty()) {
+                        buckets.get(b).remove(key);
+                    }
+                }
+            }
+        }
+
+        Set<Long> candidates(long[] signature) {
+            Set<Long> candidates = new HashSet<>();
+            for (int b = 0; b < bands; b++) {
+                List<Long> bucket = buckets.get(b).get(bandKey(signature, b));
+                if (bucket != null) {
+                    candidates.addAll(bucket);
+                }
+            }
+            return candidates;
+        }
+
+        long bandKey(long[] signature, int band) {
+            long key = band;
+            for (int r = band * rowsPerBand; r < (band + 1) * rowsPerBand; r++) {
+                key = mix(key * 31 + signature[r]);
+            }
+            return key;
+        }
+    }
+}
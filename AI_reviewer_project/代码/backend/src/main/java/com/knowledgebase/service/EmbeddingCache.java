@@ -0,0 +1,470 @@
+package com.knowledgebase.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 向量缓存
+ * 以 模型ID + 维度 + 文本 的SHA-256为键缓存模型原始维度的向量（降维之前），文档重复保存、重新导入、
+ * 重建索引以及重复的查询文本都不再调用模型。
+ * 内存层按最近使用淘汰；磁盘层为本地追加写文件，启动时扫描建立键到文件偏移的索引。
+ * 只有文档向量写入磁盘层，查询文本的向量只进内存层，大量不重复的查询不会占满文件。
+ * 磁盘写入和重写都在后台线程执行：文件超过上限时按最近使用保留一半条目写入新文件，
+ * 完成后短暂加写锁替换文件和索引，重写期间读取照常进行。
+ * 文件格式：
+ * <pre>
+ * magic(int) version(int) { key(32字节) dimension(int) float[dimension] }...
+ * </pre>
+ * 末尾不完整的记录（写入时进程退出）在启动时截掉。键中包含模型ID和维度，更换模型后旧条目不会命中，随淘汰自然移出。
+ */
+@Component
+public class EmbeddingCache {
+
+    private static final int MAGIC = 0x454D4243;
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int KEY_BYTES = 32;
+
+    @Value("${embedding.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${embedding.cache.memory.max-entries:10000}")
+    private int memoryMaxEntries;
+
+    @Value("${embedding.cache.disk.enabled:true}")
+    private boolean diskEnabled;
+
+    @Value("${embedding.cache.disk.file:./data/embedding-cache/embeddings.bin}")
+    private String diskFile;
+
+    @Value("${embedding.cache.disk.max-bytes:536870912}")
+    private long diskMaxBytes;
+
+    @Value("${embedding.cache.disk.write-queue-capacity:10000}")
+    private int writeQueueCapacity;
+
+    @Autowired
+    private EmbeddingProvider embeddingProvider;
+
+    /**
+     * 内存层：键 -> 向量（访问顺序，超出容量淘汰最久未使用）
+     */
+    private final Map<Key, float[]> memory = new LinkedHashMap<Key, float[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, float[]> eldest) {
+            return size() > memoryMaxEntries;
+        }
+    };
+
+    /**
+     * 读锁：读取磁盘层；写锁：替换或关闭文件（持有时间只有重命名和重新打开文件）
+     */
+    private final ReadWriteLock diskLock = new ReentrantReadWriteLock();
+
+    /**
+     * 磁盘层索引：键 -> 记录位置与最近访问序号，重写时替换为新索引
+     */
+    private volatile Map<Key, DiskEntry> diskIndex = new ConcurrentHashMap<>();
+
+    private volatile FileChannel channel;
+
+    /**
+     * 磁盘写入线程：追加记录和重写文件都只在此线程执行
+     */
+    private ThreadPoolExecutor writer;
+
+    private final AtomicLong accessSequence = new AtomicLong();
+
+    private final AtomicLong memoryHits = new AtomicLong();
+    private final AtomicLong diskHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong droppedWrites = new AtomicLong();
+    private final AtomicLong compactions = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (enabled && diskEnabled) {
+            try {
+                openDisk();
+            } catch (IOException e) {
+                System.err.println("Failed to open embedding cache file " + diskFile + ", disk tier disabled: " + e.getMessage());
+                closeDisk();
+            }
+            writer = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(writeQueueCapacity),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "embedding-cache-writer");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (writer != null) {
+            writer.shutdown();
+            try {
+                writer.awaitTermination(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        closeDisk();
+    }
+
+    /**
+     * 查找缓存的向量（先查内存层，再查磁盘层，磁盘命中时放入内存层）
+     * @param text 输入文本
+     * @return 向量，未命中返回null
+     */
+    public List<Float> get(String text) {
+        if (!enabled) {
+            return null;
+        }
+        Key key = keyOf(text);
+        float[] vector;
+        synchronized (memory) {
+            vector = memory.get(key);
+        }
+        if (vector != null) {
+            memoryHits.incrementAndGet();
+            return toList(vector);
+        }
+        vector = readDisk(key);
+        if (vector != null) {
+            diskHits.incrementAndGet();
+            synchronized (memory) {
+                memory.put(key, vector);
+            }
+            return toList(vector);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * 写入向量：放入内存层，persist为true时交给后台线程追加到磁盘层
+     * @param text 输入文本
+     * @param vector 模型原始维度的向量
+     * @param persist 是否写入磁盘层（文档向量写入，查询向量不写入）
+     */
+    public void put(String text, List<Float> vector, boolean persist) {
+        if (!enabled) {
+            return;
+        }
+        Key key = keyOf(text);
+        float[] array = toArray(vector);
+        synchronized (memory) {
+            memory.put(key, array);
+        }
+        if (persist && writer != null && channel != null && !diskIndex.containsKey(key)) {
+            try {
+                writer.execute(() -> appendDisk(key, array));
+            } catch (RejectedExecutionException e) {
+                droppedWrites.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 获取缓存统计
+     * @return 统计数据
+     */
+    public Map<String, Object> getStats() {
+        long memoryHitCount = memoryHits.get();
+        long diskHitCount = diskHits.get();
+        long missCount = misses.get();
+        long lookups = memoryHitCount + diskHitCount + missCount;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("model_id", embeddingProvider.getModelId());
+        stats.put("dimension", embeddingProvider.getDimension());
+        stats.put("lookups", lookups);
+        stats.put("memory_hits", memoryHitCount);
+        stats.put("disk_hits", diskHitCount);
+        stats.put("misses", missCount);
+        stats.put("hit_rate", lookups == 0 ? null : (double) (memoryHitCount + diskHitCount) / lookups);
+        synchronized (memory) {
+            stats.put("memory_entries", memory.size());
+        }
+        stats.put("memory_max_entries", memoryMaxEntries);
+        FileChannel current = channel;
+        stats.put("disk_enabled", current != null);
+        stats.put("disk_entries", diskIndex.size());
+        try {
+            stats.put("disk_bytes", current != null ? current.size() : 0);
+        } catch (IOException e) {
+            stats.put("disk_bytes", null);
+        }
+        stats.put("disk_max_bytes", diskMaxBytes);
+        stats.put("pending_writes", writer != null ? writer.getQueue().size() : 0);
+        stats.put("disk_writes", writes.get());
+        stats.put("dropped_writes", droppedWrites.get());
+        stats.put("compactions", compactions.get());
+        return stats;
+    }
+
+    private float[] readDisk(Key key) {
+        diskLock.readLock().lock();
+        try {
+            FileChannel current = channel;
+            DiskEntry entry = current != null ? diskIndex.get(key) : null;
+            if (entry == null) {
+                return null;
+            }
+            entry.lastAccess = accessSequence.incrementAndGet();
+            ByteBuffer header = ByteBuffer.allocate(KEY_BYTES + 4);
+            readFully(current, header, entry.offset);
+            int dimension = header.getInt(KEY_BYTES);
+            if (dimension != embeddingProvider.getDimension()) {
+                return null;
+            }
+            ByteBuffer body = ByteBuffer.allocate(dimension * 4);
+            readFully(current, body, entry.offset + KEY_BYTES + 4);
+            body.flip();
+            float[] vector = new float[dimension];
+            body.asFloatBuffer().get(vector);
+            return vector;
+        } catch (IOException e) {
+            System.err.println("Failed to read embedding cache file: " + e.getMessage());
+            diskIndex.remove(key);
+            return null;
+        } finally {
+            diskLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 追加一条记录（只在写入线程执行，写入位置之后的内容不会被读取，无需加锁）
+     */
+    private void appendDisk(Key key, float[] vector) {
+        FileChannel current = channel;
+        if (current == null || diskIndex.containsKey(key)) {
+            return;
+        }
+        try {
+            long recordBytes = KEY_BYTES + 4 + (long) vector.length * 4;
+            if (current.size() + recordBytes > diskMaxBytes) {
+                compact();
+                current = channel;
+            }
+            long offset = current.size();
+            ByteBuffer record = encode(key, vector);
+            while (record.hasRemaining()) {
+                current.write(record, offset + record.position());
+            }
+            diskIndex.put(key, new DiskEntry(offset, accessSequence.incrementAndGet()));
+            writes.incrementAndGet();
+        } catch (IOException e) {
+            System.err.println("Failed to write embedding cache file, disk tier disabled: " + e.getMessage());
+            closeDisk();
+        }
+    }
+
+    private void openDisk() throws IOException {
+        Path path = Paths.get(diskFile);
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        FileChannel opened = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        channel = opened;
+        Map<Key, DiskEntry> index = new ConcurrentHashMap<>();
+        diskIndex = index;
+        if (opened.size() < HEADER_BYTES || !validHeader(opened)) {
+            opened.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(FORMAT_VERSION);
+            header.flip();
+            opened.write(header, 0);
+            return;
+        }
+
+        // 顺序扫描建立索引，同一个键以最后一条记录为准；文件顺序即写入先后，作为初始访问顺序
+        long offset = HEADER_BYTES;
+        long size = opened.size();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            in.skipNBytes(HEADER_BYTES);
+            byte[] digest = new byte[KEY_BYTES];
+            while (offset + KEY_BYTES + 4 <= size) {
+                in.readFully(digest);
+                int dimension = in.readInt();
+                long recordBytes = KEY_BYTES + 4 + (long) dimension * 4;
+                if (dimension <= 0 || offset + recordBytes > size) {
+                    break;
+                }
+                in.skipNBytes((long) dimension * 4);
+                index.put(new Key(digest.clone()), new DiskEntry(offset, accessSequence.incrementAndGet()));
+                offset += recordBytes;
+            }
+        }
+        if (offset < size) {
+            opened.truncate(offset);
+        }
+    }
+
+    private static boolean validHeader(FileChannel file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        readFully(file, header, 0);
+        return header.getInt(0) == MAGIC && header.getInt(4) == FORMAT_VERSION;
+    }
+
+    /**
+     * 按最近使用保留不超过上限一半的条目写入临时文件（只在写入线程执行，读取照常进行），
+     * 完成后加写锁原子替换文件并切换到新索引
+     */
+    private void compact() throws IOException {
+        FileChannel current = channel;
+        List<Map.Entry<Key, DiskEntry>> entries = new ArrayList<>(diskIndex.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().lastAccess, a.getValue().lastAccess));
+        Path path = Paths.get(diskFile);
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        Map<Key, DiskEntry> kept = new ConcurrentHashMap<>();
+        long written = HEADER_BYTES;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            ByteBuffer header = ByteBuffer.allocate(KEY_BYTES + 4);
+            for (Map.Entry<Key, DiskEntry> entry : entries) {
+                header.clear();
+                readFully(current, header, entry.getValue().offset);
+                int dimension = header.getInt(KEY_BYTES);
+                long recordBytes = KEY_BYTES + 4 + (long) dimension * 4;
+                if (written + recordBytes > diskMaxBytes / 2) {
+                    break;
+                }
+                ByteBuffer record = ByteBuffer.allocate((int) recordBytes);
+                readFully(current, record, entry.getValue().offset);
+                out.write(record.array());
+                kept.put(entry.getKey(), new DiskEntry(written, entry.getValue().lastAccess));
+                written += recordBytes;
+            }
+        }
+
+        diskLock.writeLock().lock();
+        try {
+            current.close();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            diskIndex = kept;
+        } finally {
+            diskLock.writeLock().unlock();
+        }
+        compactions.incrementAndGet();
+    }
+
+    private void closeDisk() {
+        diskLock.writeLock().lock();
+        try {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // 忽略关闭异常
+                }
+                channel = null;
+            }
+            diskIndex = new ConcurrentHashMap<>();
+        } finally {
+            diskLock.writeLock().unlock();
+        }
+    }
+
+    private static void readFully(FileChannel file, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (file.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of embedding cache file");
+            }
+        }
+    }
+
+    private Key keyOf(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(embeddingProvider.getModelId().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Integer.toString(embeddingProvider.getDimension()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return new Key(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static ByteBuffer encode(Key key, float[] vector) {
+        ByteBuffer record = ByteBuffer.allocate(KEY_BYTES + 4 + vector.length * 4);
+        record.put(key.digest);
+        record.putInt(vector.length);
+        record.asFloatBuffer().put(vector);
+        record.position(0);
+        return record;
+    }
+
+    private static float[] toArray(List<Float> vector) {
+        float[] array = new float[vector.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = vector.get(i);
+        }
+        return array;
+    }
+
+    private static List<Float> toList(float[] vector) {
+        List<Float> list = new ArrayList<>(vector.length);
+        for (float value : vector) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * 磁盘层索引项
+     */
+    private static final class DiskEntry {
+        final long offset;
+        volatile long lastAccess;
+
+        DiskEntry(long offset, long lastAccess) {
+            this.offset = offset;
+            this.lastAccess = lastAccess;
+        }
+    }
+
+    /**
+     * 缓存键（SHA-256摘要）
+     */
+    private static final class Key {
+        private final byte[] digest;
+        private final int hash;
+
+        Key(byte[] digest) {
+            this.digest = digest;
+            this.hash = Arrays.hashCode(digest);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && Arrays.equals(digest, ((Key) other).digest);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.knowledgebase.service;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 文本向量模型接口
+ * 由VectorUtils统一调用，具体实现通过embedding.provider配置选择
+ */
+public interface EmbeddingProvider {
+
+    /**
+     * 模型标识，用于区分不同模型生成的向量
+     * @return 模型ID
+     */
+    String getModelId();
+
+    /**
+     * 向量维度
+     * @return 维度
+     */
+    int getDimension();
+
+    /**
+     * 是否以Matryoshka方式训练（向量的前k维可单独作为低维向量使用），决定能否直接截断降维
+     * @return 是否支持截断
+     */
+    default boolean supportsTruncation() {
+        return false;
+    }
+
+    /**
+     * 批量生成文本向量
+     * @param texts 输入文本列表
+     * @return 与输入一一对应的向量列表
+     */
+    List<List<Float>> embedAll(List<String> texts);
+
+    /**
+     * 生成单条文本向量
+     * @param text 输入文本
+     * @return 向量
+     */
+    default List<Float> embed(String text) {
+        return embedAll(Collections.singletonList(text)).get(0);
+    }
+}
@@ -0,0 +1,388 @@
+package com.knowledgebase.service;
+
+import com.alibaba.fastjson2.JSON;
+import com.knowledgebase.config.ReplicaRoutingDataSource;
+import com.knowledgebase.model.QueryLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.annotation.PostConstruct;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 数据导出服务
+ * 通过JDBC游标逐行读取query_logs/faq_documents，经固定大小缓冲区直接写出NDJSON或CSV（可选gzip压缩），
+ * 不在内存中物化完整结果集。大批量导出可写入本地文件，再以零拷贝方式下载。
+ */
+@Service
+public class ExportService {
+
+    /**
+     * 导出格式
+     */
+    public enum Format {
+        NDJSON("ndjson"), CSV("csv");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    private static final String[] QUERY_LOG_COLUMNS = {
+            "id", "user_id", "query_text", "document_id", "document_version", "response", "feedback", "feedback_text",
+            "created_at", "session_id", "ip_address", "user_agent"
+    };
+
+    private static final int QUERY_LOG_ID_COLUMN = 0;
+
+    private static final int QUERY_LOG_CREATED_AT_COLUMN = 8;
+
+    /**
+     * 精简存储的日志不含response和user_agent，导出时关联版本历史和User-Agent字典还原
+     */
+    private static final String QUERY_LOG_SELECT = "SELECT q.id, q.user_id, q.query_text, q.document_id, q.document_version, "
+            + "COALESCE(q.response, v.answer) AS response, q.feedback, q.feedback_text, q.created_at, q.session_id, "
+            + "q.ip_address, COALESCE(q.user_agent, ua.user_agent) AS user_agent "
+            + "FROM query_logs q "
+            + "LEFT JOIN faq_document_versions v ON v.document_id = q.document_id AND v.version = q.document_version "
+            + "LEFT JOIN user_agents ua ON ua.id = q.user_agent_id";
+
+    private static final String DOCUMENT_COLUMNS = "id, question, answer, category, keywords, status, vector_id, "
+            + "created_at, updated_at, last_accessed, access_count, feedback_positive, feedback_negative, version";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private QueryLogArchiveService queryLogArchiveService;
+
+    @Autowired
+    private QueryLogCompactor queryLogCompactor;
+
+    @Value("${export.dir:./data/exports}")
+    private String exportDir;
+
+    @Value("${export.buffer-size:65536}")
+    private int bufferSize;
+
+    @Value("${export.fetch-size:1000}")
+    private int fetchSize;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(Paths.get(exportDir));
+    }
+
+    /**
+     * 导出查询日志，先输出时间范围内的归档段，再通过JDBC游标输出数据库中的热数据
+     * 归档后删除数据库行之前中断时，同一行会同时存在于段文件和数据库中，热数据中已被段包含的行不再输出
+     * 归档日志按fetch-size分批还原，热数据按id升序与归档段逐段比对
+     * @param out 输出流
+     * @param format 导出格式
+     * @param gzip 是否gzip压缩
+     * @param startDate 开始时间，可为null
+     * @param endDate 结束时间，可为null
+     * @param feedback 反馈过滤：null不过滤，any有反馈，none无反馈，1正面，-1负面
+     */
+    @Transactional(readOnly = true, label = ReplicaRoutingDataSource.READ_REPLICA)
+    public void exportQueryLogs(OutputStream out, Format format, boolean gzip,
+                                Date startDate, Date endDate, String feedback) throws IOException {
+        StringBuilder sql = new StringBuilder(QUERY_LOG_SELECT + " WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (startDate != null) {
+            sql.append(" AND q.created_at >= ?");
+            args.add(new Timestamp(startDate.getTime()));
+        }
+        if (endDate != null) {
+            sql.append(" AND q.created_at <= ?");
+            args.add(new Timestamp(endDate.getTime()));
+        }
+        if ("any".equals(feedback)) {
+            sql.append(" AND q.feedback IS NOT NULL");
+        } else if ("none".equals(feedback)) {
+            sql.append(" AND q.feedback IS NULL");
+        } else if (feedback != null) {
+            sql.append(" AND q.feedback = ?");
+            args.add(Integer.parseInt(feedback));
+        }
+        sql.append(" ORDER BY q.id");
+
+        ArchivedRows archived = new ArchivedRows(queryLogArchiveService.findSegments(startDate, endDate));
+        try (RowWriter writer = new RowWriter(out, format, gzip)) {
+            writer.writeHeader(QUERY_LOG_COLUMNS);
+            List<QueryLog> pending = new ArrayList<>(fetchSize);
+            queryLogArchiveService.forEachArchived(startDate, endDate, log -> {
+                if (matchesFeedback(log, feedback)) {
+                    pending.add(log);
+                    if (pending.size() >= fetchSize) {
+                        writeArchived(writer, pending);
+                    }
+                }
+            });
+            writeArchived(writer, pending);
+            streamQuery(sql.toString(), args, row -> {
+                if (!archived.contains(row)) {
+                    writer.writeRow(row);
+                }
+            });
+        }
+    }
+
+    private void writeArchived(RowWriter writer, List<QueryLog> pending) {
+        for (QueryLog log : queryLogCompactor.expandAll(pending)) {
+            writer.writeRow(toRow(log));
+        }
+        pending.clear();
+    }
+
+    /**
+     * 导出FAQ文档
+     * @param out 输出流
+     * @param format 导出格式
+     * @param gzip 是否gzip压缩
+     * @param category 分类过滤，可为null
+     * @param status 状态过滤，可为null
+     */
+    @Transactional(readOnly = true, label = ReplicaRoutingDataSource.READ_REPLICA)
+    public void exportDocuments(OutputStream out, Format format, boolean gzip,
+                                String category, String status) throws IOException {
+        StringBuilder sql = new StringBuilder("SELECT " + DOCUMENT_COLUMNS + " FROM faq_documents WHERE 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (category != null) {
+            sql.append(" AND category = ?");
+            args.add(category);
+        }
+        if (status != null) {
+            sql.append(" AND status = ?");
+            args.add(status);
+        }
+        sql.append(" ORDER BY id");
+
+        try (RowWriter writer = new RowWriter(out, format, gzip)) {
+            writer.writeHeader(DOCUMENT_COLUMNS.split(", "));
+            streamQuery(sql.toString(), args, writer::writeRow);
+        }
+    }
+
+    /**
+     * 将查询日志导出到本地文件（通过FileChannel写入并强制落盘）
+     * @return 导出文件名
+     */
+    @Transactional(readOnly = true, label = ReplicaRoutingDataSource.READ_REPLICA)
+    public String exportQueryLogsToFile(Format format, boolean gzip,
+                                        Date startDate, Date endDate, String feedback) throws IOException {
+        String fileName = "query_logs-" + new SimpleDateFormat("yyyyMMddHHmmssSSS").format(new Date())
+                + "." + format.getExtension() + (gzip ? ".gz" : "");
+        Path file = Paths.get(exportDir, fileName);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        OutputStream out = new FilterOutputStream(Channels.newOutputStream(channel)) {
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                this.out.write(b, off, len);
+            }
+
+            @Override
+            public void close() throws IOException {
+                flush();
+                channel.force(true);
+                super.close();
+            }
+        };
+        try {
+            exportQueryLogs(out, format, gzip, startDate, endDate, feedback);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        return fileName;
+    }
+
+    /**
+     * 解析导出文件路径，防止路径穿越
+     * @param fileName 导出文件名
+     * @return 文件路径，不存在时返回null
+     */
+    public Path resolveExportFile(String fileName) {
+        Path dir = Paths.get(exportDir).toAbsolutePath().normalize();
+        Path file = dir.resolve(fileName).normalize();
+        if (!file.getParent().equals(dir) || !Files.isRegularFile(file)) {
+            return null;
+        }
+        return file;
+    }
+
+    private void streamQuery(String sql, List<Object> args, Consumer<Object[]> rowConsumer) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            for (int i = 0; i < args.size(); i++) {
+                statement.setObject(i + 1, args.get(i));
+            }
+            return statement;
+        }, resultSet -> {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            Object[] row = new Object[metaData.getColumnCount()];
+            for (int i = 0; i < row.length; i++) {
+                row[i] = resultSet.getObject(i + 1);
+            }
+            rowConsumer.accept(row);
+        });
+    }
+
+    /**
+     * 判断按id升序输出的数据库行是否已包含在归档段中
+     * 段按最小id排序，随行id递增推进游标，只比对id范围覆盖当前行的段，不为每行扫描全部段
+     */
+    private static final class ArchivedRows {
+        private final List<QueryLogSegment.Header> segments;
+        private final List<QueryLogSegment.Header> covering = new ArrayList<>();
+        private int next;
+
+        ArchivedRows(List<QueryLogSegment.Header> segments) {
+            this.segments = segments;
+        }
+
+        boolean contains(Object[] row) {
+            if (segments.isEmpty()) {
+                return false;
+            }
+            long id = ((Number) row[QUERY_LOG_ID_COLUMN]).longValue();
+            while (next < segments.size() && segments.get(next).getMinId() <= id) {
+                covering.add(segments.get(next++));
+            }
+            covering.removeIf(header -> header.getMaxId() < id);
+            if (covering.isEmpty()) {
+                return false;
+            }
+            Object value = row[QUERY_LOG_CREATED_AT_COLUMN];
+            long createdAt = value instanceof LocalDateTime
+                    ? ((LocalDateTime) value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli()
+                    : ((Date) value).getTime();
+            for (QueryLogSegment.Header header : covering) {
+                if (header.contains(id, createdAt)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static boolean matchesFeedback(QueryLog log, String feedback) {
+        if (feedback == null) {
+            return true;
+        }
+        if ("any".equals(feedback)) {
+            return log.getFeedback() != null;
+        }
+        if ("none".equals(feedback)) {
+            return log.getFeedback() == null;
+        }
+        return log.getFeedback() != null && log.getFeedback() == Integer.parseInt(feedback);
+    }
+
+    private static Object[] toRow(QueryLog log) {
+        return new Object[]{
+                log.getId(), log.getUserId(), log.getQueryText(), log.getDocumentId(), log.getDocumentVersion(),
+                log.getResponse(), log.getFeedback(), log.getFeedbackText(), log.getCreatedAt(), log.getSessionId(),
+                log.getIpAddress(), log.getUserAgent()
+        };
+    }
+
+    /**
+     * 行输出器：固定大小缓冲区，按格式输出NDJSON或CSV
+     */
+    private class RowWriter implements Closeable {
+
+        private final Writer writer;
+        private final Format format;
+        private final SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSXXX");
+        private String[] columns;
+
+        RowWriter(OutputStream out, Format format, boolean gzip) throws IOException {
+            OutputStream target = gzip ? new GZIPOutputStream(out, bufferSize) : out;
+            this.writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), bufferSize);
+            this.format = format;
+        }
+
+        void writeHeader(String[] columns) throws IOException {
+            this.columns = columns;
+            if (format == Format.CSV) {
+                writer.write(String.join(",", columns));
+                writer.write("\r\n");
+            }
+        }
+
+        void writeRow(Object[] values) {
+            try {
+                if (format == Format.NDJSON) {
+                    Map<String, Object> row = new LinkedHashMap<>();
+                    for (int i = 0; i < columns.length; i++) {
+                        row.put(columns[i], format(values[i]));
+                    }
+                    writer.write(JSON.toJSONString(row));
+                    writer.write('\n');
+                } else {
+                    for (int i = 0; i < values.length; i++) {
+                        if (i > 0) {
+                            writer.write(',');
+                        }
+                        writeCsvField(values[i]);
+                    }
+                    writer.write("\r\n");
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private Object format(Object value) {
+            return value instanceof Date ? dateFormat.format((Date) value) : value;
+        }
+
+        private void writeCsvField(Object value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            String text = String.valueOf(format(value));
+            if (text.indexOf(',') >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0 || text.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(text.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(text);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            writer.close();
+        }
+    }
+}
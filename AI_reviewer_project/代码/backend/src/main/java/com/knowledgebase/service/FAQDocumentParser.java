@@ -0,0 +1,101 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.model.FAQDocument;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * FAQ批量上传文件解析器
+ * 支持txt/md格式，每条FAQ以"问："或"Q:"开头，字段格式如下：
+ * <pre>
+ * 问：如何重置密码？
+ * 答：在登录页点击"忘记密码"...
+ * 分类：账户
+ * 关键词：密码,重置
+ * </pre>
+ * 中英文冒号均可，Markdown标题符号和列表符号会被忽略，答案可跨多行。
+ */
+@Component
+public class FAQDocumentParser {
+
+    private static final String[] QUESTION_PREFIXES = {"问题", "问", "Q", "Question"};
+    private static final String[] ANSWER_PREFIXES = {"答案", "答", "A", "Answer"};
+    private static final String[] CATEGORY_PREFIXES = {"分类", "Category"};
+    private static final String[] KEYWORDS_PREFIXES = {"关键词", "Keywords"};
+
+    /**
+     * 解析文件内容
+     * @param content 文件文本内容
+     * @param defaultCategory 未指定分类时使用的默认分类
+     * @return 解析出的FAQ文档列表
+     */
+    public List<FAQDocument> parse(String content, String defaultCategory) {
+        List<FAQDocument> documents = new ArrayList<>();
+        FAQDocument current = null;
+        StringBuilder currentField = null;
+        StringBuilder question = null;
+        StringBuilder answer = null;
+
+        for (String rawLine : content.split("\\r?\\n")) {
+            String line = stripMarkdown(rawLine);
+            String value;
+            if ((value = valueAfter(line, QUESTION_PREFIXES)) != null) {
+                finish(current, question, answer, documents);
+                current = new FAQDocument();
+                current.setCategory(defaultCategory);
+                question = new StringBuilder(value);
+                answer = new StringBuilder();
+                currentField = question;
+            } else if (current == null) {
+                continue;
+            } else if ((value = valueAfter(line, ANSWER_PREFIXES)) != null) {
+                answer.append(value);
+                currentField = answer;
+            } else if ((value = valueAfter(line, CATEGORY_PREFIXES)) != null) {
+                current.setCategory(value);
+                currentField = null;
+            } else if ((value = valueAfter(line, KEYWORDS_PREFIXES)) != null) {
+                current.setKeywords(value);
+                currentField = null;
+            } else if (currentField != null && !line.isEmpty()) {
+                if (currentField.length() > 0) {
+                    currentField.append('\n');
+                }
+                currentField.append(line);
+            }
+        }
+        finish(current, question, answer, documents);
+        return documents;
+    }
+
+    private void finish(FAQDocument document, StringBuilder question, StringBuilder answer, List<FAQDocument> documents) {
+        if (document == null || question.length() == 0 || answer.length() == 0) {
+            return;
+        }
+        document.setQuestion(question.toString().trim());
+        document.setAnswer(answer.toString().trim());
+        documents.add(document);
+    }
+
+    private String stripMarkdown(String line) {
+        String stripped = line.trim();
+        while (stripped.startsWith("#") || stripped.startsWith("-") || stripped.startsWith("*") || stripped.startsWith(">")) {
+            stripped = stripped.substring(1).trim();
+        }
+        return stripped;
+    }
+
+    private String valueAfter(String line, String[] prefixes) {
+        for (String prefix : prefixes) {
+            if (line.length() > prefix.length() && line.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                char separator = line.charAt(prefix.length());
+                if (separator == ':' || separator == '：') {
+                    return line.substring(prefix.length() + 1).trim();
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,396 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.event.DocumentBatchChangedEvent;
+import com.knowledgebase.event.DocumentChangedEvent;
+import com.knowledgebase.model.FAQDocument;
+import com.knowledgebase.repository.DocumentChangeLogRepository;
+import com.knowledgebase.repository.FAQDocumentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * FAQ文档内存读模型
+ * 启动时全量加载faq_documents，之后根据文档变更事件增量刷新（写时复制）。
+ * 所有读接口和查询链路直接读取当前快照，不再访问数据库。
+ * 快照中的文档对象为共享实例，发布后任何人（包括读模型自身）都不再修改：
+ * 向量ID更新时复制该文档并发布新快照；访问和反馈计数变化频繁，累计在快照之外，
+ * 需要展示计数的接口通过{@link #withCounters}合并后返回。
+ * 每次文档内容变化（快照替换、向量ID更新）都会推进语料版本号，供接口生成ETag；
+ * 访问和反馈计数不是文档内容，不推进版本号。
+ */
+@Component
+public class FAQDocumentReadModel {
+
+    @Autowired
+    private FAQDocumentRepository faqDocumentRepository;
+
+    @Autowired
+    private DocumentChangeLogRepository documentChangeLogRepository;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    /**
+     * 全量加载前的变更日志最大id，跨节点同步从此处开始拉取
+     */
+    private volatile long loadedChangeLogId;
+
+    private final AtomicLong version = new AtomicLong();
+
+    /**
+     * 快照中的文档加载之后新增的访问和反馈，文档以新内容重新写入快照时清除（此时已包含数据库中的计数）
+     */
+    private final Map<Long, Counters> counters = new ConcurrentHashMap<>();
+
+    /**
+     * 全量加载文档快照
+     * 先记录变更日志位置再读取文档：两者之间提交的变更会被重复回放（按数据库当前状态刷新，结果不变），但不会漏掉
+     */
+    @PostConstruct
+    public void load() {
+        Long maxChangeLogId = documentChangeLogRepository.findMaxId();
+        loadedChangeLogId = maxChangeLogId != null ? maxChangeLogId : 0;
+        List<FAQDocument> documents = faqDocumentRepository.findAll();
+        Map<Long, FAQDocument> byId = new HashMap<>(documents.size() * 2);
+        for (FAQDocument document : documents) {
+            byId.put(document.getId(), copyOf(document));
+        }
+        publish(Snapshot.of(byId));
+    }
+
+    /**
+     * 获取全量加载时的变更日志位置
+     * @return 加载前的变更日志最大id
+     */
+    public long getLoadedChangeLogId() {
+        return loadedChangeLogId;
+    }
+
+    /**
+     * 根据ID获取文档
+     * @param id 文档ID
+     * @return FAQ文档
+     */
+    public Optional<FAQDocument> findById(Long id) {
+        return Optional.ofNullable(snapshot.byId.get(id));
+    }
+
+    /**
+     * 获取所有文档（按ID升序）
+     * @return FAQ文档列表
+     */
+    public List<FAQDocument> findAll() {
+        return snapshot.all;
+    }
+
+    /**
+     * 根据分类获取文档
+     * @param category 分类名称
+     * @return FAQ文档列表
+     */
+    public List<FAQDocument> findByCategory(String category) {
+        return snapshot.byCategory.getOrDefault(category, Collections.emptyList());
+    }
+
+    /**
+     * 按ID游标获取分类下的文档
+     * 分类下的文档列表按ID升序排列，二分查找定位游标，翻页代价与分类大小无关
+     * @param category 分类名称
+     * @param afterId 游标：只返回ID大于它的文档，为null时从头开始
+     * @param limit 最多返回数量
+     * @param status 只返回该状态的文档，为null时不限
+     * @return FAQ文档列表（按ID升序）
+     */
+    public List<FAQDocument> findByCategoryAfter(String category, Long afterId, int limit, String status) {
+        List<FAQDocument> documents = snapshot.byCategory.getOrDefault(category, Collections.emptyList());
+        int low = 0;
+        int high = documents.size();
+        if (afterId != null) {
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (documents.get(mid).getId() <= afterId) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+        }
+        List<FAQDocument> result = new ArrayList<>(Math.min(limit, documents.size() - low));
+        for (int i = low; i < documents.size() && result.size() < limit; i++) {
+            FAQDocument document = documents.get(i);
+            if (status == null || status.equals(document.getStatus())) {
+                result.add(document);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取所有分类
+     * @return 分类列表
+     */
+    public List<String> getCategories() {
+        return snapshot.categories;
+    }
+
+    /**
+     * 按关键词搜索问题、答案和关键词字段（忽略大小写）
+     * @param keyword 搜索关键词
+     * @return FAQ文档列表
+     */
+    public List<FAQDocument> search(String keyword) {
+        String needle = keyword.toLowerCase(Locale.ROOT);
+        List<FAQDocument> result = new ArrayList<>();
+        for (FAQDocument document : snapshot.all) {
+            if (contains(document.getQuestion(), needle)
+                    || contains(document.getAnswer(), needle)
+                    || contains(document.getKeywords(), needle)) {
+                result.add(document);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 记录文档访问（累计在快照之外，数据库由调用方原子更新）
+     * @param id 文档ID
+     * @param accessedAt 访问时间
+     */
+    public void recordAccess(Long id, Date accessedAt) {
+        if (snapshot.byId.containsKey(id)) {
+            counters.computeIfAbsent(id, k -> new Counters()).recordAccess(accessedAt);
+        }
+    }
+
+    /**
+     * 记录文档反馈（累计在快照之外，数据库由调用方原子更新）
+     * @param id 文档ID
+     * @param isPositive 是否正面反馈
+     */
+    public void recordFeedback(Long id, boolean isPositive) {
+        if (snapshot.byId.containsKey(id)) {
+            Counters documentCounters = counters.computeIfAbsent(id, k -> new Counters());
+            (isPositive ? documentCounters.feedbackPositive : documentCounters.feedbackNegative).incrementAndGet();
+        }
+    }
+
+    /**
+     * 合并快照之外累计的访问和反馈计数
+     * @param document 快照中的文档
+     * @return 有新访问或反馈时返回合并后的副本，否则返回原文档
+     */
+    public FAQDocument withCounters(FAQDocument document) {
+        Counters documentCounters = counters.get(document.getId());
+        if (documentCounters == null) {
+            return document;
+        }
+        FAQDocument copy = copyOf(document);
+        copy.setAccessCount(add(document.getAccessCount(), documentCounters.accessCount.get()));
+        copy.setFeedbackPositive(add(document.getFeedbackPositive(), documentCounters.feedbackPositive.get()));
+        copy.setFeedbackNegative(add(document.getFeedbackNegative(), documentCounters.feedbackNegative.get()));
+        Date lastAccessed = documentCounters.lastAccessed;
+        if (lastAccessed != null && (document.getLastAccessed() == null || lastAccessed.after(document.getLastAccessed()))) {
+            copy.setLastAccessed(lastAccessed);
+        }
+        return copy;
+    }
+
+    /**
+     * 记录文档的新向量ID（复制文档并发布新快照，数据库由调用方单独更新）
+     * @param id 文档ID
+     * @param vectorId 向量ID
+     */
+    public void recordVectorId(Long id, String vectorId) {
+        replace(id, document -> document.setVectorId(vectorId));
+    }
+
+    /**
+     * 处理文档变更事件，增量刷新快照
+     * @param event 文档变更事件
+     */
+    @EventListener
+    public void onDocumentChanged(DocumentChangedEvent event) {
+        if (event.getChangeType() == DocumentChangedEvent.ChangeType.DELETED) {
+            remove(event.getDocumentId());
+        } else {
+            apply(event.getDocument());
+        }
+    }
+
+    /**
+     * 处理批量变更事件，整批变更只复制一次快照
+     * @param event 批量变更事件
+     */
+    @EventListener
+    public synchronized void onDocumentsChanged(DocumentBatchChangedEvent event) {
+        Map<Long, FAQDocument> byId = new HashMap<>(snapshot.byId);
+        for (DocumentChangedEvent change : event.getChanges()) {
+            if (change.getChangeType() == DocumentChangedEvent.ChangeType.DELETED) {
+                byId.remove(change.getDocumentId());
+                counters.remove(change.getDocumentId());
+                continue;
+            }
+            FAQDocument document = change.getDocument();
+            FAQDocument existing = byId.get(document.getId());
+            if (existing == null || !isStale(document, existing)) {
+                byId.put(document.getId(), copyOf(document));
+                counters.remove(document.getId());
+            }
+        }
+        publish(Snapshot.of(byId));
+    }
+
+    /**
+     * 将文档写入快照，版本号低于快照中已有版本的变更会被忽略
+     * @param document FAQ文档
+     */
+    public synchronized void apply(FAQDocument document) {
+        Snapshot current = snapshot;
+        FAQDocument existing = current.byId.get(document.getId());
+        if (existing != null && isStale(document, existing)) {
+            return;
+        }
+        Map<Long, FAQDocument> byId = new HashMap<>(current.byId);
+        byId.put(document.getId(), copyOf(document));
+        counters.remove(document.getId());
+        publish(Snapshot.of(byId));
+    }
+
+    /**
+     * 从快照中移除文档
+     * @param id 文档ID
+     */
+    public synchronized void remove(Long id) {
+        Snapshot current = snapshot;
+        if (!current.byId.containsKey(id)) {
+            return;
+        }
+        Map<Long, FAQDocument> byId = new HashMap<>(current.byId);
+        byId.remove(id);
+        counters.remove(id);
+        publish(Snapshot.of(byId));
+    }
+
+    /**
+     * 复制快照中的文档并修改副本，再发布新快照，已发布的文档实例保持不变
+     */
+    private synchronized void replace(Long id, Consumer<FAQDocument> change) {
+        Snapshot current = snapshot;
+        FAQDocument existing = current.byId.get(id);
+        if (existing == null) {
+            return;
+        }
+        FAQDocument copy = copyOf(existing);
+        change.accept(copy);
+        Map<Long, FAQDocument> byId = new HashMap<>(current.byId);
+        byId.put(id, copy);
+        publish(Snapshot.of(byId));
+    }
+
+    /**
+     * 当前语料版本号，快照内容每次变化后单调递增
+     * @return 版本号
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * 发布新快照并推进版本号（先替换快照再递增，读到新版本号时一定能读到对应的快照）
+     */
+    private void publish(Snapshot next) {
+        snapshot = next;
+        version.incrementAndGet();
+    }
+
+    private static boolean isStale(FAQDocument incoming, FAQDocument existing) {
+        return incoming.getVersion() != null && existing.getVersion() != null
+                && incoming.getVersion() < existing.getVersion();
+    }
+
+    private static Integer add(Integer base, int delta) {
+        return delta == 0 ? base : (base != null ? base : 0) + delta;
+    }
+
+    private static boolean contains(String text, String needle) {
+        return text != null && text.toLowerCase(Locale.ROOT).contains(needle);
+    }
+
+    private static FAQDocument copyOf(FAQDocument source) {
+        FAQDocument copy = new FAQDocument();
+        copy.setId(source.getId());
+        copy.setQuestion(source.getQuestion());
+        copy.setAnswer(source.getAnswer());
+        copy.setCategory(source.getCategory());
+        copy.setKeywords(source.getKeywords());
+        copy.setStatus(source.getStatus());
+        copy.setVectorId(source.getVectorId());
+        copy.setCreatedAt(source.getCreatedAt());
+        copy.setUpdatedAt(source.getUpdatedAt());
+        copy.setLastAccessed(source.getLastAccessed());
+        copy.setAccessCount(source.getAccessCount());
+        copy.setFeedbackPositive(source.getFeedbackPositive());
+        copy.setFeedbackNegative(source.getFeedbackNegative());
+        copy.setVersion(source.getVersion());
+        return copy;
+    }
+
+    /**
+     * 快照之外累计的访问次数、最近访问时间和反馈计数
+     */
+    private static final class Counters {
+        final AtomicInteger accessCount = new AtomicInteger();
+        final AtomicInteger feedbackPositive = new AtomicInteger();
+        final AtomicInteger feedbackNegative = new AtomicInteger();
+        volatile Date lastAccessed;
+
+        void recordAccess(Date accessedAt) {
+            accessCount.incrementAndGet();
+            lastAccessed = accessedAt;
+        }
+    }
+
+    /**
+     * 不可变快照，发布后不再修改索引结构
+     */
+    private static final class Snapshot {
+
+        static final Snapshot EMPTY = of(Collections.emptyMap());
+
+        final Map<Long, FAQDocument> byId;
+        final List<FAQDocument> all;
+        final Map<String, List<FAQDocument>> byCategory;
+        final List<String> categories;
+
+        private Snapshot(Map<Long, FAQDocument> byId, List<FAQDocument> all,
+                         Map<String, List<FAQDocument>> byCategory, List<String> categories) {
+            this.byId = byId;
+            this.all = all;
+            this.byCategory = byCategory;
+            this.categories = categories;
+        }
+
+        static Snapshot of(Map<Long, FAQDocument> byId) {
+            List<FAQDocument> all = new ArrayList<>(byId.values());
+            all.sort(Comparator.comparing(FAQDocument::getId));
+
+            Map<String, List<FAQDocument>> byCategory = new LinkedHashMap<>();
+            for (FAQDocument document : all) {
+                byCategory.computeIfAbsent(document.getCategory(), k -> new ArrayList<>()).add(document);
+            }
+            byCategory.replaceAll((k, v) -> Collections.unmodifiableList(v));
+
+            return new Snapshot(Collections.unmodifiableMap(byId),
+                    Collections.unmodifiableList(all),
+                    Collections.unmodifiableMap(byCategory),
+                    Collections.unmodifiableList(new ArrayList<>(byCategory.keySet())));
+        }
+    }
+}
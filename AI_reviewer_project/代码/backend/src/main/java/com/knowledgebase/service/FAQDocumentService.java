@@ -1,13 +1,21 @@
 package com.knowledgebase.service;
 
+import com.knowledgebase.event.DocumentBatchChangedEvent;
+import com.knowledgebase.event.DocumentChangedEvent;
 import com.knowledgebase.model.FAQDocument;
+import com.knowledgebase.model.FAQDocumentSummary;
 import com.knowledgebase.repository.FAQDocumentRepository;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.Date;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * FAQ文档业务逻辑服务层
@@ -16,6 +24,8 @@ import java.util.Optional;
 @Service
 public class FAQDocumentService {
 
+    private static final int OPTIMISTIC_LOCK_ATTEMPTS = 3;
+
     @Autowired
     private FAQDocumentRepository faqDocumentRepository;
 
@@ -25,12 +35,39 @@ public class FAQDocumentService {
     @Autowired
     private VectorUtils vectorUtils;
 
+    @Autowired
+    private FAQDocumentReadModel faqDocumentReadModel;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private DuplicateDetectionService duplicateDetectionService;
+
+    @Autowired
+    private SessionCooccurrenceModel sessionCooccurrenceModel;
+
+    @Autowired
+    private VectorMaintenanceCoalescer vectorMaintenanceCoalescer;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private CategoryRegistry categoryRegistry;
+
+    @Autowired
+    private DocumentChangeLogService documentChangeLogService;
+
+    @Value("${document.batch.chunk-size:50}")
+    private int batchChunkSize;
+
     /**
      * 获取所有FAQ文档
      * @return FAQ文档列表
      */
     public List<FAQDocument> getAllDocuments() {
-        return faqDocumentRepository.findAll();
+        return faqDocumentReadModel.findAll();
     }
 
     /**
@@ -39,14 +76,79 @@ public class FAQDocumentService {
      * @return FAQ文档
      */
     public Optional<FAQDocument> getDocumentById(Long id) {
-        Optional<FAQDocument> document = faqDocumentRepository.findById(id);
-        // 更新文档访问信息
-        document.ifPresent(doc -> {
-            doc.setLastAccessed(new Date());
-            doc.setAccessCount(doc.getAccessCount() != null ? doc.getAccessCount() + 1 : 1);
-            faqDocumentRepository.save(doc);
-        });
-        return document;
+        Optional<FAQDocument> document = faqDocumentReadModel.findById(id);
+        document.ifPresent(doc -> recordAccess(id));
+        return document.map(faqDocumentReadModel::withCounters);
+    }
+
+    /**
+     * 获取所有文档的摘要（不含答案）
+     * @return 文档摘要列表（按ID升序）
+     */
+    public List<FAQDocumentSummary> getDocumentSummaries() {
+        return summarize(faqDocumentReadModel.findAll());
+    }
+
+    /**
+     * 获取文档答案：列表只返回摘要，选中文档后单独获取答案
+     * 快照中没有该文档（如其他节点刚创建、变更尚未回放）时只从数据库读取答案列
+     * @param id 文档ID
+     * @return 答案
+     */
+    public Optional<String> getAnswer(Long id) {
+        Optional<FAQDocument> document = faqDocumentReadModel.findById(id);
+        if (document.isPresent()) {
+            recordAccess(id);
+            return Optional.of(document.get().getAnswer());
+        }
+        return faqDocumentRepository.findAnswerById(id);
+    }
+
+    /**
+     * 更新文档访问信息：读模型访问计数 + 数据库原子递增，不回读数据库
+     */
+    private void recordAccess(Long id) {
+        Date now = new Date();
+        categoryRegistry.recordAccess(id);
+        faqDocumentReadModel.recordAccess(id, now);
+        faqDocumentRepository.incrementAccessCount(id, now);
+    }
+
+    /**
+     * 乐观锁冲突时重新执行（每次重新读取文档），超过重试次数后抛出冲突异常
+     */
+    private static <T> T retryOnConflict(Supplier<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= OPTIMISTIC_LOCK_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * 生成摘要，计数取快照中的值（供按语料版本缓存的接口使用，缓存的响应体不输出计数）
+     */
+    private static List<FAQDocumentSummary> summarize(List<FAQDocument> documents) {
+        List<FAQDocumentSummary> summaries = new ArrayList<>(documents.size());
+        for (FAQDocument document : documents) {
+            summaries.add(FAQDocumentSummary.of(document));
+        }
+        return summaries;
+    }
+
+    /**
+     * 生成摘要并合并读模型中实时的访问和反馈计数（供不缓存的接口使用）
+     */
+    private List<FAQDocumentSummary> summarizeWithCounters(List<FAQDocument> documents) {
+        List<FAQDocumentSummary> summaries = new ArrayList<>(documents.size());
+        for (FAQDocument document : documents) {
+            summaries.add(FAQDocumentSummary.of(faqDocumentReadModel.withCounters(document)));
+        }
+        return summaries;
     }
 
     /**
@@ -55,48 +157,365 @@ public class FAQDocumentService {
      * @return 创建的FAQ文档
      */
     public FAQDocument createDocument(FAQDocument document) {
-        // 设置默认值
-        if (document.getStatus() == null) {
-            document.setStatus("active");
+        return ingestDocument(document).getDocument();
+    }
+
+    /**
+     * 批量创建FAQ文档，每条文档都经过近重复检测
+     * 按段处理：需要新建的文档整段persist，提交时插入合并为JDBC批量执行；提交后再写入向量并回填向量ID
+     * @param documents FAQ文档列表
+     * @return 批量导入结果统计
+     */
+    public Map<String, Object> batchCreateDocuments(List<FAQDocument> documents) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        counts.put(IngestResult.CREATED, 0);
+        counts.put(IngestResult.FLAGGED, 0);
+        counts.put(IngestResult.MERGED, 0);
+        counts.put(IngestResult.FAILED, 0);
+        List<Map<String, Object>> items = new ArrayList<>();
+
+        for (int from = 0; from < documents.size(); from += batchChunkSize) {
+            List<FAQDocument> chunk = documents.subList(from, Math.min(from + batchChunkSize, documents.size()));
+            ingestChunk(chunk, counts, items);
         }
-        if (document.getAccessCount() == null) {
-            document.setAccessCount(0);
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("total", documents.size());
+        result.putAll(counts);
+        result.put("items", items);
+        return result;
+    }
+
+    /**
+     * 批量入库一段文档
+     * 逐条做近重复检测（包括同一段中排在前面、尚未入库的文档）；事务内persist整段文档
+     * （表生成器此时即分配ID，不立即插入）并写入变更日志，提交时统一flush。
+     * 检测到入库在整段文档的LSH桶锁内完成，提交后立即登记到LSH索引，并发入库的近重复文档不会同时通过检测。
+     * 提交并释放桶锁后再按批生成向量、写入向量库并回填向量ID，向量库较慢或不可用时不会长时间占用数据库连接、行锁和桶锁。
+     * 事务失败时整段标记为失败。
+     */
+    private void ingestChunk(List<FAQDocument> chunk, Map<String, Integer> counts, List<Map<String, Object>> items) {
+        List<FAQDocument> toSave = new ArrayList<>();
+        // 待写入的条目及其最终对应的文档（同段内合并的条目指向被合并的文档）
+        List<Map<String, Object>> pendingItems = new ArrayList<>();
+        List<FAQDocument> pendingTargets = new ArrayList<>();
+        List<DocumentChangedEvent> created = new ArrayList<>();
+
+        boolean saved = duplicateDetectionService.withBucketLocks(chunk,
+                () -> saveChunk(chunk, counts, items, toSave, pendingItems, pendingTargets, created));
+        if (!saved) {
+            return;
         }
-        if (document.getFeedbackPositive() == null) {
-            document.setFeedbackPositive(0);
+
+        // 重复文档不写入向量库；向量生成较慢，放在事务和桶锁之外
+        List<FAQDocument> indexable = new ArrayList<>();
+        for (FAQDocument document : toSave) {
+            if (!DuplicateDetectionService.STATUS_DUPLICATE.equals(document.getStatus())) {
+                indexable.add(document);
+            }
         }
-        if (document.getFeedbackNegative() == null) {
-            document.setFeedbackNegative(0);
+        if (!indexable.isEmpty()) {
+            try {
+                List<String> texts = new ArrayList<>(indexable.size());
+                for (FAQDocument document : indexable) {
+                    texts.add(document.getQuestion() + " " + document.getAnswer());
+                }
+                storeChunkVectors(indexable, vectorUtils.generateVectors(texts));
+            } catch (Exception e) {
+                System.err.println("Failed to generate vectors for batch: " + e.getMessage());
+            }
+        }
+
+        for (DocumentChangedEvent event : created) {
+            eventPublisher.publishEvent(event);
         }
-        if (document.getVersion() == null) {
-            document.setVersion(1);
+        for (int i = 0; i < pendingItems.size(); i++) {
+            Map<String, Object> item = pendingItems.get(i);
+            item.put("id", pendingTargets.get(i).getId());
+            counts.merge((String) item.get("outcome"), 1, Integer::sum);
         }
+    }
+
+    /**
+     * 在桶锁内完成一段文档的近重复检测和入库，提交后将新文档登记到LSH索引
+     * @return 是否有文档成功入库
+     */
+    private boolean saveChunk(List<FAQDocument> chunk, Map<String, Integer> counts, List<Map<String, Object>> items,
+                              List<FAQDocument> toSave, List<Map<String, Object>> pendingItems,
+                              List<FAQDocument> pendingTargets, List<DocumentChangedEvent> created) {
+        DuplicateDetectionService.Mode mode = duplicateDetectionService.getMode();
+        DuplicateDetectionService.PendingBatch pendingBatch = duplicateDetectionService.newPendingBatch();
 
-        // 保存文档到数据库
-        FAQDocument savedDocument = faqDocumentRepository.save(document);
+        for (FAQDocument document : chunk) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("question", document.getQuestion());
+            items.add(item);
+            try {
+                String outcome = IngestResult.CREATED;
+                if (mode != DuplicateDetectionService.Mode.OFF) {
+                    Optional<DuplicateDetectionService.DuplicateMatch> duplicate = duplicateDetectionService.findDuplicate(document);
+                    Optional<FAQDocument> pendingDuplicate = duplicate.isPresent() ? Optional.empty() : pendingBatch.findDuplicate(document);
+                    if (mode == DuplicateDetectionService.Mode.MERGE && pendingDuplicate.isPresent()) {
+                        FAQDocument target = pendingDuplicate.get();
+                        target.setKeywords(mergeKeywords(target.getKeywords(), document.getKeywords()));
+                        item.put("outcome", IngestResult.MERGED);
+                        pendingItems.add(item);
+                        pendingTargets.add(target);
+                        continue;
+                    }
+                    if (mode == DuplicateDetectionService.Mode.MERGE && duplicate.isPresent()) {
+                        FAQDocument merged = mergeDuplicate(duplicate.get().getDocumentId(), document);
+                        if (merged != null) {
+                            item.put("id", merged.getId());
+                            item.put("outcome", IngestResult.MERGED);
+                            counts.merge(IngestResult.MERGED, 1, Integer::sum);
+                            continue;
+                        }
+                    } else if (duplicate.isPresent() || pendingDuplicate.isPresent()) {
+                        document.setStatus(DuplicateDetectionService.STATUS_DUPLICATE);
+                        outcome = IngestResult.FLAGGED;
+                    }
+                }
+                applyDefaults(document);
+                pendingBatch.add(document);
+                toSave.add(document);
+                item.put("outcome", outcome);
+                pendingItems.add(item);
+                pendingTargets.add(document);
+            } catch (Exception e) {
+                item.put("outcome", IngestResult.FAILED);
+                item.put("error", e.getMessage());
+                counts.merge(IngestResult.FAILED, 1, Integer::sum);
+            }
+        }
+        if (toSave.isEmpty()) {
+            return false;
+        }
 
         try {
-            // 生成向量并存储到Milvus
-            List<Float> vector = vectorUtils.generateVector(savedDocument.getQuestion() + " " + savedDocument.getAnswer());
-            String vectorId = ragService.storeVector(savedDocument, vector);
-            // 更新文档的向量ID
-            savedDocument.setVectorId(vectorId);
-            faqDocumentRepository.save(savedDocument);
+            transactionTemplate.executeWithoutResult(status -> {
+                faqDocumentRepository.saveAll(toSave);
+                for (FAQDocument document : toSave) {
+                    created.add(DocumentChangedEvent.created(document));
+                }
+                documentChangeLogService.recordAll(created);
+            });
         } catch (Exception e) {
-            // 如果向量存储失败，记录日志但不影响文档创建
-            System.err.println("Failed to store vector: " + e.getMessage());
+            created.clear();
+            for (FAQDocument document : toSave) {
+                document.setId(null);
+                document.setVersion(null);
+            }
+            for (Map<String, Object> item : pendingItems) {
+                item.put("outcome", IngestResult.FAILED);
+                item.put("error", e.getMessage());
+                counts.merge(IngestResult.FAILED, 1, Integer::sum);
+            }
+            return false;
+        }
+        for (FAQDocument document : toSave) {
+            duplicateDetectionService.register(document);
         }
+        return true;
+    }
 
+    /**
+     * 文档提交后写入向量，再在一个事务内回填向量ID（与publishNewDocument一致，向量库调用不占用数据库事务）
+     * 向量写入失败只记录日志，不影响已创建的文档
+     */
+    private void storeChunkVectors(List<FAQDocument> indexable, List<List<Float>> vectors) {
+        List<FAQDocument> stored = new ArrayList<>();
+        for (int i = 0; i < indexable.size(); i++) {
+            FAQDocument document = indexable.get(i);
+            try {
+                document.setVectorId(ragService.storeVector(document, vectors.get(i)));
+                stored.add(document);
+            } catch (Exception e) {
+                System.err.println("Failed to store vector: " + e.getMessage());
+            }
+        }
+        if (stored.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<DocumentChangedEvent> changeEvents = new ArrayList<>(stored.size());
+                for (FAQDocument document : stored) {
+                    faqDocumentRepository.updateVectorId(document.getId(), document.getVectorId());
+                    changeEvents.add(DocumentChangedEvent.updated(document));
+                }
+                // 其他节点按变更日志重新读取文档时带上向量ID
+                documentChangeLogService.recordAll(changeEvents);
+            });
+        } catch (Exception e) {
+            System.err.println("Failed to update vector ids of batch: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 文档入库：近重复检测后按配置标记、合并或正常创建
+     * 检测和写库在文档所在LSH桶的锁内完成，写库后立即登记到LSH索引；向量写入在释放桶锁之后
+     * @param document FAQ文档对象
+     * @return 入库结果
+     */
+    private IngestResult ingestDocument(FAQDocument document) {
+        IngestResult result = duplicateDetectionService.withBucketLocks(Collections.singletonList(document),
+                () -> detectAndSave(document));
+        if (!IngestResult.MERGED.equals(result.getOutcome())) {
+            // 标记为重复的文档不写入向量库，避免挤占检索结果
+            publishNewDocument(result.getDocument(), IngestResult.CREATED.equals(result.getOutcome()));
+        }
+        return result;
+    }
+
+    private IngestResult detectAndSave(FAQDocument document) {
+        DuplicateDetectionService.Mode mode = duplicateDetectionService.getMode();
+        if (mode != DuplicateDetectionService.Mode.OFF) {
+            Optional<DuplicateDetectionService.DuplicateMatch> duplicate = duplicateDetectionService.findDuplicate(document);
+            if (duplicate.isPresent()) {
+                if (mode == DuplicateDetectionService.Mode.MERGE) {
+                    FAQDocument merged = mergeDuplicate(duplicate.get().getDocumentId(), document);
+                    if (merged != null) {
+                        return new IngestResult(IngestResult.MERGED, merged);
+                    }
+                } else {
+                    document.setStatus(DuplicateDetectionService.STATUS_DUPLICATE);
+                    return new IngestResult(IngestResult.FLAGGED, saveNewDocument(document));
+                }
+            }
+        }
+        return new IngestResult(IngestResult.CREATED, saveNewDocument(document));
+    }
+
+    /**
+     * 将重复文档的关键词合并到已有文档
+     * @param existingId 已有文档ID
+     * @param incoming 新上传的重复文档
+     * @return 合并后的已有文档，已有文档不存在时返回null
+     */
+    private FAQDocument mergeDuplicate(Long existingId, FAQDocument incoming) {
+        return retryOnConflict(() -> mergeDuplicateOnce(existingId, incoming));
+    }
+
+    private FAQDocument mergeDuplicateOnce(Long existingId, FAQDocument incoming) {
+        Optional<FAQDocument> existingDocument = faqDocumentRepository.findById(existingId);
+        if (!existingDocument.isPresent()) {
+            return null;
+        }
+        FAQDocument existing = existingDocument.get();
+        String mergedKeywords = mergeKeywords(existing.getKeywords(), incoming.getKeywords());
+        if (Objects.equals(mergedKeywords, existing.getKeywords())) {
+            return existing;
+        }
+        existing.setKeywords(mergedKeywords);
+        FAQDocument savedDocument = saveAndRecord(existing, false);
+        eventPublisher.publishEvent(DocumentChangedEvent.updated(savedDocument));
         return savedDocument;
     }
 
+    /**
+     * 合并两组逗号分隔的关键词，去重并保持顺序
+     * @return 合并后的关键词，均为空时返回null
+     */
+    private static String mergeKeywords(String first, String second) {
+        Set<String> keywords = new LinkedHashSet<>();
+        for (String source : new String[]{first, second}) {
+            if (source != null) {
+                for (String keyword : source.split("[,，]")) {
+                    if (!keyword.trim().isEmpty()) {
+                        keywords.add(keyword.trim());
+                    }
+                }
+            }
+        }
+        return keywords.isEmpty() ? null : String.join(",", keywords);
+    }
+
+    /**
+     * 保存新文档并登记到LSH索引（调用方持有该文档的桶锁）
+     * @param document FAQ文档对象
+     * @return 创建的FAQ文档
+     */
+    private FAQDocument saveNewDocument(FAQDocument document) {
+        applyDefaults(document);
+        FAQDocument savedDocument = saveAndRecord(document, true);
+        duplicateDetectionService.register(savedDocument);
+        return savedDocument;
+    }
+
+    /**
+     * 按需生成并写入向量，然后发布创建事件
+     * @param savedDocument 已保存的文档
+     * @param storeVector 是否生成并存储向量
+     */
+    private void publishNewDocument(FAQDocument savedDocument, boolean storeVector) {
+        if (storeVector) {
+            try {
+                // 生成向量并存储到Milvus
+                List<Float> vector = vectorUtils.generateVector(savedDocument.getQuestion() + " " + savedDocument.getAnswer());
+                String vectorId = ragService.storeVector(savedDocument, vector);
+                // 只更新向量ID列：向量ID不是文档内容，不推进版本号
+                savedDocument.setVectorId(vectorId);
+                transactionTemplate.executeWithoutResult(status -> {
+                    faqDocumentRepository.updateVectorId(savedDocument.getId(), vectorId);
+                    // 其他节点按变更日志重新读取文档时带上向量ID
+                    documentChangeLogService.record(DocumentChangedEvent.updated(savedDocument));
+                });
+            } catch (Exception e) {
+                // 如果向量存储失败，记录日志但不影响文档创建
+                System.err.println("Failed to store vector: " + e.getMessage());
+            }
+        }
+        eventPublisher.publishEvent(DocumentChangedEvent.created(savedDocument));
+    }
+
+    /**
+     * 在同一事务内保存文档并写入变更日志
+     * @param document FAQ文档对象
+     * @param isNew 是否为新建文档
+     * @return 保存后的文档（版本号已递增）
+     */
+    private FAQDocument saveAndRecord(FAQDocument document, boolean isNew) {
+        return transactionTemplate.execute(status -> {
+            FAQDocument saved = faqDocumentRepository.saveAndFlush(document);
+            documentChangeLogService.record(isNew ? DocumentChangedEvent.created(saved) : DocumentChangedEvent.updated(saved));
+            return saved;
+        });
+    }
+
+    /**
+     * 设置新文档的默认值
+     * @param document FAQ文档对象
+     */
+    private static void applyDefaults(FAQDocument document) {
+        if (document.getStatus() == null) {
+            document.setStatus("active");
+        }
+        if (document.getAccessCount() == null) {
+            document.setAccessCount(0);
+        }
+        if (document.getFeedbackPositive() == null) {
+            document.setFeedbackPositive(0);
+        }
+        if (document.getFeedbackNegative() == null) {
+            document.setFeedbackNegative(0);
+        }
+        // 版本号由JPA乐观锁维护，新文档必须为null才会按新建处理
+        document.setVersion(null);
+    }
+
     /**
      * 更新FAQ文档
+     * 与并发修改冲突时重新读取后重试，多次冲突仍失败时抛出OptimisticLockingFailureException
      * @param id 文档ID
      * @param document 更新的文档信息
      * @return 更新后的FAQ文档
      */
     public FAQDocument updateDocument(Long id, FAQDocument document) {
+        return retryOnConflict(() -> updateDocumentOnce(id, document));
+    }
+
+    private FAQDocument updateDocumentOnce(Long id, FAQDocument document) {
         Optional<FAQDocument> existingDocument = faqDocumentRepository.findById(id);
         if (!existingDocument.isPresent()) {
             return null;
@@ -108,23 +527,13 @@ public class FAQDocumentService {
         docToUpdate.setCategory(document.getCategory());
         docToUpdate.setKeywords(document.getKeywords());
         docToUpdate.setStatus(document.getStatus());
-        docToUpdate.setVersion(docToUpdate.getVersion() + 1);
 
         // 保存更新后的文档
-        FAQDocument updatedDocument = faqDocumentRepository.save(docToUpdate);
-
-        try {
-            // 删除旧向量
-            ragService.deleteVectorByDocumentId(id);
-            // 生成新向量并存储
-            List<Float> vector = vectorUtils.generateVector(updatedDocument.getQuestion() + " " + updatedDocument.getAnswer());
-            String vectorId = ragService.storeVector(updatedDocument, vector);
-            updatedDocument.setVectorId(vectorId);
-            faqDocumentRepository.save(updatedDocument);
-        } catch (Exception e) {
-            System.err.println("Failed to update vector: " + e.getMessage());
-        }
+        FAQDocument updatedDocument = saveAndRecord(docToUpdate, false);
+        eventPublisher.publishEvent(DocumentChangedEvent.updated(updatedDocument));
 
+        // 向量维护去抖：短时间内的连续编辑只对最新版本重新生成向量
+        vectorMaintenanceCoalescer.schedule(updatedDocument);
         return updatedDocument;
     }
 
@@ -136,22 +545,205 @@ public class FAQDocumentService {
     public boolean deleteDocument(Long id) {
         Optional<FAQDocument> document = faqDocumentRepository.findById(id);
         if (document.isPresent()) {
-            // 删除Milvus中的向量
-            ragService.deleteVectorByDocumentId(id);
-            // 删除数据库中的文档
-            faqDocumentRepository.deleteById(id);
+            // 取消待执行的向量维护并删除Milvus中的向量
+            vectorMaintenanceCoalescer.cancelAndDelete(id);
+            // 删除数据库中的文档，变更日志在同一事务内写入
+            transactionTemplate.executeWithoutResult(status -> {
+                faqDocumentRepository.deleteById(id);
+                documentChangeLogService.record(DocumentChangedEvent.deleted(id));
+            });
+            eventPublisher.publishEvent(DocumentChangedEvent.deleted(id));
             return true;
         }
         return false;
     }
 
     /**
-     * 根据分类获取FAQ文档
+     * 批量更新文档的分类、状态或关键词
+     * 按段处理：每段一次IN查询加载文档，同一事务内修改后由JDBC批量UPDATE提交；整批完成后只发布一次批量变更事件。
+     * 问题和答案不变，因此不重新生成向量。
+     * @param ids 文档ID列表，为空时按筛选条件选择
+     * @param filterCategory 筛选分类
+     * @param filterStatus 筛选状态
+     * @param changes 要修改的字段（category、status、keywords中非null的字段）
+     * @return 批量更新结果，含每个ID的处理结果
+     */
+    public Map<String, Object> bulkUpdateDocuments(List<Long> ids, String filterCategory, String filterStatus,
+                                                   FAQDocument changes) {
+        List<Long> targetIds = resolveBulkIds(ids, filterCategory, filterStatus);
+        BulkResult result = new BulkResult();
+        List<DocumentChangedEvent> events = new ArrayList<>();
+
+        for (int from = 0; from < targetIds.size(); from += batchChunkSize) {
+            List<Long> chunk = targetIds.subList(from, Math.min(from + batchChunkSize, targetIds.size()));
+            try {
+                // 找到的文档ID -> 修改后的文档，没有变化的文档对应null
+                Map<Long, FAQDocument> updated = transactionTemplate.execute(status -> {
+                    Map<Long, FAQDocument> found = new HashMap<>();
+                    List<FAQDocument> changed = new ArrayList<>();
+                    for (FAQDocument document : faqDocumentRepository.findAllById(chunk)) {
+                        if (applyChanges(document, changes)) {
+                            changed.add(document);
+                            found.put(document.getId(), document);
+                        } else {
+                            found.put(document.getId(), null);
+                        }
+                    }
+                    faqDocumentRepository.saveAll(changed);
+                    // 先刷新以得到递增后的版本号，再在同一事务内写入变更日志
+                    faqDocumentRepository.flush();
+                    List<DocumentChangedEvent> changeEvents = new ArrayList<>(changed.size());
+                    for (FAQDocument document : changed) {
+                        changeEvents.add(DocumentChangedEvent.updated(document));
+                    }
+                    documentChangeLogService.recordAll(changeEvents);
+                    return found;
+                });
+                for (Long id : chunk) {
+                    if (!updated.containsKey(id)) {
+                        result.add(id, BulkResult.NOT_FOUND, null);
+                    } else if (updated.get(id) == null) {
+                        result.add(id, BulkResult.UNCHANGED, null);
+                    } else {
+                        result.add(id, BulkResult.UPDATED, null);
+                        events.add(DocumentChangedEvent.updated(updated.get(id)));
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Failed to update documents " + chunk + ": " + e.getMessage());
+                for (Long id : chunk) {
+                    result.add(id, BulkResult.FAILED, e.getMessage());
+                }
+            }
+        }
+
+        if (!events.isEmpty()) {
+            eventPublisher.publishEvent(new DocumentBatchChangedEvent(events));
+        }
+        return result.toMap();
+    }
+
+    /**
+     * 批量删除文档
+     * 按段处理：每段一次IN查询确认存在的文档，以一个 document_id in [...] 表达式删除向量，
+     * 再以一条 DELETE ... WHERE id IN 删除文档；整批完成后只发布一次批量变更事件。
+     * @param ids 文档ID列表，为空时按筛选条件选择
+     * @param filterCategory 筛选分类
+     * @param filterStatus 筛选状态
+     * @return 批量删除结果，含每个ID的处理结果
+     */
+    public Map<String, Object> bulkDeleteDocuments(List<Long> ids, String filterCategory, String filterStatus) {
+        List<Long> targetIds = resolveBulkIds(ids, filterCategory, filterStatus);
+        BulkResult result = new BulkResult();
+        List<DocumentChangedEvent> events = new ArrayList<>();
+
+        for (int from = 0; from < targetIds.size(); from += batchChunkSize) {
+            List<Long> chunk = targetIds.subList(from, Math.min(from + batchChunkSize, targetIds.size()));
+            try {
+                Set<Long> existing = new HashSet<>(faqDocumentRepository.findExistingIds(chunk));
+                List<Long> toDelete = new ArrayList<>();
+                for (Long id : chunk) {
+                    if (existing.contains(id)) {
+                        toDelete.add(id);
+                    }
+                }
+                if (!toDelete.isEmpty()) {
+                    // 与单条删除一致：先删除向量，再删除数据库中的文档
+                    vectorMaintenanceCoalescer.cancelAndDeleteAll(toDelete);
+                    transactionTemplate.executeWithoutResult(status -> {
+                        faqDocumentRepository.deleteAllByIdInBatch(toDelete);
+                        List<DocumentChangedEvent> changeEvents = new ArrayList<>(toDelete.size());
+                        for (Long id : toDelete) {
+                            changeEvents.add(DocumentChangedEvent.deleted(id));
+                        }
+                        documentChangeLogService.recordAll(changeEvents);
+                    });
+                }
+                for (Long id : chunk) {
+                    if (existing.contains(id)) {
+                        result.add(id, BulkResult.DELETED, null);
+                        events.add(DocumentChangedEvent.deleted(id));
+                    } else {
+                        result.add(id, BulkResult.NOT_FOUND, null);
+                    }
+                }
+            } catch (Exception e) {
+                System.err.println("Failed to delete documents " + chunk + ": " + e.getMessage());
+                for (Long id : chunk) {
+                    result.add(id, BulkResult.FAILED, e.getMessage());
+                }
+            }
+        }
+
+        if (!events.isEmpty()) {
+            eventPublisher.publishEvent(new DocumentBatchChangedEvent(events));
+        }
+        return result.toMap();
+    }
+
+    /**
+     * 确定批量操作的文档ID：显式给出的ID去重后保持顺序，否则按分类/状态筛选
+     */
+    private List<Long> resolveBulkIds(List<Long> ids, String filterCategory, String filterStatus) {
+        if (ids != null && !ids.isEmpty()) {
+            List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+            distinct.removeIf(Objects::isNull);
+            return distinct;
+        }
+        if (filterCategory == null && filterStatus == null) {
+            throw new IllegalArgumentException("ids or filter (category/status) is required");
+        }
+        return faqDocumentRepository.findIdsByFilter(filterCategory, filterStatus);
+    }
+
+    /**
+     * 将非null的分类、状态、关键词应用到文档
+     * @return 文档是否有变化
+     */
+    private static boolean applyChanges(FAQDocument document, FAQDocument changes) {
+        boolean changed = false;
+        if (changes.getCategory() != null && !changes.getCategory().equals(document.getCategory())) {
+            document.setCategory(changes.getCategory());
+            changed = true;
+        }
+        if (changes.getStatus() != null && !changes.getStatus().equals(document.getStatus())) {
+            document.setStatus(changes.getStatus());
+            changed = true;
+        }
+        if (changes.getKeywords() != null && !changes.getKeywords().equals(document.getKeywords())) {
+            document.setKeywords(changes.getKeywords());
+            changed = true;
+        }
+        return changed;
+    }
+
+    /**
+     * 获取相关问题：按会话共现模型预测命中该文档后最可能继续访问的文档，直接从读模型读取
+     * @param documentId 当前文档ID
+     * @param limit 返回数量
+     * @return 相关的已启用FAQ文档列表
+     */
+    public List<FAQDocument> getRelatedDocuments(Long documentId, int limit) {
+        List<Long> predicted = sessionCooccurrenceModel.predictNext(documentId, limit);
+        if (predicted.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<FAQDocument> related = new ArrayList<>(predicted.size());
+        for (Long id : predicted) {
+            faqDocumentReadModel.findById(id)
+                    .filter(doc -> "active".equals(doc.getStatus()))
+                    .ifPresent(related::add);
+        }
+        return related;
+    }
+
+    /**
+     * 根据分类获取FAQ文档摘要
      * @param category 分类名称
-     * @return FAQ文档列表
+     * @return 文档摘要列表（不含答案）
      */
-    public List<FAQDocument> getDocumentsByCategory(String category) {
-        return faqDocumentRepository.findByCategory(category);
+    public List<FAQDocumentSummary> getDocumentsByCategory(String category) {
+        return summarize(faqDocumentReadModel.findByCategory(category));
     }
 
     /**
@@ -160,7 +752,7 @@ public class FAQDocumentService {
      * @return FAQ文档列表
      */
     public List<FAQDocument> searchDocuments(String keyword) {
-        return faqDocumentRepository.searchByKeyword(keyword);
+        return faqDocumentReadModel.search(keyword);
     }
 
     /**
@@ -168,7 +760,39 @@ public class FAQDocumentService {
      * @return 分类列表
      */
     public List<String> getAllCategories() {
-        return faqDocumentRepository.findDistinctCategories();
+        return categoryRegistry.getCategoryNames();
+    }
+
+    /**
+     * 获取分类分面计数
+     * @param status 只统计该状态的文档，为null时统计全部状态
+     * @return 每个分类的文档数、状态分布、访问与反馈汇总
+     */
+    public List<Map<String, Object>> getCategoryFacets(String status) {
+        return categoryRegistry.getFacets(status);
+    }
+
+    /**
+     * 按ID游标分页获取分类下的文档
+     * @param category 分类名称
+     * @param afterId 上一页最后一篇文档的ID，为null时从头开始
+     * @param limit 每页数量
+     * @param status 只返回该状态的文档，为null时不限
+     * @return 当前页文档摘要、分类下的文档总数以及下一页游标
+     */
+    public Map<String, Object> getDocumentsByCategoryPage(String category, Long afterId, int limit, String status) {
+        List<FAQDocument> items = faqDocumentReadModel.findByCategoryAfter(category, afterId, limit + 1, status);
+        boolean hasMore = items.size() > limit;
+        if (hasMore) {
+            items = items.subList(0, limit);
+        }
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("category", category);
+        page.put("total", categoryRegistry.count(category, status));
+        page.put("limit", limit);
+        page.put("items", summarizeWithCounters(items));
+        page.put("next_after_id", hasMore ? items.get(items.size() - 1).getId() : null);
+        return page;
     }
 
     /**
@@ -178,17 +802,62 @@ public class FAQDocumentService {
      * @return 是否更新成功
      */
     public boolean updateFeedback(Long documentId, boolean isPositive) {
-        Optional<FAQDocument> document = faqDocumentRepository.findById(documentId);
-        if (document.isPresent()) {
-            FAQDocument doc = document.get();
-            if (isPositive) {
-                doc.setFeedbackPositive(doc.getFeedbackPositive() != null ? doc.getFeedbackPositive() + 1 : 1);
-            } else {
-                doc.setFeedbackNegative(doc.getFeedbackNegative() != null ? doc.getFeedbackNegative() + 1 : 1);
-            }
-            faqDocumentRepository.save(doc);
+        int updated = isPositive
+                ? faqDocumentRepository.incrementFeedbackPositive(documentId)
+                : faqDocumentRepository.incrementFeedbackNegative(documentId);
+        if (updated > 0) {
+            categoryRegistry.recordFeedback(documentId, isPositive);
+            faqDocumentReadModel.recordFeedback(documentId, isPositive);
             return true;
         }
         return false;
     }
+
+    /**
+     * 批量更新/删除结果：每个ID的处理结果及各结果的计数
+     */
+    private static class BulkResult {
+        static final String UPDATED = "updated";
+        static final String UNCHANGED = "unchanged";
+        static final String DELETED = "deleted";
+        static final String NOT_FOUND = "not_found";
+        static final String FAILED = "failed";
+
+        private final Map<String, Integer> counts = new LinkedHashMap<>();
+        private final List<Map<String, Object>> items = new ArrayList<>();
+
+        void add(Long id, String outcome, String error) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("id", id);
+            item.put("outcome", outcome);
+            if (error != null) {
+                item.put("error", error);
+            }
+            items.add(item);
+            counts.merge(outcome, 1, Integer::sum);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("total", items.size());
+            result.putAll(counts);
+            result.put("items", items);
+            return result;
+        }
+    }
+
+    /**
+     * 单条文档入库结果
+     */
+    @Getter
+    @AllArgsConstructor
+    private static class IngestResult {
+        static final String CREATED = "created";
+        static final String FLAGGED = "flagged";
+        static final String MERGED = "merged";
+        static final String FAILED = "failed";
+
+        private final String outcome;
+        private final FAQDocument document;
+    }
 }
\ No newline at end of file
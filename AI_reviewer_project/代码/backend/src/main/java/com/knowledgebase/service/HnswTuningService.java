@@ -0,0 +1,464 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.model.FAQDocument;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * HNSW检索参数调优服务
+ * 以在线向量存储中实际存储的向量为语料，对查询样本暴力计算精确的L2近邻作为真值，
+ * 再扫描不同的ef/topK（以及在临时集合上扫描M/efConstruction），输出recall@k与检索延迟分位数。
+ * 分片部署时经分片存储检索（与在线检索相同的scatter-gather路径），测得的是合并后的召回率和延迟。
+ * milvus.search.ef=auto时，启动后及每天定时选出满足召回率目标的最小ef。
+ * 基准测试可能持续数分钟（临时集合建索引），提交后在后台线程执行，通过任务ID查询进度和报告。
+ */
+@Service
+public class HnswTuningService {
+
+    private static final String TUNING_COLLECTION_SUFFIX = "_tuning";
+
+    private static final long INDEX_BUILD_TIMEOUT_MS = 600_000;
+
+    private static final int RETAINED_BENCHMARK_JOBS = 20;
+
+    @Autowired
+    private RagService ragService;
+
+    @Autowired
+    private VectorUtils vectorUtils;
+
+    @Autowired
+    private FAQDocumentReadModel readModel;
+
+    @Autowired
+    private QueryLogService queryLogService;
+
+    @Value("${milvus.search.ef:100}")
+    private String efSetting;
+
+    @Value("${milvus.search.recall-target:0.95}")
+    private double recallTarget;
+
+    @Value("${milvus.search.autotune.top-k:3}")
+    private int autotuneTopK;
+
+    @Value("${milvus.search.autotune.sample-queries:200}")
+    private int sampleQueries;
+
+    @Value("${milvus.search.autotune.ef-candidates:16,32,48,64,96,128,192,256,384,512}")
+    private int[] efCandidates;
+
+    private volatile Map<String, Object> lastAutotune = Collections.emptyMap();
+
+    /**
+     * 基准测试任务：任务ID -> 任务（只保留最近的若干个）
+     */
+    private final Map<String, BenchmarkJob> benchmarkJobs = new LinkedHashMap<String, BenchmarkJob>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, BenchmarkJob> eldest) {
+            return size() > RETAINED_BENCHMARK_JOBS;
+        }
+    };
+
+    private final AtomicLong benchmarkJobSequence = new AtomicLong();
+
+    private BenchmarkJob activeBenchmarkJob;
+
+    private final ExecutorService benchmarkExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "hnsw-benchmark");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PreDestroy
+    public void destroy() {
+        benchmarkExecutor.shutdownNow();
+    }
+
+    /**
+     * 启动完成后在后台执行一次自动调优，避免阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void autotuneOnStartup() {
+        if (!isAutoMode()) {
+            return;
+        }
+        Thread thread = new Thread(this::runAutotune, "hnsw-autotune");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 定时重新调优，跟随语料变化
+     */
+    @Scheduled(cron = "${milvus.search.autotune.cron:0 0 3 * * *}")
+    public void scheduledAutotune() {
+        if (isAutoMode()) {
+            runAutotune();
+        }
+    }
+
+    /**
+     * 选出满足召回率目标的最小ef并应用到在线检索
+     * @return 调优结果
+     */
+    public synchronized Map<String, Object> autotune() {
+        Dataset dataset = prepareDataset(sampleQueries, autotuneTopK);
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("recall_target", recallTarget);
+        result.put("top_k", autotuneTopK);
+        result.put("corpus_size", dataset.corpusIds.size());
+        result.put("queries", dataset.queries.size());
+        if (dataset.queries.isEmpty()) {
+            result.put("selected_ef", ragService.getSearchEf());
+            result.put("message", "语料为空，保持当前ef");
+            lastAutotune = result;
+            return result;
+        }
+
+        int[] candidates = efCandidates.clone();
+        Arrays.sort(candidates);
+        List<Map<String, Object>> measurements = new ArrayList<>();
+        int selectedEf = candidates[candidates.length - 1];
+        for (int ef : candidates) {
+            if (ef < autotuneTopK) {
+                continue;
+            }
+            Map<String, Object> measurement = measure(ragService::searchStore, dataset, autotuneTopK, ef);
+            measurements.add(measurement);
+            if ((Double) measurement.get("recall") >= recallTarget) {
+                selectedEf = ef;
+                break;
+            }
+        }
+        ragService.setSearchEf(selectedEf);
+        result.put("selected_ef", selectedEf);
+        result.put("measurements", measurements);
+        result.put("tuned_at", new Date());
+        lastAutotune = result;
+        return result;
+    }
+
+    /**
+     * 提交基准测试任务，在后台线程执行
+     * @param efValues 待测ef列表
+     * @param topKValues 待测topK列表
+     * @param queryCount 查询样本数量
+     * @param indexParams 待测索引参数列表，每项为{m, ef_construction}，为空时只测主集合
+     * @return 任务状态，已有任务在排队或执行时返回null
+     */
+    public Map<String, Object> submitBenchmark(List<Integer> efValues, List<Integer> topKValues, int queryCount,
+                                               List<Map<String, Integer>> indexParams) {
+        BenchmarkJob job;
+        synchronized (benchmarkJobs) {
+            if (activeBenchmarkJob != null) {
+                return null;
+            }
+            job = new BenchmarkJob(String.valueOf(benchmarkJobSequence.incrementAndGet()));
+            benchmarkJobs.put(job.id, job);
+            activeBenchmarkJob = job;
+        }
+        benchmarkExecutor.execute(() -> runBenchmark(job, efValues, topKValues, queryCount, indexParams));
+        return job.toMap();
+    }
+
+    /**
+     * 获取基准测试任务状态，完成后包含报告
+     * @param jobId 任务ID
+     * @return 任务状态，不存在返回null
+     */
+    public Map<String, Object> getBenchmarkJob(String jobId) {
+        synchronized (benchmarkJobs) {
+            BenchmarkJob job = benchmarkJobs.get(jobId);
+            return job != null ? job.toMap() : null;
+        }
+    }
+
+    private void runBenchmark(BenchmarkJob job, List<Integer> efValues, List<Integer> topKValues, int queryCount,
+                              List<Map<String, Integer>> indexParams) {
+        job.status = "running";
+        job.startedAt = new Date();
+        try {
+            job.report = benchmark(efValues, topKValues, queryCount, indexParams);
+            job.status = "completed";
+        } catch (Exception e) {
+            System.err.println("HNSW benchmark job " + job.id + " failed: " + e.getMessage());
+            job.error = e.getMessage();
+            job.status = "failed";
+        } finally {
+            job.finishedAt = new Date();
+            synchronized (benchmarkJobs) {
+                activeBenchmarkJob = null;
+            }
+        }
+    }
+
+    /**
+     * 执行基准测试：扫描ef与topK，可选地在临时集合上扫描索引参数
+     */
+    private synchronized Map<String, Object> benchmark(List<Integer> efValues, List<Integer> topKValues, int queryCount,
+                                                      List<Map<String, Integer>> indexParams) {
+        int maxTopK = Collections.max(topKValues);
+        Dataset dataset = prepareDataset(queryCount, maxTopK);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("corpus_size", dataset.corpusIds.size());
+        report.put("queries", dataset.queries.size());
+        report.put("query_source", dataset.querySource);
+        report.put("current_ef", ragService.getSearchEf());
+        if (dataset.queries.isEmpty()) {
+            report.put("message", "语料为空，无法测试");
+            return report;
+        }
+
+        List<Map<String, Object>> runs = new ArrayList<>();
+        if (indexParams == null || indexParams.isEmpty()) {
+            runs.add(sweep(ragService::searchStore, "current", dataset, efValues, topKValues));
+        } else {
+            for (Map<String, Integer> params : indexParams) {
+                int m = params.getOrDefault("m", 16);
+                int efConstruction = params.getOrDefault("ef_construction", 512);
+                String label = "M=" + m + ",efConstruction=" + efConstruction;
+                String collection = ragService.getCollectionName() + TUNING_COLLECTION_SUFFIX;
+                long buildStart = System.nanoTime();
+                try {
+                    ragService.createCollection(collection);
+                    ragService.insertVectors(collection, dataset.corpusIds, dataset.corpusVectorLists);
+                    ragService.createIndex(collection, m, efConstruction);
+                    ragService.flushAndWaitForIndex(collection, INDEX_BUILD_TIMEOUT_MS);
+                    ragService.loadCollection(collection);
+                    long buildMs = (System.nanoTime() - buildStart) / 1_000_000;
+                    Map<String, Object> run = sweep((vectors, topK, ef) -> new ShardedVectorStore.SearchResult(
+                            ragService.searchCollectionWithScores(collection, vectors, topK, ef), false),
+                            label, dataset, efValues, topKValues);
+                    run.put("build_ms", buildMs);
+                    runs.add(run);
+                } finally {
+                    try {
+                        ragService.dropCollection(collection);
+                    } catch (Exception e) {
+                        System.err.println("Failed to drop tuning collection " + collection + ": " + e.getMessage());
+                    }
+                }
+            }
+        }
+        report.put("runs", runs);
+        return report;
+    }
+
+    /**
+     * 获取最近一次自动调优结果
+     * @return 调优结果
+     */
+    public Map<String, Object> getLastAutotune() {
+        return lastAutotune;
+    }
+
+    private void runAutotune() {
+        try {
+            autotune();
+        } catch (Exception e) {
+            System.err.println("Failed to autotune HNSW search parameters: " + e.getMessage());
+        }
+    }
+
+    private boolean isAutoMode() {
+        return "auto".equalsIgnoreCase(efSetting);
+    }
+
+    private Map<String, Object> sweep(SearchTarget target, String label, Dataset dataset,
+                                      List<Integer> efValues, List<Integer> topKValues) {
+        List<Map<String, Object>> measurements = new ArrayList<>();
+        for (int topK : topKValues) {
+            for (int ef : efValues) {
+                measurements.add(measure(target, dataset, topK, ef));
+            }
+        }
+        Map<String, Object> run = new LinkedHashMap<>();
+        run.put("index", label);
+        run.put("measurements", measurements);
+        return run;
+    }
+
+    /**
+     * 逐条检索并与真值比较，单条发送以测量真实的单次检索延迟
+     */
+    private Map<String, Object> measure(SearchTarget target, Dataset dataset, int topK, int ef) {
+        long[] latencies = new long[dataset.queries.size()];
+        double recallSum = 0;
+        int partial = 0;
+        for (int i = 0; i < dataset.queries.size(); i++) {
+            long start = System.nanoTime();
+            ShardedVectorStore.SearchResult result = target.search(
+                    Collections.singletonList(dataset.queries.get(i)), topK, ef);
+            latencies[i] = System.nanoTime() - start;
+            if (result.isPartial()) {
+                partial++;
+            }
+            List<Long> found = new ArrayList<>();
+            for (VectorShard.Hit hit : result.getHits().get(0)) {
+                found.add(hit.getDocumentId());
+            }
+
+            List<Long> truth = dataset.truth.get(i);
+            int expected = Math.min(topK, truth.size());
+            Set<Long> truthSet = new HashSet<>(truth.subList(0, expected));
+            long hits = found.stream().limit(topK).filter(truthSet::contains).count();
+            recallSum += expected == 0 ? 1.0 : (double) hits / expected;
+        }
+        Arrays.sort(latencies);
+
+        Map<String, Object> measurement = new LinkedHashMap<>();
+        measurement.put("ef", Math.max(ef, topK));
+        measurement.put("top_k", topK);
+        measurement.put("recall", recallSum / latencies.length);
+        measurement.put("p50_ms", percentileMs(latencies, 0.50));
+        measurement.put("p95_ms", percentileMs(latencies, 0.95));
+        measurement.put("p99_ms", percentileMs(latencies, 0.99));
+        measurement.put("partial_queries", partial);
+        return measurement;
+    }
+
+    /**
+     * 准备语料、查询样本和暴力检索真值
+     * 查询样本优先取最近的真实查询文本，不足时从语料向量中抽样补齐
+     */
+    private Dataset prepareDataset(int queryCount, int maxTopK) {
+        List<Long> documentIds = readModel.findAll().stream()
+                .filter(document -> document.getVectorId() != null)
+                .map(FAQDocument::getId)
+                .collect(Collectors.toList());
+        Map<Long, List<Float>> stored = ragService.fetchVectors(documentIds);
+
+        Dataset dataset = new Dataset();
+        for (Map.Entry<Long, List<Float>> entry : stored.entrySet()) {
+            dataset.corpusIds.add(entry.getKey());
+            dataset.corpusVectorLists.add(entry.getValue());
+        }
+        if (dataset.corpusIds.isEmpty()) {
+            return dataset;
+        }
+
+        List<String> texts = queryLogService.getRecentQueryTexts(queryCount);
+        if (!texts.isEmpty()) {
+            dataset.queries.addAll(vectorUtils.generateVectors(texts));
+        }
+        int logged = dataset.queries.size();
+        if (logged < queryCount) {
+            Random random = new Random(42);
+            for (int i = logged; i < queryCount && i - logged < dataset.corpusIds.size(); i++) {
+                dataset.queries.add(dataset.corpusVectorLists.get(random.nextInt(dataset.corpusIds.size())));
+            }
+        }
+        dataset.querySource = logged + " logged, " + (dataset.queries.size() - logged) + " sampled";
+
+        float[][] corpus = new float[dataset.corpusIds.size()][];
+        for (int i = 0; i < corpus.length; i++) {
+            corpus[i] = toArray(dataset.corpusVectorLists.get(i));
+        }
+        for (List<Float> query : dataset.queries) {
+            dataset.truth.add(exactNeighbors(corpus, dataset.corpusIds, toArray(query), maxTopK));
+        }
+        return dataset;
+    }
+
+    /**
+     * 暴力计算L2最近邻，用大小为k的最大堆保留当前最优结果
+     */
+    static List<Long> exactNeighbors(float[][] corpus, List<Long> ids, float[] query, int k) {
+        PriorityQueue<double[]> heap = new PriorityQueue<>(k + 1, (a, b) -> Double.compare(b[0], a[0]));
+        for (int i = 0; i < corpus.length; i++) {
+            float[] vector = corpus[i];
+            double distance = 0;
+            for (int j = 0; j < query.length; j++) {
+                double diff = vector[j] - query[j];
+                distance += diff * diff;
+            }
+            if (heap.size() < k) {
+                heap.add(new double[]{distance, i});
+            } else if (distance < heap.peek()[0]) {
+                heap.poll();
+                heap.add(new double[]{distance, i});
+            }
+        }
+        List<double[]> sorted = new ArrayList<>(heap);
+        sorted.sort(Comparator.comparingDouble(entry -> entry[0]));
+        List<Long> result = new ArrayList<>(sorted.size());
+        for (double[] entry : sorted) {
+            result.add(ids.get((int) entry[1]));
+        }
+        return result;
+    }
+
+    static float[] toArray(List<Float> vector) {
+        float[] array = new float[vector.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = vector.get(i);
+        }
+        return array;
+    }
+
+    private static double percentileMs(long[] sortedNanos, double percentile) {
+        int index = (int) Math.ceil(percentile * sortedNanos.length) - 1;
+        return sortedNanos[Math.max(0, index)] / 1_000_000.0;
+    }
+
+    /**
+     * 基准测试任务
+     */
+    private static final class BenchmarkJob {
+        final String id;
+        final Date submittedAt = new Date();
+        volatile String status = "queued";
+        volatile Date startedAt;
+        volatile Date finishedAt;
+        volatile Map<String, Object> report;
+        volatile String error;
+
+        BenchmarkJob(String id) {
+            this.id = id;
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("job_id", id);
+            map.put("status", status);
+            map.put("submitted_at", submittedAt);
+            map.put("started_at", startedAt);
+            map.put("finished_at", finishedAt);
+            if (error != null) {
+                map.put("error", error);
+            }
+            if (report != null) {
+                map.put("report", report);
+            }
+            return map;
+        }
+    }
+
+    /**
+     * 被测的检索目标：在线向量存储或临时调优集合
+     */
+    @FunctionalInterface
+    private interface SearchTarget {
+        ShardedVectorStore.SearchResult search(List<List<Float>> queryVectors, int topK, int ef);
+    }
+
+    private static final class Dataset {
+        final List<Long> corpusIds = new ArrayList<>();
+        final List<List<Float>> corpusVectorLists = new ArrayList<>();
+        final List<List<Float>> queries = new ArrayList<>();
+        final List<List<Long>> truth = new ArrayList<>();
+        String querySource = "";
+    }
+}
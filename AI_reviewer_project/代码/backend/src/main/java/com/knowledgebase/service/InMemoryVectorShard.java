@@ -0,0 +1,89 @@
+package com.knowledgebase.service;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内向量分片
+ * 以暴力L2扫描检索，适用于本地开发、压测以及多分片的进程内测试。
+ */
+public class InMemoryVectorShard implements VectorShard {
+
+    private final String name;
+
+    private final Map<Long, float[]> vectors = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextVectorId = new AtomicLong();
+
+    public InMemoryVectorShard(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public String insert(Long documentId, List<Float> vector) {
+        float[] array = new float[vector.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = vector.get(i);
+        }
+        vectors.put(documentId, array);
+        return name + "-" + nextVectorId.incrementAndGet();
+    }
+
+    @Override
+    public void delete(Long documentId) {
+        vectors.remove(documentId);
+    }
+
+    @Override
+    public void delete(List<Long> documentIds) {
+        vectors.keySet().removeAll(documentIds);
+    }
+
+    @Override
+    public List<List<Hit>> search(List<List<Float>> queryVectors, int topK) {
+        List<List<Hit>> results = new ArrayList<>(queryVectors.size());
+        for (List<Float> queryVector : queryVectors) {
+            results.add(search(queryVector, topK));
+        }
+        return results;
+    }
+
+    public int size() {
+        return vectors.size();
+    }
+
+    /**
+     * 用大小为topK的最大堆保留当前最近的结果
+     */
+    private List<Hit> search(List<Float> queryVector, int topK) {
+        float[] query = new float[queryVector.size()];
+        for (int i = 0; i < query.length; i++) {
+            query[i] = queryVector.get(i);
+        }
+        PriorityQueue<Hit> heap = new PriorityQueue<>(topK + 1,
+                (a, b) -> Float.compare(b.getDistance(), a.getDistance()));
+        for (Map.Entry<Long, float[]> entry : vectors.entrySet()) {
+            float[] vector = entry.getValue();
+            float distance = 0;
+            for (int i = 0; i < query.length; i++) {
+                float diff = vector[i] - query[i];
+                distance += diff * diff;
+            }
+            if (heap.size() < topK) {
+                heap.add(new Hit(entry.getKey(), distance));
+            } else if (distance < heap.peek().getDistance()) {
+                heap.poll();
+                heap.add(new Hit(entry.getKey(), distance));
+            }
+        }
+        List<Hit> hits = new ArrayList<>(heap);
+        hits.sort(Comparator.comparingDouble(Hit::getDistance));
+        return hits;
+    }
+}
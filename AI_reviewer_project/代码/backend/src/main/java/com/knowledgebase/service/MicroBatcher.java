@@ -0,0 +1,160 @@
+package com.knowledgebase.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 微批处理器
+ * 将并发提交的单个请求合并为批次调用批处理函数，再把结果分发回各调用方。
+ * 工作线程取到第一个请求时若队列中没有其他请求，立即单独执行，空闲时单请求不增加任何延迟；
+ * 队列中已有积压时才最多再等待maxWait收集请求，批次达到maxBatchSize立即执行。
+ * 批次因此只由处理期间到达的请求形成。
+ * @param <I> 请求类型
+ * @param <O> 结果类型
+ */
+public class MicroBatcher<I, O> implements AutoCloseable {
+
+    private final BlockingQueue<Task<I, O>> queue = new LinkedBlockingQueue<>();
+
+    private final int maxBatchSize;
+
+    private final long maxWaitNanos;
+
+    private final Function<List<I>, List<O>> batchFunction;
+
+    private final ExecutorService workers;
+
+    private volatile boolean running = true;
+
+    /**
+     * @param name 工作线程名前缀
+     * @param maxBatchSize 最大批次大小
+     * @param maxWaitMicros 收集批次的最长等待时间（微秒）
+     * @param workerCount 工作线程数
+     * @param batchFunction 批处理函数，返回结果须与输入一一对应
+     */
+    public MicroBatcher(String name, int maxBatchSize, long maxWaitMicros, int workerCount,
+                        Function<List<I>, List<O>> batchFunction) {
+        this.maxBatchSize = maxBatchSize;
+        this.maxWaitNanos = TimeUnit.MICROSECONDS.toNanos(maxWaitMicros);
+        this.batchFunction = batchFunction;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(workerCount, runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (int i = 0; i < workerCount; i++) {
+            workers.execute(this::runLoop);
+        }
+    }
+
+    /**
+     * 异步提交请求
+     * @param input 请求
+     * @return 结果Future
+     */
+    public CompletableFuture<O> submit(I input) {
+        if (!running) {
+            throw new IllegalStateException("MicroBatcher is closed");
+        }
+        Task<I, O> task = new Task<>(input);
+        queue.add(task);
+        return task.future;
+    }
+
+    /**
+     * 同步提交请求并等待结果
+     * @param input 请求
+     * @return 结果
+     */
+    public O call(I input) {
+        try {
+            return submit(input).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for batch result", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        workers.shutdownNow();
+        Task<I, O> task;
+        while ((task = queue.poll()) != null) {
+            task.future.completeExceptionally(new IllegalStateException("MicroBatcher is closed"));
+        }
+    }
+
+    private void runLoop() {
+        List<Task<I, O>> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(queue.take());
+                if (queue.isEmpty()) {
+                    execute(batch);
+                    continue;
+                }
+                long deadline = System.nanoTime() + maxWaitNanos;
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    Task<I, O> next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+                execute(batch);
+            } catch (InterruptedException e) {
+                for (Task<I, O> task : batch) {
+                    task.future.completeExceptionally(new IllegalStateException("MicroBatcher is closed"));
+                }
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void execute(List<Task<I, O>> batch) {
+        List<I> inputs = new ArrayList<>(batch.size());
+        for (Task<I, O> task : batch) {
+            inputs.add(task.input);
+        }
+        try {
+            List<O> outputs = batchFunction.apply(inputs);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(outputs.get(i));
+            }
+        } catch (Throwable t) {
+            for (Task<I, O> task : batch) {
+                task.future.completeExceptionally(t);
+            }
+        }
+    }
+
+    private static final class Task<I, O> {
+        final I input;
+        final CompletableFuture<O> future = new CompletableFuture<>();
+
+        Task(I input) {
+            this.input = input;
+        }
+    }
+}
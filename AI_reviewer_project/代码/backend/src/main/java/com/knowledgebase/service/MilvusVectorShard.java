@@ -0,0 +1,48 @@
+package com.knowledgebase.service;
+
+import java.util.List;
+
+/**
+ * Milvus集合分片：每个分片对应一个独立的集合，可部署在不同的查询节点上
+ */
+public class MilvusVectorShard implements VectorShard {
+
+    private final RagService ragService;
+
+    private final String collectionName;
+
+    public MilvusVectorShard(RagService ragService, String collectionName) {
+        this.ragService = ragService;
+        this.collectionName = collectionName;
+    }
+
+    @Override
+    public String getName() {
+        return collectionName;
+    }
+
+    @Override
+    public String insert(Long documentId, List<Float> vector) {
+        return ragService.storeVector(collectionName, documentId, vector);
+    }
+
+    @Override
+    public void delete(Long documentId) {
+        ragService.deleteVector(collectionName, documentId);
+    }
+
+    @Override
+    public void delete(List<Long> documentIds) {
+        ragService.deleteVectors(collectionName, documentIds);
+    }
+
+    @Override
+    public List<List<Hit>> search(List<List<Float>> queryVectors, int topK) {
+        return ragService.searchCollectionWithScores(collectionName, queryVectors, topK, ragService.getSearchEf());
+    }
+
+    @Override
+    public List<List<Hit>> search(List<List<Float>> queryVectors, int topK, int ef) {
+        return ragService.searchCollectionWithScores(collectionName, queryVectors, topK, ef);
+    }
+}
@@ -0,0 +1,57 @@
+package com.knowledgebase.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 模拟向量模型
+ * 基于文本哈希值生成伪随机向量，仅用于开发联调，不具备语义检索能力
+ */
+@Component
+@ConditionalOnProperty(name = "embedding.provider", havingValue = "mock", matchIfMissing = true)
+public class MockEmbeddingProvider implements EmbeddingProvider {
+
+    @Value("${milvus.collection.dimension}")
+    private Integer dimension;
+
+    @Override
+    public String getModelId() {
+        return "mock-hash";
+    }
+
+    @Override
+    public int getDimension() {
+        return dimension;
+    }
+
+    @Override
+    public List<List<Float>> embedAll(List<String> texts) {
+        List<List<Float>> vectors = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            vectors.add(embed(text));
+        }
+        return vectors;
+    }
+
+    @Override
+    public List<Float> embed(String text) {
+        List<Float> vector = new ArrayList<>(dimension);
+
+        // 基于文本的哈希值生成伪随机向量
+        long seed = text.hashCode();
+        Random localRandom = new Random(seed);
+
+        for (int i = 0; i < dimension; i++) {
+            // 生成-1到1之间的随机浮点数
+            float value = (localRandom.nextFloat() - 0.5f) * 2.0f;
+            vector.add(value);
+        }
+
+        return vector;
+    }
+}
@@ -0,0 +1,49 @@
+package com.knowledgebase.service;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.AllMiniLmL6V2EmbeddingModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 进程内ONNX向量模型
+ * 使用LangChain4J内置的all-MiniLM-L6-v2模型在CPU上推理，模型文件随jar分发，可离线运行。
+ * 输出384维归一化向量，启用时需将milvus.collection.dimension设为384并重建集合。
+ */
+@Component
+@ConditionalOnProperty(name = "embedding.provider", havingValue = "onnx")
+public class OnnxEmbeddingProvider implements EmbeddingProvider {
+
+    private static final int DIMENSION = 384;
+
+    private final EmbeddingModel model = new AllMiniLmL6V2EmbeddingModel();
+
+    @Override
+    public String getModelId() {
+        return "all-minilm-l6-v2";
+    }
+
+    @Override
+    public int getDimension() {
+        return DIMENSION;
+    }
+
+    @Override
+    public List<List<Float>> embedAll(List<String> texts) {
+        List<TextSegment> segments = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            segments.add(TextSegment.from(text));
+        }
+        List<Embedding> embeddings = model.embedAll(segments);
+        List<List<Float>> vectors = new ArrayList<>(embeddings.size());
+        for (Embedding embedding : embeddings) {
+            vectors.add(embedding.vectorAsList());
+        }
+        return vectors;
+    }
+}
@@ -0,0 +1,255 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.model.QueryLog;
+import com.knowledgebase.repository.QueryLogRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 查询日志分区与归档服务
+ * query_logs按自然月分区，超过保留期的月份被导出为本地压缩列存段文件后从数据库删除
+ * （启用MySQL分区时直接DROP PARTITION）。按时间范围查询时根据段文件头中的最小/最大时间跳过无关段。
+ */
+@Service
+public class QueryLogArchiveService {
+
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+
+    @Autowired
+    private QueryLogRepository queryLogRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Value("${query-log.archive.dir:./data/query-log-archive}")
+    private String archiveDir;
+
+    @Value("${query-log.retention-days:90}")
+    private int retentionDays;
+
+    @Value("${query-log.archive.segment-rows:100000}")
+    private int segmentRows;
+
+    @Value("${query-log.partition.mysql-enabled:false}")
+    private boolean mysqlPartitioning;
+
+    @Value("${query-log.partition.months-ahead:3}")
+    private int monthsAhead;
+
+    private final List<QueryLogSegment.Header> segments = new CopyOnWriteArrayList<>();
+
+    /**
+     * 加载已有段文件的文件头，并预建未来月份的分区
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Path dir = Paths.get(archiveDir);
+        Files.createDirectories(dir);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "*" + QueryLogSegment.FILE_SUFFIX)) {
+            for (Path file : files) {
+                try {
+                    segments.add(QueryLogSegment.readHeader(file));
+                } catch (IOException e) {
+                    System.err.println("Skip unreadable query log segment " + file + ": " + e.getMessage());
+                }
+            }
+        }
+        ensurePartitions();
+    }
+
+    /**
+     * 定时归档超过保留期的月份
+     */
+    @Scheduled(cron = "${query-log.archive.cron:0 30 2 * * *}")
+    public void scheduledArchive() {
+        try {
+            archiveExpiredPartitions();
+        } catch (Exception e) {
+            System.err.println("Failed to archive query logs: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 归档所有早于保留期所在月份的完整月份
+     * @return 归档的行数
+     */
+    public synchronized long archiveExpiredPartitions() throws IOException {
+        ensurePartitions();
+        YearMonth cutoff = YearMonth.from(LocalDate.now().minusDays(retentionDays));
+        QueryLog oldest = queryLogRepository.findFirstByOrderByCreatedAtAsc();
+        if (oldest == null) {
+            return 0;
+        }
+        long archived = 0;
+        for (YearMonth month = YearMonth.from(toLocalDate(oldest.getCreatedAt())); month.isBefore(cutoff); month = month.plusMonths(1)) {
+            archived += archiveMonth(month);
+        }
+        return archived;
+    }
+
+    /**
+     * 查询归档中指定时间范围内的日志，只读取时间范围有交集的段
+     * @param startDate 开始时间
+     * @param endDate 结束时间
+     * @return 查询日志列表
+     */
+    public List<QueryLog> findArchived(Date startDate, Date endDate) {
+        List<QueryLog> result = new ArrayList<>();
+        forEachArchived(startDate, endDate, result::add);
+        return result;
+    }
+
+    /**
+     * 逐段遍历归档中指定时间范围内的日志，同一时刻只在内存中保留一个段
+     * 段内按id升序存储，段按最小id顺序遍历，跳过id不大于已输出最大id的行，重复归档产生的重叠段不会输出重复日志
+     * @param startDate 开始时间，为null表示不限
+     * @param endDate 结束时间，为null表示不限
+     * @param consumer 日志处理回调
+     */
+    public void forEachArchived(Date startDate, Date endDate, Consumer<QueryLog> consumer) {
+        long start = startDate != null ? startDate.getTime() : Long.MIN_VALUE;
+        long end = endDate != null ? endDate.getTime() : Long.MAX_VALUE;
+        List<QueryLogSegment.Header> matched = findSegments(startDate, endDate);
+
+        long lastId = Long.MIN_VALUE;
+        for (QueryLogSegment.Header header : matched) {
+            if (header.getMaxId() <= lastId) {
+                continue;
+            }
+            List<QueryLog> logs;
+            try {
+                logs = QueryLogSegment.read(header.getFile());
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read query log segment " + header.getFile() + ": " + e.getMessage(), e);
+            }
+            for (QueryLog log : logs) {
+                if (log.getId() <= lastId) {
+                    continue;
+                }
+                lastId = log.getId();
+                long createdAt = log.getCreatedAt().getTime();
+                if (createdAt >= start && createdAt <= end) {
+                    consumer.accept(log);
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取与时间范围有交集的归档段
+     * @param startDate 开始时间，为null表示不限
+     * @param endDate 结束时间，为null表示不限
+     * @return 段文件头列表（按最小id升序）
+     */
+    public List<QueryLogSegment.Header> findSegments(Date startDate, Date endDate) {
+        long start = startDate != null ? startDate.getTime() : Long.MIN_VALUE;
+        long end = endDate != null ? endDate.getTime() : Long.MAX_VALUE;
+        return segments.stream()
+                .filter(header -> header.overlaps(start, end))
+                .sorted(Comparator.comparingLong(QueryLogSegment.Header::getMinId))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 获取归档段信息
+     * @return 段文件头列表
+     */
+    public List<QueryLogSegment.Header> getSegments() {
+        return Collections.unmodifiableList(segments);
+    }
+
+    private long archiveMonth(YearMonth month) throws IOException {
+        Date start = toDate(month.atDay(1));
+        Date end = toDate(month.plusMonths(1).atDay(1));
+        String partition = partitionName(month);
+        boolean dropPartition = mysqlPartitioning && existingPartitions().contains(partition);
+
+        long archived = 0;
+        long afterId = 0;
+        while (true) {
+            List<QueryLog> chunk = queryLogRepository.findByCreatedAtGreaterThanEqualAndCreatedAtLessThanAndIdGreaterThanOrderByIdAsc(
+                    start, end, afterId, PageRequest.of(0, segmentRows));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            afterId = chunk.get(chunk.size() - 1).getId();
+            Path file = Paths.get(archiveDir, "query_logs-" + month.format(MONTH_FORMAT) + "-" + chunk.get(0).getId()
+                    + QueryLogSegment.FILE_SUFFIX);
+            QueryLogSegment.Header header = QueryLogSegment.write(file, chunk);
+            // 上次归档中断后重新归档会覆盖同名段文件，替换其旧的文件头
+            segments.removeIf(existing -> existing.getFile().equals(file));
+            segments.add(header);
+            archived += chunk.size();
+
+            // 段文件落盘后再删除数据库中的行；若在此之前中断，重复行在查询时按id去重
+            if (!dropPartition) {
+                queryLogRepository.deleteAllByIdInBatch(chunk.stream().map(QueryLog::getId).collect(Collectors.toList()));
+            }
+        }
+        if (dropPartition) {
+            jdbcTemplate.execute("ALTER TABLE query_logs DROP PARTITION " + partition);
+        }
+        return archived;
+    }
+
+    /**
+     * 为当前及未来若干个月预建分区（需先按db/query_logs_partitioning.sql完成分区改造）
+     */
+    private void ensurePartitions() {
+        if (!mysqlPartitioning) {
+            return;
+        }
+        Set<String> existing = existingPartitions();
+        if (existing.isEmpty()) {
+            System.err.println("query_logs is not partitioned, see db/query_logs_partitioning.sql");
+            return;
+        }
+        YearMonth month = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++, month = month.plusMonths(1)) {
+            String partition = partitionName(month);
+            if (!existing.contains(partition)) {
+                jdbcTemplate.execute("ALTER TABLE query_logs REORGANIZE PARTITION pmax INTO ("
+                        + "PARTITION " + partition + " VALUES LESS THAN (TO_DAYS('" + month.plusMonths(1).atDay(1) + "')), "
+                        + "PARTITION pmax VALUES LESS THAN MAXVALUE)");
+            }
+        }
+    }
+
+    private Set<String> existingPartitions() {
+        return new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT PARTITION_NAME FROM information_schema.PARTITIONS "
+                        + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'query_logs' AND PARTITION_NAME IS NOT NULL",
+                String.class));
+    }
+
+    private static String partitionName(YearMonth month) {
+        return "p" + month.format(MONTH_FORMAT);
+    }
+
+    private static LocalDate toLocalDate(Date date) {
+        return date.toInstant().atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+}
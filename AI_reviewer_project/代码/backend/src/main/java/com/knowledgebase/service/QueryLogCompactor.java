@@ -0,0 +1,505 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.event.DocumentBatchChangedEvent;
+import com.knowledgebase.event.DocumentChangedEvent;
+import com.knowledgebase.model.FAQDocument;
+import com.knowledgebase.model.FAQDocumentVersion;
+import com.knowledgebase.model.QueryLog;
+import com.knowledgebase.model.UserAgent;
+import com.knowledgebase.repository.FAQDocumentVersionRepository;
+import com.knowledgebase.repository.UserAgentRepository;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 查询日志精简存储
+ * 写入时：命中文档的答案已保存在不可变的版本历史中，日志只记录(文档ID, 版本号)，不再复制答案全文；
+ * User-Agent字符串按字典编码，日志只记录字典id。
+ * 读取时：按版本历史和字典还原response与user_agent，返回独立副本，不会被持久化上下文写回数据库；
+ * 批量还原时按IN查询一次取回一批日志缺少的版本和字典项，不逐条访问数据库。
+ * 版本历史由后台线程在文档创建/更新后写入；写日志时发现缺失的版本（如本功能上线前已存在的文档）
+ * 会按读模型排队补写，未缓存的User-Agent同样排队写入字典，不在查询线程上访问数据库。
+ * 版本历史或字典项写入完成之前的日志保留答案或User-Agent全文，保证任何日志都能还原。
+ * 内存中只记录每篇文档已写入的最新版本号，大小与文档数成正比。
+ */
+@Service
+public class QueryLogCompactor {
+
+    /**
+     * 批量还原时单条IN查询的最大参数个数
+     */
+    private static final int LOOKUP_BATCH_SIZE = 500;
+
+    @Autowired
+    private FAQDocumentVersionRepository faqDocumentVersionRepository;
+
+    @Autowired
+    private UserAgentRepository userAgentRepository;
+
+    @Autowired
+    private FAQDocumentReadModel faqDocumentReadModel;
+
+    @Value("${query-log.compact.enabled:true}")
+    private boolean enabled;
+
+    @Value("${query-log.compact.cache-size:10000}")
+    private int cacheSize;
+
+    @Value("${query-log.compact.pending-capacity:10000}")
+    private int pendingCapacity;
+
+    /**
+     * 文档ID -> 已写入版本历史的最新版本号（日志几乎总是引用文档的当前版本）
+     */
+    private final Map<Long, Integer> recordedVersions = new ConcurrentHashMap<>();
+
+    /**
+     * 已排队等待写入的"文档ID:版本号"，避免同一版本被重复排队
+     */
+    private final Set<String> pendingVersions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 已排队等待写入字典的User-Agent
+     */
+    private final Set<String> pendingUserAgents = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolExecutor recorder;
+
+    /**
+     * "文档ID:版本号" -> 答案，版本不可变，按LRU淘汰
+     */
+    private Map<String, String> answerCache;
+
+    private final Map<String, Integer> userAgentIds = new ConcurrentHashMap<>();
+
+    private final Map<Integer, String> userAgents = new ConcurrentHashMap<>();
+
+    private final AtomicLong compactedResponses = new AtomicLong();
+
+    private final AtomicLong retainedResponses = new AtomicLong();
+
+    private final AtomicLong expanded = new AtomicLong();
+
+    private final AtomicLong missingVersions = new AtomicLong();
+
+    private final AtomicLong droppedVersions = new AtomicLong();
+
+    private final AtomicLong retainedUserAgents = new AtomicLong();
+
+    /**
+     * 加载已记录的版本
+     */
+    @PostConstruct
+    public void init() {
+        answerCache = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > cacheSize;
+            }
+        });
+        recorder = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(pendingCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "query-log-compactor");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            for (Object[] row : faqDocumentVersionRepository.findLatestVersionKeys()) {
+                recordedVersions.put((Long) row[0], (Integer) row[1]);
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to load document version keys: " + e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        recorder.shutdown();
+    }
+
+    /**
+     * 文档创建或更新后写入该版本的历史记录
+     * @param event 文档变更事件
+     */
+    @EventListener
+    public void onDocumentChanged(DocumentChangedEvent event) {
+        if (event.getChangeType() == DocumentChangedEvent.ChangeType.DELETED) {
+            recordedVersions.remove(event.getDocumentId());
+            return;
+        }
+        if (event.getDocument() != null) {
+            scheduleRecord(event.getDocument());
+        }
+    }
+
+    /**
+     * 批量更新后写入各文档新版本的历史记录
+     * @param event 批量变更事件
+     */
+    @EventListener
+    public void onDocumentsChanged(DocumentBatchChangedEvent event) {
+        for (DocumentChangedEvent change : event.getChanges()) {
+            onDocumentChanged(change);
+        }
+    }
+
+    /**
+     * 写入前精简查询日志（就地修改）
+     * @param log 待保存的查询日志，需已设置documentId、documentVersion和response
+     */
+    public void compact(QueryLog log) {
+        if (!enabled) {
+            return;
+        }
+        if (log.getResponse() != null && log.getDocumentId() != null && log.getDocumentVersion() != null) {
+            if (ensureVersionRecorded(log.getDocumentId(), log.getDocumentVersion(), log.getResponse())) {
+                log.setResponse(null);
+                compactedResponses.incrementAndGet();
+            } else {
+                retainedResponses.incrementAndGet();
+            }
+        }
+        if (log.getUserAgent() != null && !log.getUserAgent().isEmpty()) {
+            Integer userAgentId = userAgentIds.get(log.getUserAgent());
+            if (userAgentId != null) {
+                log.setUserAgentId(userAgentId);
+                log.setUserAgent(null);
+            } else {
+                scheduleUserAgent(log.getUserAgent());
+                retainedUserAgents.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 还原查询日志的response和user_agent
+     * @param log 查询日志，可能为精简格式
+     * @return 完整的查询日志；需要还原时返回副本，原对象不变
+     */
+    public QueryLog expand(QueryLog log) {
+        if (log == null) {
+            return null;
+        }
+        boolean needsResponse = log.getResponse() == null && log.getDocumentId() != null && log.getDocumentVersion() != null;
+        boolean needsUserAgent = log.getUserAgent() == null && log.getUserAgentId() != null;
+        if (!needsResponse && !needsUserAgent) {
+            return log;
+        }
+        return copy(log, needsResponse ? answerFor(log.getDocumentId(), log.getDocumentVersion()) : null,
+                needsUserAgent ? userAgentFor(log.getUserAgentId()) : null);
+    }
+
+    /**
+     * 批量还原查询日志：先按批IN查询取回缓存中没有的版本和字典项，再逐条还原
+     * @param logs 查询日志列表
+     * @return 完整的查询日志列表
+     */
+    public List<QueryLog> expandAll(List<QueryLog> logs) {
+        Map<String, String> answers = new HashMap<>();
+        Map<Integer, String> agents = new HashMap<>();
+        Set<String> missingAnswers = new LinkedHashSet<>();
+        Set<Integer> missingAgents = new LinkedHashSet<>();
+        for (QueryLog log : logs) {
+            if (log == null) {
+                continue;
+            }
+            if (log.getResponse() == null && log.getDocumentId() != null && log.getDocumentVersion() != null) {
+                String key = key(log.getDocumentId(), log.getDocumentVersion());
+                String answer = answers.containsKey(key) ? answers.get(key) : answerCache.get(key);
+                if (answer != null) {
+                    answers.put(key, answer);
+                } else {
+                    missingAnswers.add(key);
+                }
+            }
+            if (log.getUserAgent() == null && log.getUserAgentId() != null) {
+                String agent = userAgents.get(log.getUserAgentId());
+                if (agent != null) {
+                    agents.put(log.getUserAgentId(), agent);
+                } else {
+                    missingAgents.add(log.getUserAgentId());
+                }
+            }
+        }
+        loadAnswers(logs, missingAnswers, answers);
+        loadUserAgents(missingAgents, agents);
+
+        List<QueryLog> result = new ArrayList<>(logs.size());
+        for (QueryLog log : logs) {
+            if (log == null) {
+                result.add(null);
+                continue;
+            }
+            boolean needsResponse = log.getResponse() == null && log.getDocumentId() != null && log.getDocumentVersion() != null;
+            boolean needsUserAgent = log.getUserAgent() == null && log.getUserAgentId() != null;
+            if (!needsResponse && !needsUserAgent) {
+                result.add(log);
+                continue;
+            }
+            result.add(copy(log, needsResponse ? answers.get(key(log.getDocumentId(), log.getDocumentVersion())) : null,
+                    needsUserAgent ? agents.get(log.getUserAgentId()) : null));
+        }
+        return result;
+    }
+
+    /**
+     * 获取精简存储统计
+     * @return 统计数据
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("recorded_documents", recordedVersions.size());
+        stats.put("pending_versions", pendingVersions.size());
+        stats.put("dropped_versions", droppedVersions.get());
+        stats.put("cached_answers", answerCache.size());
+        stats.put("cached_user_agents", userAgents.size());
+        stats.put("pending_user_agents", pendingUserAgents.size());
+        stats.put("compacted_responses", compactedResponses.get());
+        stats.put("retained_responses", retainedResponses.get());
+        stats.put("retained_user_agents", retainedUserAgents.get());
+        stats.put("expanded", expanded.get());
+        stats.put("missing_versions", missingVersions.get());
+        return stats;
+    }
+
+    /**
+     * 确认日志引用的版本已写入历史；缺失时仅在读模型中的同版本答案与日志一致时排队补写，
+     * 补写完成前本条日志保留答案全文
+     */
+    private boolean ensureVersionRecorded(Long documentId, Integer version, String response) {
+        if (version.equals(recordedVersions.get(documentId))) {
+            return true;
+        }
+        Optional<FAQDocument> document = faqDocumentReadModel.findById(documentId);
+        if (document.isPresent() && version.equals(document.get().getVersion())
+                && response.equals(document.get().getAnswer())) {
+            scheduleRecord(document.get());
+        }
+        return false;
+    }
+
+    /**
+     * 排队写入版本历史，队列已满时放弃（之后引用该版本的日志保留全文，下次再排队）
+     */
+    private void scheduleRecord(FAQDocument document) {
+        if (document.getId() == null || document.getVersion() == null
+                || document.getVersion().equals(recordedVersions.get(document.getId()))) {
+            return;
+        }
+        String key = key(document.getId(), document.getVersion());
+        if (!pendingVersions.add(key)) {
+            return;
+        }
+        Long documentId = document.getId();
+        Integer documentVersion = document.getVersion();
+        String question = document.getQuestion();
+        String answer = document.getAnswer();
+        try {
+            recorder.execute(() -> {
+                try {
+                    recordVersion(documentId, documentVersion, question, answer);
+                } catch (Exception e) {
+                    System.err.println("Failed to record version of document " + documentId + ": " + e.getMessage());
+                } finally {
+                    pendingVersions.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingVersions.remove(key);
+            droppedVersions.incrementAndGet();
+        }
+    }
+
+    private void recordVersion(Long documentId, Integer documentVersion, String question, String answer) {
+        // 其他节点可能已写入同一版本
+        if (!faqDocumentVersionRepository.findByDocumentIdAndVersion(documentId, documentVersion).isPresent()) {
+            FAQDocumentVersion version = new FAQDocumentVersion();
+            version.setDocumentId(documentId);
+            version.setVersion(documentVersion);
+            version.setQuestion(question);
+            version.setAnswer(answer);
+            version.setCreatedAt(new Date());
+            try {
+                faqDocumentVersionRepository.save(version);
+            } catch (DataIntegrityViolationException e) {
+                // 并发写入同一版本，以先写入的为准
+            }
+        }
+        // 排队期间文档可能已被删除，不再为其保留条目
+        if (faqDocumentReadModel.findById(documentId).isPresent()) {
+            recordedVersions.merge(documentId, documentVersion, Math::max);
+        }
+        answerCache.put(key(documentId, documentVersion), answer);
+    }
+
+    /**
+     * 还原出独立副本，找不到版本历史时response为null并计入missing_versions
+     */
+    private QueryLog copy(QueryLog log, String answer, String userAgent) {
+        QueryLog copy = new QueryLog();
+        BeanUtils.copyProperties(log, copy);
+        if (log.getResponse() == null && log.getDocumentId() != null && log.getDocumentVersion() != null) {
+            if (answer == null) {
+                missingVersions.incrementAndGet();
+            }
+            copy.setResponse(answer);
+        }
+        if (log.getUserAgent() == null && log.getUserAgentId() != null) {
+            copy.setUserAgent(userAgent);
+        }
+        expanded.incrementAndGet();
+        return copy;
+    }
+
+    /**
+     * 按批查询缺失的版本历史：文档ID和版本号分别取IN，结果中只保留日志实际引用的组合
+     */
+    private void loadAnswers(List<QueryLog> logs, Set<String> missing, Map<String, String> answers) {
+        if (missing.isEmpty()) {
+            return;
+        }
+        List<Long> documentIds = new ArrayList<>();
+        Set<Integer> versions = new HashSet<>();
+        Set<Long> seen = new HashSet<>();
+        for (QueryLog log : logs) {
+            if (log != null && log.getDocumentId() != null && log.getDocumentVersion() != null
+                    && missing.contains(key(log.getDocumentId(), log.getDocumentVersion()))) {
+                if (seen.add(log.getDocumentId())) {
+                    documentIds.add(log.getDocumentId());
+                }
+                versions.add(log.getDocumentVersion());
+            }
+        }
+        for (int from = 0; from < documentIds.size(); from += LOOKUP_BATCH_SIZE) {
+            List<Long> chunk = documentIds.subList(from, Math.min(from + LOOKUP_BATCH_SIZE, documentIds.size()));
+            for (FAQDocumentVersion stored : faqDocumentVersionRepository.findByDocumentIdInAndVersionIn(chunk, versions)) {
+                String key = key(stored.getDocumentId(), stored.getVersion());
+                if (missing.contains(key)) {
+                    answers.put(key, stored.getAnswer());
+                    answerCache.put(key, stored.getAnswer());
+                }
+            }
+        }
+    }
+
+    /**
+     * 按批查询缺失的User-Agent字典项
+     */
+    private void loadUserAgents(Set<Integer> missing, Map<Integer, String> agents) {
+        List<Integer> ids = new ArrayList<>(missing);
+        for (int from = 0; from < ids.size(); from += LOOKUP_BATCH_SIZE) {
+            for (UserAgent entry : userAgentRepository.findAllById(ids.subList(from, Math.min(from + LOOKUP_BATCH_SIZE, ids.size())))) {
+                agents.put(entry.getId(), entry.getUserAgent());
+                cacheUserAgent(entry.getId(), entry.getUserAgent());
+            }
+        }
+    }
+
+    private String answerFor(Long documentId, Integer version) {
+        String key = key(documentId, version);
+        String answer = answerCache.get(key);
+        if (answer != null) {
+            return answer;
+        }
+        Optional<FAQDocumentVersion> stored = faqDocumentVersionRepository.findByDocumentIdAndVersion(documentId, version);
+        if (!stored.isPresent()) {
+            return null;
+        }
+        answerCache.put(key, stored.get().getAnswer());
+        return stored.get().getAnswer();
+    }
+
+    /**
+     * 排队写入User-Agent字典，队列已满时放弃（之后的日志保留全文，下次再排队）
+     */
+    private void scheduleUserAgent(String userAgent) {
+        if (!pendingUserAgents.add(userAgent)) {
+            return;
+        }
+        try {
+            recorder.execute(() -> {
+                try {
+                    recordUserAgent(userAgent);
+                } catch (Exception e) {
+                    System.err.println("Failed to encode user agent: " + e.getMessage());
+                } finally {
+                    pendingUserAgents.remove(userAgent);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pendingUserAgents.remove(userAgent);
+        }
+    }
+
+    private void recordUserAgent(String userAgent) {
+        String hash = sha256(userAgent);
+        UserAgent entry = userAgentRepository.findByUaHash(hash).orElse(null);
+        if (entry == null) {
+            entry = new UserAgent();
+            entry.setUaHash(hash);
+            entry.setUserAgent(userAgent);
+            try {
+                entry = userAgentRepository.save(entry);
+            } catch (DataIntegrityViolationException e) {
+                entry = userAgentRepository.findByUaHash(hash).orElseThrow(() -> e);
+            }
+        }
+        cacheUserAgent(entry.getId(), userAgent);
+    }
+
+    private String userAgentFor(Integer id) {
+        String cached = userAgents.get(id);
+        if (cached != null) {
+            return cached;
+        }
+        Optional<UserAgent> entry = userAgentRepository.findById(id);
+        if (!entry.isPresent()) {
+            return null;
+        }
+        cacheUserAgent(id, entry.get().getUserAgent());
+        return entry.get().getUserAgent();
+    }
+
+    /**
+     * User-Agent种类通常很少，超过上限时整体清空，避免异常流量撑大缓存
+     */
+    private void cacheUserAgent(Integer id, String userAgent) {
+        if (userAgents.size() >= cacheSize) {
+            userAgents.clear();
+            userAgentIds.clear();
+        }
+        userAgents.put(id, userAgent);
+        userAgentIds.put(userAgent, id);
+    }
+
+    private static String key(Long documentId, Integer version) {
+        return documentId + ":" + version;
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.model.QueryLog;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 查询日志归档段文件
+ * 按列存储并逐列压缩，文件头记录行数、created_at和id的最小/最大值，查询时只读文件头即可判断是否需要扫描该段。
+ * 文件格式：
+ * <pre>
+ * magic(int) version(int) rowCount(int) minCreatedAt(long) maxCreatedAt(long) minId(long) maxId(long)
+ * columnCount(int) { columnName(UTF) compressedLength(int) bytes }...
+ * </pre>
+ * 列按名称读取，新增列不影响旧段文件的读取。
+ */
+public final class QueryLogSegment {
+
+    public static final String FILE_SUFFIX = ".qls";
+
+    private static final int MAGIC = 0x514C5347;
+    private static final int FORMAT_VERSION = 1;
+
+    private static final List<Column> COLUMNS = Arrays.asList(
+            Column.ofLong("id", QueryLog::getId, QueryLog::setId, true),
+            Column.ofLong("created_at", log -> log.getCreatedAt() != null ? log.getCreatedAt().getTime() : null,
+                    (log, value) -> log.setCreatedAt(value != null ? new Date(value) : null), true),
+            Column.ofLong("user_id", QueryLog::getUserId, QueryLog::setUserId, false),
+            Column.ofLong("document_id", QueryLog::getDocumentId, QueryLog::setDocumentId, false),
+            Column.ofLong("document_version", log -> log.getDocumentVersion() != null ? log.getDocumentVersion().longValue() : null,
+                    (log, value) -> log.setDocumentVersion(value != null ? value.intValue() : null), false),
+            Column.ofLong("user_agent_id", log -> log.getUserAgentId() != null ? log.getUserAgentId().longValue() : null,
+                    (log, value) -> log.setUserAgentId(value != null ? value.intValue() : null), false),
+            Column.ofLong("feedback", log -> log.getFeedback() != null ? log.getFeedback().longValue() : null,
+                    (log, value) -> log.setFeedback(value != null ? value.intValue() : null), false),
+            Column.ofString("query_text", QueryLog::getQueryText, QueryLog::setQueryText),
+            Column.ofString("response", QueryLog::getResponse, QueryLog::setResponse),
+            Column.ofString("feedback_text", QueryLog::getFeedbackText, QueryLog::setFeedbackText),
+            Column.ofString("session_id", QueryLog::getSessionId, QueryLog::setSessionId),
+            Column.ofString("ip_address", QueryLog::getIpAddress, QueryLog::setIpAddress),
+            Column.ofString("user_agent", QueryLog::getUserAgent, QueryLog::setUserAgent)
+    );
+
+    private QueryLogSegment() {
+    }
+
+    /**
+     * 将一批查询日志写为段文件（先写临时文件再原子重命名）
+     * @param file 目标文件
+     * @param logs 查询日志，需按id升序
+     * @return 段文件头信息
+     */
+    public static Header write(Path file, List<QueryLog> logs) throws IOException {
+        long minCreatedAt = Long.MAX_VALUE;
+        long maxCreatedAt = Long.MIN_VALUE;
+        long minId = Long.MAX_VALUE;
+        long maxId = Long.MIN_VALUE;
+        for (QueryLog log : logs) {
+            minCreatedAt = Math.min(minCreatedAt, log.getCreatedAt().getTime());
+            maxCreatedAt = Math.max(maxCreatedAt, log.getCreatedAt().getTime());
+            minId = Math.min(minId, log.getId());
+            maxId = Math.max(maxId, log.getId());
+        }
+        Header header = new Header(file, logs.size(), minCreatedAt, maxCreatedAt, minId, maxId);
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(header.getRowCount());
+            out.writeLong(header.getMinCreatedAt());
+            out.writeLong(header.getMaxCreatedAt());
+            out.writeLong(header.getMinId());
+            out.writeLong(header.getMaxId());
+            out.writeInt(COLUMNS.size());
+            for (Column column : COLUMNS) {
+                byte[] block = compress(column.encode(logs));
+                out.writeUTF(column.name);
+                out.writeInt(block.length);
+                out.write(block);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return header;
+    }
+
+    /**
+     * 只读取段文件头
+     * @param file 段文件
+     * @return 段文件头信息
+     */
+    public static Header readHeader(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64))) {
+            return readHeader(file, in);
+        }
+    }
+
+    /**
+     * 读取段文件中的全部查询日志
+     * @param file 段文件
+     * @return 查询日志列表
+     */
+    public static List<QueryLog> read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            Header header = readHeader(file, in);
+            List<QueryLog> logs = new ArrayList<>(header.getRowCount());
+            for (int i = 0; i < header.getRowCount(); i++) {
+                logs.add(new QueryLog());
+            }
+            Map<String, Column> columnsByName = new HashMap<>();
+            for (Column column : COLUMNS) {
+                columnsByName.put(column.name, column);
+            }
+            int columnCount = in.readInt();
+            for (int c = 0; c < columnCount; c++) {
+                String name = in.readUTF();
+                byte[] block = new byte[in.readInt()];
+                in.readFully(block);
+                Column column = columnsByName.get(name);
+                if (column != null) {
+                    column.decode(decompress(block), logs);
+                }
+            }
+            return logs;
+        }
+    }
+
+    private static Header readHeader(Path file, DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a query log segment: " + file);
+        }
+        int version = in.readInt();
+        if (version > FORMAT_VERSION) {
+            throw new IOException("Unsupported segment version " + version + ": " + file);
+        }
+        return new Header(file, in.readInt(), in.readLong(), in.readLong(), in.readLong(), in.readLong());
+    }
+
+    private static byte[] compress(byte[] data) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(64, data.length / 4));
+        try (DeflaterOutputStream out = new DeflaterOutputStream(buffer, new Deflater(Deflater.BEST_COMPRESSION))) {
+            out.write(data);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static DataInputStream decompress(byte[] block) {
+        return new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(block))));
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        // ZigZag + 变长编码，差分后的小整数只占1~2字节
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long zigzag = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    /**
+     * 段文件头信息，用于按时间范围跳过无关段
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Header {
+        private final Path file;
+        private final int rowCount;
+        private final long minCreatedAt;
+        private final long maxCreatedAt;
+        private final long minId;
+        private final long maxId;
+
+        public boolean overlaps(long start, long end) {
+            return minCreatedAt <= end && maxCreatedAt >= start;
+        }
+
+        /**
+         * 是否为本段已归档的行：段包含所在月份中id位于[minId, maxId]的全部行，id与时间都落在段范围内即已归档
+         */
+        public boolean contains(long id, long createdAt) {
+            return id >= minId && id <= maxId && createdAt >= minCreatedAt && createdAt <= maxCreatedAt;
+        }
+    }
+
+    /**
+     * 列编解码定义
+     */
+    private abstract static class Column {
+        final String name;
+
+        Column(String name) {
+            this.name = name;
+        }
+
+        abstract byte[] encode(List<QueryLog> logs) throws IOException;
+
+        abstract void decode(DataInputStream in, List<QueryLog> logs) throws IOException;
+
+        /**
+         * 整数列：可空标记 + 与上一行的差分值（delta为true时）
+         */
+        static Column ofLong(String name, Function<QueryLog, Long> getter, BiConsumer<QueryLog, Long> setter, boolean delta) {
+            return new Column(name) {
+                @Override
+                byte[] encode(List<QueryLog> logs) throws IOException {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream(logs.size() * 2);
+                    DataOutputStream out = new DataOutputStream(buffer);
+                    long previous = 0;
+                    for (QueryLog log : logs) {
+                        Long value = getter.apply(log);
+                        out.writeBoolean(value != null);
+                        if (value != null) {
+                            writeVarLong(out, delta ? value - previous : value);
+                            previous = value;
+                        }
+                    }
+                    out.flush();
+                    return buffer.toByteArray();
+                }
+
+                @Override
+                void decode(DataInputStream in, List<QueryLog> logs) throws IOException {
+                    long previous = 0;
+                    for (QueryLog log : logs) {
+                        if (in.readBoolean()) {
+                            long value = readVarLong(in);
+                            if (delta) {
+                                value += previous;
+                            }
+                            setter.accept(log, value);
+                            previous = value;
+                        }
+                    }
+                }
+            };
+        }
+
+        /**
+         * 字符串列：长度+1（0表示null）+ UTF-8字节
+         */
+        static Column ofString(String name, Function<QueryLog, String> getter, BiConsumer<QueryLog, String> setter) {
+            return new Column(name) {
+                @Override
+                byte[] encode(List<QueryLog> logs) throws IOException {
+                    ByteArrayOutputStream buffer = new ByteArrayOutputStream(logs.size() * 16);
+                    DataOutputStream out = new DataOutputStream(buffer);
+                    for (QueryLog log : logs) {
+                        String value = getter.apply(log);
+                        if (value == null) {
+                            writeVarLong(out, 0);
+                        } else {
+                            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                            writeVarLong(out, bytes.length + 1L);
+                            out.write(bytes);
+                        }
+                    }
+                    out.flush();
+                    return buffer.toByteArray();
+                }
+
+                @Override
+                void decode(DataInputStream in, List<QueryLog> logs) throws IOException {
+                    for (QueryLog log : logs) {
+                        int length = (int) readVarLong(in);
+                        if (length > 0) {
+                            byte[] bytes = new byte[length - 1];
+                            in.readFully(bytes);
+                            setter.accept(log, new String(bytes, StandardCharsets.UTF_8));
+                        }
+                    }
+                }
+            };
+        }
+    }
+}
@@ -1,32 +1,47 @@
 package com.knowledgebase.service;
 
+import com.knowledgebase.config.ReplicaRoutingDataSource;
 import com.knowledgebase.model.QueryLog;
 import com.knowledgebase.repository.QueryLogRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Date;
-import java.util.List;
+import java.util.*;
 
 /**
  * 查询日志业务逻辑服务层
  * 处理查询日志的CRUD和业务逻辑
+ * 列表和统计类查询标记为从库只读事务，配置了从库时由从库承担；按ID查询和写入仍走主库，保证写后立即可读
  */
 @Service
 public class QueryLogService {
 
+    /**
+     * 获取最近查询文本时最多扫描的行数倍数（重复查询很多时限制扫描量）
+     */
+    private static final int RECENT_QUERY_TEXT_SCAN_FACTOR = 10;
+
     @Autowired
     private QueryLogRepository queryLogRepository;
 
     @Autowired
     private FAQDocumentService faqDocumentService;
 
+    @Autowired
+    private QueryLogArchiveService queryLogArchiveService;
+
+    @Autowired
+    private QueryLogCompactor queryLogCompactor;
+
     /**
      * 创建查询日志
      * @param queryLog 查询日志对象
      * @return 创建的查询日志
      */
     public QueryLog createQueryLog(QueryLog queryLog) {
+        queryLogCompactor.compact(queryLog);
         return queryLogRepository.save(queryLog);
     }
 
@@ -36,15 +51,16 @@ public class QueryLogService {
      * @return 查询日志
      */
     public QueryLog getQueryLogById(Long id) {
-        return queryLogRepository.findById(id).orElse(null);
+        return queryLogCompactor.expand(queryLogRepository.findById(id).orElse(null));
     }
 
     /**
      * 获取所有查询日志
      * @return 查询日志列表
      */
+    @Transactional(readOnly = true, label = ReplicaRoutingDataSource.READ_REPLICA)
     public List<QueryLog> getAllQueryLogs() {
-        return queryLogRepository.findAll();
+        return queryLogCompactor.expandAll(queryLogRepository.findAll());
     }
 
     /**
@@ -52,8 +68,9 @@ public class QueryLogService {
      * @param userId 用户ID
      * @return 查询日志列表
      */
+    @Transactional(readOnly = true, label = ReplicaRoutingDataSource.READ_REPLICA)
     public List<QueryLog> getQueryLogsByUserId(Long userId) {
-        return queryLogRepository.findByUserId(userId);
+        return queryLogCompactor.expandAll(queryLogRepository.findByUserId(userId));
     }
 
     /**
@@ -61,8 +78,9 @@ public class QueryLogService {
      * @param documentId 文档ID
      * @return 查询日志列表
      */
+    @Transactional(readOnly = true, label = ReplicaRoutingDataSource.READ_REPLICA)
     public List<QueryLog> getQueryLogsByDocumentId(Long documentId) {
-        return queryLogRepository.findByDocumentId(documentId);
+        return queryLogCompactor.expandAll(queryLogRepository.findByDocumentId(documentId));
     }
 
     /**
@@ -94,26 +112,72 @@ public class QueryLogService {
 
     /**
      * 获取指定时间范围内的查询日志
+     * 合并数据库中的热数据和本地归档段，同一ID以数据库中的记录为准
      * @param startDate 开始时间
      * @param endDate 结束时间
      * @return 查询日志列表
      */
+    @Transactional(readOnly = true, label = ReplicaRoutingDataSource.READ_REPLICA)
     public List<QueryLog> getQueryLogsByDateRange(Date startDate, Date endDate) {
-        return queryLogRepository.findByCreatedAtBetween(startDate, endDate);
+        List<QueryLog> hotLogs = queryLogRepository.findByCreatedAtBetween(startDate, endDate);
+        List<QueryLog> archivedLogs = queryLogArchiveService.findArchived(startDate, endDate);
+        if (archivedLogs.isEmpty()) {
+            return queryLogCompactor.expandAll(hotLogs);
+        }
+
+        Set<Long> hotIds = new HashSet<>();
+        for (QueryLog log : hotLogs) {
+            hotIds.add(log.getId());
+        }
+        List<QueryLog> logs = new ArrayList<>(archivedLogs.size() + hotLogs.size());
+        for (QueryLog log : archivedLogs) {
+            if (!hotIds.contains(log.getId())) {
+                logs.add(log);
+            }
+        }
+        logs.addAll(hotLogs);
+        return queryLogCompactor.expandAll(logs);
     }
 
     /**
      * 获取有反馈的查询日志
      * @return 查询日志列表
      */
+    @Transactional(readOnly = true, label = ReplicaRoutingDataSource.READ_REPLICA)
     public List<QueryLog> getQueryLogsWithFeedback() {
-        return queryLogRepository.findByFeedbackIsNotNull();
+        return queryLogCompactor.expandAll(queryLogRepository.findByFeedbackIsNotNull());
+    }
+
+    /**
+     * 获取最近的查询文本（去重），用于检索参数调优和降维迁移的查询样本
+     * 从最新的日志开始按页读取并在内存中去重，最多读取limit的RECENT_QUERY_TEXT_SCAN_FACTOR倍行数
+     * @param limit 最多返回的文本数量
+     * @return 查询文本列表（最近的在前）
+     */
+    @Transactional(readOnly = true, label = ReplicaRoutingDataSource.READ_REPLICA)
+    public List<String> getRecentQueryTexts(int limit) {
+        Set<String> texts = new LinkedHashSet<>();
+        int pageSize = Math.max(limit, 100);
+        int maxPages = RECENT_QUERY_TEXT_SCAN_FACTOR * limit / pageSize + 1;
+        for (int page = 0; page < maxPages && texts.size() < limit; page++) {
+            List<String> rows = queryLogRepository.findLatestQueryTexts(PageRequest.of(page, pageSize));
+            for (String text : rows) {
+                if (text != null && texts.size() < limit) {
+                    texts.add(text);
+                }
+            }
+            if (rows.size() < pageSize) {
+                break;
+            }
+        }
+        return new ArrayList<>(texts);
     }
 
     /**
      * 获取每日查询统计
      * @return 统计结果列表
      */
+    @Transactional(readOnly = true, label = ReplicaRoutingDataSource.READ_REPLICA)
     public List<Object[]> getDailyQueryCount() {
         return queryLogRepository.getDailyQueryCount();
     }
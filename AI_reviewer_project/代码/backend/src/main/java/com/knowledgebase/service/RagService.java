@@ -11,13 +11,24 @@ import io.milvus.param.index.*;
 import io.milvus.param.partition.*;
 import io.milvus.param.query.QueryParam;
 import io.milvus.param.query.SearchParam;
+import io.milvus.response.DescCollResponseWrapper;
+import io.milvus.response.GetCollStatResponseWrapper;
+import io.milvus.response.QueryResultsWrapper;
 import io.milvus.response.SearchResultsWrapper;
 import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
 import javax.annotation.PostConstruct;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * RAG服务类
@@ -26,6 +37,8 @@ import java.util.*;
 @Service
 public class RagService {
 
+    private static final int BATCH_SIZE = 1000;
+
     @Value("${milvus.host}")
     private String milvusHost;
 
@@ -35,80 +48,600 @@ public class RagService {
     @Value("${milvus.collection.name}")
     private String collectionName;
 
-    @Value("${milvus.collection.dimension}")
-    private Integer dimension;
-
     @Value("${milvus.collection.index-type}")
     private String indexType;
 
-    private MilvusServiceClient milvusClient;
+    @Value("${milvus.collection.shards-num:2}")
+    private int milvusShardsNum;
+
+    @Value("${milvus.index.hnsw.m:16}")
+    private int hnswM;
+
+    @Value("${milvus.index.hnsw.ef-construction:512}")
+    private int hnswEfConstruction;
+
+    /**
+     * 检索ef：固定数值，或auto（由HnswTuningService按召回率目标选择）
+     */
+    @Value("${milvus.search.ef:100}")
+    private String searchEfSetting;
+
+    @Value("${milvus.search.coalesce.enabled:true}")
+    private boolean coalesceEnabled;
 
     /**
-     * 初始化Milvus客户端并创建集合
+     * 合并窗口：只在调度队列已有积压时等待，队列空闲时检索立即发出，查询链路不会额外付出窗口延迟
+     */
+    @Value("${milvus.search.coalesce.window-micros:2000}")
+    private long coalesceWindowMicros;
+
+    @Value("${milvus.search.coalesce.max-batch:64}")
+    private int coalesceMaxBatch;
+
+    @Value("${milvus.search.coalesce.workers:4}")
+    private int coalesceWorkers;
+
+    /**
+     * 向量存储类型：milvus（Milvus集合）或memory（进程内分片）
+     */
+    @Value("${vector.store.type:milvus}")
+    private String storeType;
+
+    /**
+     * 分片数：milvus类型下大于1时拆分为多个集合，memory类型下为进程内分片数
+     */
+    @Value("${vector.store.shards:1}")
+    private int shardCount;
+
+    @Value("${vector.store.routing:document-id}")
+    private String shardRouting;
+
+    @Value("${vector.store.shard-timeout-ms:200}")
+    private long shardTimeoutMs;
+
+    /**
+     * 是否在后台线程连接Milvus并检查集合，不阻塞应用启动
+     */
+    @Value("${milvus.init.async:true}")
+    private boolean milvusInitAsync;
+
+    /**
+     * 后台初始化未完成时，访问Milvus的请求最多等待的时间
+     */
+    @Value("${milvus.init.wait-timeout-ms:30000}")
+    private long milvusInitWaitTimeoutMs;
+
+    /**
+     * 后台初始化失败后的最长重试间隔（从1秒起指数退避）
+     */
+    @Value("${milvus.init.retry-max-backoff-ms:30000}")
+    private long milvusInitMaxBackoffMs;
+
+    @Autowired
+    private SemanticQueryCache semanticQueryCache;
+
+    @Autowired
+    private FAQDocumentReadModel faqDocumentReadModel;
+
+    @Autowired
+    private VectorUtils vectorUtils;
+
+    @Autowired
+    private DimensionReducer dimensionReducer;
+
+    private volatile MilvusServiceClient milvusClient;
+
+    /**
+     * Milvus连接与集合检查完成的信号
+     */
+    private volatile CompletableFuture<Void> milvusReady = CompletableFuture.completedFuture(null);
+
+    /**
+     * 正在执行Milvus初始化的线程，初始化过程中的调用不等待自身完成
+     */
+    private volatile Thread milvusInitThread;
+
+    /**
+     * 最近一次后台初始化失败的原因，成功后清空
+     */
+    private volatile String milvusInitError;
+
+    private volatile int milvusInitAttempts;
+
+    private volatile boolean closed;
+
+    private volatile long milvusReadyAt;
+
+    private MicroBatcher<SearchRequest, SearchOutcome> searchDispatcher;
+
+    /**
+     * 分片向量存储，未分片的Milvus单集合部署时为null
+     */
+    private ShardedVectorStore shardedStore;
+
+    private volatile int searchEf = 100;
+
+    private final AtomicLong searchRequests = new AtomicLong();
+
+    private final AtomicLong searchCalls = new AtomicLong();
+
+    /**
+     * 初始化Milvus客户端并创建集合（或按配置初始化分片向量存储）
      */
     @PostConstruct
     public void init() {
-        // 建立Milvus连接
-        ConnectParam connectParam = ConnectParam.newBuilder()
-                .withHost(milvusHost)
-                .withPort(milvusPort)
-                .build();
+        ShardedVectorStore.Routing routing = "category".equalsIgnoreCase(shardRouting)
+                ? ShardedVectorStore.Routing.CATEGORY : ShardedVectorStore.Routing.DOCUMENT_ID;
+        if ("memory".equalsIgnoreCase(storeType)) {
+            List<VectorShard> shards = new ArrayList<>();
+            for (int i = 0; i < Math.max(1, shardCount); i++) {
+                shards.add(new InMemoryVectorShard("memory-" + i));
+            }
+            shardedStore = new ShardedVectorStore(shards, routing, shardTimeoutMs);
+        } else {
+            List<String> collections = new ArrayList<>();
+            if (shardCount > 1) {
+                List<VectorShard> shards = new ArrayList<>();
+                for (int i = 0; i < shardCount; i++) {
+                    String shardCollection = collectionName + "_" + i;
+                    collections.add(shardCollection);
+                    shards.add(new MilvusVectorShard(this, shardCollection));
+                }
+                shardedStore = new ShardedVectorStore(shards, routing, shardTimeoutMs);
+            } else {
+                collections.add(collectionName);
+            }
+            if (milvusInitAsync) {
+                milvusReady = new CompletableFuture<>();
+                Thread thread = new Thread(() -> initMilvusWithRetry(collections), "milvus-init");
+                thread.setDaemon(true);
+                thread.start();
+            } else {
+                initMilvus(collections);
+            }
+        }
+
+        if (!"auto".equalsIgnoreCase(searchEfSetting)) {
+            searchEf = Integer.parseInt(searchEfSetting);
+        }
+
+        if (coalesceEnabled) {
+            searchDispatcher = new MicroBatcher<>("milvus-search-dispatcher", coalesceMaxBatch,
+                    coalesceWindowMicros, coalesceWorkers, this::dispatchSearchBatch);
+        }
+    }
 
-        milvusClient = new MilvusServiceClient(connectParam);
+    /**
+     * 后台初始化：失败后按指数退避重试直到成功，启动时Milvus不可用也能在其恢复后自动就绪
+     * @param collections 需要的集合名称
+     */
+    private void initMilvusWithRetry(List<String> collections) {
+        long backoffMs = 1000;
+        while (!closed) {
+            milvusInitAttempts++;
+            try {
+                initMilvus(collections);
+                milvusInitError = null;
+                milvusReady.complete(null);
+                return;
+            } catch (Exception e) {
+                milvusInitError = e.getMessage();
+                System.err.println("Failed to initialize Milvus (attempt " + milvusInitAttempts + "), retrying in "
+                        + backoffMs + " ms: " + e.getMessage());
+            }
+            try {
+                Thread.sleep(backoffMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            backoffMs = Math.min(backoffMs * 2, milvusInitMaxBackoffMs);
+        }
+        milvusReady.completeExceptionally(new IllegalStateException("Milvus initialization stopped"));
+    }
 
+    /**
+     * 建立Milvus连接并确保集合存在，失败时关闭本次建立的连接
+     * @param collections 需要的集合名称
+     */
+    private void initMilvus(List<String> collections) {
+        milvusInitThread = Thread.currentThread();
+        try {
+            ConnectParam connectParam = ConnectParam.newBuilder()
+                    .withHost(milvusHost)
+                    .withPort(milvusPort)
+                    .build();
+            milvusClient = new MilvusServiceClient(connectParam);
+            for (String collection : collections) {
+                ensureCollection(collection);
+            }
+            if (shardedStore != null) {
+                checkShardedCollections(collections);
+            }
+            milvusReadyAt = System.currentTimeMillis();
+        } catch (RuntimeException e) {
+            if (milvusClient != null) {
+                milvusClient.close();
+                milvusClient = null;
+            }
+            throw e;
+        } finally {
+            milvusInitThread = null;
+        }
+    }
+
+    /**
+     * 获取Milvus客户端，后台初始化未完成时等待；已有失败的尝试（正在退避重试）时立即失败，不占住请求线程
+     */
+    private MilvusServiceClient milvus() {
+        if (Thread.currentThread() != milvusInitThread && !milvusReady.isDone()) {
+            String error = milvusInitError;
+            if (error != null) {
+                throw new RuntimeException("Milvus is unavailable, retrying initialization (attempt "
+                        + milvusInitAttempts + "): " + error);
+            }
+            try {
+                milvusReady.get(milvusInitWaitTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for Milvus initialization", e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException("Milvus initialization failed: " + e.getCause().getMessage(), e.getCause());
+            } catch (TimeoutException e) {
+                throw new RuntimeException("Milvus is still initializing");
+            }
+        }
+        return milvusClient;
+    }
+
+    /**
+     * Milvus是否已完成初始化（进程内存储始终就绪）
+     * @return 是否就绪
+     */
+    public boolean isMilvusReady() {
+        return milvusReady.isDone() && !milvusReady.isCompletedExceptionally();
+    }
+
+    /**
+     * Milvus初始化完成的时间
+     * @return 时间戳（毫秒），未完成或未使用Milvus时为0
+     */
+    public long getMilvusReadyAt() {
+        return milvusReadyAt;
+    }
+
+    /**
+     * 最近一次Milvus初始化失败的原因
+     * @return 失败原因，已就绪或尚未失败时为null
+     */
+    public String getMilvusInitError() {
+        return milvusInitError;
+    }
+
+    /**
+     * Milvus初始化的尝试次数
+     * @return 尝试次数
+     */
+    public int getMilvusInitAttempts() {
+        return milvusInitAttempts;
+    }
+
+    /**
+     * 进程内存储不持久化，启动完成后按读模型中的已启用文档重建向量
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildInMemoryStore() {
+        if (!"memory".equalsIgnoreCase(storeType)) {
+            return;
+        }
+        List<FAQDocument> documents = new ArrayList<>();
+        for (FAQDocument document : faqDocumentReadModel.findAll()) {
+            if ("active".equals(document.getStatus())) {
+                documents.add(document);
+            }
+        }
+        for (int from = 0; from < documents.size(); from += BATCH_SIZE) {
+            List<FAQDocument> chunk = documents.subList(from, Math.min(from + BATCH_SIZE, documents.size()));
+            List<String> texts = new ArrayList<>(chunk.size());
+            for (FAQDocument document : chunk) {
+                texts.add(document.getQuestion() + " " + document.getAnswer());
+            }
+            List<List<Float>> vectors = vectorUtils.generateVectors(texts);
+            for (int i = 0; i < chunk.size(); i++) {
+                shardedStore.insert(chunk.get(i), vectors.get(i));
+            }
+        }
+    }
+
+    /**
+     * 集合不存在时创建集合、建索引并加载
+     * @param name 集合名称
+     */
+    private void ensureCollection(String name) {
         // 检查集合是否存在
         HasCollectionParam hasCollectionParam = HasCollectionParam.newBuilder()
-                .withCollectionName(collectionName)
+                .withCollectionName(name)
                 .build();
 
-        R<RpcStatus> hasCollectionResponse = milvusClient.hasCollection(hasCollectionParam);
+        R<RpcStatus> hasCollectionResponse = milvus().hasCollection(hasCollectionParam);
         boolean collectionExists = hasCollectionResponse.getData().hasCollection();
 
         if (!collectionExists) {
-            // 创建集合
-            CreateCollectionParam createCollectionParam = CreateCollectionParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withDescription("FAQ向量集合")
-                    .withShardsNum(2)
-                    .addFieldType(FieldType.newBuilder()
-                            .withName("id")
-                            .withDataType(DataType.Int64)
-                            .withPrimaryKey(true)
-                            .withAutoID(true)
-                            .build())
-                    .addFieldType(FieldType.newBuilder()
-                            .withName("document_id")
-                            .withDataType(DataType.Int64)
-                            .build())
-                    .addFieldType(FieldType.newBuilder()
-                            .withName("vector")
-                            .withDataType(DataType.FloatVector)
-                            .withDimension(dimension)
-                            .build())
-                    .build();
+            createCollection(name);
+            createIndex(name, hnswM, hnswEfConstruction);
+            loadCollection(name);
+            return;
+        }
 
-            milvusClient.createCollection(createCollectionParam);
+        // 降维配置变更后，已有集合的维度与降维输出不一致时拒绝启动，应切换到迁移工具构建的新集合
+        int collectionDimension = getCollectionDimension(name);
+        if (collectionDimension != dimensionReducer.getOutputDimension()) {
+            throw new IllegalStateException("Collection " + name + " stores " + collectionDimension
+                    + "-d vectors but the embedding pipeline produces " + dimensionReducer.getOutputDimension()
+                    + "-d vectors; point milvus.collection.name at a collection built for this dimension");
+        }
+    }
 
-            // 创建索引
-            CreateIndexParam createIndexParam = CreateIndexParam.newBuilder()
-                    .withCollectionName(collectionName)
-                    .withFieldName("vector")
-                    .withIndexType(IndexType.HNSW)
-                    .withMetricType(MetricType.L2)
-                    .withExtraParam("{\"M\": 16, \"efConstruction\": 512}")
-                    .build();
+    /**
+     * 从单集合切换到分片部署时，新的分片集合为空而原集合仍有向量，检索会静默返回空结果；此时拒绝启动，
+     * 应先将向量重建到分片集合（或保持vector.store.shards=1）
+     * @param shardCollections 分片集合名称
+     */
+    private void checkShardedCollections(List<String> shardCollections) {
+        for (String collection : shardCollections) {
+            if (getCollectionRowCount(collection) > 0) {
+                return;
+            }
+        }
+        boolean legacyExists = milvus().hasCollection(HasCollectionParam.newBuilder()
+                .withCollectionName(collectionName)
+                .build()).getData().hasCollection();
+        long legacyRows = legacyExists ? getCollectionRowCount(collectionName) : 0;
+        if (legacyRows > 0) {
+            throw new IllegalStateException("Shard collections " + shardCollections + " are empty but collection "
+                    + collectionName + " holds " + legacyRows + " vectors; rebuild the vectors into the shard collections "
+                    + "before setting vector.store.shards=" + shardCount);
+        }
+    }
+
+    /**
+     * 读取集合中的向量数量
+     * @param name 集合名称
+     * @return 向量数量
+     */
+    public long getCollectionRowCount(String name) {
+        R<GetCollectionStatisticsResponse> response = milvus().getCollectionStatistics(GetCollectionStatisticsParam.newBuilder()
+                .withCollectionName(name)
+                .build());
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            throw new RuntimeException("Failed to get statistics of collection " + name + ": " + response.getMessage());
+        }
+        return new GetCollStatResponseWrapper(response.getData()).getRowCount();
+    }
+
+    /**
+     * 读取集合向量字段的维度
+     * @param name 集合名称
+     * @return 维度
+     */
+    public int getCollectionDimension(String name) {
+        R<DescribeCollectionResponse> response = milvus().describeCollection(DescribeCollectionParam.newBuilder()
+                .withCollectionName(name)
+                .build());
+        if (response.getStatus() != R.Status.Success.getCode()) {
+            throw new RuntimeException("Failed to describe collection " + name + ": " + response.getMessage());
+        }
+        return new DescCollResponseWrapper(response.getData()).getFieldByName("vector").getDimension();
+    }
+
+    /**
+     * 是否为单集合的Milvus部署（未分片、非进程内存储）
+     * @return 是否单集合
+     */
+    public boolean isSingleCollection() {
+        return !"memory".equalsIgnoreCase(storeType) && shardedStore == null;
+    }
+
+    /**
+     * 创建向量集合（维度为降维后的向量维度）
+     * @param name 集合名称
+     */
+    public void createCollection(String name) {
+        createCollection(name, dimensionReducer.getOutputDimension());
+    }
 
-            milvusClient.createIndex(createIndexParam);
+    /**
+     * 创建指定维度的向量集合
+     * @param name 集合名称
+     * @param dimension 向量维度
+     */
+    public void createCollection(String name, int dimension) {
+        CreateCollectionParam createCollectionParam = CreateCollectionParam.newBuilder()
+                .withCollectionName(name)
+                .withDescription("FAQ向量集合")
+                .withShardsNum(milvusShardsNum)
+                .addFieldType(FieldType.newBuilder()
+                        .withName("id")
+                        .withDataType(DataType.Int64)
+                        .withPrimaryKey(true)
+                        .withAutoID(true)
+                        .build())
+                .addFieldType(FieldType.newBuilder()
+                        .withName("document_id")
+                        .withDataType(DataType.Int64)
+                        .build())
+                .addFieldType(FieldType.newBuilder()
+                        .withName("vector")
+                        .withDataType(DataType.FloatVector)
+                        .withDimension(dimension)
+                        .build())
+                .build();
+
+        milvus().createCollection(createCollectionParam);
+    }
+
+    /**
+     * 创建HNSW索引
+     * @param name 集合名称
+     * @param m HNSW每个节点的最大连接数
+     * @param efConstruction 建索引时的候选队列长度
+     */
+    public void createIndex(String name, int m, int efConstruction) {
+        CreateIndexParam createIndexParam = CreateIndexParam.newBuilder()
+                .withCollectionName(name)
+                .withFieldName("vector")
+                .withIndexType(IndexType.HNSW)
+                .withMetricType(MetricType.L2)
+                .withExtraParam("{\"M\": " + m + ", \"efConstruction\": " + efConstruction + "}")
+                .build();
+
+        milvus().createIndex(createIndexParam);
+    }
+
+    /**
+     * 加载集合到内存（同步等待加载完成）
+     * @param name 集合名称
+     */
+    public void loadCollection(String name) {
+        LoadCollectionParam loadCollectionParam = LoadCollectionParam.newBuilder()
+                .withCollectionName(name)
+                .withSyncLoad(true)
+                .build();
+
+        milvus().loadCollection(loadCollectionParam);
+    }
+
+    /**
+     * 刷盘并等待索引构建完成，保证后续检索走索引而非增长段的暴力扫描
+     * @param name 集合名称
+     * @param timeoutMillis 最长等待时间
+     */
+    public void flushAndWaitForIndex(String name, long timeoutMillis) {
+        milvus().flush(FlushParam.newBuilder()
+                .addCollectionName(name)
+                .withSyncFlush(true)
+                .build());
+
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            R<GetIndexBuildProgressResponse> progress = milvus().getIndexBuildProgress(
+                    GetIndexBuildProgressParam.newBuilder().withCollectionName(name).build());
+            if (progress.getStatus() == R.Status.Success.getCode()
+                    && progress.getData().getIndexedRows() >= progress.getData().getTotalRows()) {
+                return;
+            }
+            try {
+                Thread.sleep(500);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for index build", e);
+            }
+        }
+        throw new RuntimeException("Timed out waiting for index build on " + name);
+    }
+
+    /**
+     * 删除集合
+     * @param name 集合名称
+     */
+    public void dropCollection(String name) {
+        milvus().dropCollection(DropCollectionParam.newBuilder()
+                .withCollectionName(name)
+                .build());
+    }
+
+    /**
+     * 批量写入向量
+     * @param name 集合名称
+     * @param documentIds 文档ID列表
+     * @param vectors 与文档ID一一对应的向量列表
+     */
+    public void insertVectors(String name, List<Long> documentIds, List<List<Float>> vectors) {
+        for (int from = 0; from < documentIds.size(); from += BATCH_SIZE) {
+            int to = Math.min(from + BATCH_SIZE, documentIds.size());
+            List<InsertParam.Field> fields = new ArrayList<>();
+            fields.add(new InsertParam.Field("document_id", new ArrayList<>(documentIds.subList(from, to))));
+            fields.add(new InsertParam.Field("vector", new ArrayList<>(vectors.subList(from, to))));
+
+            R<MutationResult> insertResponse = milvus().insert(InsertParam.newBuilder()
+                    .withCollectionName(name)
+                    .withFields(fields)
+                    .build());
+            if (insertResponse.getStatus() != R.Status.Success.getCode()) {
+                throw new RuntimeException("Failed to insert vectors: " + insertResponse.getMessage());
+            }
+        }
+    }
 
-            // 加载集合
-            LoadCollectionParam loadCollectionParam = LoadCollectionParam.newBuilder()
-                    .withCollectionName(collectionName)
+    /**
+     * 读取指定文档在Milvus中存储的向量（分片部署时读取所有分片集合，进程内存储返回空）
+     * @param documentIds 文档ID列表
+     * @return 文档ID到向量的映射
+     */
+    public Map<Long, List<Float>> fetchVectors(List<Long> documentIds) {
+        Map<Long, List<Float>> vectors = new LinkedHashMap<>();
+        if ("memory".equalsIgnoreCase(storeType)) {
+            return vectors;
+        }
+        List<String> collections = new ArrayList<>();
+        if (shardedStore != null) {
+            for (VectorShard shard : shardedStore.getShards()) {
+                collections.add(shard.getName());
+            }
+        } else {
+            collections.add(collectionName);
+        }
+        for (String collection : collections) {
+            fetchVectors(collection, documentIds, vectors);
+        }
+        return vectors;
+    }
+
+    private void fetchVectors(String collection, List<Long> documentIds, Map<Long, List<Float>> vectors) {
+        for (int from = 0; from < documentIds.size(); from += BATCH_SIZE) {
+            List<Long> chunk = documentIds.subList(from, Math.min(from + BATCH_SIZE, documentIds.size()));
+            QueryParam queryParam = QueryParam.newBuilder()
+                    .withCollectionName(collection)
+                    .withConsistencyLevel(ConsistencyLevelEnum.STRONG)
+                    .withExpr("document_id in " + chunk)
+                    .withOutFields(Arrays.asList("document_id", "vector"))
                     .build();
 
-            milvusClient.loadCollection(loadCollectionParam);
+            R<QueryResults> queryResponse = milvus().query(queryParam);
+            if (queryResponse.getStatus() != R.Status.Success.getCode()) {
+                throw new RuntimeException("Query failed: " + queryResponse.getMessage());
+            }
+            QueryResultsWrapper wrapper = new QueryResultsWrapper(queryResponse.getData());
+            List<?> ids = wrapper.getFieldWrapper("document_id").getFieldData();
+            List<?> data = wrapper.getFieldWrapper("vector").getFieldData();
+            for (int i = 0; i < ids.size(); i++) {
+                @SuppressWarnings("unchecked")
+                List<Float> vector = (List<Float>) data.get(i);
+                vectors.put((Long) ids.get(i), vector);
+            }
         }
     }
 
+    /**
+     * 当前检索使用的ef参数
+     * @return ef
+     */
+    public int getSearchEf() {
+        return searchEf;
+    }
+
+    /**
+     * 调整检索使用的ef参数（由HNSW自动调优设置）
+     * @param ef ef
+     */
+    public void setSearchEf(int ef) {
+        this.searchEf = ef;
+    }
+
+    public String getCollectionName() {
+        return collectionName;
+    }
+
     /**
      * 将FAQ文档的向量存储到Milvus
      * @param document FAQ文档
@@ -116,17 +649,31 @@ public class RagService {
      * @return 向量ID
      */
     public String storeVector(FAQDocument document, List<Float> vector) {
+        if (shardedStore != null) {
+            return shardedStore.insert(document, vector);
+        }
+        return storeVector(collectionName, document.getId(), vector);
+    }
+
+    /**
+     * 将向量存储到指定集合
+     * @param name 集合名称
+     * @param documentId 文档ID
+     * @param vector 向量数据
+     * @return 向量ID
+     */
+    public String storeVector(String name, Long documentId, List<Float> vector) {
         // 构建插入数据
         List<InsertParam.Field> fields = new ArrayList<>();
-        fields.add(new InsertParam.Field("document_id", Arrays.asList(document.getId())));
+        fields.add(new InsertParam.Field("document_id", Arrays.asList(documentId)));
         fields.add(new InsertParam.Field("vector", Collections.singletonList(vector)));
 
         InsertParam insertParam = InsertParam.newBuilder()
-                .withCollectionName(collectionName)
+                .withCollectionName(name)
                 .withFields(fields)
                 .build();
 
-        R<MutationResult> insertResponse = milvusClient.insert(insertParam);
+        R<MutationResult> insertResponse = milvus().insert(insertParam);
         if (insertResponse.getStatus() != R.Status.Success.getCode()) {
             throw new RuntimeException("Failed to insert vector: " + insertResponse.getMessage());
         }
@@ -138,64 +685,292 @@ public class RagService {
 
     /**
      * 根据查询向量检索最相似的FAQ文档
+     * 优先命中语义查询缓存，未命中时检索Milvus并写入缓存；缺少部分分片的降级结果不写入缓存
      * @param queryVector 查询向量
      * @param topK 返回的最相似文档数量
      * @return 最相似的文档ID列表
      */
     public List<Long> searchSimilarDocuments(List<Float> queryVector, int topK) {
+        long cacheGeneration = semanticQueryCache.currentGeneration();
+        List<Long> cached = semanticQueryCache.lookup(queryVector, topK);
+        if (cached != null) {
+            if (semanticQueryCache.shouldSample()) {
+                semanticQueryCache.sampleAsync(cached, () -> searchMilvus(queryVector, topK).documentIds);
+            }
+            return cached;
+        }
+
+        SearchOutcome outcome = searchMilvus(queryVector, topK);
+        if (!outcome.partial) {
+            semanticQueryCache.put(queryVector, topK, outcome.documentIds, cacheGeneration);
+        }
+        return outcome.documentIds;
+    }
+
+    /**
+     * 在Milvus中检索最相似的文档
+     * 启用请求合并时，交由检索调度器与并发请求合并为一次多向量检索；没有并发请求时立即单独检索
+     * @param queryVector 查询向量
+     * @param topK 返回的最相似文档数量
+     * @return 最相似的文档ID列表及是否为部分结果
+     */
+    private SearchOutcome searchMilvus(List<Float> queryVector, int topK) {
+        searchRequests.incrementAndGet();
+        if (searchDispatcher != null) {
+            return searchDispatcher.call(new SearchRequest(queryVector, topK));
+        }
+        return searchMilvusBatch(Collections.singletonList(queryVector), topK).get(0);
+    }
+
+    /**
+     * 合并后的一批检索请求：按最大topK发起一次多向量检索，再按各请求的topK截取结果
+     * @param requests 检索请求
+     * @return 与请求一一对应的检索结果
+     */
+    private List<SearchOutcome> dispatchSearchBatch(List<SearchRequest> requests) {
+        int maxTopK = 0;
+        List<List<Float>> vectors = new ArrayList<>(requests.size());
+        for (SearchRequest request : requests) {
+            maxTopK = Math.max(maxTopK, request.topK);
+            vectors.add(request.vector);
+        }
+        List<SearchOutcome> results = searchMilvusBatch(vectors, maxTopK);
+        List<SearchOutcome> truncated = new ArrayList<>(results.size());
+        for (int i = 0; i < results.size(); i++) {
+            SearchOutcome outcome = results.get(i);
+            int topK = requests.get(i).topK;
+            truncated.add(outcome.documentIds.size() > topK
+                    ? new SearchOutcome(new ArrayList<>(outcome.documentIds.subList(0, topK)), outcome.partial) : outcome);
+        }
+        return truncated;
+    }
+
+    /**
+     * 以一次gRPC调用检索多个查询向量
+     * @param queryVectors 查询向量列表
+     * @param topK 每个向量返回的最相似文档数量
+     * @return 与查询向量一一对应的检索结果
+     */
+    private List<SearchOutcome> searchMilvusBatch(List<List<Float>> queryVectors, int topK) {
+        searchCalls.incrementAndGet();
+        List<List<Long>> documentIds;
+        boolean partial = false;
+        if (shardedStore != null) {
+            ShardedVectorStore.SearchResult result = shardedStore.search(queryVectors, topK);
+            documentIds = toDocumentIds(result.getHits());
+            partial = result.isPartial();
+        } else {
+            documentIds = searchCollection(collectionName, queryVectors, topK, searchEf);
+        }
+        List<SearchOutcome> outcomes = new ArrayList<>(documentIds.size());
+        for (List<Long> ids : documentIds) {
+            outcomes.add(new SearchOutcome(ids, partial));
+        }
+        return outcomes;
+    }
+
+    /**
+     * 以指定ef检索在线向量存储（不经过缓存和请求合并，供调优基准测试直接调用）
+     * 分片部署时与在线检索一样经分片存储并行检索各分片并合并，未分片时检索主集合
+     * @param queryVectors 查询向量列表
+     * @param topK 每个向量返回的最相似文档数量
+     * @param ef HNSW检索候选队列长度，小于topK时按topK处理
+     * @return 合并后的检索命中及是否为部分结果
+     */
+    public ShardedVectorStore.SearchResult searchStore(List<List<Float>> queryVectors, int topK, int ef) {
+        if (shardedStore != null) {
+            return shardedStore.search(queryVectors, topK, ef);
+        }
+        return new ShardedVectorStore.SearchResult(searchCollectionWithScores(collectionName, queryVectors, topK, ef), false);
+    }
+
+    /**
+     * 以指定ef检索指定集合（不经过缓存和请求合并，供调优基准测试直接调用）
+     * @param name 集合名称
+     * @param queryVectors 查询向量列表
+     * @param topK 每个向量返回的最相似文档数量
+     * @param ef HNSW检索候选队列长度，小于topK时按topK处理
+     * @return 与查询向量一一对应的文档ID列表
+     */
+    public List<List<Long>> searchCollection(String name, List<List<Float>> queryVectors, int topK, int ef) {
+        return toDocumentIds(searchCollectionWithScores(name, queryVectors, topK, ef));
+    }
+
+    /**
+     * 以指定ef检索指定集合，结果带L2距离（供分片结果合并）
+     * @param name 集合名称
+     * @param queryVectors 查询向量列表
+     * @param topK 每个向量返回的最相似文档数量
+     * @param ef HNSW检索候选队列长度，小于topK时按topK处理
+     * @return 与查询向量一一对应、按距离升序排列的检索命中
+     */
+    public List<List<VectorShard.Hit>> searchCollectionWithScores(String name, List<List<Float>> queryVectors,
+                                                                  int topK, int ef) {
         // 构建搜索参数
         List<String> outFields = Arrays.asList("document_id");
         SearchParam searchParam = SearchParam.newBuilder()
-                .withCollectionName(collectionName)
+                .withCollectionName(name)
                 .withConsistencyLevel(ConsistencyLevelEnum.STRONG)
                 .withMetricType(MetricType.L2)
                 .withOutFields(outFields)
                 .withTopK(topK)
                 .withVectorFieldName("vector")
-                .withVectors(Collections.singletonList(queryVector))
-                .withParams("{\"ef\": 100}")
+                .withVectors(queryVectors)
+                .withParams("{\"ef\": " + Math.max(ef, topK) + "}")
                 .build();
 
-        R<SearchResults> searchResponse = milvusClient.search(searchParam);
+        R<SearchResults> searchResponse = milvus().search(searchParam);
         if (searchResponse.getStatus() != R.Status.Success.getCode()) {
             throw new RuntimeException("Search failed: " + searchResponse.getMessage());
         }
 
-        // 解析搜索结果
+        // 解析搜索结果，第i组结果对应第i个查询向量
         SearchResultsWrapper wrapper = new SearchResultsWrapper(searchResponse.getData().getResults());
-        List<Long> documentIds = new ArrayList<>();
+        List<List<VectorShard.Hit>> results = new ArrayList<>(queryVectors.size());
 
-        for (int i = 0; i < wrapper.getResultCount(); i++) {
+        for (int i = 0; i < queryVectors.size(); i++) {
+            List<VectorShard.Hit> hits = new ArrayList<>();
             List<SearchResultsWrapper.IDScore> scores = wrapper.getIDScore(i);
             for (SearchResultsWrapper.IDScore score : scores) {
                 JSONObject jsonObject = new JSONObject(wrapper.getFieldData("document_id", i, score.getIndex()));
                 Long documentId = jsonObject.getLong("document_id");
-                documentIds.add(documentId);
+                hits.add(new VectorShard.Hit(documentId, score.getScore()));
             }
+            results.add(hits);
         }
 
+        return results;
+    }
+
+    private static List<List<Long>> toDocumentIds(List<List<VectorShard.Hit>> results) {
+        List<List<Long>> documentIds = new ArrayList<>(results.size());
+        for (List<VectorShard.Hit> hits : results) {
+            List<Long> ids = new ArrayList<>(hits.size());
+            for (VectorShard.Hit hit : hits) {
+                ids.add(hit.getDocumentId());
+            }
+            documentIds.add(ids);
+        }
         return documentIds;
     }
 
+    /**
+     * 获取检索请求合并统计
+     * @return 检索请求数、实际gRPC调用数及平均每次调用合并的请求数
+     */
+    public Map<String, Object> getSearchStats() {
+        long requests = searchRequests.get();
+        long calls = searchCalls.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("coalescing_enabled", searchDispatcher != null);
+        stats.put("search_requests", requests);
+        stats.put("search_calls", calls);
+        stats.put("requests_per_call", calls == 0 ? 0.0 : (double) requests / calls);
+        if (shardedStore != null) {
+            stats.put("sharding", shardedStore.getStats());
+        }
+        return stats;
+    }
+
     /**
      * 根据文档ID删除向量
      * @param documentId 文档ID
      */
     public void deleteVectorByDocumentId(Long documentId) {
+        if (shardedStore != null) {
+            shardedStore.delete(documentId);
+            return;
+        }
+        deleteVector(collectionName, documentId);
+    }
+
+    /**
+     * 批量删除文档向量
+     * @param documentIds 文档ID列表
+     */
+    public void deleteVectorsByDocumentIds(List<Long> documentIds) {
+        if (documentIds.isEmpty()) {
+            return;
+        }
+        if (shardedStore != null) {
+            shardedStore.delete(documentIds);
+            return;
+        }
+        deleteVectors(collectionName, documentIds);
+    }
+
+    /**
+     * 从指定集合批量删除文档向量，每段文档一个 document_id in [...] 表达式
+     * @param name 集合名称
+     * @param documentIds 文档ID列表
+     */
+    public void deleteVectors(String name, List<Long> documentIds) {
+        for (int from = 0; from < documentIds.size(); from += BATCH_SIZE) {
+            List<Long> chunk = documentIds.subList(from, Math.min(from + BATCH_SIZE, documentIds.size()));
+            R<MutationResult> deleteResponse = milvus().delete(DeleteParam.newBuilder()
+                    .withCollectionName(name)
+                    .withExpr("document_id in " + chunk)
+                    .build());
+            if (deleteResponse.getStatus() != R.Status.Success.getCode()) {
+                throw new RuntimeException("Failed to delete vectors: " + deleteResponse.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 从指定集合删除文档向量
+     * @param name 集合名称
+     * @param documentId 文档ID
+     */
+    public void deleteVector(String name, Long documentId) {
         DeleteParam deleteParam = DeleteParam.newBuilder()
-                .withCollectionName(collectionName)
+                .withCollectionName(name)
                 .withExpr("document_id == " + documentId)
                 .build();
 
-        milvusClient.delete(deleteParam);
+        milvus().delete(deleteParam);
     }
 
     /**
      * 关闭Milvus连接
      */
     public void close() {
+        closed = true;
+        if (searchDispatcher != null) {
+            searchDispatcher.close();
+        }
+        if (shardedStore != null) {
+            shardedStore.close();
+        }
         if (milvusClient != null) {
             milvusClient.close();
         }
     }
+
+    /**
+     * 待合并的单个检索请求
+     */
+    private static final class SearchRequest {
+        final List<Float> vector;
+        final int topK;
+
+        SearchRequest(List<Float> vector, int topK) {
+            this.vector = vector;
+            this.topK = topK;
+        }
+    }
+
+    /**
+     * 单个检索请求的结果
+     */
+    private static final class SearchOutcome {
+        final List<Long> documentIds;
+        /** 有分片超时或失败，结果不完整 */
+        final boolean partial;
+
+        SearchOutcome(List<Long> documentIds, boolean partial) {
+            this.documentIds = documentIds;
+            this.partial = partial;
+        }
+    }
 }
\ No newline at end of file
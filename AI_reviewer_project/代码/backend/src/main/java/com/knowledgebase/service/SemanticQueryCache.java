@@ -0,0 +1,344 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.event.DocumentBatchChangedEvent;
+import com.knowledgebase.event.DocumentChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 语义查询缓存
+ * 缓存近期查询向量及其检索结果，新查询向量与某个缓存向量的L2距离在阈值内时直接返回缓存的文档ID，
+ * 不再访问Milvus。按容量淘汰最久未使用的条目，按TTL过期；被引用文档删除时失效对应条目，
+ * 文档创建、更新或重新生成向量时清空缓存（变更后的文档可能进入任意查询的结果）。
+ * 误命中抽样的真实检索在后台线程执行，不占用请求线程；抽样队列满时放弃本次抽样。
+ * 每次失效都推进缓存代数，检索前记录的代数与写入时不一致说明检索期间发生过失效，该结果不再写入。
+ */
+@Component
+public class SemanticQueryCache {
+
+    @Value("${query.cache.semantic.enabled:true}")
+    private boolean enabled;
+
+    @Value("${query.cache.semantic.max-size:1000}")
+    private int maxSize;
+
+    @Value("${query.cache.semantic.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    @Value("${query.cache.semantic.max-distance:0.3}")
+    private double maxDistance;
+
+    @Value("${query.cache.semantic.false-hit-sample-rate:0.01}")
+    private double falseHitSampleRate;
+
+    @Value("${query.cache.semantic.sample-queue-capacity:100}")
+    private int sampleQueueCapacity;
+
+    private ThreadPoolExecutor sampler;
+
+    private final Map<Long, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong entrySequence = new AtomicLong();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong sampled = new AtomicLong();
+    private final AtomicLong falseHits = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final AtomicLong stalePuts = new AtomicLong();
+    private final AtomicLong skippedSamples = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        sampler = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(sampleQueueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "semantic-cache-sampler");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @PreDestroy
+    public void destroy() {
+        sampler.shutdownNow();
+    }
+
+    /**
+     * 查找与查询向量足够接近的缓存结果
+     * @param queryVector 查询向量
+     * @param topK 需要的结果数量
+     * @return 缓存的文档ID列表，未命中返回null
+     */
+    public List<Long> lookup(List<Float> queryVector, int topK) {
+        if (!enabled) {
+            return null;
+        }
+        float[] vector = toArray(queryVector);
+        double threshold = maxDistance * maxDistance;
+        long now = System.currentTimeMillis();
+
+        Entry best = null;
+        double bestDistance = threshold;
+        for (Entry entry : entries.values()) {
+            if (entry.isExpired(now, ttlSeconds)) {
+                entries.remove(entry.id);
+                continue;
+            }
+            if (entry.topK < topK || entry.vector.length != vector.length) {
+                continue;
+            }
+            double distance = squaredDistance(vector, entry.vector, bestDistance);
+            if (distance <= bestDistance) {
+                best = entry;
+                bestDistance = distance;
+            }
+        }
+
+        if (best == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        best.lastAccess = now;
+        hits.incrementAndGet();
+        return best.documentIds.size() > topK ? best.documentIds.subList(0, topK) : best.documentIds;
+    }
+
+    /**
+     * 获取当前缓存代数，检索前调用，写入缓存时传回
+     * @return 缓存代数
+     */
+    public long currentGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * 写入缓存，检索期间发生过失效时丢弃
+     * 写入后再次检查代数：与失效并发时，要么这里发现代数变化自行移除，要么失效遍历时能看到这个条目
+     * @param queryVector 查询向量
+     * @param topK 结果数量
+     * @param documentIds 检索得到的文档ID列表
+     * @param searchGeneration 检索前获取的缓存代数
+     */
+    public void put(List<Float> queryVector, int topK, List<Long> documentIds, long searchGeneration) {
+        if (!enabled) {
+            return;
+        }
+        if (generation.get() != searchGeneration) {
+            stalePuts.incrementAndGet();
+            return;
+        }
+        if (entries.size() >= maxSize) {
+            evictLeastRecentlyUsed();
+        }
+        long id = entrySequence.incrementAndGet();
+        entries.put(id, new Entry(id, toArray(queryVector), topK,
+                Collections.unmodifiableList(new ArrayList<>(documentIds))));
+        if (generation.get() != searchGeneration && entries.remove(id) != null) {
+            stalePuts.incrementAndGet();
+        }
+    }
+
+    /**
+     * 是否对本次命中做误命中抽样（额外执行一次真实检索比对）
+     * @return 是否抽样
+     */
+    public boolean shouldSample() {
+        return falseHitSampleRate > 0 && ThreadLocalRandom.current().nextDouble() < falseHitSampleRate;
+    }
+
+    /**
+     * 在后台执行一次真实检索并与缓存结果比对
+     * @param cached 缓存返回的文档ID
+     * @param search 真实检索
+     */
+    public void sampleAsync(List<Long> cached, Supplier<List<Long>> search) {
+        try {
+            sampler.execute(() -> {
+                try {
+                    recordSample(cached, search.get());
+                } catch (Exception e) {
+                    System.err.println("Failed to sample semantic cache hit: " + e.getMessage());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            skippedSamples.incrementAndGet();
+        }
+    }
+
+    /**
+     * 记录抽样比对结果，首个结果不一致即视为误命中
+     * @param cached 缓存返回的文档ID
+     * @param actual 真实检索的文档ID
+     */
+    public void recordSample(List<Long> cached, List<Long> actual) {
+        sampled.incrementAndGet();
+        Long cachedTop = cached.isEmpty() ? null : cached.get(0);
+        Long actualTop = actual.isEmpty() ? null : actual.get(0);
+        if (!Objects.equals(cachedTop, actualTop)) {
+            falseHits.incrementAndGet();
+        }
+    }
+
+    /**
+     * 文档变更时失效相关缓存：删除只失效引用该文档的条目；创建和更新可能使文档进入其他查询的结果，清空缓存
+     * @param event 文档变更事件
+     */
+    @EventListener
+    public void onDocumentChanged(DocumentChangedEvent event) {
+        if (event.getChangeType() == DocumentChangedEvent.ChangeType.DELETED) {
+            invalidateDocument(event.getDocumentId());
+        } else {
+            clear();
+        }
+    }
+
+    /**
+     * 批量变更时一次遍历失效相关缓存（只有删除时按文档失效，否则清空）
+     * @param event 批量变更事件
+     */
+    @EventListener
+    public void onDocumentsChanged(DocumentBatchChangedEvent event) {
+        for (DocumentChangedEvent change : event.getChanges()) {
+            if (change.getChangeType() != DocumentChangedEvent.ChangeType.DELETED) {
+                clear();
+                return;
+            }
+        }
+        invalidateDocuments(new HashSet<>(event.getDocumentIds()));
+    }
+
+    /**
+     * 失效所有引用指定文档的缓存条目
+     * @param documentId 文档ID
+     */
+    public void invalidateDocument(Long documentId) {
+        generation.incrementAndGet();
+        entries.values().removeIf(entry -> {
+            if (entry.documentIds.contains(documentId)) {
+                invalidations.incrementAndGet();
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * 失效所有引用任一指定文档的缓存条目
+     * @param documentIds 文档ID集合
+     */
+    public void invalidateDocuments(Set<Long> documentIds) {
+        generation.incrementAndGet();
+        entries.values().removeIf(entry -> {
+            for (Long documentId : entry.documentIds) {
+                if (documentIds.contains(documentId)) {
+                    invalidations.incrementAndGet();
+                    return true;
+                }
+            }
+            return false;
+        });
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        generation.incrementAndGet();
+        invalidations.addAndGet(entries.size());
+        entries.clear();
+    }
+
+    /**
+     * 获取缓存统计信息
+     * @return 统计数据
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.get();
+        long missCount = misses.get();
+        long sampledCount = sampled.get();
+        long falseHitCount = falseHits.get();
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("size", entries.size());
+        stats.put("max_size", maxSize);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hit_rate", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("sampled", sampledCount);
+        stats.put("false_hits", falseHitCount);
+        stats.put("false_hit_rate", sampledCount == 0 ? 0.0 : (double) falseHitCount / sampledCount);
+        stats.put("invalidations", invalidations.get());
+        stats.put("stale_puts", stalePuts.get());
+        stats.put("pending_samples", sampler.getQueue().size());
+        stats.put("skipped_samples", skippedSamples.get());
+        return stats;
+    }
+
+    private void evictLeastRecentlyUsed() {
+        Entry oldest = null;
+        for (Entry entry : entries.values()) {
+            if (oldest == null || entry.lastAccess < oldest.lastAccess) {
+                oldest = entry;
+            }
+        }
+        if (oldest != null) {
+            entries.remove(oldest.id);
+        }
+    }
+
+    /**
+     * 计算平方欧氏距离，超过上限时提前返回
+     */
+    private static double squaredDistance(float[] a, float[] b, double limit) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            double diff = a[i] - b[i];
+            sum += diff * diff;
+            if (sum > limit) {
+                return sum;
+            }
+        }
+        return sum;
+    }
+
+    private static float[] toArray(List<Float> vector) {
+        float[] array = new float[vector.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = vector.get(i);
+        }
+        return array;
+    }
+
+    private static final class Entry {
+        final long id;
+        final float[] vector;
+        final int topK;
+        final List<Long> documentIds;
+        final long createdAt;
+        volatile long lastAccess;
+
+        Entry(long id, float[] vector, int topK, List<Long> documentIds) {
+            this.id = id;
+            this.vector = vector;
+            this.topK = topK;
+            this.documentIds = documentIds;
+            this.createdAt = System.currentTimeMillis();
+            this.lastAccess = createdAt;
+        }
+
+        boolean isExpired(long now, long ttlSeconds) {
+            return now - createdAt > ttlSeconds * 1000;
+        }
+    }
+}
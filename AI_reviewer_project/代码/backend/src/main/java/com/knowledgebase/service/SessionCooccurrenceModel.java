@@ -0,0 +1,273 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.event.DocumentBatchChangedEvent;
+import com.knowledgebase.event.DocumentChangedEvent;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 会话内文档共现模型
+ * 统计同一会话中“先命中文档A、随后命中文档B”的次数，启动完成后在后台从近期查询日志构建，同时随每次查询增量更新。
+ * 用于在会话命中A时预测接下来可能访问的文档，作为“相关问题”列表，不额外访问数据库。
+ * 回放期间被删除的文档在回放结束后按读模型剔除，不会因回放重新出现。
+ */
+@Component
+public class SessionCooccurrenceModel {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private FAQDocumentReadModel readModel;
+
+    @Value("${cooccurrence.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cooccurrence.session-window:3}")
+    private int sessionWindow;
+
+    @Value("${cooccurrence.session-timeout-minutes:30}")
+    private long sessionTimeoutMinutes;
+
+    @Value("${cooccurrence.max-successors:50}")
+    private int maxSuccessors;
+
+    @Value("${cooccurrence.min-support:2}")
+    private long minSupport;
+
+    @Value("${cooccurrence.bootstrap-days:30}")
+    private int bootstrapDays;
+
+    /**
+     * 文档A -> (后续文档B -> 次数)
+     */
+    private final Map<Long, Map<Long, AtomicLong>> transitions = new ConcurrentHashMap<>();
+
+    private final Map<String, SessionState> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong recordedTransitions = new AtomicLong();
+
+    private volatile boolean bootstrapped;
+
+    /**
+     * 启动完成后在后台回放近期查询日志，避免扫描大量日志阻塞启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void bootstrapOnStartup() {
+        if (!enabled) {
+            return;
+        }
+        Thread thread = new Thread(this::bootstrap, "cooccurrence-bootstrap");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * 从近期查询日志按会话顺序回放，构建初始模型
+     */
+    private void bootstrap() {
+        String sql = "SELECT session_id, document_id, created_at FROM query_logs "
+                + "WHERE session_id IS NOT NULL AND document_id IS NOT NULL AND created_at >= ? "
+                + "ORDER BY session_id, created_at, id";
+        Timestamp since = new Timestamp(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(bootstrapDays));
+        Map<String, SessionState> replay = new HashMap<>();
+        try {
+            jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                statement.setFetchSize(1000);
+                statement.setTimestamp(1, since);
+                return statement;
+            }, resultSet -> {
+                String sessionId = resultSet.getString(1);
+                // 结果按会话排序，切换会话时丢弃上一个会话的状态，只保留当前会话
+                if (!replay.containsKey(sessionId)) {
+                    replay.clear();
+                    replay.put(sessionId, new SessionState());
+                }
+                record(replay.get(sessionId), resultSet.getLong(2), resultSet.getTimestamp(3).getTime());
+            });
+        } catch (Exception e) {
+            System.err.println("Failed to bootstrap co-occurrence model: " + e.getMessage());
+        }
+        removeMissingDocuments();
+        bootstrapped = true;
+    }
+
+    /**
+     * 移除读模型中已不存在的文档（回放的日志可能引用回放期间或之前已删除的文档）
+     */
+    private void removeMissingDocuments() {
+        transitions.keySet().removeIf(id -> !readModel.findById(id).isPresent());
+        for (Map<Long, AtomicLong> successors : transitions.values()) {
+            successors.keySet().removeIf(id -> !readModel.findById(id).isPresent());
+        }
+    }
+
+    /**
+     * 记录会话命中的文档，并更新该会话近期文档到此文档的共现计数
+     * @param sessionId 会话ID，为空时忽略
+     * @param documentId 命中的文档ID
+     */
+    public void recordQuery(String sessionId, Long documentId) {
+        if (!enabled || sessionId == null || sessionId.isEmpty() || documentId == null) {
+            return;
+        }
+        SessionState state = sessions.computeIfAbsent(sessionId, k -> new SessionState());
+        synchronized (state) {
+            record(state, documentId, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * 预测命中指定文档后最可能访问的后续文档
+     * @param documentId 当前文档ID
+     * @param limit 返回数量
+     * @return 按共现次数降序排列的文档ID
+     */
+    public List<Long> predictNext(Long documentId, int limit) {
+        Map<Long, AtomicLong> successors = transitions.get(documentId);
+        if (!enabled || successors == null) {
+            return Collections.emptyList();
+        }
+        List<Map.Entry<Long, AtomicLong>> candidates = new ArrayList<>();
+        for (Map.Entry<Long, AtomicLong> entry : successors.entrySet()) {
+            if (entry.getValue().get() >= minSupport) {
+                candidates.add(entry);
+            }
+        }
+        candidates.sort((a, b) -> Long.compare(b.getValue().get(), a.getValue().get()));
+        List<Long> result = new ArrayList<>(Math.min(limit, candidates.size()));
+        for (int i = 0; i < candidates.size() && i < limit; i++) {
+            result.add(candidates.get(i).getKey());
+        }
+        return result;
+    }
+
+    /**
+     * 文档删除后移除其相关的共现计数
+     * @param event 文档变更事件
+     */
+    @EventListener
+    public void onDocumentChanged(DocumentChangedEvent event) {
+        if (event.getChangeType() != DocumentChangedEvent.ChangeType.DELETED) {
+            return;
+        }
+        Long documentId = event.getDocumentId();
+        transitions.remove(documentId);
+        for (Map<Long, AtomicLong> successors : transitions.values()) {
+            successors.remove(documentId);
+        }
+    }
+
+    /**
+     * 批量删除后一次遍历移除相关的共现计数
+     * @param event 批量变更事件
+     */
+    @EventListener
+    public void onDocumentsChanged(DocumentBatchChangedEvent event) {
+        Set<Long> deleted = new HashSet<>();
+        for (DocumentChangedEvent change : event.getChanges()) {
+            if (change.getChangeType() == DocumentChangedEvent.ChangeType.DELETED) {
+                deleted.add(change.getDocumentId());
+            }
+        }
+        if (deleted.isEmpty()) {
+            return;
+        }
+        transitions.keySet().removeAll(deleted);
+        for (Map<Long, AtomicLong> successors : transitions.values()) {
+            successors.keySet().removeAll(deleted);
+        }
+    }
+
+    /**
+     * 定时清理超时的会话状态
+     */
+    @Scheduled(fixedDelayString = "${cooccurrence.cleanup-interval-ms:60000}")
+    public void evictExpiredSessions() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(sessionTimeoutMinutes);
+        sessions.values().removeIf(state -> state.lastSeen < cutoff);
+    }
+
+    /**
+     * 获取模型统计
+     * @return 统计数据
+     */
+    public Map<String, Object> getStats() {
+        long pairs = 0;
+        for (Map<Long, AtomicLong> successors : transitions.values()) {
+            pairs += successors.size();
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("bootstrapped", bootstrapped);
+        stats.put("source_documents", transitions.size());
+        stats.put("pairs", pairs);
+        stats.put("recorded_transitions", recordedTransitions.get());
+        stats.put("active_sessions", sessions.size());
+        return stats;
+    }
+
+    private void record(SessionState state, long documentId, long timestamp) {
+        long timeout = TimeUnit.MINUTES.toMillis(sessionTimeoutMinutes);
+        if (state.lastSeen > 0 && timestamp - state.lastSeen > timeout) {
+            state.recent.clear();
+        }
+        state.lastSeen = timestamp;
+        for (Long previous : state.recent) {
+            if (previous != documentId) {
+                increment(previous, documentId);
+            }
+        }
+        state.recent.remove(documentId);
+        state.recent.addLast(documentId);
+        while (state.recent.size() > sessionWindow) {
+            state.recent.removeFirst();
+        }
+    }
+
+    private void increment(Long from, Long to) {
+        Map<Long, AtomicLong> successors = transitions.computeIfAbsent(from, k -> new ConcurrentHashMap<>());
+        successors.computeIfAbsent(to, k -> new AtomicLong()).incrementAndGet();
+        recordedTransitions.incrementAndGet();
+        if (successors.size() > maxSuccessors * 2) {
+            prune(successors);
+        }
+    }
+
+    /**
+     * 后续文档过多时只保留计数最高的maxSuccessors个，限制长尾占用的内存
+     */
+    private void prune(Map<Long, AtomicLong> successors) {
+        synchronized (successors) {
+            if (successors.size() <= maxSuccessors * 2) {
+                return;
+            }
+            List<Long> counts = new ArrayList<>();
+            for (AtomicLong count : successors.values()) {
+                counts.add(count.get());
+            }
+            counts.sort(Collections.reverseOrder());
+            long threshold = counts.get(maxSuccessors - 1);
+            successors.values().removeIf(count -> count.get() < threshold);
+        }
+    }
+
+    private static final class SessionState {
+        final Deque<Long> recent = new ArrayDeque<>();
+        long lastSeen;
+    }
+}
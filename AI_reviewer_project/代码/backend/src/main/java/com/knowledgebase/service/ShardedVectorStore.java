@@ -0,0 +1,248 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.model.FAQDocument;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 分片向量存储
+ * 写入按文档ID或分类哈希路由到单个分片；检索并行发往所有分片（scatter），
+ * 在单分片截止时间内收集已返回的结果（gather），按L2距离合并出全局topK。
+ * 个别分片超时或失败时返回其余分片的部分结果并标记为部分结果（调用方不应缓存），只有全部分片都不可用时才报错。
+ */
+public class ShardedVectorStore implements AutoCloseable {
+
+    /**
+     * 写入路由方式
+     */
+    public enum Routing {
+        DOCUMENT_ID, CATEGORY
+    }
+
+    private final List<VectorShard> shards;
+
+    private final Routing routing;
+
+    private final long shardTimeoutMillis;
+
+    private final ExecutorService executor;
+
+    private final AtomicLong searches = new AtomicLong();
+
+    private final AtomicLong partialSearches = new AtomicLong();
+
+    private final Map<String, AtomicLong> shardTimeouts = new ConcurrentHashMap<>();
+
+    private final Map<String, AtomicLong> shardFailures = new ConcurrentHashMap<>();
+
+    /**
+     * @param shards 分片列表
+     * @param routing 写入路由方式
+     * @param shardTimeoutMillis 单次检索等待各分片的截止时间（毫秒）
+     */
+    public ShardedVectorStore(List<VectorShard> shards, Routing routing, long shardTimeoutMillis) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.shards = new ArrayList<>(shards);
+        this.routing = routing;
+        this.shardTimeoutMillis = shardTimeoutMillis;
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(2, shards.size() * 2), runnable -> {
+            Thread thread = new Thread(runnable, "vector-shard-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (VectorShard shard : shards) {
+            shardTimeouts.put(shard.getName(), new AtomicLong());
+            shardFailures.put(shard.getName(), new AtomicLong());
+        }
+    }
+
+    /**
+     * 写入文档向量到路由的分片
+     * @param document FAQ文档
+     * @param vector 向量
+     * @return 向量ID
+     */
+    public String insert(FAQDocument document, List<Float> vector) {
+        return route(document).insert(document.getId(), vector);
+    }
+
+    /**
+     * 删除文档向量；按分类路由时文档可能因分类变更位于任一分片，因此向所有分片发送删除
+     * @param documentId 文档ID
+     */
+    public void delete(Long documentId) {
+        if (routing == Routing.DOCUMENT_ID) {
+            shards.get(shardIndex(documentId)).delete(documentId);
+            return;
+        }
+        for (VectorShard shard : shards) {
+            shard.delete(documentId);
+        }
+    }
+
+    /**
+     * 批量删除文档向量：按文档ID路由时每个分片只收到属于自己的文档，按分类路由时整批发往所有分片
+     * @param documentIds 文档ID列表
+     */
+    public void delete(List<Long> documentIds) {
+        if (routing == Routing.DOCUMENT_ID) {
+            Map<Integer, List<Long>> byShard = new TreeMap<>();
+            for (Long documentId : documentIds) {
+                byShard.computeIfAbsent(shardIndex(documentId), key -> new ArrayList<>()).add(documentId);
+            }
+            for (Map.Entry<Integer, List<Long>> entry : byShard.entrySet()) {
+                shards.get(entry.getKey()).delete(entry.getValue());
+            }
+            return;
+        }
+        for (VectorShard shard : shards) {
+            shard.delete(documentIds);
+        }
+    }
+
+    /**
+     * 并行检索所有分片并合并topK
+     * @param queryVectors 查询向量列表
+     * @param topK 每个向量返回的结果数量
+     * @return 与查询向量一一对应、按距离升序排列的合并结果，及是否缺少部分分片的结果
+     */
+    public SearchResult search(List<List<Float>> queryVectors, int topK) {
+        return search(queryVectors, topK, shard -> shard.search(queryVectors, topK));
+    }
+
+    /**
+     * 以指定ef并行检索所有分片并合并topK（供调优基准测试测量与在线检索相同的scatter-gather路径）
+     * @param queryVectors 查询向量列表
+     * @param topK 每个向量返回的结果数量
+     * @param ef HNSW检索候选队列长度
+     * @return 与查询向量一一对应、按距离升序排列的合并结果，及是否缺少部分分片的结果
+     */
+    public SearchResult search(List<List<Float>> queryVectors, int topK, int ef) {
+        return search(queryVectors, topK, shard -> shard.search(queryVectors, topK, ef));
+    }
+
+    private SearchResult search(List<List<Float>> queryVectors, int topK,
+                                Function<VectorShard, List<List<VectorShard.Hit>>> shardSearch) {
+        searches.incrementAndGet();
+        List<CompletableFuture<List<List<VectorShard.Hit>>>> futures = new ArrayList<>(shards.size());
+        for (VectorShard shard : shards) {
+            futures.add(CompletableFuture.supplyAsync(() -> shardSearch.apply(shard), executor));
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(shardTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for shard results", e);
+        } catch (ExecutionException | TimeoutException e) {
+            // 逐个检查各分片，超时或失败的分片在下面单独统计
+        }
+
+        List<List<List<VectorShard.Hit>>> shardResults = new ArrayList<>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            CompletableFuture<List<List<VectorShard.Hit>>> future = futures.get(i);
+            String name = shards.get(i).getName();
+            if (!future.isDone()) {
+                future.cancel(true);
+                shardTimeouts.get(name).incrementAndGet();
+            } else if (future.isCompletedExceptionally()) {
+                shardFailures.get(name).incrementAndGet();
+            } else {
+                shardResults.add(future.join());
+            }
+        }
+        if (shardResults.isEmpty()) {
+            throw new RuntimeException("All " + shards.size() + " vector shards failed or timed out");
+        }
+        boolean partial = shardResults.size() < shards.size();
+        if (partial) {
+            partialSearches.incrementAndGet();
+        }
+
+        List<List<VectorShard.Hit>> merged = new ArrayList<>(queryVectors.size());
+        for (int i = 0; i < queryVectors.size(); i++) {
+            List<VectorShard.Hit> candidates = new ArrayList<>();
+            for (List<List<VectorShard.Hit>> result : shardResults) {
+                candidates.addAll(result.get(i));
+            }
+            candidates.sort(Comparator.comparingDouble(VectorShard.Hit::getDistance));
+            Set<Long> seen = new HashSet<>();
+            List<VectorShard.Hit> top = new ArrayList<>(topK);
+            for (VectorShard.Hit hit : candidates) {
+                if (top.size() >= topK) {
+                    break;
+                }
+                if (seen.add(hit.getDocumentId())) {
+                    top.add(hit);
+                }
+            }
+            merged.add(top);
+        }
+        return new SearchResult(merged, partial);
+    }
+
+    /**
+     * 获取分片检索统计
+     * @return 统计数据
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shards", shards.size());
+        stats.put("routing", routing.name().toLowerCase(Locale.ROOT));
+        stats.put("shard_timeout_ms", shardTimeoutMillis);
+        stats.put("searches", searches.get());
+        stats.put("partial_searches", partialSearches.get());
+        Map<String, Object> perShard = new LinkedHashMap<>();
+        for (VectorShard shard : shards) {
+            Map<String, Object> shardStats = new LinkedHashMap<>();
+            shardStats.put("timeouts", shardTimeouts.get(shard.getName()).get());
+            shardStats.put("failures", shardFailures.get(shard.getName()).get());
+            perShard.put(shard.getName(), shardStats);
+        }
+        stats.put("per_shard", perShard);
+        return stats;
+    }
+
+    public List<VectorShard> getShards() {
+        return Collections.unmodifiableList(shards);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private VectorShard route(FAQDocument document) {
+        if (routing == Routing.CATEGORY) {
+            String category = document.getCategory() != null ? document.getCategory() : "";
+            return shards.get(Math.floorMod(category.hashCode(), shards.size()));
+        }
+        return shards.get(shardIndex(document.getId()));
+    }
+
+    private int shardIndex(Long documentId) {
+        return (int) Math.floorMod(documentId, (long) shards.size());
+    }
+
+    /**
+     * 合并后的检索结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class SearchResult {
+        /** 与查询向量一一对应、按距离升序排列的命中 */
+        private final List<List<VectorShard.Hit>> hits;
+        /** 是否有分片超时或失败，结果只来自其余分片 */
+        private final boolean partial;
+    }
+}
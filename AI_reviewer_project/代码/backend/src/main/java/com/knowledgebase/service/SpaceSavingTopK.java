@@ -0,0 +1,111 @@
+package com.knowledgebase.service;
+
+import java.util.*;
+
+/**
+ * Space-Saving高频项跟踪
+ * 最多跟踪capacity个键；未跟踪的新键到来时替换当前计数最小的键，并继承其计数作为误差上界。
+ * 真实频率超过 总数/capacity 的键一定在跟踪集合中，内存与流长度无关。
+ * 容量很小（默认100），替换时线性查找最小值，整体以对象锁保护。
+ */
+public class SpaceSavingTopK {
+
+    private final int capacity;
+
+    /**
+     * 键 -> [计数, 误差]
+     */
+    private final Map<String, long[]> counters;
+
+    /**
+     * @param capacity 最多跟踪的键数量
+     */
+    public SpaceSavingTopK(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * 增加键的计数
+     * @param key 键
+     * @param count 增量
+     */
+    public synchronized void add(String key, long count) {
+        increment(key, count, 0);
+    }
+
+    /**
+     * 增加键的计数和误差（还原其他节点导出的跟踪结果时使用）
+     * @param key 键
+     * @param count 计数增量
+     * @param error 误差增量
+     */
+    public synchronized void add(String key, long count, long error) {
+        increment(key, count, error);
+    }
+
+    /**
+     * 将另一个跟踪器的结果合并进来（计数和误差分别相加，超出容量时淘汰计数最小的键）
+     * @param other 另一个跟踪器
+     */
+    public void merge(SpaceSavingTopK other) {
+        Map<String, long[]> entries = other.entries();
+        synchronized (this) {
+            for (Map.Entry<String, long[]> entry : entries.entrySet()) {
+                increment(entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+        }
+    }
+
+    /**
+     * 获取跟踪的键
+     * @return 键 -> [计数, 误差] 的副本
+     */
+    public synchronized Map<String, long[]> entries() {
+        Map<String, long[]> copy = new HashMap<>(counters.size() * 2);
+        for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+            copy.put(entry.getKey(), entry.getValue().clone());
+        }
+        return copy;
+    }
+
+    /**
+     * 复制跟踪器
+     * @return 新跟踪器
+     */
+    public SpaceSavingTopK copy() {
+        SpaceSavingTopK copy = new SpaceSavingTopK(capacity);
+        copy.merge(this);
+        return copy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    private void increment(String key, long count, long error) {
+        long[] counter = counters.get(key);
+        if (counter != null) {
+            counter[0] += count;
+            counter[1] += error;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(key, new long[]{count, error});
+            return;
+        }
+        String minKey = null;
+        long minCount = Long.MAX_VALUE;
+        for (Map.Entry<String, long[]> entry : counters.entrySet()) {
+            if (entry.getValue()[0] < minCount) {
+                minCount = entry.getValue()[0];
+                minKey = entry.getKey();
+            }
+        }
+        counters.remove(minKey);
+        counters.put(key, new long[]{minCount + count, minCount + error});
+    }
+}
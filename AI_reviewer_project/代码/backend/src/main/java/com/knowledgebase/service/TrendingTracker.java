@@ -0,0 +1,384 @@
+package com.knowledgebase.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 热门问题/热门文档流式统计
+ * 查询链路每次命中时把文档ID和归一化后的查询文本写入当前时间桶；每个时间桶包含一个Count-Min Sketch和一个Space-Saving跟踪器。
+ * 时间桶按墙钟对齐、环形复用，过期桶在下一次写入时整体替换，内存为 桶数 × 草图大小，与查询量无关。
+ * 读取时合并窗口内各桶的候选键，用草图估计窗口计数，并与前一个等长窗口对比。
+ * 各节点的时间桶边界和哈希函数一致，导出的快照可以按桶相加，得到全集群的统计。
+ */
+@Component
+public class TrendingTracker {
+
+    /**
+     * 统计维度
+     */
+    public enum Dimension {
+        DOCUMENTS, QUERIES
+    }
+
+    private static final int MAX_QUERY_LENGTH = 200;
+
+    @Value("${trending.enabled:true}")
+    private boolean enabled;
+
+    @Value("${trending.bucket-seconds:300}")
+    private long bucketSeconds;
+
+    @Value("${trending.buckets:24}")
+    private int bucketCount;
+
+    @Value("${trending.sketch-width:1024}")
+    private int sketchWidth;
+
+    @Value("${trending.sketch-depth:4}")
+    private int sketchDepth;
+
+    @Value("${trending.top-k:100}")
+    private int topK;
+
+    private long bucketMillis;
+
+    private AtomicReferenceArray<Bucket> ring;
+
+    @PostConstruct
+    public void init() {
+        bucketMillis = bucketSeconds * 1000;
+        ring = new AtomicReferenceArray<>(bucketCount);
+    }
+
+    /**
+     * 记录一次查询
+     * @param queryText 原始查询文本
+     * @param documentId 命中的文档ID，可为null
+     */
+    public void record(String queryText, Long documentId) {
+        if (!enabled) {
+            return;
+        }
+        Bucket bucket = currentBucket(System.currentTimeMillis());
+        String query = normalize(queryText);
+        if (!query.isEmpty()) {
+            bucket.queries.add(query);
+        }
+        if (documentId != null) {
+            bucket.documents.add(String.valueOf(documentId));
+        }
+    }
+
+    /**
+     * 获取本节点窗口内的热门项
+     * @param dimension 统计维度
+     * @param windowMinutes 窗口长度（分钟）
+     * @param limit 返回数量
+     * @return 按窗口计数降序排列的热门项
+     */
+    public List<Map<String, Object>> top(Dimension dimension, int windowMinutes, int limit) {
+        return top(localBuckets(), dimension, windowMinutes, limit);
+    }
+
+    /**
+     * 合并其他节点的快照后计算热门项（不修改本节点状态，重复合并同一快照不会累加）
+     * @param dimension 统计维度
+     * @param windowMinutes 窗口长度（分钟）
+     * @param limit 返回数量
+     * @param remoteSnapshots 其他节点通过 {@link #snapshot(int)} 导出的快照
+     * @return 按窗口计数降序排列的热门项
+     */
+    public List<Map<String, Object>> topMerged(Dimension dimension, int windowMinutes, int limit,
+                                               List<Map<String, Object>> remoteSnapshots) {
+        Map<Long, Bucket> merged = new HashMap<>();
+        for (Bucket bucket : localBuckets()) {
+            merged.put(bucket.epoch, bucket.copy());
+        }
+        for (Map<String, Object> snapshot : remoteSnapshots) {
+            if (toLong(snapshot.get("bucket_seconds")) != bucketSeconds) {
+                throw new IllegalArgumentException("Snapshot bucket_seconds " + snapshot.get("bucket_seconds")
+                        + " does not match local " + bucketSeconds);
+            }
+            for (Object item : (List<?>) snapshot.get("buckets")) {
+                Bucket remote = Bucket.fromMap((Map<?, ?>) item, sketchWidth, sketchDepth, topK);
+                Bucket local = merged.get(remote.epoch);
+                if (local == null) {
+                    merged.put(remote.epoch, remote);
+                } else {
+                    local.merge(remote);
+                }
+            }
+        }
+        return top(merged.values(), dimension, windowMinutes, limit);
+    }
+
+    /**
+     * 导出本节点的时间桶快照，供其他节点合并
+     * @param windowMinutes 导出最近多少分钟（按比较窗口需要导出两倍长度）
+     * @return 快照
+     */
+    public Map<String, Object> snapshot(int windowMinutes) {
+        long current = System.currentTimeMillis() / bucketMillis;
+        long oldest = current - 2L * bucketsFor(windowMinutes) + 1;
+        List<Map<String, Object>> buckets = new ArrayList<>();
+        for (Bucket bucket : localBuckets()) {
+            if (bucket.epoch >= oldest) {
+                buckets.add(bucket.toMap());
+            }
+        }
+        Map<String, Object> snapshot = new LinkedHashMap<>();
+        snapshot.put("bucket_seconds", bucketSeconds);
+        snapshot.put("sketch_width", sketchWidth);
+        snapshot.put("sketch_depth", sketchDepth);
+        snapshot.put("buckets", buckets);
+        return snapshot;
+    }
+
+    /**
+     * 获取统计配置与内存占用
+     * @return 统计数据
+     */
+    public Map<String, Object> getStats() {
+        long queries = 0;
+        int activeBuckets = 0;
+        for (Bucket bucket : localBuckets()) {
+            queries += bucket.queries.sketch.getTotal();
+            activeBuckets++;
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("bucket_seconds", bucketSeconds);
+        stats.put("buckets", bucketCount);
+        stats.put("active_buckets", activeBuckets);
+        stats.put("max_window_minutes", bucketCount * bucketSeconds / 60 / 2);
+        stats.put("sketch_width", sketchWidth);
+        stats.put("sketch_depth", sketchDepth);
+        stats.put("top_k", topK);
+        stats.put("sketch_bytes", 2L * bucketCount * sketchWidth * sketchDepth * Long.BYTES);
+        stats.put("recorded_queries", queries);
+        return stats;
+    }
+
+    /**
+     * 查询文本归一化：转小写、去除标点、合并空白，并截断过长文本
+     * @param queryText 原始查询文本
+     * @return 归一化文本
+     */
+    public static String normalize(String queryText) {
+        if (queryText == null) {
+            return "";
+        }
+        String normalized = queryText.toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{L}\\p{N}]+", " ")
+                .trim();
+        return normalized.length() > MAX_QUERY_LENGTH ? normalized.substring(0, MAX_QUERY_LENGTH) : normalized;
+    }
+
+    private List<Map<String, Object>> top(Collection<Bucket> buckets, Dimension dimension, int windowMinutes, int limit) {
+        long current = System.currentTimeMillis() / bucketMillis;
+        int windowBuckets = bucketsFor(windowMinutes);
+        List<Bucket> window = new ArrayList<>();
+        List<Bucket> previous = new ArrayList<>();
+        for (Bucket bucket : buckets) {
+            long age = current - bucket.epoch;
+            if (age >= 0 && age < windowBuckets) {
+                window.add(bucket);
+            } else if (age >= windowBuckets && age < 2L * windowBuckets) {
+                previous.add(bucket);
+            }
+        }
+
+        Set<String> candidates = new HashSet<>();
+        for (Bucket bucket : window) {
+            candidates.addAll(bucket.counter(dimension).topK.entries().keySet());
+        }
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (String key : candidates) {
+            long count = 0;
+            for (Bucket bucket : window) {
+                count += bucket.counter(dimension).sketch.estimate(key);
+            }
+            long previousCount = 0;
+            for (Bucket bucket : previous) {
+                previousCount += bucket.counter(dimension).sketch.estimate(key);
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("key", key);
+            item.put("count", count);
+            item.put("previous_count", previousCount);
+            result.add(item);
+        }
+        result.sort((a, b) -> Long.compare((Long) b.get("count"), (Long) a.get("count")));
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    private int bucketsFor(int windowMinutes) {
+        long buckets = Math.max(1, (windowMinutes * 60L + bucketSeconds - 1) / bucketSeconds);
+        // 需要同时保留比较窗口，最长为环的一半
+        return (int) Math.min(buckets, Math.max(1, bucketCount / 2));
+    }
+
+    private List<Bucket> localBuckets() {
+        long current = System.currentTimeMillis() / bucketMillis;
+        List<Bucket> buckets = new ArrayList<>(bucketCount);
+        for (int i = 0; i < bucketCount; i++) {
+            Bucket bucket = ring.get(i);
+            if (bucket != null && current - bucket.epoch < bucketCount) {
+                buckets.add(bucket);
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * 获取当前时间桶；跨入新的时间段时以CAS替换环上的过期桶
+     */
+    private Bucket currentBucket(long now) {
+        long epoch = now / bucketMillis;
+        int index = (int) Math.floorMod(epoch, (long) bucketCount);
+        while (true) {
+            Bucket bucket = ring.get(index);
+            if (bucket != null && bucket.epoch == epoch) {
+                return bucket;
+            }
+            if (bucket != null && bucket.epoch > epoch) {
+                // 时钟回拨或线程长时间挂起，计入最新的桶
+                return bucket;
+            }
+            Bucket fresh = new Bucket(epoch, new Counter(new CountMinSketch(sketchWidth, sketchDepth), new SpaceSavingTopK(topK)),
+                    new Counter(new CountMinSketch(sketchWidth, sketchDepth), new SpaceSavingTopK(topK)));
+            if (ring.compareAndSet(index, bucket, fresh)) {
+                return fresh;
+            }
+        }
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number ? ((Number) value).longValue() : Long.parseLong(String.valueOf(value));
+    }
+
+    /**
+     * 单个维度的草图与高频项跟踪器
+     */
+    private static final class Counter {
+        final CountMinSketch sketch;
+        final SpaceSavingTopK topK;
+
+        Counter(CountMinSketch sketch, SpaceSavingTopK topK) {
+            this.sketch = sketch;
+            this.topK = topK;
+        }
+
+        void add(String key) {
+            sketch.add(key, 1);
+            topK.add(key, 1);
+        }
+
+        Counter copy() {
+            return new Counter(sketch.copy(), topK.copy());
+        }
+
+        void merge(Counter other) {
+            sketch.merge(other.sketch);
+            topK.merge(other.topK);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("total", sketch.getTotal());
+            map.put("counters", sketch.toArray());
+            // 每个高频项同时导出计数和Space-Saving误差上界，真实计数落在[count - error, count]内
+            Map<String, Map<String, Long>> top = new LinkedHashMap<>();
+            for (Map.Entry<String, long[]> entry : topK.entries().entrySet()) {
+                Map<String, Long> counter = new LinkedHashMap<>();
+                counter.put("count", entry.getValue()[0]);
+                counter.put("error", entry.getValue()[1]);
+                top.put(entry.getKey(), counter);
+            }
+            map.put("top", top);
+            return map;
+        }
+
+        static Counter fromMap(Map<?, ?> map, int width, int depth, int capacity) {
+            List<?> values = (List<?>) map.get("counters");
+            Map<?, ?> top = (Map<?, ?>) map.get("top");
+            if (values.size() != width * depth || top.size() > capacity) {
+                throw new IllegalArgumentException("Snapshot counter has " + values.size() + " counters and "
+                        + top.size() + " top entries, expected " + (width * depth) + " and at most " + capacity);
+            }
+            long[] counters = new long[values.size()];
+            for (int i = 0; i < counters.length; i++) {
+                counters[i] = toLong(values.get(i));
+            }
+            SpaceSavingTopK topK = new SpaceSavingTopK(capacity);
+            for (Map.Entry<?, ?> entry : top.entrySet()) {
+                if (entry.getValue() instanceof Map) {
+                    Map<?, ?> counter = (Map<?, ?>) entry.getValue();
+                    topK.add(String.valueOf(entry.getKey()), toLong(counter.get("count")), toLong(counter.get("error")));
+                } else {
+                    // 旧版本节点只导出计数
+                    topK.add(String.valueOf(entry.getKey()), toLong(entry.getValue()));
+                }
+            }
+            return new Counter(new CountMinSketch(width, depth, counters, toLong(map.get("total"))), topK);
+        }
+    }
+
+    /**
+     * 一个时间桶
+     */
+    private static final class Bucket {
+        final long epoch;
+        final Counter documents;
+        final Counter queries;
+
+        Bucket(long epoch, Counter documents, Counter queries) {
+            this.epoch = epoch;
+            this.documents = documents;
+            this.queries = queries;
+        }
+
+        Counter counter(Dimension dimension) {
+            return dimension == Dimension.DOCUMENTS ? documents : queries;
+        }
+
+        Bucket copy() {
+            return new Bucket(epoch, documents.copy(), queries.copy());
+        }
+
+        void merge(Bucket other) {
+            documents.merge(other.documents);
+            queries.merge(other.queries);
+        }
+
+        Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("epoch", epoch);
+            map.put("width", documents.sketch.getWidth());
+            map.put("depth", documents.sketch.getDepth());
+            map.put("capacity", documents.topK.getCapacity());
+            map.put("documents", documents.toMap());
+            map.put("queries", queries.toMap());
+            return map;
+        }
+
+        /**
+         * 还原其他节点导出的时间桶；草图尺寸和top-K容量必须与本节点一致，校验通过前不分配任何计数器
+         */
+        static Bucket fromMap(Map<?, ?> map, int width, int depth, int capacity) {
+            if (toLong(map.get("width")) != width || toLong(map.get("depth")) != depth
+                    || toLong(map.get("capacity")) != capacity) {
+                throw new IllegalArgumentException("Snapshot bucket " + map.get("width") + "x" + map.get("depth")
+                        + " (capacity " + map.get("capacity") + ") does not match local " + width + "x" + depth
+                        + " (capacity " + capacity + ")");
+            }
+            return new Bucket(toLong(map.get("epoch")),
+                    Counter.fromMap((Map<?, ?>) map.get("documents"), width, depth, capacity),
+                    Counter.fromMap((Map<?, ?>) map.get("queries"), width, depth, capacity));
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.event.DocumentChangedEvent;
+import com.knowledgebase.model.FAQDocument;
+import com.knowledgebase.repository.FAQDocumentRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 向量维护合并器
+ * 文档编辑后数据库立即保存，而删除旧向量、生成新向量、写入Milvus这组操作按文档去抖：
+ * 窗口内的多次编辑只对最后一个版本生成向量，被取代的待执行任务直接取消。
+ * 为避免持续编辑导致向量迟迟不更新，从首次编辑起最多延迟maxDelay。
+ * 同一文档的向量操作按分段锁串行执行，删除文档时先取消待执行任务再删除向量，不会留下孤立向量。
+ * 回填向量ID与写入变更日志在同一事务内，其他节点据此重新读取文档，得到新的向量ID。
+ */
+@Component
+public class VectorMaintenanceCoalescer {
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Autowired
+    private RagService ragService;
+
+    @Autowired
+    private VectorUtils vectorUtils;
+
+    @Autowired
+    private FAQDocumentRepository faqDocumentRepository;
+
+    @Autowired
+    private FAQDocumentReadModel faqDocumentReadModel;
+
+    @Autowired
+    private SemanticQueryCache semanticQueryCache;
+
+    @Autowired
+    private DocumentChangeLogService documentChangeLogService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${vector.maintenance.debounce-ms:2000}")
+    private long debounceMs;
+
+    @Value("${vector.maintenance.max-delay-ms:10000}")
+    private long maxDelayMs;
+
+    @Value("${vector.maintenance.workers:2}")
+    private int workers;
+
+    private final Map<Long, Pending> pending = new ConcurrentHashMap<>();
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    private final AtomicLong scheduled = new AtomicLong();
+
+    private final AtomicLong superseded = new AtomicLong();
+
+    private final AtomicLong indexed = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    private ScheduledExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        executor = Executors.newScheduledThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "vector-maintenance-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 关闭前立即执行所有待执行任务，保证已保存的编辑都有对应向量
+     */
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        for (Pending task : new ArrayList<>(pending.values())) {
+            task.run();
+        }
+    }
+
+    /**
+     * 登记文档的向量维护任务，取代该文档尚未执行的旧任务
+     * @param document 已保存的最新文档
+     */
+    public void schedule(FAQDocument document) {
+        Long id = document.getId();
+        long now = System.currentTimeMillis();
+        scheduled.incrementAndGet();
+        Pending task = pending.compute(id, (key, previous) -> {
+            long firstRequestedAt = now;
+            if (previous != null) {
+                firstRequestedAt = previous.firstRequestedAt;
+                cancel(previous);
+            }
+            return new Pending(document, firstRequestedAt);
+        });
+        // 在登记完成后再提交，保证任务执行时能看到自己是最新任务；被取代的任务执行时会直接跳过
+        long delay = Math.max(0, Math.min(debounceMs, task.firstRequestedAt + maxDelayMs - now));
+        task.future = executor.schedule(task, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 取消文档的待执行任务并删除其向量（文档删除时调用）
+     * @param documentId 文档ID
+     */
+    public void cancelAndDelete(Long documentId) {
+        Pending task = pending.remove(documentId);
+        if (task != null) {
+            cancel(task);
+        }
+        synchronized (lockFor(documentId)) {
+            ragService.deleteVectorByDocumentId(documentId);
+        }
+    }
+
+    /**
+     * 批量取消待执行任务并删除向量（文档批量删除时调用）
+     * 按锁分段的顺序依次持有涉及的全部分段锁，再以一次批量删除清除整批向量，
+     * 正在执行的维护任务不会在删除之后重新写入向量。
+     * @param documentIds 文档ID列表
+     */
+    public void cancelAndDeleteAll(List<Long> documentIds) {
+        TreeSet<Integer> stripes = new TreeSet<>();
+        for (Long documentId : documentIds) {
+            Pending task = pending.remove(documentId);
+            if (task != null) {
+                cancel(task);
+            }
+            stripes.add(stripeOf(documentId));
+        }
+        deleteHoldingLocks(new ArrayList<>(stripes), 0, documentIds);
+    }
+
+    /**
+     * 获取合并统计
+     * @return 统计数据
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("debounce_ms", debounceMs);
+        stats.put("max_delay_ms", maxDelayMs);
+        stats.put("pending", pending.size());
+        stats.put("scheduled", scheduled.get());
+        stats.put("superseded", superseded.get());
+        stats.put("indexed", indexed.get());
+        stats.put("failed", failed.get());
+        return stats;
+    }
+
+    private void cancel(Pending task) {
+        Future<?> future = task.future;
+        if (future == null || future.cancel(false)) {
+            superseded.incrementAndGet();
+        }
+    }
+
+    private Object lockFor(Long documentId) {
+        return locks[stripeOf(documentId)];
+    }
+
+    private static int stripeOf(Long documentId) {
+        return (int) Math.floorMod(documentId, (long) LOCK_STRIPES);
+    }
+
+    private void deleteHoldingLocks(List<Integer> stripes, int index, List<Long> documentIds) {
+        if (index == stripes.size()) {
+            ragService.deleteVectorsByDocumentIds(documentIds);
+            return;
+        }
+        synchronized (locks[stripes.get(index)]) {
+            deleteHoldingLocks(stripes, index + 1, documentIds);
+        }
+    }
+
+    /**
+     * 单个文档的待执行向量维护任务
+     */
+    private final class Pending implements Runnable {
+        final FAQDocument document;
+        final Long documentId;
+        final long firstRequestedAt;
+        volatile Future<?> future;
+
+        Pending(FAQDocument document, long firstRequestedAt) {
+            this.document = document;
+            this.documentId = document.getId();
+            this.firstRequestedAt = firstRequestedAt;
+        }
+
+        @Override
+        public void run() {
+            synchronized (lockFor(documentId)) {
+                // 已被更新版本取代或文档已删除
+                if (pending.get(documentId) != this) {
+                    return;
+                }
+                try {
+                    ragService.deleteVectorByDocumentId(documentId);
+                    List<Float> vector = vectorUtils.generateVector(document.getQuestion() + " " + document.getAnswer());
+                    String vectorId = ragService.storeVector(document, vector);
+                    transactionTemplate.executeWithoutResult(status -> {
+                        faqDocumentRepository.updateVectorId(documentId, vectorId);
+                        documentChangeLogService.record(DocumentChangedEvent.updated(document));
+                    });
+                    faqDocumentReadModel.recordVectorId(documentId, vectorId);
+                    // 新向量可能使文档进入其他查询的结果，只失效引用它的条目不够
+                    semanticQueryCache.clear();
+                    indexed.incrementAndGet();
+                } catch (Exception e) {
+                    failed.incrementAndGet();
+                    System.err.println("Failed to update vector for document " + documentId
+                            + " (version " + document.getVersion() + "): " + e.getMessage());
+                } finally {
+                    pending.remove(documentId, this);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.knowledgebase.service;
+
+import java.util.List;
+
+/**
+ * 向量分片
+ * 分片可以是一个独立的Milvus集合，也可以是进程内的内存索引；检索结果统一按L2距离返回，便于跨分片合并。
+ */
+public interface VectorShard {
+
+    /**
+     * 分片名称
+     * @return 名称
+     */
+    String getName();
+
+    /**
+     * 写入文档向量
+     * @param documentId 文档ID
+     * @param vector 向量
+     * @return 向量ID
+     */
+    String insert(Long documentId, List<Float> vector);
+
+    /**
+     * 删除文档向量（文档不在本分片时为空操作）
+     * @param documentId 文档ID
+     */
+    void delete(Long documentId);
+
+    /**
+     * 批量删除文档向量（不在本分片的文档忽略）
+     * @param documentIds 文档ID列表
+     */
+    void delete(List<Long> documentIds);
+
+    /**
+     * 检索多个查询向量
+     * @param queryVectors 查询向量列表
+     * @param topK 每个向量返回的结果数量
+     * @return 与查询向量一一对应、按距离升序排列的结果
+     */
+    List<List<Hit>> search(List<List<Float>> queryVectors, int topK);
+
+    /**
+     * 以指定的HNSW检索参数检索多个查询向量（供调优基准测试测量不同ef），不使用ef的分片按普通检索处理
+     * @param queryVectors 查询向量列表
+     * @param topK 每个向量返回的结果数量
+     * @param ef HNSW检索候选队列长度
+     * @return 与查询向量一一对应、按距离升序排列的结果
+     */
+    default List<List<Hit>> search(List<List<Float>> queryVectors, int topK, int ef) {
+        return search(queryVectors, topK);
+    }
+
+    /**
+     * 检索命中：文档ID及其与查询向量的L2距离
+     */
+    final class Hit {
+        private final Long documentId;
+        private final float distance;
+
+        public Hit(Long documentId, float distance) {
+            this.documentId = documentId;
+            this.distance = distance;
+        }
+
+        public Long getDocumentId() {
+            return documentId;
+        }
+
+        public float getDistance() {
+            return distance;
+        }
+    }
+}
@@ -1,16 +1,20 @@
 package com.knowledgebase.service;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.*;
 
 /**
  * 向量生成工具类
- * 用于将文本转换为向量表示
- * 注意：这里使用的是模拟向量生成，实际项目中应使用真实的向量模型（如BERT、Word2Vec等）
+ * 用于将文本转换为向量表示，具体模型由EmbeddingProvider实现（embedding.provider配置）。
+ * 不同请求并发的单条向量生成会被合并为微批次调用模型，以提高CPU推理吞吐。
+ * 模型输出先查EmbeddingCache，相同文本（同一模型和维度）只调用一次模型；缓存的是降维前的原始向量，
+ * 切换降维方式不影响已缓存的条目。
+ * 生成的向量经过DimensionReducer降维（vector.reduction.mode=none时原样返回），与向量集合的维度一致。
  */
 @Component
 public class VectorUtils {
@@ -18,7 +22,44 @@ public class VectorUtils {
     @Value("${milvus.collection.dimension}")
     private Integer dimension;
 
-    private Random random = new Random();
+    @Value("${embedding.batch.max-size:32}")
+    private int maxBatchSize;
+
+    @Value("${embedding.batch.max-wait-micros:2000}")
+    private long maxWaitMicros;
+
+    /**
+     * 工作线程数，0表示按CPU核数：模型推理是CPU密集的，单线程时所有请求串行排队
+     */
+    @Value("${embedding.batch.workers:0}")
+    private int workers;
+
+    @Autowired
+    private EmbeddingProvider embeddingProvider;
+
+    @Autowired
+    private DimensionReducer dimensionReducer;
+
+    @Autowired
+    private EmbeddingCache embeddingCache;
+
+    private MicroBatcher<String, List<Float>> batcher;
+
+    @PostConstruct
+    public void init() {
+        if (embeddingProvider.getDimension() != dimension) {
+            throw new IllegalStateException("Embedding model " + embeddingProvider.getModelId() + " produces "
+                    + embeddingProvider.getDimension() + "-d vectors but milvus.collection.dimension is " + dimension);
+        }
+        int workerCount = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        batcher = new MicroBatcher<>("embedding-batcher", maxBatchSize, maxWaitMicros, workerCount,
+                embeddingProvider::embedAll);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        batcher.close();
+    }
 
     /**
      * 将文本转换为向量表示
@@ -26,20 +67,63 @@ public class VectorUtils {
      * @return 向量表示（浮点数列表）
      */
     public List<Float> generateVector(String text) {
-        List<Float> vector = new ArrayList<>(dimension);
-        
-        // 基于文本的哈希值生成伪随机向量
-        // 实际项目中应替换为真实的向量模型
-        long seed = text.hashCode();
-        Random localRandom = new Random(seed);
-        
-        for (int i = 0; i < dimension; i++) {
-            // 生成-1到1之间的随机浮点数
-            float value = (localRandom.nextFloat() - 0.5f) * 2.0f;
-            vector.add(value);
+        return generateVector(text, true);
+    }
+
+    /**
+     * 将查询文本转换为向量表示（只缓存在内存层，不写入磁盘层）
+     * @param text 查询文本
+     * @return 向量表示（浮点数列表）
+     */
+    public List<Float> generateQueryVector(String text) {
+        return generateVector(text, false);
+    }
+
+    private List<Float> generateVector(String text, boolean persist) {
+        List<Float> vector = embeddingCache.get(text);
+        if (vector == null) {
+            vector = batcher.call(text);
+            embeddingCache.put(text, vector, persist);
+        }
+        return dimensionReducer.reduce(vector);
+    }
+
+    /**
+     * 批量将文本转换为向量表示（未命中缓存的文本去重后直接按批调用模型）
+     * @param texts 输入文本列表
+     * @return 向量列表
+     */
+    public List<List<Float>> generateVectors(List<String> texts) {
+        return dimensionReducer.reduceAll(generateFullVectors(texts));
+    }
+
+    /**
+     * 批量生成模型原始维度的向量（不降维，供训练降维模型和评估降维召回率）
+     * @param texts 输入文本列表
+     * @return 向量列表
+     */
+    public List<List<Float>> generateFullVectors(List<String> texts) {
+        List<List<Float>> vectors = new ArrayList<>(Collections.nCopies(texts.size(), null));
+        Map<String, List<Integer>> missing = new LinkedHashMap<>();
+        for (int i = 0; i < texts.size(); i++) {
+            List<Float> cached = missing.containsKey(texts.get(i)) ? null : embeddingCache.get(texts.get(i));
+            if (cached != null) {
+                vectors.set(i, cached);
+            } else {
+                missing.computeIfAbsent(texts.get(i), key -> new ArrayList<>()).add(i);
+            }
+        }
+        if (!missing.isEmpty()) {
+            List<String> missingTexts = new ArrayList<>(missing.keySet());
+            List<List<Float>> embedded = embeddingProvider.embedAll(missingTexts);
+            for (int i = 0; i < missingTexts.size(); i++) {
+                embeddingCache.put(missingTexts.get(i), embedded.get(i), true);
+                for (int index : missing.get(missingTexts.get(i))) {
+                    vectors.set(index, embedded.get(i));
+                }
+            }
         }
-        
-        return vector;
+        return vectors;
     }
 
     /**
@@ -0,0 +1,5 @@
+-- query_logs恢复自增主键（MySQL 8）
+-- 仅用于在表生成器分配query_logs主键期间由ddl-auto新建的库：该期间建出的id列没有AUTO_INCREMENT。
+-- 自增起点自动取当前最大id之后，不会与已有行冲突。
+
+ALTER TABLE query_logs MODIFY id BIGINT NOT NULL AUTO_INCREMENT;
@@ -0,0 +1,12 @@
+-- query_logs按月RANGE分区改造脚本（MySQL 8）
+-- 执行后设置 query-log.partition.mysql-enabled=true，
+-- QueryLogArchiveService会自动预建未来月份分区，并在归档后DROP PARTITION代替逐行删除。
+
+-- 分区键必须包含在主键中
+ALTER TABLE query_logs DROP PRIMARY KEY, ADD PRIMARY KEY (id, created_at);
+
+-- 早于首个分区月份（按实际上线月份调整）的数据放入p_history，归档任务按行删除这部分数据
+ALTER TABLE query_logs PARTITION BY RANGE (TO_DAYS(created_at)) (
+    PARTITION p_history VALUES LESS THAN (TO_DAYS('2025-01-01')),
+    PARTITION pmax VALUES LESS THAN MAXVALUE
+);
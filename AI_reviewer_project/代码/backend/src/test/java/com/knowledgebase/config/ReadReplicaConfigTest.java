@@ -0,0 +1,67 @@
+package com.knowledgebase.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 读写分离配置测试：以两个嵌入式H2数据库启用从库，验证连接池参数绑定和数据源装配
+ */
+class ReadReplicaConfigTest {
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(DataSourceAutoConfiguration.class))
+            .withUserConfiguration(ReadReplicaConfig.class)
+            .withBean(EntityManagerFactory.class, () -> mock(EntityManagerFactory.class))
+            .withPropertyValues(
+                    "spring.datasource.url=jdbc:h2:mem:config-primary;DB_CLOSE_DELAY=-1",
+                    "spring.datasource.username=sa",
+                    "spring.datasource.password=",
+                    "spring.datasource.hikari.maximum-pool-size=7",
+                    "spring.datasource.hikari.minimum-idle=2",
+                    "datasource.replica.urls=jdbc:h2:mem:config-replica;DB_CLOSE_DELAY=-1",
+                    "datasource.replica.lag-check=none",
+                    "datasource.replica.pool-size=3");
+
+    @Test
+    void bindsHikariPropertiesToPrimaryAndReplicaPools() {
+        contextRunner.run(context -> {
+            HikariDataSource primary = context.getBean("primaryDataSource", HikariDataSource.class);
+            assertEquals(7, primary.getMaximumPoolSize());
+            assertEquals(2, primary.getMinimumIdle());
+
+            assertInstanceOf(LazyConnectionDataSourceProxy.class, context.getBean(DataSource.class));
+            assertEquals(1, new JdbcTemplate(context.getBean(DataSource.class))
+                    .queryForObject("SELECT 1", Integer.class));
+
+            List<Map<String, Object>> replicas = replicas(context.getBean(ReplicaRoutingDataSource.class));
+            assertEquals(1, replicas.size());
+            assertEquals("replica-1", replicas.get(0).get("name"));
+            assertEquals(true, replicas.get(0).get("healthy"));
+        });
+    }
+
+    @Test
+    void staysDisabledWithoutReplicaUrls() {
+        new ApplicationContextRunner()
+                .withUserConfiguration(ReadReplicaConfig.class)
+                .run(context -> assertFalse(context.containsBean("replicaRoutingDataSource")));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> replicas(ReplicaRoutingDataSource routing) {
+        return (List<Map<String, Object>>) routing.getStats().get("replicas");
+    }
+}
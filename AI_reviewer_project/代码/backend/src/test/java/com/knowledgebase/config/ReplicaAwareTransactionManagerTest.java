@@ -0,0 +1,139 @@
+package com.knowledgebase.config;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernateJpaAutoConfiguration;
+import org.springframework.boot.autoconfigure.transaction.TransactionAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 读写分离事务路由集成测试
+ * 主库和从库为两个嵌入式H2数据库，各自写入不同的标记行；经完整的JPA事务管理器和@Transactional代理执行读取，
+ * 按读到的标记判断事务实际落在哪个库上
+ */
+class ReplicaAwareTransactionManagerTest {
+
+    private static final String PRIMARY_URL = "jdbc:h2:mem:tx-primary;DB_CLOSE_DELAY=-1";
+
+    private static final String REPLICA_URL = "jdbc:h2:mem:tx-replica;DB_CLOSE_DELAY=-1";
+
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withConfiguration(AutoConfigurations.of(DataSourceAutoConfiguration.class,
+                    HibernateJpaAutoConfiguration.class, TransactionAutoConfiguration.class))
+            .withUserConfiguration(ReadReplicaConfig.class)
+            .withBean(RoutedReads.class)
+            .withPropertyValues(
+                    "spring.datasource.url=" + PRIMARY_URL,
+                    "spring.datasource.username=sa",
+                    "spring.datasource.password=",
+                    "spring.jpa.hibernate.ddl-auto=none",
+                    "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                    "datasource.replica.urls=" + REPLICA_URL,
+                    "datasource.replica.lag-check=none");
+
+    @BeforeAll
+    static void createMarkers() {
+        marker(PRIMARY_URL, "primary");
+        marker(REPLICA_URL, "replica");
+    }
+
+    @Test
+    void labelledReadOnlyTransactionsReachTheReplica() {
+        contextRunner.run(context -> {
+            assertInstanceOf(ReplicaAwareTransactionManager.class, context.getBean(PlatformTransactionManager.class));
+            RoutedReads reads = context.getBean(RoutedReads.class);
+
+            assertEquals("replica", reads.replicaRead());
+            assertEquals(1L, replicas(context.getBean(ReplicaRoutingDataSource.class)).get(0).get("routes"));
+        });
+    }
+
+    @Test
+    void unlabelledAndWriteTransactionsStayOnPrimary() {
+        contextRunner.run(context -> {
+            RoutedReads reads = context.getBean(RoutedReads.class);
+
+            assertEquals("primary", reads.unlabelledRead());
+            assertEquals("primary", reads.write());
+            assertEquals("primary", reads.labelledWrite());
+            assertEquals("primary", reads.withoutTransaction());
+            assertEquals(0L, replicas(context.getBean(ReplicaRoutingDataSource.class)).get(0).get("routes"));
+        });
+    }
+
+    @Test
+    void routeIsClearedAfterReplicaTransaction() {
+        contextRunner.run(context -> {
+            RoutedReads reads = context.getBean(RoutedReads.class);
+
+            assertEquals("replica", reads.replicaRead());
+            assertEquals("primary", reads.write());
+            assertEquals("primary", reads.withoutTransaction());
+        });
+    }
+
+    private static void marker(String url, String source) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(new DriverManagerDataSource(url, "sa", ""));
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS marker (source VARCHAR(16))");
+        jdbcTemplate.update("DELETE FROM marker");
+        jdbcTemplate.update("INSERT INTO marker VALUES (?)", source);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> replicas(ReplicaRoutingDataSource routing) {
+        return (List<Map<String, Object>>) routing.getStats().get("replicas");
+    }
+
+    /**
+     * 以不同事务定义读取标记行
+     */
+    static class RoutedReads {
+
+        private final JdbcTemplate jdbcTemplate;
+
+        RoutedReads(DataSource dataSource) {
+            this.jdbcTemplate = new JdbcTemplate(dataSource);
+        }
+
+        @Transactional(readOnly = true, label = ReplicaRoutingDataSource.READ_REPLICA)
+        public String replicaRead() {
+            return source();
+        }
+
+        @Transactional(readOnly = true)
+        public String unlabelledRead() {
+            return source();
+        }
+
+        @Transactional
+        public String write() {
+            jdbcTemplate.update("UPDATE marker SET source = source");
+            return source();
+        }
+
+        @Transactional(label = ReplicaRoutingDataSource.READ_REPLICA)
+        public String labelledWrite() {
+            return source();
+        }
+
+        public String withoutTransaction() {
+            return source();
+        }
+
+        private String source() {
+            return jdbcTemplate.queryForObject("SELECT source FROM marker", String.class);
+        }
+    }
+}
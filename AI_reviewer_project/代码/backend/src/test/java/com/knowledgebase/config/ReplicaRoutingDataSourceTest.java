@@ -0,0 +1,110 @@
+package com.knowledgebase.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 读写分离路由测试
+ * 主库和从库为两个独立的嵌入式H2数据库，各自写入不同的标记行，按读到的标记判断路由
+ */
+class ReplicaRoutingDataSourceTest {
+
+    private ReplicaRoutingDataSource routing;
+
+    @BeforeEach
+    void setUp() {
+        routing = newRouting(Collections.singletonMap("replica-1", embedded("replica")));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        routing.close();
+    }
+
+    @Test
+    void routesReplicaTransactionsToReplica() {
+        assertEquals("primary", readSource(routing));
+
+        ReplicaRoutingDataSource.enterTransaction(true);
+        try {
+            assertEquals("replica", readSource(routing));
+        } finally {
+            ReplicaRoutingDataSource.exitTransaction();
+        }
+
+        assertEquals("primary", readSource(routing));
+        assertEquals(1L, replicaStats(routing).get(0).get("routes"));
+    }
+
+    @Test
+    void nestedTransactionsKeepTheirOwnRoute() {
+        ReplicaRoutingDataSource.enterTransaction(true);
+        try {
+            ReplicaRoutingDataSource.enterTransaction(false);
+            try {
+                assertEquals("primary", readSource(routing));
+            } finally {
+                ReplicaRoutingDataSource.exitTransaction();
+            }
+            assertEquals("replica", readSource(routing));
+        } finally {
+            ReplicaRoutingDataSource.exitTransaction();
+        }
+    }
+
+    @Test
+    void fallsBackToPrimaryWhenReplicaIsUnavailable() throws Exception {
+        // IFEXISTS=TRUE：数据库不存在时连接失败，模拟不可用的从库
+        DriverManagerDataSource missing = new DriverManagerDataSource("jdbc:h2:mem:missing-replica;IFEXISTS=TRUE", "sa", "");
+        ReplicaRoutingDataSource unavailable = newRouting(Collections.singletonMap("replica-1", missing));
+        try {
+            assertEquals(false, replicaStats(unavailable).get(0).get("healthy"));
+
+            ReplicaRoutingDataSource.enterTransaction(true);
+            try {
+                assertEquals("primary", readSource(unavailable));
+            } finally {
+                ReplicaRoutingDataSource.exitTransaction();
+            }
+            assertEquals(1L, unavailable.getStats().get("fallbacks"));
+        } finally {
+            unavailable.close();
+        }
+    }
+
+    private static ReplicaRoutingDataSource newRouting(Map<String, DataSource> replicas) {
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(embedded("primary"), replicas,
+                ReplicaRoutingDataSource.LagCheck.NONE, 5);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    /**
+     * 创建嵌入式数据库并写入标记行
+     */
+    private static DataSource embedded(String source) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:routing-" + source + "-" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE marker (source VARCHAR(16))");
+        jdbcTemplate.update("INSERT INTO marker VALUES (?)", source);
+        return dataSource;
+    }
+
+    private static String readSource(DataSource dataSource) {
+        return new JdbcTemplate(dataSource).queryForObject("SELECT source FROM marker", String.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> replicaStats(ReplicaRoutingDataSource routing) {
+        return (List<Map<String, Object>>) routing.getStats().get("replicas");
+    }
+}
@@ -0,0 +1,95 @@
+package com.knowledgebase.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Count-Min Sketch测试
+ * 宽度w=⌈e/ε⌉、深度d=⌈ln(1/δ)⌉时，每个键的估计值不小于真实值，且以1-δ的概率不超过真实值+ε·总数
+ */
+class CountMinSketchTest {
+
+    @Test
+    void neverUnderestimatesAndStaysWithinErrorBound() {
+        // ε=0.01, δ≈0.007
+        CountMinSketch sketch = new CountMinSketch(272, 5);
+        Map<String, Long> truth = zipfStream(sketch, 500, 20_000);
+
+        long bound = (long) Math.ceil(0.01 * sketch.getTotal());
+        int exceeded = 0;
+        for (Map.Entry<String, Long> entry : truth.entrySet()) {
+            long estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue(), "underestimated " + entry.getKey());
+            if (estimate - entry.getValue() > bound) {
+                exceeded++;
+            }
+        }
+        assertEquals(20_000, sketch.getTotal());
+        assertTrue(exceeded <= truth.size() * 0.02, exceeded + " keys exceeded the ε·N bound");
+    }
+
+    @Test
+    void mergeEqualsSketchOfCombinedStream() {
+        CountMinSketch first = new CountMinSketch(64, 4);
+        CountMinSketch second = new CountMinSketch(64, 4);
+        CountMinSketch combined = new CountMinSketch(64, 4);
+        for (int i = 0; i < 1000; i++) {
+            String key = "q" + (i % 37);
+            (i % 2 == 0 ? first : second).add(key, 1);
+            combined.add(key, 1);
+        }
+
+        first.merge(second);
+
+        assertArrayEquals(combined.toArray(), first.toArray());
+        assertEquals(combined.getTotal(), first.getTotal());
+        assertEquals(combined.estimate("q5"), first.estimate("q5"));
+    }
+
+    @Test
+    void copyIsIndependent() {
+        CountMinSketch sketch = new CountMinSketch(16, 2);
+        sketch.add("a", 3);
+        CountMinSketch copy = sketch.copy();
+        sketch.add("a", 2);
+
+        assertEquals(3, copy.estimate("a"));
+        assertEquals(5, sketch.estimate("a"));
+    }
+
+    @Test
+    void rejectsMergeOfDifferentDimensions() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CountMinSketch(16, 2).merge(new CountMinSketch(32, 2)));
+    }
+
+    /**
+     * 按Zipf分布写入查询，返回真实计数
+     */
+    static Map<String, Long> zipfStream(CountMinSketch sketch, int keys, int events) {
+        double[] cumulative = new double[keys];
+        double sum = 0;
+        for (int i = 0; i < keys; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        Random random = new Random(7);
+        Map<String, Long> truth = new HashMap<>();
+        for (int n = 0; n < events; n++) {
+            double target = random.nextDouble() * sum;
+            int rank = 0;
+            while (cumulative[rank] < target) {
+                rank++;
+            }
+            String key = "query-" + rank;
+            sketch.add(key, 1);
+            truth.merge(key, 1L, Long::sum);
+        }
+        return truth;
+    }
+}
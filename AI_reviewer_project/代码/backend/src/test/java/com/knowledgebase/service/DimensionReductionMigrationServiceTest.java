@@ -0,0 +1,183 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.model.FAQDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * 向量降维迁移测试
+ * 语料为8维空间中一个2维仿射子空间上的点：PCA降到2维应完整保留L2距离，召回率为1，
+ * 保存的模型文件可被DimensionReducer按pca方式加载，投影结果与训练时一致
+ */
+class DimensionReductionMigrationServiceTest {
+
+    private static final int SOURCE_DIMENSION = 8;
+
+    @TempDir
+    Path modelDir;
+
+    private final Map<String, List<Float>> vectorsByText = new HashMap<>();
+
+    private final List<FAQDocument> documents = new ArrayList<>();
+
+    private EmbeddingProvider embeddingProvider;
+
+    private RagService ragService;
+
+    private DimensionReductionMigrationService migrationService;
+
+    @BeforeEach
+    void setUp() {
+        Random random = new Random(3);
+        float[] offset = {0.5f, -0.2f, 0.1f, 0.3f, 0f, -0.4f, 0.2f, 0.1f};
+        float[] u = {0.5f, 0.5f, 0.5f, 0.5f, 0f, 0f, 0f, 0f};
+        float[] w = {0f, 0f, 0f, 0f, 0.5f, -0.5f, 0.5f, -0.5f};
+        for (long id = 1; id <= 30; id++) {
+            float a = random.nextFloat() * 2 - 1;
+            float b = random.nextFloat() * 2 - 1;
+            List<Float> vector = new ArrayList<>(SOURCE_DIMENSION);
+            for (int i = 0; i < SOURCE_DIMENSION; i++) {
+                vector.add(offset[i] + a * u[i] + b * w[i]);
+            }
+            FAQDocument document = new FAQDocument();
+            document.setId(id);
+            document.setQuestion("问题" + id);
+            document.setAnswer("答案" + id);
+            document.setVectorId(String.valueOf(id));
+            documents.add(document);
+            vectorsByText.put(document.getQuestion() + " " + document.getAnswer(), vector);
+        }
+        // 未写入向量库的文档不参与迁移
+        FAQDocument pending = new FAQDocument();
+        pending.setId(99L);
+        pending.setQuestion("待索引");
+        pending.setAnswer("答案");
+        documents.add(pending);
+
+        embeddingProvider = mock(EmbeddingProvider.class);
+        when(embeddingProvider.getDimension()).thenReturn(SOURCE_DIMENSION);
+        when(embeddingProvider.getModelId()).thenReturn("test-model");
+        when(embeddingProvider.supportsTruncation()).thenReturn(false);
+
+        VectorUtils vectorUtils = mock(VectorUtils.class);
+        when(vectorUtils.generateFullVectors(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            List<List<Float>> vectors = new ArrayList<>(texts.size());
+            for (String text : texts) {
+                vectors.add(vectorsByText.get(text));
+            }
+            return vectors;
+        });
+
+        FAQDocumentReadModel readModel = mock(FAQDocumentReadModel.class);
+        when(readModel.findAll()).thenReturn(documents);
+
+        QueryLogService queryLogService = mock(QueryLogService.class);
+        when(queryLogService.getRecentQueryTexts(anyInt())).thenReturn(Collections.emptyList());
+
+        ragService = mock(RagService.class);
+        when(ragService.getCollectionName()).thenReturn("faq_vectors");
+        when(ragService.isSingleCollection()).thenReturn(false);
+
+        migrationService = new DimensionReductionMigrationService();
+        ReflectionTestUtils.setField(migrationService, "ragService", ragService);
+        ReflectionTestUtils.setField(migrationService, "vectorUtils", vectorUtils);
+        ReflectionTestUtils.setField(migrationService, "dimensionReducer", reducer("none", 0, ""));
+        ReflectionTestUtils.setField(migrationService, "readModel", readModel);
+        ReflectionTestUtils.setField(migrationService, "queryLogService", queryLogService);
+        ReflectionTestUtils.setField(migrationService, "modelDir", modelDir.toString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void pcaMigrationPreservesRecallAndWritesLoadableModel() {
+        Map<String, Object> report = migrationService.migrate(DimensionReducer.Mode.PCA, 2, 10, 5, false);
+
+        assertEquals("pca", report.get("mode"));
+        assertEquals(SOURCE_DIMENSION, report.get("source_dimension"));
+        assertEquals(2, report.get("dimension"));
+        assertEquals(30, report.get("corpus_size"));
+        assertEquals(10, report.get("queries"));
+        assertEquals("0 logged, 10 sampled", report.get("query_source"));
+        assertEquals(0.25, (Double) report.get("vector_memory_ratio"), 1e-9);
+        assertEquals(1.0, (Double) report.get("explained_variance"), 1e-4);
+        Map<String, Object> recall = (Map<String, Object>) report.get("exact_recall");
+        assertEquals(Arrays.asList("recall@1", "recall@3", "recall@5"), new ArrayList<>(recall.keySet()));
+        for (Object value : recall.values()) {
+            assertEquals(1.0, (Double) value, 1e-9);
+        }
+        assertFalse(report.containsKey("collection"));
+        verify(ragService, never()).createCollection(anyString(), anyInt());
+
+        Path modelFile = Paths.get((String) report.get("model_file"));
+        assertEquals(modelDir.resolve("faq_vectors_pca2.json"), modelFile);
+        assertTrue(Files.exists(modelFile));
+        Map<String, Object> applyConfig = (Map<String, Object>) report.get("apply_config");
+        assertEquals("pca", applyConfig.get("vector.reduction.mode"));
+        assertEquals(2, applyConfig.get("vector.reduction.dimension"));
+        assertEquals(modelFile.toString(), applyConfig.get("vector.reduction.model-file"));
+
+        // 按迁移报告给出的配置加载模型，降维后两点间的距离与原始维度一致
+        DimensionReducer loaded = reducer("pca", 2, modelFile.toString());
+        assertEquals(2, loaded.getOutputDimension());
+        List<Float> first = vectorsByText.get("问题1 答案1");
+        List<Float> second = vectorsByText.get("问题2 答案2");
+        assertEquals(distance(first, second), distance(loaded.reduce(first), loaded.reduce(second)), 1e-4);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void truncationWarnsForModelsNotTrainedForIt() {
+        Map<String, Object> report = migrationService.migrate(DimensionReducer.Mode.TRUNCATE, 4, 5, 3, false);
+
+        assertEquals("truncate", report.get("mode"));
+        assertEquals(4, report.get("dimension"));
+        assertTrue(report.containsKey("warning"));
+        assertFalse(report.containsKey("model_file"));
+        Map<String, Object> applyConfig = (Map<String, Object>) report.get("apply_config");
+        assertFalse(applyConfig.containsKey("vector.reduction.model-file"));
+        assertEquals(report, migrationService.getLastReport());
+    }
+
+    @Test
+    void rejectsInvalidRequests() {
+        assertThrows(IllegalArgumentException.class,
+                () -> migrationService.migrate(DimensionReducer.Mode.NONE, 2, 10, 5, false));
+        // 分片部署时不能构建单个降维集合
+        assertThrows(IllegalStateException.class,
+                () -> migrationService.migrate(DimensionReducer.Mode.PCA, 2, 10, 5, true));
+        verify(ragService, never()).createCollection(anyString(), anyInt());
+    }
+
+    private DimensionReducer reducer(String mode, int dimension, String modelFile) {
+        DimensionReducer reducer = new DimensionReducer();
+        ReflectionTestUtils.setField(reducer, "modeSetting", mode);
+        ReflectionTestUtils.setField(reducer, "targetDimension", dimension);
+        ReflectionTestUtils.setField(reducer, "modelFile", modelFile);
+        ReflectionTestUtils.setField(reducer, "pcaMaxSamples", 5000);
+        ReflectionTestUtils.setField(reducer, "embeddingProvider", embeddingProvider);
+        reducer.init();
+        return reducer;
+    }
+
+    private static double distance(List<Float> a, List<Float> b) {
+        double sum = 0;
+        for (int i = 0; i < a.size(); i++) {
+            double diff = a.get(i) - b.get(i);
+            sum += diff * diff;
+        }
+        return Math.sqrt(sum);
+    }
+}
@@ -0,0 +1,226 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.config.JpaAuditingConfig;
+import com.knowledgebase.event.DocumentBatchChangedEvent;
+import com.knowledgebase.event.DocumentChangedEvent;
+import com.knowledgebase.model.FAQDocument;
+import com.knowledgebase.repository.DocumentChangeLogRepository;
+import com.knowledgebase.repository.FAQDocumentRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.IllegalTransactionStateException;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 跨节点缓存失效测试
+ * 在H2上以两个节点标识不同的服务实例模拟两个节点：一个写入文档与变更日志，另一个拉取并回放；
+ * 空洞超时放长，避免回滚用例留下的空洞在其他用例中触发全量刷新
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "change-log.gap-timeout-ms=600000"
+})
+@Import({JpaAuditingConfig.class, FAQDocumentReadModel.class, DocumentChangeLogService.class,
+        DocumentChangeLogServiceTest.RemoteEvents.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DocumentChangeLogServiceTest {
+
+    @Autowired
+    private DocumentChangeLogService localNode;
+
+    @Autowired
+    private AutowireCapableBeanFactory beanFactory;
+
+    @Autowired
+    private FAQDocumentRepository faqDocumentRepository;
+
+    @Autowired
+    private DocumentChangeLogRepository documentChangeLogRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private RemoteEvents remoteEvents;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private DocumentChangeLogService otherNode;
+
+    @BeforeEach
+    void setUp() {
+        // 节点标识为空时每个实例随机生成，得到另一个节点
+        otherNode = beanFactory.createBean(DocumentChangeLogService.class);
+        localNode.poll();
+        remoteEvents.received.clear();
+    }
+
+    @Test
+    void replaysChangesCommittedByAnotherNode() {
+        FAQDocument document = transactionTemplate.execute(status -> {
+            FAQDocument saved = faqDocumentRepository.save(newDocument("如何重置密码"));
+            otherNode.record(DocumentChangedEvent.created(saved));
+            return saved;
+        });
+
+        assertEquals(1, localNode.poll());
+        assertEquals(1, remoteEvents.received.size());
+        DocumentChangedEvent created = remoteEvents.received.get(0);
+        assertTrue(created.isRemote());
+        assertEquals(DocumentChangedEvent.ChangeType.CREATED, created.getChangeType());
+        assertEquals(document.getId(), created.getDocumentId());
+        assertEquals("如何重置密码", created.getDocument().getQuestion());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            faqDocumentRepository.deleteById(document.getId());
+            otherNode.record(DocumentChangedEvent.deleted(document.getId()));
+        });
+
+        assertEquals(1, localNode.poll());
+        DocumentChangedEvent deleted = remoteEvents.received.get(1);
+        assertEquals(DocumentChangedEvent.ChangeType.DELETED, deleted.getChangeType());
+        assertNull(deleted.getDocument());
+        assertEquals(0, localNode.poll());
+    }
+
+    @Test
+    void skipsChangesOfItsOwnNode() {
+        transactionTemplate.executeWithoutResult(status -> {
+            FAQDocument saved = faqDocumentRepository.save(newDocument("本节点的修改"));
+            localNode.record(DocumentChangedEvent.created(saved));
+        });
+
+        assertEquals(0, localNode.poll());
+        assertTrue(remoteEvents.received.isEmpty());
+    }
+
+    @Test
+    void rolledBackWriteLeavesNoChangeLog() {
+        long before = documentChangeLogRepository.count();
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.executeWithoutResult(status -> {
+            FAQDocument saved = faqDocumentRepository.save(newDocument("回滚的修改"));
+            otherNode.record(DocumentChangedEvent.created(saved));
+            throw new IllegalStateException("rollback");
+        }));
+
+        assertEquals(before, documentChangeLogRepository.count());
+        assertEquals(0, localNode.poll());
+    }
+
+    @Test
+    void recordRequiresDocumentTransaction() {
+        assertThrows(IllegalTransactionStateException.class,
+                () -> otherNode.record(DocumentChangedEvent.deleted(1L)));
+    }
+
+    @Test
+    void tracksGapsWiderThanOneBatch() {
+        DocumentChangeLogService reader = newReader();
+        int pendingBefore = (Integer) reader.getStats().get("pending_gaps");
+        FAQDocument document = faqDocumentRepository.save(newDocument("提交较晚的修改"));
+        long base = maxChangeLogId();
+
+        // 跳号999超过一批500条，仍要逐个跟踪
+        insertChangeLog(base + 1000, document.getId());
+        assertEquals(1, reader.poll());
+        assertEquals(pendingBefore + 999, reader.getStats().get("pending_gaps"));
+
+        insertChangeLog(base + 5, document.getId());
+        assertEquals(1, reader.poll());
+        assertEquals(pendingBefore + 998, reader.getStats().get("pending_gaps"));
+    }
+
+    @Test
+    void resyncsAllDocumentsWhenGapsExceedTheBound() {
+        DocumentChangeLogService reader = newReader();
+        ReflectionTestUtils.setField(reader, "maxTrackedGaps", 10);
+        ReflectionTestUtils.setField(reader, "gapTimeoutMs", -1L);
+        reader.poll();
+        long resyncsBefore = (Long) reader.getStats().get("full_resyncs");
+        FAQDocument document = faqDocumentRepository.save(newDocument("全量刷新"));
+        insertChangeLog(maxChangeLogId() + 100, document.getId());
+
+        assertEquals(1, reader.poll());
+        assertEquals(0, reader.getStats().get("pending_gaps"));
+        assertEquals(true, reader.getStats().get("untracked_gaps"));
+
+        remoteEvents.batches.clear();
+        assertTrue(reader.poll() >= faqDocumentRepository.count());
+        assertEquals(resyncsBefore + 1, reader.getStats().get("full_resyncs"));
+        assertEquals(false, reader.getStats().get("untracked_gaps"));
+        assertEquals(1, remoteEvents.batches.size());
+        assertTrue(remoteEvents.batches.get(0).getDocumentIds().contains(document.getId()));
+    }
+
+    /**
+     * 创建一个新节点并追上当前变更日志
+     */
+    private DocumentChangeLogService newReader() {
+        DocumentChangeLogService reader = beanFactory.createBean(DocumentChangeLogService.class);
+        reader.poll();
+        remoteEvents.received.clear();
+        return reader;
+    }
+
+    private long maxChangeLogId() {
+        Long maxId = documentChangeLogRepository.findMaxId();
+        return maxId != null ? maxId : 0L;
+    }
+
+    /**
+     * 以指定id写入另一个节点的变更日志，模拟并发事务乱序提交，并把自增起点移到其后
+     */
+    private void insertChangeLog(long id, Long documentId) {
+        jdbcTemplate.update("INSERT INTO document_change_log (id, document_id, change_type, version, origin_node, created_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?)", id, documentId, "UPDATED", null, "remote-node", new Date());
+        if (id == maxChangeLogId()) {
+            jdbcTemplate.execute("ALTER TABLE document_change_log ALTER COLUMN id RESTART WITH " + (id + 1));
+        }
+    }
+
+    private static FAQDocument newDocument(String question) {
+        FAQDocument document = new FAQDocument();
+        document.setQuestion(question);
+        document.setAnswer("答案");
+        document.setCategory("账户");
+        document.setStatus("active");
+        return document;
+    }
+
+    /**
+     * 收集回放的远程事件
+     */
+    static class RemoteEvents {
+        final List<DocumentChangedEvent> received = new CopyOnWriteArrayList<>();
+        final List<DocumentBatchChangedEvent> batches = new CopyOnWriteArrayList<>();
+
+        @EventListener
+        public void onDocumentChanged(DocumentChangedEvent event) {
+            if (event.isRemote()) {
+                received.add(event);
+            }
+        }
+
+        @EventListener
+        public void onDocumentsChanged(DocumentBatchChangedEvent event) {
+            batches.add(event);
+        }
+    }
+}
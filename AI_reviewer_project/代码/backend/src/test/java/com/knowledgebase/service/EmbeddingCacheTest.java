@@ -0,0 +1,174 @@
+package com.knowledgebase.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 向量缓存测试
+ * 验证内存层按最近使用淘汰、只有文档向量写入磁盘层并在重启后命中、末尾不完整记录被截掉、
+ * 更换模型后旧条目不命中，以及文件超过上限时按最近使用保留条目重写
+ */
+class EmbeddingCacheTest {
+
+    private static final int DIMENSION = 4;
+
+    /**
+     * 每条记录：32字节键 + 4字节维度 + 4维float
+     */
+    private static final int RECORD_BYTES = 32 + 4 + DIMENSION * 4;
+
+    @TempDir
+    Path cacheDir;
+
+    @Test
+    void memoryTierEvictsLeastRecentlyUsed() {
+        EmbeddingCache cache = cache("model-a", 2, false, Long.MAX_VALUE);
+        cache.put("a", vector(1), false);
+        cache.put("b", vector(2), false);
+        assertEquals(vector(1), cache.get("a"));
+        cache.put("c", vector(3), false);
+
+        assertNull(cache.get("b"));
+        assertEquals(vector(1), cache.get("a"));
+        assertEquals(vector(3), cache.get("c"));
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(2, stats.get("memory_entries"));
+        assertEquals(3L, stats.get("memory_hits"));
+        assertEquals(1L, stats.get("misses"));
+        assertEquals(0.75, (Double) stats.get("hit_rate"), 1e-9);
+        assertEquals(false, stats.get("disk_enabled"));
+    }
+
+    @Test
+    void persistsDocumentVectorsAcrossRestarts() throws InterruptedException {
+        EmbeddingCache cache = cache("model-a", 100, true, Long.MAX_VALUE);
+        cache.put("文档文本", vector(1), true);
+        cache.put("查询文本", vector(2), false);
+        awaitDiskWrites(cache, 1);
+        cache.destroy();
+
+        EmbeddingCache restarted = cache("model-a", 100, true, Long.MAX_VALUE);
+        try {
+            assertEquals(1, restarted.getStats().get("disk_entries"));
+            assertEquals(vector(1), restarted.get("文档文本"));
+            assertNull(restarted.get("查询文本"));
+            // 磁盘命中后放入内存层
+            assertEquals(vector(1), restarted.get("文档文本"));
+            Map<String, Object> stats = restarted.getStats();
+            assertEquals(1L, stats.get("disk_hits"));
+            assertEquals(1L, stats.get("memory_hits"));
+        } finally {
+            restarted.destroy();
+        }
+
+        // 键中包含模型ID，更换模型后旧条目不命中
+        EmbeddingCache otherModel = cache("model-b", 100, true, Long.MAX_VALUE);
+        try {
+            assertNull(otherModel.get("文档文本"));
+        } finally {
+            otherModel.destroy();
+        }
+    }
+
+    @Test
+    void truncatesPartialTrailingRecord() throws InterruptedException, IOException {
+        EmbeddingCache cache = cache("model-a", 100, true, Long.MAX_VALUE);
+        cache.put("a", vector(1), true);
+        cache.put("b", vector(2), true);
+        awaitDiskWrites(cache, 2);
+        cache.destroy();
+
+        // 模拟写入时进程退出：末尾只写了半条记录
+        Path file = cacheFile();
+        long completeBytes = Files.size(file);
+        Files.write(file, new byte[RECORD_BYTES / 2], StandardOpenOption.APPEND);
+
+        EmbeddingCache restarted = cache("model-a", 100, true, Long.MAX_VALUE);
+        try {
+            assertEquals(completeBytes, Files.size(file));
+            assertEquals(vector(1), restarted.get("a"));
+            assertEquals(vector(2), restarted.get("b"));
+        } finally {
+            restarted.destroy();
+        }
+    }
+
+    @Test
+    void compactionKeepsRecentlyUsedEntries() throws InterruptedException {
+        // 上限恰好容纳4条记录，重写后保留不超过一半的字节数，即1条
+        long maxBytes = 8 + 4L * RECORD_BYTES;
+        EmbeddingCache cache = cache("model-a", 1, true, maxBytes);
+        for (int i = 1; i <= 4; i++) {
+            cache.put("doc" + i, vector(i), true);
+        }
+        awaitDiskWrites(cache, 4);
+        // 内存层只保留doc4，读取doc1走磁盘层并刷新其访问顺序
+        assertEquals(vector(1), cache.get("doc1"));
+
+        cache.put("doc5", vector(5), true);
+        awaitDiskWrites(cache, 5);
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(1L, stats.get("compactions"));
+        assertEquals(2, stats.get("disk_entries"));
+        assertEquals(8L + 2 * RECORD_BYTES, stats.get("disk_bytes"));
+        cache.destroy();
+
+        EmbeddingCache restarted = cache("model-a", 100, true, maxBytes);
+        try {
+            assertEquals(vector(1), restarted.get("doc1"));
+            assertEquals(vector(5), restarted.get("doc5"));
+            assertNull(restarted.get("doc2"));
+            assertNull(restarted.get("doc4"));
+        } finally {
+            restarted.destroy();
+        }
+    }
+
+    private EmbeddingCache cache(String modelId, int memoryMaxEntries, boolean diskEnabled, long diskMaxBytes) {
+        EmbeddingProvider provider = mock(EmbeddingProvider.class);
+        when(provider.getModelId()).thenReturn(modelId);
+        when(provider.getDimension()).thenReturn(DIMENSION);
+
+        EmbeddingCache cache = new EmbeddingCache();
+        ReflectionTestUtils.setField(cache, "enabled", true);
+        ReflectionTestUtils.setField(cache, "memoryMaxEntries", memoryMaxEntries);
+        ReflectionTestUtils.setField(cache, "diskEnabled", diskEnabled);
+        ReflectionTestUtils.setField(cache, "diskFile", cacheFile().toString());
+        ReflectionTestUtils.setField(cache, "diskMaxBytes", diskMaxBytes);
+        ReflectionTestUtils.setField(cache, "writeQueueCapacity", 100);
+        ReflectionTestUtils.setField(cache, "embeddingProvider", provider);
+        cache.init();
+        return cache;
+    }
+
+    private Path cacheFile() {
+        return cacheDir.resolve("embeddings.bin");
+    }
+
+    private static List<Float> vector(int seed) {
+        return Arrays.asList((float) seed, seed + 0.25f, seed + 0.5f, (float) -seed);
+    }
+
+    private static void awaitDiskWrites(EmbeddingCache cache, long expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (((Number) cache.getStats().get("disk_writes")).longValue() < expected) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("disk writes not reached within 5s");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
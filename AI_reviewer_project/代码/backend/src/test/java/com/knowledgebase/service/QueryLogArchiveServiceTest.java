@@ -0,0 +1,152 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.config.JpaAuditingConfig;
+import com.knowledgebase.model.QueryLog;
+import com.knowledgebase.repository.QueryLogRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查询日志归档测试
+ * 在H2上验证超过保留期的完整月份按段写出并从数据库删除、归档日志可按时间范围读回，
+ * 新实例从段文件头恢复归档信息，以及归档中断后重新归档产生的重叠段不会读出重复日志
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import(JpaAuditingConfig.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class QueryLogArchiveServiceTest {
+
+    private static final YearMonth EXPIRED_MONTH = YearMonth.now().minusMonths(6);
+
+    @TempDir
+    Path archiveDir;
+
+    @Autowired
+    private QueryLogRepository queryLogRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void clearLogs() {
+        queryLogRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void archivesExpiredMonthsIntoSegmentsAndReadsThemBack() throws IOException {
+        List<QueryLog> expired = new ArrayList<>();
+        for (int day = 1; day <= 5; day++) {
+            expired.add(saveLog("过期查询" + day, EXPIRED_MONTH.atDay(day)));
+        }
+        QueryLog recent = saveLog("近期查询", LocalDate.now());
+
+        QueryLogArchiveService archiveService = archiveService(2);
+        assertEquals(5, archiveService.archiveExpiredPartitions());
+
+        // 每段最多2行：5行写为3个段，数据库中只剩保留期内的日志
+        assertEquals(3, archiveService.getSegments().size());
+        assertEquals(Arrays.asList(recent.getId()),
+                queryLogRepository.findAll().stream().map(QueryLog::getId).collect(Collectors.toList()));
+
+        List<QueryLog> archived = archiveService.findArchived(toDate(EXPIRED_MONTH.atDay(1)), toDate(EXPIRED_MONTH.atEndOfMonth()));
+        assertEquals(ids(expired), ids(archived));
+        for (int i = 0; i < expired.size(); i++) {
+            assertEquals(expired.get(i).getQueryText(), archived.get(i).getQueryText());
+            assertEquals(expired.get(i).getSessionId(), archived.get(i).getSessionId());
+            assertEquals(toDate(EXPIRED_MONTH.atDay(i + 1)), archived.get(i).getCreatedAt());
+        }
+
+        // 只读取时间范围有交集的段
+        List<QueryLogSegment.Header> secondDay = archiveService.findSegments(toDate(EXPIRED_MONTH.atDay(2)), toDate(EXPIRED_MONTH.atDay(2)));
+        assertEquals(1, secondDay.size());
+        assertEquals(Arrays.asList(expired.get(1).getId()),
+                ids(archiveService.findArchived(toDate(EXPIRED_MONTH.atDay(2)), toDate(EXPIRED_MONTH.atDay(2)))));
+
+        // 重启后的实例从段文件头恢复归档信息
+        QueryLogArchiveService restarted = archiveService(2);
+        assertEquals(3, restarted.getSegments().size());
+        assertEquals(ids(expired), ids(restarted.findArchived(null, null)));
+
+        // 没有过期日志时不再归档
+        assertEquals(0, restarted.archiveExpiredPartitions());
+    }
+
+    @Test
+    void rearchivingAfterAnInterruptedRunDoesNotDuplicateLogs() throws IOException {
+        List<QueryLog> expired = new ArrayList<>();
+        for (int day = 1; day <= 3; day++) {
+            expired.add(saveLog("过期查询" + day, EXPIRED_MONTH.atDay(day)));
+        }
+        QueryLogArchiveService archiveService = archiveService(3);
+        assertEquals(3, archiveService.archiveExpiredPartitions());
+
+        // 模拟段文件已落盘但删除前中断：后两行仍留在数据库中，重新归档时写出从第二行开始的重叠段
+        for (QueryLog log : expired.subList(1, 3)) {
+            jdbcTemplate.update("INSERT INTO query_logs (id, query_text, session_id, created_at) VALUES (?, ?, ?, ?)",
+                    log.getId(), log.getQueryText(), log.getSessionId(), new Timestamp(log.getCreatedAt().getTime()));
+        }
+        QueryLogArchiveService restarted = archiveService(3);
+        assertEquals(2, restarted.archiveExpiredPartitions());
+
+        assertEquals(2, restarted.getSegments().size());
+        assertEquals(0, queryLogRepository.count());
+        assertEquals(ids(expired), ids(restarted.findArchived(null, null)));
+    }
+
+    private QueryLogArchiveService archiveService(int segmentRows) throws IOException {
+        QueryLogArchiveService archiveService = new QueryLogArchiveService();
+        ReflectionTestUtils.setField(archiveService, "queryLogRepository", queryLogRepository);
+        ReflectionTestUtils.setField(archiveService, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(archiveService, "archiveDir", archiveDir.toString());
+        ReflectionTestUtils.setField(archiveService, "retentionDays", 90);
+        ReflectionTestUtils.setField(archiveService, "segmentRows", segmentRows);
+        ReflectionTestUtils.setField(archiveService, "mysqlPartitioning", false);
+        ReflectionTestUtils.setField(archiveService, "monthsAhead", 3);
+        archiveService.init();
+        return archiveService;
+    }
+
+    /**
+     * 保存一条日志并改写其创建时间（created_at由审计填充且不可通过JPA更新）
+     */
+    private QueryLog saveLog(String queryText, LocalDate day) {
+        QueryLog log = new QueryLog();
+        log.setQueryText(queryText);
+        log.setSessionId("session-" + queryText);
+        log = queryLogRepository.save(log);
+        Date createdAt = toDate(day);
+        jdbcTemplate.update("UPDATE query_logs SET created_at = ? WHERE id = ?", new Timestamp(createdAt.getTime()), log.getId());
+        log.setCreatedAt(createdAt);
+        return log;
+    }
+
+    private static List<Long> ids(List<QueryLog> logs) {
+        return logs.stream().map(QueryLog::getId).collect(Collectors.toList());
+    }
+
+    private static Date toDate(LocalDate day) {
+        return Date.from(day.atTime(12, 0).atZone(ZoneId.systemDefault()).toInstant());
+    }
+}
@@ -0,0 +1,176 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.config.JpaAuditingConfig;
+import com.knowledgebase.event.DocumentChangedEvent;
+import com.knowledgebase.model.FAQDocument;
+import com.knowledgebase.model.QueryLog;
+import com.knowledgebase.repository.FAQDocumentRepository;
+import com.knowledgebase.repository.QueryLogRepository;
+import com.knowledgebase.repository.UserAgentRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.AutowireCapableBeanFactory;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 查询日志精简存储测试
+ * 在H2上验证写入时去掉答案全文和User-Agent、后台补写版本历史和字典，
+ * 以及另一个节点（缓存为空的新实例）按批还原出与写入前一致的日志
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Import({JpaAuditingConfig.class, FAQDocumentReadModel.class, QueryLogCompactor.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class QueryLogCompactorTest {
+
+    private static final String USER_AGENT = "Mozilla/5.0 (X11; Linux x86_64) CompactorTest";
+
+    @Autowired
+    private QueryLogCompactor compactor;
+
+    @Autowired
+    private FAQDocumentReadModel readModel;
+
+    @Autowired
+    private FAQDocumentRepository faqDocumentRepository;
+
+    @Autowired
+    private QueryLogRepository queryLogRepository;
+
+    @Autowired
+    private UserAgentRepository userAgentRepository;
+
+    @Autowired
+    private AutowireCapableBeanFactory beanFactory;
+
+    @Test
+    void compactedLogsExpandToTheOriginalOnAnotherNode() throws InterruptedException {
+        FAQDocument document = saveDocument("如何开具发票", "在订单详情页点击申请发票");
+        compactor.onDocumentChanged(DocumentChangedEvent.created(document));
+        awaitStat(compactor, "pending_versions", 0);
+
+        // 第一条日志：版本已写入，答案被去掉；User-Agent尚未进入字典，保留全文并排队写入
+        QueryLog first = compact(newLog(document, USER_AGENT));
+        assertNull(first.getResponse());
+        assertEquals(USER_AGENT, first.getUserAgent());
+        assertNull(first.getUserAgentId());
+        awaitStat(compactor, "pending_user_agents", 0);
+        assertEquals(1, userAgentRepository.count());
+
+        // 第二条日志：字典项已缓存，只记录字典id
+        QueryLog second = compact(newLog(document, USER_AGENT));
+        assertNull(second.getResponse());
+        assertNull(second.getUserAgent());
+        assertNotNull(second.getUserAgentId());
+
+        QueryLogCompactor otherNode = beanFactory.createBean(QueryLogCompactor.class);
+        try {
+            List<QueryLog> stored = queryLogRepository.findAllById(Arrays.asList(first.getId(), second.getId()));
+            List<QueryLog> expanded = otherNode.expandAll(stored);
+
+            assertEquals(2, expanded.size());
+            for (QueryLog log : expanded) {
+                assertEquals("在订单详情页点击申请发票", log.getResponse());
+                assertEquals(USER_AGENT, log.getUserAgent());
+                assertEquals(document.getId(), log.getDocumentId());
+            }
+            // 还原结果是副本，数据库中的实体保持精简格式
+            for (QueryLog log : stored) {
+                assertNull(log.getResponse());
+            }
+            assertEquals(2L, otherNode.getStats().get("expanded"));
+            assertEquals(1, otherNode.getStats().get("cached_answers"));
+            assertEquals(1, otherNode.getStats().get("cached_user_agents"));
+
+            QueryLog single = otherNode.expand(queryLogRepository.findById(second.getId()).orElse(null));
+            assertEquals("在订单详情页点击申请发票", single.getResponse());
+            assertEquals(USER_AGENT, single.getUserAgent());
+        } finally {
+            otherNode.destroy();
+        }
+    }
+
+    @Test
+    void keepsTheAnswerWhenTheVersionIsNotRecordedYet() {
+        // 文档不在读模型中时无法确认答案与版本一致，不排队补写，日志保留全文
+        FAQDocument document = new FAQDocument();
+        document.setId(987654L);
+        document.setVersion(3);
+        QueryLog log = newLog(document, null);
+        log.setResponse("仍在日志中的答案");
+
+        compactor.compact(log);
+
+        assertEquals("仍在日志中的答案", log.getResponse());
+        assertSame(log, compactor.expand(log));
+    }
+
+    @Test
+    void missingVersionExpandsToNullResponse() {
+        QueryLog log = new QueryLog();
+        log.setId(1L);
+        log.setQueryText("已删除的版本");
+        log.setDocumentId(123456L);
+        log.setDocumentVersion(7);
+        long missingBefore = (Long) compactor.getStats().get("missing_versions");
+
+        List<QueryLog> expanded = compactor.expandAll(Collections.singletonList(log));
+
+        assertNull(expanded.get(0).getResponse());
+        assertNotSame(log, expanded.get(0));
+        assertEquals(missingBefore + 1, compactor.getStats().get("missing_versions"));
+    }
+
+    private QueryLog compact(QueryLog log) {
+        compactor.compact(log);
+        return queryLogRepository.save(log);
+    }
+
+    private FAQDocument saveDocument(String question, String answer) {
+        FAQDocument document = new FAQDocument();
+        document.setQuestion(question);
+        document.setAnswer(answer);
+        document.setCategory("发票");
+        document.setStatus("active");
+        FAQDocument saved = faqDocumentRepository.save(document);
+        readModel.apply(saved);
+        return saved;
+    }
+
+    private static QueryLog newLog(FAQDocument document, String userAgent) {
+        QueryLog log = new QueryLog();
+        log.setQueryText(document.getQuestion());
+        log.setDocumentId(document.getId());
+        log.setDocumentVersion(document.getVersion());
+        log.setResponse(document.getAnswer());
+        log.setUserAgent(userAgent);
+        return log;
+    }
+
+    private static void awaitStat(QueryLogCompactor compactor, String key, int expected) throws InterruptedException {
+        await(() -> {
+            Map<String, Object> stats = compactor.getStats();
+            return ((Number) stats.get(key)).intValue() == expected;
+        });
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("condition not reached within 5s");
+            }
+            Thread.sleep(20);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.knowledgebase.service;
+
+import com.knowledgebase.model.FAQDocument;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 分片向量存储测试
+ * 以进程内分片验证scatter-gather检索、慢分片的部分结果以及全局topK合并
+ */
+class ShardedVectorStoreTest {
+
+    private final List<ShardedVectorStore> stores = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        stores.forEach(ShardedVectorStore::close);
+    }
+
+    @Test
+    void mergesGlobalTopKAcrossShards() {
+        ShardedVectorStore store = newStore(Arrays.asList(
+                new InMemoryVectorShard("s0"), new InMemoryVectorShard("s1"), new InMemoryVectorShard("s2")), 1000);
+        // 按文档ID路由：文档i写入分片i%3，到原点的距离为i
+        for (long id = 1; id <= 9; id++) {
+            store.insert(document(id, "c"), Arrays.asList((float) id, 0f));
+        }
+
+        ShardedVectorStore.SearchResult result = store.search(Arrays.asList(
+                Arrays.asList(0f, 0f), Arrays.asList(9f, 0f)), 4);
+        List<List<VectorShard.Hit>> results = result.getHits();
+
+        assertFalse(result.isPartial());
+        assertEquals(Arrays.asList(1L, 2L, 3L, 4L), ids(results.get(0)));
+        assertEquals(Arrays.asList(9L, 8L, 7L, 6L), ids(results.get(1)));
+        assertEquals(1f, results.get(0).get(0).getDistance(), 1e-6);
+        assertEquals(0L, store.getStats().get("partial_searches"));
+    }
+
+    @Test
+    void returnsPartialResultsWhenShardIsSlow() {
+        CountDownLatch release = new CountDownLatch(1);
+        InMemoryVectorShard fast = new InMemoryVectorShard("fast");
+        ShardedVectorStore store = newStore(Arrays.asList(fast, new SlowShard("slow", release)), 100);
+        fast.insert(2L, Arrays.asList(2f, 0f));
+        fast.insert(4L, Arrays.asList(4f, 0f));
+
+        try {
+            long start = System.nanoTime();
+            ShardedVectorStore.SearchResult result = store.search(Collections.singletonList(Arrays.asList(0f, 0f)), 3);
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(result.isPartial());
+            assertEquals(Arrays.asList(2L, 4L), ids(result.getHits().get(0)));
+            assertTrue(elapsedMs < 2000, "search should not wait for the slow shard, took " + elapsedMs + " ms");
+            Map<String, Object> stats = store.getStats();
+            assertEquals(1L, stats.get("partial_searches"));
+            assertEquals(1L, shardStat(stats, "slow", "timeouts"));
+            assertEquals(0L, shardStat(stats, "fast", "timeouts"));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    void failsOnlyWhenAllShardsFail() {
+        InMemoryVectorShard healthy = new InMemoryVectorShard("healthy");
+        healthy.insert(1L, Arrays.asList(1f, 0f));
+        ShardedVectorStore partial = newStore(Arrays.asList(healthy, new FailingShard("broken")), 1000);
+
+        ShardedVectorStore.SearchResult result = partial.search(Collections.singletonList(Arrays.asList(0f, 0f)), 3);
+        assertTrue(result.isPartial());
+        assertEquals(Collections.singletonList(1L), ids(result.getHits().get(0)));
+        assertEquals(1L, shardStat(partial.getStats(), "broken", "failures"));
+
+        ShardedVectorStore broken = newStore(Arrays.asList(new FailingShard("a"), new FailingShard("b")), 1000);
+        assertThrows(RuntimeException.class,
+                () -> broken.search(Collections.singletonList(Arrays.asList(0f, 0f)), 3));
+    }
+
+    @Test
+    void deduplicatesDocumentsFoundInSeveralShards() {
+        InMemoryVectorShard first = new InMemoryVectorShard("first");
+        InMemoryVectorShard second = new InMemoryVectorShard("second");
+        ShardedVectorStore store = newStore(Arrays.asList(first, second), 1000);
+        // 按分类路由时文档变更分类后，旧分片中的向量可能尚未删除
+        first.insert(7L, Arrays.asList(1f, 0f));
+        second.insert(7L, Arrays.asList(1f, 0f));
+        second.insert(8L, Arrays.asList(3f, 0f));
+
+        List<VectorShard.Hit> hits = store.search(Collections.singletonList(Arrays.asList(0f, 0f)), 2).getHits().get(0);
+
+        assertEquals(Arrays.asList(7L, 8L), ids(hits));
+    }
+
+    @Test
+    void passesTuningEfToEveryShard() {
+        EfRecordingShard first = new EfRecordingShard("first");
+        EfRecordingShard second = new EfRecordingShard("second");
+        ShardedVectorStore store = newStore(Arrays.asList(first, second), 1000);
+        store.insert(document(1L, "c"), Arrays.asList(1f, 0f));
+        store.insert(document(2L, "c"), Arrays.asList(2f, 0f));
+
+        ShardedVectorStore.SearchResult result = store.search(Collections.singletonList(Arrays.asList(0f, 0f)), 2, 64);
+
+        assertEquals(Arrays.asList(1L, 2L), ids(result.getHits().get(0)));
+        assertEquals(Collections.singletonList(64), first.efs);
+        assertEquals(Collections.singletonList(64), second.efs);
+    }
+
+    private ShardedVectorStore newStore(List<VectorShard> shards, long timeoutMillis) {
+        ShardedVectorStore store = new ShardedVectorStore(shards, ShardedVectorStore.Routing.DOCUMENT_ID, timeoutMillis);
+        stores.add(store);
+        return store;
+    }
+
+    private static FAQDocument document(long id, String category) {
+        FAQDocument document = new FAQDocument();
+        document.setId(id);
+        document.setCategory(category);
+        return document;
+    }
+
+    private static List<Long> ids(List<VectorShard.Hit> hits) {
+        return hits.stream().map(VectorShard.Hit::getDocumentId).collect(Collectors.toList());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static long shardStat(Map<String, Object> stats, String shard, String key) {
+        Map<String, Object> perShard = (Map<String, Object>) stats.get("per_shard");
+        return (Long) ((Map<String, Object>) perShard.get(shard)).get(key);
+    }
+
+    /**
+     * 检索一直阻塞到测试结束的分片
+     */
+    private static final class SlowShard extends InMemoryVectorShard {
+        private final CountDownLatch release;
+
+        SlowShard(String name, CountDownLatch release) {
+            super(name);
+            this.release = release;
+        }
+
+        @Override
+        public List<List<Hit>> search(List<List<Float>> queryVectors, int topK) {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return super.search(queryVectors, topK);
+        }
+    }
+
+    /**
+     * 记录收到的ef参数的分片
+     */
+    private static final class EfRecordingShard extends InMemoryVectorShard {
+        private final List<Integer> efs = Collections.synchronizedList(new ArrayList<>());
+
+        EfRecordingShard(String name) {
+            super(name);
+        }
+
+        @Override
+        public List<List<Hit>> search(List<List<Float>> queryVectors, int topK, int ef) {
+            efs.add(ef);
+            return search(queryVectors, topK);
+        }
+    }
+
+    /**
+     * 检索总是失败的分片
+     */
+    private static final class FailingShard extends InMemoryVectorShard {
+
+        FailingShard(String name) {
+            super(name);
+        }
+
+        @Override
+        public List<List<Hit>> search(List<List<Float>> queryVectors, int topK) {
+            throw new IllegalStateException("shard " + getName() + " unavailable");
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.knowledgebase.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Space-Saving高频项跟踪测试
+ * 验证淘汰时继承最小计数作为误差、真实计数落在[count - error, count]内，以及高频项在大量长尾键冲刷下仍被保留
+ */
+class SpaceSavingTopKTest {
+
+    @Test
+    void evictedSlotPassesItsCountOnAsError() {
+        SpaceSavingTopK topK = new SpaceSavingTopK(2);
+        topK.add("x", 1);
+        topK.add("y", 3);
+        topK.add("z", 1);
+
+        Map<String, long[]> entries = topK.entries();
+        assertEquals(2, entries.size());
+        assertFalse(entries.containsKey("x"));
+        assertArrayEquals(new long[]{2, 1}, entries.get("z"));
+        assertArrayEquals(new long[]{3, 0}, entries.get("y"));
+    }
+
+    @Test
+    void keepsHeavyHittersUnderEviction() {
+        SpaceSavingTopK topK = new SpaceSavingTopK(10);
+        Map<String, Long> truth = new HashMap<>();
+        int tail = 0;
+        for (int i = 0; i < 3000; i++) {
+            String key;
+            if (i % 5 == 0) {
+                key = "heavy-a";
+            } else if (i % 7 == 0) {
+                key = "heavy-b";
+            } else {
+                key = "tail-" + tail++;
+            }
+            topK.add(key, 1);
+            truth.merge(key, 1L, Long::sum);
+        }
+
+        // 真实频率超过 总数/容量 = 300 的键一定被跟踪
+        Map<String, long[]> entries = topK.entries();
+        assertEquals(10, entries.size());
+        for (String heavy : new String[]{"heavy-a", "heavy-b"}) {
+            assertTrue(truth.get(heavy) > 300);
+            assertTrue(entries.containsKey(heavy), heavy + " was evicted");
+        }
+        for (Map.Entry<String, long[]> entry : entries.entrySet()) {
+            long count = entry.getValue()[0];
+            long error = entry.getValue()[1];
+            long actual = truth.get(entry.getKey());
+            assertTrue(actual <= count && actual >= count - error,
+                    entry.getKey() + ": actual " + actual + " outside [" + (count - error) + ", " + count + "]");
+        }
+    }
+
+    @Test
+    void mergeAddsCountsAndErrors() {
+        SpaceSavingTopK local = new SpaceSavingTopK(3);
+        local.add("a", 5);
+        SpaceSavingTopK remote = new SpaceSavingTopK(3);
+        remote.add("a", 2, 1);
+        remote.add("b", 4);
+
+        local.merge(remote);
+
+        assertArrayEquals(new long[]{7, 1}, local.entries().get("a"));
+        assertArrayEquals(new long[]{4, 0}, local.entries().get("b"));
+        assertArrayEquals(new long[]{2, 1}, remote.entries().get("a"));
+    }
+}
@@ -0,0 +1,123 @@
+package com.knowledgebase.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 热门统计测试
+ * 验证窗口排名与查询归一化、快照导出Space-Saving误差并跨节点合并，以及时间桶过期与前一窗口对比
+ */
+class TrendingTrackerTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void ranksByWindowCountAndNormalizesQueries() {
+        TrendingTracker tracker = tracker(300, 24, 10);
+        tracker.record("Reset Password!", 1L);
+        tracker.record("reset   PASSWORD", 1L);
+        tracker.record("reset password?", 2L);
+        tracker.record("如何开发票", 3L);
+
+        List<Map<String, Object>> queries = tracker.top(TrendingTracker.Dimension.QUERIES, 60, 10);
+        assertEquals(2, queries.size());
+        assertEquals("reset password", queries.get(0).get("key"));
+        assertEquals(3L, queries.get(0).get("count"));
+        assertEquals(0L, queries.get(0).get("previous_count"));
+
+        List<Map<String, Object>> documents = tracker.top(TrendingTracker.Dimension.DOCUMENTS, 60, 1);
+        assertEquals(1, documents.size());
+        assertEquals("1", documents.get(0).get("key"));
+        assertEquals(2L, documents.get(0).get("count"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void snapshotExposesSpaceSavingErrorAndMergesAcrossNodes() {
+        TrendingTracker local = tracker(300, 24, 2);
+        local.record("a", null);
+        local.record("b", null);
+        local.record("c", null);
+
+        Map<String, Object> snapshot = roundTrip(local.snapshot(60));
+        Map<String, Object> bucket = ((List<Map<String, Object>>) snapshot.get("buckets")).get(0);
+        Map<String, Object> top = (Map<String, Object>) ((Map<String, Object>) bucket.get("queries")).get("top");
+        Map<String, Object> evicting = (Map<String, Object>) top.get("c");
+        assertEquals(2, ((Number) evicting.get("count")).intValue());
+        assertEquals(1, ((Number) evicting.get("error")).intValue());
+
+        TrendingTracker remote = tracker(300, 24, 2);
+        for (int i = 0; i < 4; i++) {
+            remote.record("a", null);
+        }
+        Map<String, Object> remoteSnapshot = roundTrip(remote.snapshot(60));
+
+        List<Map<String, Object>> merged = local.topMerged(TrendingTracker.Dimension.QUERIES, 60, 1,
+                Collections.singletonList(remoteSnapshot));
+        assertEquals("a", merged.get(0).get("key"));
+        assertEquals(5L, merged.get(0).get("count"));
+
+        // 合并不修改本节点状态，重复合并同一快照不会累加
+        merged = local.topMerged(TrendingTracker.Dimension.QUERIES, 60, 1, Collections.singletonList(remoteSnapshot));
+        assertEquals(5L, merged.get(0).get("count"));
+    }
+
+    @Test
+    void rejectsSnapshotsWithDifferentBuckets() {
+        Map<String, Object> snapshot = roundTrip(tracker(60, 24, 10).snapshot(60));
+
+        assertThrows(IllegalArgumentException.class, () -> tracker(300, 24, 10)
+                .topMerged(TrendingTracker.Dimension.QUERIES, 60, 10, Collections.singletonList(snapshot)));
+    }
+
+    @Test
+    void comparesWithPreviousWindowAndDropsExpiredBuckets() throws InterruptedException {
+        // 1秒一个桶、环上4个桶：1分钟窗口被限制为2个桶，前一窗口为再往前的2个桶
+        TrendingTracker tracker = tracker(1, 4, 10);
+        Thread.sleep(1100 - System.currentTimeMillis() % 1000);
+        tracker.record("a", null);
+        Thread.sleep(2000);
+        tracker.record("a", null);
+
+        List<Map<String, Object>> top = tracker.top(TrendingTracker.Dimension.QUERIES, 1, 10);
+        assertEquals(1, top.size());
+        assertEquals(1L, top.get(0).get("count"));
+        assertEquals(1L, top.get(0).get("previous_count"));
+
+        Thread.sleep(4000);
+        assertTrue(tracker.top(TrendingTracker.Dimension.QUERIES, 1, 10).isEmpty());
+        assertEquals(0, tracker.getStats().get("active_buckets"));
+
+        tracker.record("b", null);
+        top = tracker.top(TrendingTracker.Dimension.QUERIES, 1, 10);
+        assertEquals(1, top.size());
+        assertEquals("b", top.get(0).get("key"));
+    }
+
+    private static TrendingTracker tracker(long bucketSeconds, int buckets, int topK) {
+        TrendingTracker tracker = new TrendingTracker();
+        ReflectionTestUtils.setField(tracker, "enabled", true);
+        ReflectionTestUtils.setField(tracker, "bucketSeconds", bucketSeconds);
+        ReflectionTestUtils.setField(tracker, "bucketCount", buckets);
+        ReflectionTestUtils.setField(tracker, "sketchWidth", 256);
+        ReflectionTestUtils.setField(tracker, "sketchDepth", 4);
+        ReflectionTestUtils.setField(tracker, "topK", topK);
+        tracker.init();
+        return tracker;
+    }
+
+    /**
+     * 模拟快照经HTTP传输：按JSON序列化后再解析
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> roundTrip(Map<String, Object> snapshot) {
+        return objectMapper.convertValue(snapshot, Map.class);
+    }
+}
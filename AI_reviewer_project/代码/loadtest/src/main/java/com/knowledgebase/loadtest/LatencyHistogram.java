@@ -0,0 +1,108 @@
+package com.knowledgebase.loadtest;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延迟直方图（微秒）
+ * 对数-线性分桶：64微秒以内每微秒一个桶，之后每个2的幂区间再均分32个桶，相对误差约3%，
+ * 固定内存、无锁记录，适合高频记录后计算p50~p999分位数。
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR_LIMIT = 64;
+
+    private static final int SUB_BUCKET_BITS = 5;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int MAX_EXPONENT = 42;
+
+    private final AtomicLongArray counts = new AtomicLongArray(LINEAR_LIMIT + (MAX_EXPONENT - 5) * SUB_BUCKETS);
+
+    /**
+     * 记录一次延迟
+     * @param micros 延迟（微秒）
+     */
+    public void record(long micros) {
+        counts.incrementAndGet(indexOf(Math.max(0, micros)));
+    }
+
+    /**
+     * 累加另一个直方图的计数
+     * @param other 直方图
+     */
+    public void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length(); i++) {
+            long count = other.counts.get(i);
+            if (count > 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+    }
+
+    /**
+     * 取出当前计数并清零，返回包含取出计数的新直方图
+     * @return 区间直方图
+     */
+    public LatencyHistogram drain() {
+        LatencyHistogram snapshot = new LatencyHistogram();
+        for (int i = 0; i < counts.length(); i++) {
+            long count = counts.getAndSet(i, 0);
+            if (count > 0) {
+                snapshot.counts.set(i, count);
+            }
+        }
+        return snapshot;
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * 计算分位数
+     * @param percentile 分位（0~1）
+     * @return 延迟（微秒），无数据时返回0
+     */
+    public long getPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return valueOf(i);
+            }
+        }
+        return valueOf(counts.length() - 1);
+    }
+
+    private static int indexOf(long micros) {
+        if (micros < LINEAR_LIMIT) {
+            return (int) micros;
+        }
+        int exponent = Math.min(MAX_EXPONENT - 1, 63 - Long.numberOfLeadingZeros(micros));
+        int subBucket = (int) ((micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return LINEAR_LIMIT + (exponent - 6) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * 桶的代表值取桶区间中点
+     */
+    private static long valueOf(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKETS + 6;
+        int subBucket = (index - LINEAR_LIMIT) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return ((long) (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS)) + width / 2;
+    }
+}
@@ -0,0 +1,146 @@
+package com.knowledgebase.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 压测参数
+ * 命令行参数格式为--key=value，未指定的参数使用默认值
+ */
+public class LoadTestOptions {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    public static LoadTestOptions parse(String[] args) {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                throw new IllegalArgumentException("Unrecognized argument: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            if (eq < 0) {
+                options.values.put(arg.substring(2), "true");
+            } else {
+                options.values.put(arg.substring(2, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * 被测服务地址
+     */
+    public String getBaseUrl() {
+        return get("base-url", "http://localhost:8000");
+    }
+
+    /**
+     * 目标请求速率（次/秒），按开环方式发送，不受响应快慢影响
+     */
+    public double getRate() {
+        return getDouble("rate", 50);
+    }
+
+    public int getDurationSeconds() {
+        return getInt("duration", 60);
+    }
+
+    /**
+     * 预热时长，预热期间的请求不计入汇总结果
+     */
+    public int getWarmupSeconds() {
+        return getInt("warmup", 10);
+    }
+
+    public int getReportIntervalSeconds() {
+        return getInt("report-interval", 5);
+    }
+
+    /**
+     * 负载来源：jdbc（从query_logs表回放）、ndjson（从导出文件回放）、zipf（合成Zipf分布负载）
+     */
+    public String getSource() {
+        return get("source", "zipf");
+    }
+
+    public String getJdbcUrl() {
+        return get("jdbc-url", "jdbc:mysql://localhost:3306/knowledge_base?useUnicode=true&characterEncoding=utf-8&useSSL=false&serverTimezone=Asia/Shanghai");
+    }
+
+    public String getJdbcUser() {
+        return get("jdbc-user", "root");
+    }
+
+    public String getJdbcPassword() {
+        return get("jdbc-password", "123456");
+    }
+
+    public String getNdjsonFile() {
+        return get("ndjson-file", null);
+    }
+
+    /**
+     * 回放时最多加载的查询日志条数
+     */
+    public int getReplayLimit() {
+        return getInt("replay-limit", 100000);
+    }
+
+    /**
+     * Zipf负载的不同查询数量
+     */
+    public int getZipfQueries() {
+        return getInt("zipf-queries", 1000);
+    }
+
+    public double getZipfExponent() {
+        return getDouble("zipf-exponent", 1.1);
+    }
+
+    /**
+     * 合成负载下查询后提交反馈的比例（回放负载使用日志中的实际比例）
+     */
+    public double getFeedbackRate() {
+        return getDouble("feedback-rate", 0.1);
+    }
+
+    public double getPositiveRate() {
+        return getDouble("positive-rate", 0.8);
+    }
+
+    /**
+     * 文档增删改请求占开环请求的比例
+     */
+    public double getDocumentWriteRatio() {
+        return getDouble("document-write-ratio", 0.02);
+    }
+
+    public int getSessions() {
+        return getInt("sessions", 200);
+    }
+
+    /**
+     * 在途请求上限，超过时丢弃本次发送并计数，防止压测端自身耗尽资源
+     */
+    public int getMaxInFlight() {
+        return getInt("max-in-flight", 2000);
+    }
+
+    public long getSeed() {
+        return Long.parseLong(get("seed", "42"));
+    }
+
+    private String get(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    private int getInt(String key, int defaultValue) {
+        String value = values.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    private double getDouble(String key, double defaultValue) {
+        String value = values.get(key);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+}
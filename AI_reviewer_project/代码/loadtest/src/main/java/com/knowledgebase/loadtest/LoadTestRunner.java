@@ -0,0 +1,378 @@
+package com.knowledgebase.loadtest;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONArray;
+import com.alibaba.fastjson2.JSONObject;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 压测入口
+ * 以开环方式按目标速率发送请求：每个请求有预定发送时刻，不等待前一个请求完成，
+ * 延迟从预定时刻起计算，服务变慢时排队时间也会体现在延迟中（避免协同遗漏）。
+ * 请求组成：查询（按负载的反馈比例追加反馈请求）以及按比例混入的文档增删改。
+ * 每个报告周期输出吞吐量和p50/p95/p99/p999延迟，结束时输出预热后的汇总结果。
+ * 在途请求达到上限时丢弃的请求没有延迟可记录，预热后出现丢弃即判定本次压测无效（退出码1）。
+ */
+public class LoadTestRunner {
+
+    private static final String LOADTEST_CATEGORY = "loadtest";
+
+    private static final int DOCUMENT_POOL_SIZE = 50;
+
+    /**
+     * 操作类型
+     */
+    enum Operation {
+        QUERY, FEEDBACK, DOCUMENT_CREATE, DOCUMENT_UPDATE, DOCUMENT_DELETE
+    }
+
+    private final LoadTestOptions options;
+
+    private final Workload workload;
+
+    private final HttpClient httpClient;
+
+    private final Random random;
+
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+    private final Deque<Long> createdDocuments = new ConcurrentLinkedDeque<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final AtomicLong measuredDropped = new AtomicLong();
+
+    private final AtomicLong documentSequence = new AtomicLong();
+
+    private volatile boolean measuring;
+
+    public LoadTestRunner(LoadTestOptions options, Workload workload) {
+        this.options = options;
+        this.workload = workload;
+        this.random = new Random(options.getSeed());
+        this.httpClient = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newFixedThreadPool(32, daemonThreads("loadtest-http")))
+                .build();
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        Workload workload = createWorkload(options);
+        System.out.println("Target: " + options.getBaseUrl() + ", rate " + options.getRate() + "/s, duration "
+                + options.getDurationSeconds() + "s, warmup " + options.getWarmupSeconds() + "s");
+        System.out.println("Workload: " + workload.describe());
+        boolean valid = new LoadTestRunner(options, workload).run();
+        System.exit(valid ? 0 : 1);
+    }
+
+    private static Workload createWorkload(LoadTestOptions options) throws Exception {
+        switch (options.getSource()) {
+            case "jdbc":
+                return QueryLogWorkload.fromJdbc(options.getJdbcUrl(), options.getJdbcUser(),
+                        options.getJdbcPassword(), options.getReplayLimit());
+            case "ndjson":
+                if (options.getNdjsonFile() == null) {
+                    throw new IllegalArgumentException("--ndjson-file is required for source=ndjson");
+                }
+                return QueryLogWorkload.fromNdjson(options.getNdjsonFile(), options.getReplayLimit());
+            case "zipf":
+                return new ZipfianWorkload(fetchQuestions(options.getBaseUrl()), options.getZipfQueries(),
+                        options.getZipfExponent(), options.getFeedbackRate(), options.getPositiveRate(), options.getSeed());
+            default:
+                throw new IllegalArgumentException("Unknown source: " + options.getSource());
+        }
+    }
+
+    /**
+     * 读取服务中已有FAQ的问题作为Zipf负载的词表
+     */
+    private static List<String> fetchQuestions(String baseUrl) {
+        List<String> questions = new ArrayList<>();
+        try {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create(baseUrl + "/api/documents/summaries")).GET().build(),
+                    HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() == 200) {
+                JSONArray documents = JSON.parseArray(response.body());
+                for (int i = 0; i < documents.size(); i++) {
+                    String question = documents.getJSONObject(i).getString("question");
+                    if (question != null) {
+                        questions.add(question);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            System.err.println("Failed to fetch existing questions, using synthetic queries only: " + e.getMessage());
+        }
+        return questions;
+    }
+
+    /**
+     * 执行压测
+     * @return 结果是否有效（预热后没有因在途上限丢弃请求）
+     */
+    public boolean run() throws InterruptedException {
+        long intervalNanos = (long) (1_000_000_000L / options.getRate());
+        long start = System.nanoTime();
+        long warmupEnd = start + TimeUnit.SECONDS.toNanos(options.getWarmupSeconds());
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(options.getDurationSeconds());
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(daemonThreads("loadtest-report"));
+        long reportInterval = options.getReportIntervalSeconds();
+        reporter.scheduleAtFixedRate(() -> report(start), reportInterval, reportInterval, TimeUnit.SECONDS);
+
+        for (long sequence = 0; ; sequence++) {
+            long intended = start + sequence * intervalNanos;
+            if (intended >= end) {
+                break;
+            }
+            if (!measuring && intended >= warmupEnd) {
+                measuring = true;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (inFlight.get() >= options.getMaxInFlight()) {
+                // 丢弃的请求不进入直方图，延迟分位数会偏低，只能整体判为无效
+                dropped.incrementAndGet();
+                if (measuring) {
+                    measuredDropped.incrementAndGet();
+                }
+                continue;
+            }
+            dispatch(intended);
+        }
+
+        // 等待在途请求完成
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(50);
+        }
+        reporter.shutdownNow();
+        report(start);
+        printSummary();
+        cleanupDocuments();
+        return measuredDropped.get() == 0;
+    }
+
+    private void dispatch(long intended) {
+        double roll;
+        synchronized (random) {
+            roll = random.nextDouble();
+        }
+        if (roll < options.getDocumentWriteRatio()) {
+            dispatchDocumentWrite(intended);
+        } else {
+            dispatchQuery(intended);
+        }
+    }
+
+    private void dispatchQuery(long intended) {
+        String query;
+        String sessionId;
+        synchronized (random) {
+            query = workload.nextQuery(random);
+            sessionId = "loadtest-" + random.nextInt(options.getSessions());
+        }
+        JSONObject body = new JSONObject();
+        body.put("query", query);
+        body.put("session_id", sessionId);
+        body.put("user_agent", "knowledge-base-loadtest");
+        send(Operation.QUERY, intended, post("/api/query", body)).thenAccept(response -> {
+            if (response == null || response.statusCode() != 200) {
+                return;
+            }
+            boolean submitFeedback;
+            boolean positive;
+            synchronized (random) {
+                submitFeedback = random.nextDouble() < workload.getFeedbackRate();
+                positive = random.nextDouble() < workload.getPositiveRate();
+            }
+            if (submitFeedback) {
+                Long logId = JSON.parseObject(response.body()).getLong("log_id");
+                if (logId != null) {
+                    JSONObject feedback = new JSONObject();
+                    feedback.put("log_id", logId);
+                    feedback.put("feedback", positive ? 1 : -1);
+                    send(Operation.FEEDBACK, System.nanoTime(), post("/api/query/feedback", feedback));
+                }
+            }
+        });
+    }
+
+    /**
+     * 文档写入：维持一个压测专用的文档池，池未满时创建，否则随机更新或删除
+     */
+    private void dispatchDocumentWrite(long intended) {
+        boolean delete;
+        synchronized (random) {
+            delete = random.nextInt(4) == 0;
+        }
+        Long id = createdDocuments.size() < DOCUMENT_POOL_SIZE ? null : createdDocuments.pollFirst();
+        if (id == null) {
+            send(Operation.DOCUMENT_CREATE, intended, post("/api/documents", newDocument())).thenAccept(response -> {
+                if (response != null && response.statusCode() == 201) {
+                    Long createdId = JSON.parseObject(response.body()).getLong("id");
+                    if (createdId != null) {
+                        createdDocuments.addLast(createdId);
+                    }
+                }
+            });
+        } else if (delete) {
+            send(Operation.DOCUMENT_DELETE, intended, request("/api/documents/" + id).DELETE().build());
+        } else {
+            HttpRequest request = request("/api/documents/" + id)
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofString(newDocument().toJSONString()))
+                    .build();
+            send(Operation.DOCUMENT_UPDATE, intended, request).thenRun(() -> createdDocuments.addLast(id));
+        }
+    }
+
+    private JSONObject newDocument() {
+        long sequence = documentSequence.incrementAndGet();
+        JSONObject document = new JSONObject();
+        document.put("question", "压测问题 " + sequence + " " + UUID.randomUUID());
+        document.put("answer", "压测答案 " + sequence);
+        document.put("category", LOADTEST_CATEGORY);
+        document.put("keywords", "loadtest");
+        document.put("status", "active");
+        return document;
+    }
+
+    private CompletableFuture<HttpResponse<String>> send(Operation operation, long intended, HttpRequest request) {
+        inFlight.incrementAndGet();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .handle((response, error) -> {
+                    inFlight.decrementAndGet();
+                    long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended);
+                    Stats operationStats = stats.get(operation);
+                    if (error != null) {
+                        operationStats.errors.incrementAndGet();
+                        return null;
+                    }
+                    if (response.statusCode() == 429) {
+                        operationStats.rejected.incrementAndGet();
+                    } else if (response.statusCode() >= 400) {
+                        operationStats.errors.incrementAndGet();
+                    } else {
+                        operationStats.interval.record(micros);
+                        if (measuring) {
+                            operationStats.measured.record(micros);
+                        }
+                    }
+                    return response;
+                });
+    }
+
+    private HttpRequest post(String path, JSONObject body) {
+        return request(path)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toJSONString()))
+                .build();
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(options.getBaseUrl() + path)).timeout(Duration.ofSeconds(30));
+    }
+
+    private void report(long start) {
+        long elapsed = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+        StringBuilder line = new StringBuilder(String.format("[%5ds]%s in-flight=%d dropped=%d",
+                elapsed, measuring ? "" : " (warmup)", inFlight.get(), dropped.get()));
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats operationStats = entry.getValue();
+            LatencyHistogram interval = operationStats.interval.drain();
+            long errors = operationStats.errors.getAndSet(0);
+            long rejected = operationStats.rejected.getAndSet(0);
+            operationStats.totalErrors.addAndGet(errors);
+            operationStats.totalRejected.addAndGet(rejected);
+            if (interval.getCount() == 0 && errors == 0 && rejected == 0) {
+                continue;
+            }
+            line.append(String.format("%n    %-16s %8.1f/s err=%d 429=%d %s",
+                    entry.getKey().name().toLowerCase(Locale.ROOT),
+                    (double) interval.getCount() / options.getReportIntervalSeconds(),
+                    errors, rejected, formatPercentiles(interval)));
+        }
+        System.out.println(line);
+    }
+
+    private void printSummary() {
+        System.out.println();
+        System.out.println("Summary (after warmup, " + options.getDurationSeconds() + "s):");
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats operationStats = entry.getValue();
+            LatencyHistogram measured = operationStats.measured;
+            if (measured.getCount() == 0 && operationStats.totalErrors.get() == 0) {
+                continue;
+            }
+            System.out.println(String.format("    %-16s ok=%d %.1f/s err=%d 429=%d %s",
+                    entry.getKey().name().toLowerCase(Locale.ROOT), measured.getCount(),
+                    (double) measured.getCount() / options.getDurationSeconds(),
+                    operationStats.totalErrors.get(), operationStats.totalRejected.get(),
+                    formatPercentiles(measured)));
+        }
+        System.out.println("    dropped (client in-flight limit): " + dropped.get());
+        if (measuredDropped.get() > 0) {
+            System.err.println("INVALID RUN: " + measuredDropped.get() + " requests were dropped after warmup, "
+                    + "latency percentiles exclude them; raise --max-in-flight or lower --rate");
+        }
+    }
+
+    private static String formatPercentiles(LatencyHistogram histogram) {
+        return String.format("p50=%.1fms p95=%.1fms p99=%.1fms p999=%.1fms",
+                histogram.getPercentile(0.50) / 1000.0, histogram.getPercentile(0.95) / 1000.0,
+                histogram.getPercentile(0.99) / 1000.0, histogram.getPercentile(0.999) / 1000.0);
+    }
+
+    /**
+     * 删除压测期间创建的文档
+     */
+    private void cleanupDocuments() {
+        Long id;
+        while ((id = createdDocuments.pollFirst()) != null) {
+            try {
+                httpClient.send(request("/api/documents/" + id).DELETE().build(), HttpResponse.BodyHandlers.discarding());
+            } catch (Exception e) {
+                System.err.println("Failed to delete loadtest document " + id + ": " + e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger index = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, name + "-" + index.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static final class Stats {
+        final LatencyHistogram interval = new LatencyHistogram();
+        final LatencyHistogram measured = new LatencyHistogram();
+        final AtomicLong errors = new AtomicLong();
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong totalErrors = new AtomicLong();
+        final AtomicLong totalRejected = new AtomicLong();
+    }
+}
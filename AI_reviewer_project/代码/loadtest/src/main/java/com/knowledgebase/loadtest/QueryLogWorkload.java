@@ -0,0 +1,122 @@
+package com.knowledgebase.loadtest;
+
+import com.alibaba.fastjson2.JSON;
+import com.alibaba.fastjson2.JSONObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 查询日志回放负载
+ * 按原始顺序循环回放query_logs中的查询文本，反馈比例和正负面比例取自日志中的实际分布。
+ * 数据来自数据库（JDBC）或/api/export/query-logs导出的NDJSON文件（支持.gz）。
+ */
+public class QueryLogWorkload implements Workload {
+
+    private final List<String> queries;
+
+    private final double feedbackRate;
+
+    private final double positiveRate;
+
+    private final String source;
+
+    private final AtomicLong cursor = new AtomicLong();
+
+    private QueryLogWorkload(List<String> queries, long feedbackCount, long positiveCount, String source) {
+        if (queries.isEmpty()) {
+            throw new IllegalStateException("No query logs found in " + source);
+        }
+        this.queries = queries;
+        this.feedbackRate = (double) feedbackCount / queries.size();
+        this.positiveRate = feedbackCount == 0 ? 0 : (double) positiveCount / feedbackCount;
+        this.source = source;
+    }
+
+    /**
+     * 从数据库加载最近的查询日志（按时间正序回放）
+     */
+    public static QueryLogWorkload fromJdbc(String url, String user, String password, int limit) throws SQLException {
+        List<String> queries = new ArrayList<>();
+        long feedbackCount = 0;
+        long positiveCount = 0;
+        String sql = "SELECT query_text, feedback FROM (SELECT id, query_text, feedback FROM query_logs ORDER BY id DESC LIMIT ?) t ORDER BY id";
+        try (Connection connection = DriverManager.getConnection(url, user, password);
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    queries.add(resultSet.getString(1));
+                    int feedback = resultSet.getInt(2);
+                    if (!resultSet.wasNull()) {
+                        feedbackCount++;
+                        if (feedback > 0) {
+                            positiveCount++;
+                        }
+                    }
+                }
+            }
+        }
+        return new QueryLogWorkload(queries, feedbackCount, positiveCount, "jdbc " + url);
+    }
+
+    /**
+     * 从NDJSON导出文件加载查询日志
+     */
+    public static QueryLogWorkload fromNdjson(String file, int limit) throws IOException {
+        List<String> queries = new ArrayList<>();
+        long feedbackCount = 0;
+        long positiveCount = 0;
+        try (InputStream fileIn = new FileInputStream(file);
+             InputStream in = file.endsWith(".gz") ? new GZIPInputStream(fileIn, 65536) : fileIn;
+             BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null && queries.size() < limit) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+                JSONObject row = JSON.parseObject(line);
+                String queryText = row.getString("query_text");
+                if (queryText == null || queryText.isEmpty()) {
+                    continue;
+                }
+                queries.add(queryText);
+                Integer feedback = row.getInteger("feedback");
+                if (feedback != null) {
+                    feedbackCount++;
+                    if (feedback > 0) {
+                        positiveCount++;
+                    }
+                }
+            }
+        }
+        return new QueryLogWorkload(queries, feedbackCount, positiveCount, "ndjson " + file);
+    }
+
+    @Override
+    public String nextQuery(Random random) {
+        return queries.get((int) (cursor.getAndIncrement() % queries.size()));
+    }
+
+    @Override
+    public double getFeedbackRate() {
+        return feedbackRate;
+    }
+
+    @Override
+    public double getPositiveRate() {
+        return positiveRate;
+    }
+
+    @Override
+    public String describe() {
+        return String.format("replay %d queries from %s (feedback %.1f%%, positive %.1f%%)",
+                queries.size(), source, feedbackRate * 100, positiveRate * 100);
+    }
+}
@@ -0,0 +1,31 @@
+package com.knowledgebase.loadtest;
+
+import java.util.Random;
+
+/**
+ * 查询负载
+ */
+public interface Workload {
+
+    /**
+     * 下一条查询文本
+     * @param random 随机数源
+     * @return 查询文本
+     */
+    String nextQuery(Random random);
+
+    /**
+     * 查询后提交反馈的比例
+     */
+    double getFeedbackRate();
+
+    /**
+     * 反馈中正面反馈的比例
+     */
+    double getPositiveRate();
+
+    /**
+     * 负载描述，用于报告
+     */
+    String describe();
+}
@@ -0,0 +1,74 @@
+package com.knowledgebase.loadtest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 合成Zipf分布负载
+ * 第i个查询被选中的概率与1/i^s成正比，模拟少数热门问题占大部分流量的长尾分布。
+ * 查询词表优先使用服务中已有FAQ的问题，数量不足时补充合成问题。
+ */
+public class ZipfianWorkload implements Workload {
+
+    private final List<String> queries;
+
+    private final double[] cumulative;
+
+    private final double exponent;
+
+    private final double feedbackRate;
+
+    private final double positiveRate;
+
+    public ZipfianWorkload(List<String> seedQuestions, int size, double exponent,
+                           double feedbackRate, double positiveRate, long seed) {
+        List<String> vocabulary = new ArrayList<>(seedQuestions);
+        for (int i = vocabulary.size(); i < size; i++) {
+            vocabulary.add("合成压测问题 " + i);
+        }
+        // 打乱顺序，使热门查询不总是对应同一批文档
+        Collections.shuffle(vocabulary, new Random(seed));
+        this.queries = vocabulary.subList(0, Math.min(size, vocabulary.size()));
+        this.exponent = exponent;
+        this.feedbackRate = feedbackRate;
+        this.positiveRate = positiveRate;
+
+        this.cumulative = new double[queries.size()];
+        double sum = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < cumulative.length; i++) {
+            cumulative[i] /= sum;
+        }
+    }
+
+    @Override
+    public String nextQuery(Random random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return queries.get(Math.min(index, queries.size() - 1));
+    }
+
+    @Override
+    public double getFeedbackRate() {
+        return feedbackRate;
+    }
+
+    @Override
+    public double getPositiveRate() {
+        return positiveRate;
+    }
+
+    @Override
+    public String describe() {
+        return String.format("zipf s=%.2f over %d queries (feedback %.1f%%, positive %.1f%%)",
+                exponent, queries.size(), feedbackRate * 100, positiveRate * 100);
+    }
+}